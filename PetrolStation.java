@@ -1,203 +1,566 @@
+import analytics.SalesWindows;
+import archive.ReceiptArchive;
+import batch.BatchListener;
+import batch.BatchProcessor;
+import batch.BatchSummary;
+import batch.PurchaseBatch;
+import config.StationConfig;
+import engine.DispenserEngine;
+import engine.FuelGrade;
+import engine.PurchaseResult;
+import eventstore.EventStore;
+import eventstore.StationState;
+import idempotency.DedupCache;
+import ledger.TransactionLedger;
+import logging.EventLog;
+import logging.EventType;
+import metrics.MetricsSnapshotWriter;
+import metrics.StationMetrics;
+import money.Money;
+import pricing.CachedPriceProvider;
+import pricing.FuelPriceProvider;
+import pricing.HttpPriceSource;
+import pricing.PriceSnapshot;
+import pricing.PriceTable;
+import pricing.StaticPriceSource;
+import receipt.FlushPolicy;
+import receipt.Receipt;
+import receipt.ReceiptJournal;
+import refill.RefillScheduler;
+import server.StationServer;
+import server.StationService;
+import simulator.LoadSimulator;
+import simulator.SaleTarget;
+import station.FolderLock;
+import station.StationCore;
+import station.StationVariant;
+
 import java.io.*;
-import java.net.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Properties;
 import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicReference;
 
 
-public class PetrolStation {
-    private double[][] fuelAndPetrol; // 2D array to store both fuel prices and petrol levels
+public class PetrolStation implements StationService {
+    private final DispenserEngine engine; // petrol levels and receipt numbers, safe for many pumps at once
+    // the sale path shared with the console stations: prices from priceTable, receipts to printReceipt
+    private final StationCore core;
     private String[] dispenserNames; // 1D array to store dispenser names
-    private final double MIN_PETROL_LEVEL = 20.0;
-    private int receiptNumber = 1;
+    private final double MIN_PETROL_LEVEL = StationVariant.STATION.getMinLevelLitres();
+    // how long fetched prices are served before the background refresher fetches again
+    private static final long PRICE_TTL_MILLIS = Long.getLong("fuelprice.ttl.seconds", 600L) * 1000L;
+    private final FuelPriceProvider priceProvider;
+    // what sales are charged at: versioned, swapped in whole, fed by priceProvider and scheduled changes
+    private final PriceTable priceTable;
+    // receipts are queued and batched into an append-only log, see receipt.ReceiptExporter for receipt_N.txt files
+    private static final String RECEIPT_FOLDER = System.getProperty("receipt.dir", "azmi,haikal,ubaid-receipt");
+    private final ReceiptJournal receiptJournal;
+    // journal receipts compacted into columnar blocks every hour (-Dstation.archive.minutes) and on close
+    private static final long ARCHIVE_MILLIS = Long.getLong("station.archive.minutes", 60L) * 60_000L;
+    private final ReceiptArchive archive;
+    // request ids of recent sales, so a terminal's retry is answered instead of sold again; rebuilt from the journal
+    private static final int DEDUP_CAPACITY = Integer.getInteger("station.dedup.capacity", 100_000);
+    private static final long DEDUP_TTL_MILLIS = Long.getLong("station.dedup.ttl.minutes", 60L) * 60_000L;
+    private final DedupCache dedup;
+    // one station per receipt folder: the ledger, journal and event store have one writer each
+    private final FolderLock folderLock;
+    // fixed-width record of every sale; receipt numbers carry on from here after a restart
+    private final TransactionLedger ledger;
+    // purchases, fill-ups and price changes; replayed on start so tank levels survive a restart
+    private static final long SNAPSHOT_MILLIS = Long.getLong("station.snapshot.seconds", 60L) * 1000L;
+    private final EventStore eventStore;
+    private final AtomicReference<PriceSnapshot> recordedPrices = new AtomicReference<>();
+    // sales, refills, price refresh and receipt timings; -Dstation.metrics.file=... also writes them out periodically
+    private final StationMetrics metrics;
+    // litres, revenue and sales per dispenser and grade over the last seconds/minutes
+    private final SalesWindows analytics;
+    // tops tanks up before they run low; -Dstation.refill=manual goes back to filling up after a refused sale
+    private static final boolean AUTO_REFILL = !"manual".equalsIgnoreCase(System.getProperty("station.refill"));
+    private static final long REFILL_LEAD_MILLIS = Long.getLong("station.refill.lead.seconds", 0L) * 1000L;
+    private final RefillScheduler refillScheduler;
+    private final MetricsSnapshotWriter metricsWriter;
+    // console output goes through the event log so pumps never wait on System.out
+    private final EventLog log;
+    private final String receiptDirectoryName;
+    // how long the constructor took; false again once close() starts, so a load balancer stops sending sales
+    private final long startupMillis;
+    private volatile boolean ready;
 
     // Constructor for the version without API
     public PetrolStation(int numDispensers, boolean useApi) {
-        if (useApi) {
-            fuelAndPetrol = new double[numDispensers][2];
-            dispenserNames = new String[]{"Dispenser A", "Dispenser B", "Dispenser C"};
+        this(numDispensers, useApi, useApi
+                ? new CachedPriceProvider(new HttpPriceSource(), PRICE_TTL_MILLIS, PriceSnapshot.fallback2017())
+                : new StaticPriceSource(2.05, 3.47, 2.15));
+    }
+
+    // for a constructor that failed half way: closes in the order given, errors go on failure as suppressed
+    private static void closeOpened(Throwable failure, AutoCloseable... opened) {
+        for (AutoCloseable resource : opened) {
+            if (resource == null) {
+                continue;
+            }
+            try {
+                resource.close();
+            } catch (Exception e) {
+                failure.addSuppressed(e);
+            }
+        }
+    }
+
+    public PetrolStation(int numDispensers, boolean useApi, FuelPriceProvider priceProvider) {
+        this(defaultDispenserNames(numDispensers, useApi), priceProvider, Paths.get(RECEIPT_FOLDER), true);
+    }
+
+    // headless: layout, prices and receipt folder from the config; prices come from the local cache (or the fallback)
+    // and are refreshed in the background, so nothing here waits on the network
+    public PetrolStation(StationConfig config) {
+        this(config.getDispenserNames() != null
+                        ? config.getDispenserNames()
+                        : defaultDispenserNames(config.getDispensers(), !StationConfig.STATIC.equals(config.getPrices())),
+                priceProviderFor(config), config.getReceiptDir(), false);
+    }
+
+    private PetrolStation(String[] dispenserNames, FuelPriceProvider priceProvider, Path receiptFolder, boolean fetchPricesNow) {
+        long constructionStart = System.nanoTime();
+        int numDispensers = dispenserNames.length;
+        // if any step fails, what was opened before it is closed again (newest first) and the folder is let go,
+        // so another attempt in this JVM can take it
+        FolderLock openedLock = null;
+        TransactionLedger openedLedger = null;
+        ReceiptJournal openedJournal = null;
+        ReceiptArchive openedArchive = null;
+        String step = "receipt storage";
+        try {
+            openedLock = FolderLock.acquire(receiptFolder);
+            openedLedger = TransactionLedger.open(receiptFolder.resolve("ledger.dat"));
+            openedJournal = new ReceiptJournal(receiptFolder.resolve("journal"),
+                    FlushPolicy.valueOf(System.getProperty("receipt.flush", "PER_BATCH")), 8192, 10, 64L * 1024 * 1024);
+            openedArchive = ReceiptArchive.open(receiptFolder.resolve("archive"));
+            dedup = new DedupCache(DEDUP_CAPACITY, DEDUP_TTL_MILLIS);
+            dedup.load(openedJournal.getDirectory());
+            // Initialize petrol levels
+            engine = StationVariant.STATION.newEngine(numDispensers, openedLedger.nextReceiptId());
+            step = "station events";
+            eventStore = EventStore.open(receiptFolder.resolve("events"),
+                    StationState.full(numDispensers, engine.getCapacityMl()), SNAPSHOT_MILLIS);
+        } catch (IOException e) {
+            closeOpened(e, openedArchive, openedJournal, openedLedger, openedLock);
+            throw new UncheckedIOException("Error opening " + step, e);
+        } catch (RuntimeException | Error e) {
+            closeOpened(e, openedArchive, openedJournal, openedLedger, openedLock);
+            throw e;
+        }
+        folderLock = openedLock;
+        ledger = openedLedger;
+        receiptJournal = openedJournal;
+        archive = openedArchive;
+        // levels as they were when the station last stopped, not a full tank every start
+        StationState restored = eventStore.recovered();
+        for (int i = 0; i < numDispensers; i++) {
+            engine.restoreLevelMl(i, restored.getLevelMl(i));
+        }
+        this.dispenserNames = dispenserNames;
+        this.priceProvider = priceProvider;
+        priceTable = new PriceTable(priceProvider, priceProvider.current(), 1000L);
+        core = new StationCore(dispenserNames, engine, this::currentPrices, this::printReceipt, dedup);
+        log = EventLog.fromSystemProperties(dispenserNames);
+        receiptDirectoryName = receiptJournal.getDirectory().toString();
+
+        metrics = new StationMetrics(numDispensers);
+        analytics = new SalesWindows(numDispensers);
+        String metricsFile = System.getProperty("station.metrics.file");
+        if (StationMetrics.ENABLED) {
+            if (priceProvider instanceof CachedPriceProvider) {
+                ((CachedPriceProvider) priceProvider).setRefreshListener(metrics::recordPriceRefresh);
+            }
+            receiptJournal.setFlushListener(metrics::recordJournalFlush);
+        }
+        metricsWriter = StationMetrics.ENABLED && metricsFile != null
+                ? new MetricsSnapshotWriter(metrics, Paths.get(metricsFile), 10_000L)
+                : null;
+        if (AUTO_REFILL) {
+            refillScheduler = new RefillScheduler(engine, Math.round(MIN_PETROL_LEVEL * DispenserEngine.ML_PER_LITRE), REFILL_LEAD_MILLIS);
+            refillScheduler.setListener(this::recordRefill);
+            refillScheduler.start(1000L);
+        } else {
+            refillScheduler = null;
+        }
+        archive.start(receiptJournal.getDirectory(), ARCHIVE_MILLIS);
+        if (fetchPricesNow) {
             updateFuelPrices();
         } else {
-            fuelAndPetrol = new double[numDispensers][2];
-            dispenserNames = new String[]{"Dispenser 1", "Dispenser 2", "Dispenser 3"};
-            // Initialize fuel prices manually for the version without API
-            fuelAndPetrol[0][0] = 2.05;
-            fuelAndPetrol[1][0] = 3.47;
-            fuelAndPetrol[2][0] = 2.15;
+            if (priceProvider instanceof CachedPriceProvider) {
+                ((CachedPriceProvider) priceProvider).triggerRefresh();
+            }
+            log.prices(priceTable.current());
+            recordPrices(priceTable.current());
         }
+        startupMillis = (System.nanoTime() - constructionStart) / 1_000_000L;
+        ready = true;
+    }
 
+    // one name per dispenser, so stations with more than three pumps work too
+    private static String[] defaultDispenserNames(int numDispensers, boolean useApi) {
+        String[] names = new String[numDispensers];
         for (int i = 0; i < numDispensers; i++) {
-            fuelAndPetrol[i][1] = 100.0; // Initialize petrol levels
+            if (useApi && i < 26) {
+                names[i] = "Dispenser " + (char) ('A' + i);
+            } else {
+                names[i] = "Dispenser " + (i + 1);
+            }
         }
+        return names;
     }
-    // methods in purchasing the fuel
-    public void purchaseFuel(int dispenser, double amount, String fuelType) {
-        updateFuelPrices();
-        if (dispenser < 0 || dispenser >= fuelAndPetrol.length) {
-            System.out.println("Invalid dispenser. Please try again.");
-            return;
+
+    private static FuelPriceProvider priceProviderFor(StationConfig config) {
+        if (StationConfig.STATIC.equals(config.getPrices())) {
+            double[] prices = config.getStaticPrices();
+            return new StaticPriceSource(prices[0], prices[1], prices[2]);
         }
+        String url = StationConfig.API.equals(config.getPrices()) ? HttpPriceSource.DEFAULT_URL : config.getPrices();
+        return new CachedPriceProvider(new HttpPriceSource(url), config.getPriceTtlMillis(),
+                PriceSnapshot.fallback2017(), config.getPriceCache());
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
 
-        if (fuelAndPetrol[dispenser][1] < MIN_PETROL_LEVEL) {
-            System.out.println("Warning: Low petrol level at " + dispenserNames[dispenser] + ". Please top up more fuel.");
+    // one line for the deployment log: how long startup took and which prices the station opened with
+    public String describeStartup() {
+        PriceSnapshot prices = priceTable.current();
+        String origin;
+        if (priceProvider instanceof StaticPriceSource) {
+            origin = "fixed prices";
+        } else if (prices.getFetchedAtMillis() == 0L) {
+            origin = "2017 fallback prices until the first fetch";
         } else {
-            double fuelPrice = getFuelPrice(fuelType);
+            origin = "prices fetched " + Instant.ofEpochMilli(prices.getFetchedAtMillis());
+        }
+        return String.format("Ready in %d ms: %d dispensers, %s, receipts in %s", startupMillis,
+                dispenserNames.length, origin, receiptJournal.getDirectory().getParent());
+    }
+    // methods in purchasing the fuel, prices come from the in-memory snapshot (no HTTP call per sale)
+    @Override
+    public PurchaseResult purchaseFuel(int dispenser, double amount, FuelGrade fuelGrade) {
+        return purchaseFuel(0L, dispenser, amount, fuelGrade);
+    }
 
-            if (fuelPrice > 0) {
-                double litres = amount / fuelPrice;
-                if (litres > fuelAndPetrol[dispenser][1]) {
-                    System.out.println("Error: Not enough petrol in " + dispenserNames[dispenser] + ". Topping up the fuel.");
+    @Override
+    public PurchaseResult purchaseFuel(long requestId, int dispenser, double amount, FuelGrade fuelGrade) {
+        long start = StationMetrics.ENABLED ? System.nanoTime() : 0L;
+        PurchaseResult result = core.sell(requestId, dispenser, amount, fuelGrade);
+        if (result.isReplayed()) {
+            // already sold, logged and counted the first time
+            if (StationMetrics.ENABLED) {
+                metrics.recordReplay(System.nanoTime() - start);
+            }
+            return result;
+        }
+        switch (result.getStatus()) {
+            case OK:
+                log.sale(dispenser, fuelGrade, result.getReceiptNumber(), result.getLitres(), result.getTotalPrice());
+                analytics.recordSale(dispenser, fuelGrade, result.getLitresMl(), result.getTotalSen());
+                if (StationMetrics.ENABLED) {
+                    metrics.recordSale(dispenser, fuelGrade, result.getLitresMl(), result.getTotalSen(), System.nanoTime() - start);
+                    if (engine.isBelowMinimum(dispenser)) {
+                        metrics.recordLowLevel(dispenser);
+                    }
+                }
+                return result;
+            case INVALID_DISPENSER:
+                log.refused(EventType.INVALID_DISPENSER, dispenser);
+                break;
+            case LOW_LEVEL:
+                log.refused(EventType.LOW_LEVEL, dispenser);
+                if (StationMetrics.ENABLED) {
+                    metrics.recordLowLevel(dispenser);
+                }
+                break;
+            case NOT_ENOUGH_PETROL:
+                log.refused(EventType.NOT_ENOUGH_PETROL, dispenser);
+                if (refillScheduler != null) {
+                    refillScheduler.requestRefill(dispenser);
+                } else {
                     fillUpDispenser(dispenser);
-                    return;
                 }
-                fuelAndPetrol[dispenser][1] -= litres;
-                double totalPrice = litres * fuelPrice;
-
-                printReceipt(receiptNumber++, dispenser, litres, fuelType, totalPrice);
-
-                System.out.printf("Filling up %.2f litres of %s at %s. Total price: RM%.2f\n", litres, fuelType, dispenserNames[dispenser], totalPrice);
-            } else {
-                System.out.println("Error: Invalid fuel price. Please try again.");
-            }
+                break;
+            case INVALID_AMOUNT:
+                log.refused(EventType.INVALID_AMOUNT, dispenser);
+                break;
+            default:
+                log.refused(EventType.INVALID_PRICE, dispenser);
+        }
+        if (StationMetrics.ENABLED) {
+            metrics.recordRefused(System.nanoTime() - start);
         }
+        return result;
     }
     // filling up the dispenser methods
-    public void fillUpDispenser(int dispenser) {
-        if (dispenser < 0 || dispenser >= fuelAndPetrol.length) {
-            System.out.println("Invalid dispenser. Please try again.");
-            return;
+    @Override
+    public double fillUpDispenser(int dispenser) {
+        if (!engine.isValidDispenser(dispenser)) {
+            log.refused(EventType.INVALID_DISPENSER, dispenser);
+            return -1;
         }
 
-        double fillAmount = 100.0 - fuelAndPetrol[dispenser][1];
-        fuelAndPetrol[dispenser][1] = 100.0;
-
-        System.out.printf("Dispenser %d filled up with %.2f litres.\n", dispenser, fillAmount);
+        long fillMl = engine.fillUpMl(dispenser);
+        recordRefill(dispenser, fillMl);
+        return Money.litres(fillMl);
     }
-
-    private double getFuelPrice(String fuelType) {
-        switch (fuelType.toLowerCase()) {
-            case "ron95":
-                return fuelAndPetrol[0][0];
-            case "ron97":
-                return fuelAndPetrol[1][0];
-            case "diesel":
-                return fuelAndPetrol[2][0];
-            default:
-                throw new IllegalArgumentException("Invalid fuel type: " + fuelType);
+    // metrics, event store and console for a fill-up, whoever did it
+    private void recordRefill(int dispenser, long fillMl) {
+        if (StationMetrics.ENABLED) {
+            metrics.recordRefill(fillMl);
         }
-    }
-    // receipt printing
-    private void printReceipt(int currentReceiptNumber, int dispenser, double litres, String fuelType, double totalPrice) {
         try {
+            eventStore.fill(dispenser, fillMl);
+        } catch (IOException e) {
+            log.message("Error recording fill-up: " + e.getMessage());
+        }
+        log.refill(dispenser, Money.litres(fillMl));
+    }
 
-            String folderName = "azmi,haikal,ubaid-receipt";
-            File folder = new File(folderName);
-            if (!folder.exists()) {
-                folder.mkdir();
-            }
-
-            String fileName = folderName + "/receipt_" + currentReceiptNumber + ".txt";
-
-            try (PrintWriter writer = new PrintWriter(new FileWriter(fileName))) {
-                writer.println("Receipt Number: " + currentReceiptNumber);
-                writer.println("Dispenser: " + dispenser);
-                writer.println("Fuel Type: " + fuelType);
-                writer.println("Litres: " + String.format("%.2f", litres));
-                writer.println("Total Price: RM" + String.format("%.2f", totalPrice));
+    private PriceSnapshot currentPrices() {
+        PriceSnapshot prices = priceTable.current();
+        if (prices != recordedPrices.get()) {
+            recordPrices(prices);
+        }
+        return prices;
+    }
+    // one price event per change of prices, not per refresh or per restart
+    private void recordPrices(PriceSnapshot prices) {
+        PriceSnapshot previous = recordedPrices.getAndSet(prices);
+        if (previous == prices) {
+            return;
+        }
+        if (previous == null) {
+            StationState restored = eventStore.recovered();
+            if (restored.getPrice(FuelGrade.RON95) == prices.getRon95() && restored.getPrice(FuelGrade.RON97) == prices.getRon97()
+                    && restored.getPrice(FuelGrade.DIESEL) == prices.getDiesel()) {
+                return;
             }
-
-            System.out.println("Receipt saved to " + fileName);
+        } else if (previous.getRon95() == prices.getRon95() && previous.getRon97() == prices.getRon97()
+                && previous.getDiesel() == prices.getDiesel()) {
+            return;
+        }
+        try {
+            eventStore.prices(prices.getRon95(), prices.getRon97(), prices.getDiesel());
         } catch (IOException e) {
-            System.out.println("Error saving receipt: " + e.getMessage());
+            log.message("Error recording fuel prices: " + e.getMessage());
+        }
+    }
+    // the station core's receipt sink: ledger, event store and journal. only queues the receipt;
+    // the journal writer thread does the file I/O
+    private void printReceipt(Receipt receipt) {
+        long start = StationMetrics.ENABLED ? System.nanoTime() : 0L;
+        long currentReceiptNumber = receipt.getNumber();
+        int dispenser = receipt.getDispenser();
+        try {
+            // the ledger and event store formats keep RM as doubles; ml and sen convert to them exactly
+            ledger.append(currentReceiptNumber, dispenser, receipt.getFuelGrade().code(), receipt.getLitres(), receipt.getTotalPrice(),
+                    receipt.getTimestampMillis());
+            eventStore.purchase(dispenser, receipt.getFuelGrade().code(), receipt.getLitresMl(), currentReceiptNumber, receipt.getTotalPrice());
+            receiptJournal.append(receipt);
+            if (StationMetrics.ENABLED) {
+                metrics.recordReceiptWrite(System.nanoTime() - start);
+            }
+            log.receiptQueued(currentReceiptNumber, receiptDirectoryName);
+        } catch (IOException | IllegalStateException e) {
+            // IllegalStateException: the journal's writer stopped, so the receipt was not queued
+            log.receiptError(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.receiptError("interrupted");
         }
     }
     // displaying the petrol level in dispenser
     public void displayPetrolLevels() {
-        for (int i = 0; i < fuelAndPetrol.length; i++) {
-            System.out.printf("Petrol level at dispenser %d: %.2f litres\n", i, fuelAndPetrol[i][1]);
+        for (int i = 0; i < engine.size(); i++) {
+            log.level(i, engine.level(i));
         }
     }
-    // updating the fuel price
-    private void updateFuelPrices() {
-        try {
-            URL url = new URL("https://api.data.gov.my/data-catalogue/?id=fuelprice&limit=1");
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-
-            int responseCode = connection.getResponseCode();
-            if (responseCode == HttpURLConnection.HTTP_OK) {
-                BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-                StringBuilder response = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    response.append(line);
-                }
-                reader.close();
 
-                // Parse JSON response and update fuel prices
-                fuelAndPetrol[0][0] = parseFuelPriceFromJson(response.toString(), "ron95");
-                fuelAndPetrol[1][0] = parseFuelPriceFromJson(response.toString(), "ron97");
-                fuelAndPetrol[2][0] = parseFuelPriceFromJson(response.toString(), "diesel");
+    public double getPetrolLevel(int dispenser) {
+        return engine.level(dispenser);
+    }
 
-                System.out.println("RON95 Price: RM" + fuelAndPetrol[0][0]);
-                System.out.println("RON97 Price: RM" + fuelAndPetrol[1][0]);
-                System.out.println("Diesel Price: RM" + fuelAndPetrol[2][0]);
+    @Override
+    public double[] getPetrolLevels() {
+        double[] levels = new double[engine.size()];
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = engine.level(i);
+        }
+        return levels;
+    }
 
-            } else {
-                System.out.println("Failed to get fuel prices. HTTP response code: " + responseCode);
-
-                fuelAndPetrol[0][0] = 2.03;
-                fuelAndPetrol[1][0] = 2.28;
-                fuelAndPetrol[2][0] = 1.99;
-                System.out.println("Using latest updated price 2017:");
-                System.out.println("RON95 Price: RM" + fuelAndPetrol[0][0]);
-                System.out.println("RON97 Price: RM" + fuelAndPetrol[1][0]);
-                System.out.println("Diesel Price: RM" + fuelAndPetrol[2][0]);
-            }
+    @Override
+    public PriceSnapshot getFuelPrices() {
+        return priceTable.current();
+    }
 
-            connection.disconnect();
-        } catch (IOException e) {
-            System.out.println("Error updating fuel prices: " + e.getMessage());
+    // e.g. the weekly change: schedulePrices(prices, PriceTable.nextWeeklyChange(now, PriceTable.MALAYSIA))
+    @Override
+    public void schedulePrices(PriceSnapshot prices, long effectiveAtMillis) {
+        priceTable.schedule(prices, effectiveAtMillis);
+    }
+
+    public StationMetrics getMetrics() {
+        return metrics;
+    }
+
+    public SalesWindows getAnalytics() {
+        return analytics;
+    }
+
+    public ReceiptArchive getArchive() {
+        return archive;
+    }
+
+    public int getReceiptBacklog() {
+        return receiptJournal.backlog();
+    }
+    // replays a POS terminal's transaction file (CSV or binary, see PurchaseBatch) in one go: one price lookup,
+    // dispensers in parallel, one receipt file in the journal folder. ledger and events are kept as for single sales
+    public BatchSummary purchaseBatch(Path file, boolean refillWhenEmpty) throws IOException {
+        PurchaseBatch batch = PurchaseBatch.read(file);
+        PriceSnapshot prices = currentPrices();
+        BatchListener listener = new BatchListener() {
+            @Override
+            public void sold(long receiptNumber, int dispenser, FuelGrade fuelGrade, long litresMl, long totalSen, long timestampMillis)
+                    throws IOException {
+                ledger.append(receiptNumber, dispenser, fuelGrade.code(), Money.litres(litresMl), Money.ringgit(totalSen), timestampMillis);
+                eventStore.purchase(dispenser, fuelGrade.code(), litresMl, receiptNumber, Money.ringgit(totalSen));
+                analytics.recordSale(dispenser, fuelGrade, litresMl, totalSen);
+            }
 
-            fuelAndPetrol[0][0] = 2.03;
-            fuelAndPetrol[1][0] = 2.28;
-            fuelAndPetrol[2][0] = 1.99;
-            System.out.println("Using latest updated price 2017:");
-            System.out.println("RON95 Price: RM" + fuelAndPetrol[0][0]);
-            System.out.println("RON97 Price: RM" + fuelAndPetrol[1][0]);
-            System.out.println("Diesel Price: RM" + fuelAndPetrol[2][0]);
+            @Override
+            public void refilled(int dispenser, long litresMl) throws IOException {
+                eventStore.fill(dispenser, litresMl);
+            }
+        };
+        try (BatchProcessor processor = new BatchProcessor(engine, Math.min(engine.size(), Runtime.getRuntime().availableProcessors()))) {
+            return processor.process(batch, prices, receiptJournal.getDirectory(), refillWhenEmpty, listener);
         }
     }
-    // parsing JSON data from the api endpoint into a readable data
-    private double parseFuelPriceFromJson(String jsonResponse, String fuelType) {
-        double fuelPrice = -1; // Default value if not found
+
+    // blocks until every event published so far is on the console, used before prompting
+    public void awaitLog() {
+        log.awaitDrained();
+    }
+    // stops the background price refresher and writes out any queued receipts and log lines
+    public void close() {
+        ready = false;
+        if (refillScheduler != null) {
+            refillScheduler.close();
+        }
+        priceTable.close();
+        if (metricsWriter != null) {
+            metricsWriter.close();
+        }
         try {
+            archive.close();
+            receiptJournal.close();
+            archive.compact(receiptJournal.getDirectory());
+            ledger.close();
+            eventStore.close();
+        } catch (IOException e) {
+            log.receiptError(e.getMessage());
+        }
+        log.close();
+        folderLock.close();
+    }
 
-            // I Assume the JSON response is an array with a single element
-            if (jsonResponse.startsWith("[") && jsonResponse.endsWith("]")) {
-                jsonResponse = jsonResponse.substring(1, jsonResponse.length() - 1);
+    // updating the fuel price: blocking fetch at startup, the cache refreshes itself in the background afterwards
+    private void updateFuelPrices() {
+        if (priceProvider instanceof CachedPriceProvider) {
+            CachedPriceProvider cached = (CachedPriceProvider) priceProvider;
+            if (!cached.refreshNow()) {
+                log.priceRefreshFailed(cached.current().getFetchedAtMillis() == 0L);
             }
+        }
+        priceTable.poll();
+        log.prices(priceTable.current());
+        recordPrices(priceTable.current());
+    }
+
+    // java PetrolStation serve [port] [api|noapi] starts the HTTP front-end instead of the console loop
+    private static void serve(String[] args) throws IOException {
+        Properties settings = new Properties();
+        settings.setProperty("server.port", args.length > 1 ? args[1] : "8080");
+        settings.setProperty("prices", args.length > 2 && args[2].equals("api") ? StationConfig.API : StationConfig.STATIC);
+        settings.setProperty("receipt.dir", RECEIPT_FOLDER);
+        headless(StationConfig.from(settings));
+    }
 
-            // Parse JSON
-            String[] keyValuePairs = jsonResponse.split(",");
-            for (String pair : keyValuePairs) {
-                String[] entry = pair.trim().split(":");
-                if (entry.length == 2) {
-                    String key = entry[0].trim();
-                    String value = entry[1].trim();
+    // java PetrolStation headless [station.properties]: no prompts, no waiting on the price API, see config.StationConfig
+    private static void headless(StationConfig config) throws IOException {
+        PetrolStation station = new PetrolStation(config);
+        StationServer server = new StationServer(station, StationMetrics.ENABLED ? station.metrics : null, station.analytics, config.getPort(), config.getThreads());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            station.close();
+        }));
+        server.start();
+        System.out.println(station.describeStartup() + ", listening on port " + server.getPort());
+    }
 
+    private static void simulate(String[] args) {
+        LoadSimulator.Options options = LoadSimulator.Options.parse(args, 1);
+        if (System.getProperty("station.log") == null) {
+            // one console line per sale would be the bottleneck
+            System.setProperty("station.log", Paths.get(RECEIPT_FOLDER, "simulation.log").toString());
+        }
+        PetrolStation station = new PetrolStation(options.dispensers, false);
+        try {
+            SaleTarget target = new SaleTarget() {
+                @Override
+                public PurchaseResult sell(int dispenser, double amount, FuelGrade fuelGrade) {
+                    return station.purchaseFuel(dispenser, amount, fuelGrade);
+                }
 
-                    if (("\"" + fuelType + "\"").equals(key)) {
-                        fuelPrice = Double.parseDouble(value);
-                        break;
-                    }
+                @Override
+                public int receiptBacklog() {
+                    return station.getReceiptBacklog();
                 }
-            }
-        } catch (NumberFormatException e) {
-            System.out.println("Error parsing fuel price for " + fuelType + ": " + e.getMessage());
+            };
+            System.out.println(options.run(target, options.workload()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            station.close();
         }
-        return fuelPrice;
     }
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("serve")) {
+            serve(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("headless")) {
+            headless(StationConfig.load(args.length > 1 ? Paths.get(args[1]) : null));
+            return;
+        }
+        // java PetrolStation batch <file> [dispensers]: reconcile an offline terminal's transactions and exit
+        if (args.length > 1 && args[0].equals("batch")) {
+            PetrolStation station = new PetrolStation(args.length > 2 ? Integer.parseInt(args[2]) : 3, false);
+            try {
+                System.out.println(station.purchaseBatch(Paths.get(args[1]), true));
+            } finally {
+                station.close();
+            }
+            return;
+        }
+        // java PetrolStation simulate [open|closed] [dispensers] [seconds] [customers/s] [threads] [seed] [thinkMillis]:
+        // seeded load test of the whole station, see simulator.LoadSimulator. use -Dreceipt.dir to keep its receipts apart
+        if (args.length > 0 && args[0].equals("simulate")) {
+            simulate(args);
+            return;
+        }
         System.out.println("==== ++ azmi / haikal / ubaid petrol station system ++ ====");
         Scanner scanner = new Scanner(System.in);
 
@@ -230,19 +593,20 @@ public class PetrolStation {
         boolean exit = false;
 
         while (!exit) {
-            System.out.println("Choose a dispenser (0-2) or -1 to exit:");
+            station.awaitLog();
+            System.out.println("Choose a dispenser (0-" + (station.engine.size() - 1) + ") or -1 to exit:");
             int dispenser = scanner.nextInt();
             if (dispenser == -1) {
                 exit = true;
                 break;
-            } else if (dispenser < 0 || dispenser >= station.fuelAndPetrol.length) {
+            } else if (!station.engine.isValidDispenser(dispenser)) {
                 System.out.println("Invalid dispenser. Please try again.");
                 continue;
             }
 
             System.out.println("Dispenser Name: " + station.dispenserNames[dispenser]);
 
-            if (station.fuelAndPetrol[dispenser][1] < 20.0) {
+            if (station.getPetrolLevel(dispenser) < StationVariant.REFILL_PROMPT_LITRES) {
                 System.out.println(station.dispenserNames[dispenser] + " needs to be filled up. Do you want to fill it up? (yes/no):");
                 String fillUpChoice = scanner.next().toLowerCase();
                 if (fillUpChoice.equals("yes")) {
@@ -250,29 +614,30 @@ public class PetrolStation {
                     continue;
                 } else {
                     System.out.println("Choose a fuel type (ron95, ron97, diesel):");
-                    String fuelType = scanner.next().toLowerCase();
-                    if (!fuelType.equals("ron95") && !fuelType.equals("ron97") && !fuelType.equals("diesel")) {
+                    FuelGrade fuelGrade = FuelGrade.parse(scanner.next());
+                    if (fuelGrade == null) {
                         System.out.println("Invalid fuel type. Please try again.");
                         continue;
                     }
                     System.out.println("Enter the amount of money to purchase fuel (in RM):");
                     double amount = scanner.nextDouble();
-                    station.purchaseFuel(dispenser, amount, fuelType);
+                    station.purchaseFuel(dispenser, amount, fuelGrade);
                     station.displayPetrolLevels();
                 }
             } else {
                 System.out.println("Choose a fuel type (ron95, ron97, diesel):");
-                String fuelType = scanner.next().toLowerCase();
-                if (!fuelType.equals("ron95") && !fuelType.equals("ron97") && !fuelType.equals("diesel")) {
+                FuelGrade fuelGrade = FuelGrade.parse(scanner.next());
+                if (fuelGrade == null) {
                     System.out.println("Invalid fuel type. Please try again.");
                     continue;
                 }
                 System.out.println("Enter the amount of money to purchase fuel (in RM):");
                 double amount = scanner.nextDouble();
-                station.purchaseFuel(dispenser, amount, fuelType);
+                station.purchaseFuel(dispenser, amount, fuelGrade);
                 station.displayPetrolLevels();
             }
         }
+        station.close();
         scanner.close();
     }
 }
@@ -0,0 +1,231 @@
+package analytics;
+
+import engine.FuelGrade;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+// streaming sales aggregates per dispenser and grade, fed by every successful sale.
+// pumps add to running totals (count, ml, sen) per dispenser x grade cell. at the start of every second and
+// every minute the totals are copied into a pre-allocated ring of checkpoints, so any window is
+// "totals now minus the checkpoint where the window starts": O(1) per cell however much history there is.
+// windows are accurate to the second (or minute); a sale racing with the rollover may land in either side
+public class SalesWindows {
+    public static final int ALL_DISPENSERS = -1;
+
+    public enum Resolution {
+        SECOND(1000L), MINUTE(60_000L);
+
+        private final long millis;
+
+        Resolution(long millis) {
+            this.millis = millis;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+    }
+
+    // count, ml, sen per cell, padded to a cache line so busy pumps do not share one
+    private static final int FIELDS = 3;
+    private static final int STRIDE = 8;
+
+    private final int dispensers;
+    private final int grades = FuelGrade.count();
+    private final int cells;
+    private final LongSupplier clockMillis;
+    private final AtomicLongArray totals;
+    private final Ring bySecond;
+    private final Ring byMinute;
+
+    public SalesWindows(int dispensers) {
+        this(dispensers, 3600, 1440, System::currentTimeMillis);
+    }
+
+    public SalesWindows(int dispensers, int secondsKept, int minutesKept, LongSupplier clockMillis) {
+        if (dispensers <= 0 || secondsKept < 2 || minutesKept < 2) {
+            throw new IllegalArgumentException("Need at least one dispenser and two slots per ring");
+        }
+        this.dispensers = dispensers;
+        this.cells = dispensers * grades;
+        this.clockMillis = clockMillis;
+        this.totals = new AtomicLongArray(cells * STRIDE);
+        long now = clockMillis.getAsLong();
+        this.bySecond = new Ring(Resolution.SECOND, secondsKept, now);
+        this.byMinute = new Ring(Resolution.MINUTE, minutesKept, now);
+    }
+
+    public void recordSale(int dispenser, FuelGrade fuelGrade, long ml, long revenueSen) {
+        if (dispenser < 0 || dispenser >= dispensers) {
+            return;
+        }
+        long now = clockMillis.getAsLong();
+        bySecond.advance(now);
+        byMinute.advance(now);
+        int base = (dispenser * grades + fuelGrade.code()) * STRIDE;
+        totals.incrementAndGet(base);
+        totals.addAndGet(base + 1, ml);
+        totals.addAndGet(base + 2, revenueSen);
+    }
+
+    // sales in the last 'units' seconds or minutes, the current partial one included.
+    // dispenser may be ALL_DISPENSERS and fuelGrade null for all grades
+    public WindowTotals sliding(Resolution resolution, int units, int dispenser, FuelGrade fuelGrade) {
+        Ring ring = ring(resolution);
+        if (units < 1 || units >= ring.slots) {
+            throw new IllegalArgumentException("Window must be 1.." + (ring.slots - 1) + " " + ring.unitName + ": " + units);
+        }
+        long current = ring.advance(clockMillis.getAsLong());
+        return difference(ring, current - units + 1, -1, dispenser, fuelGrade);
+    }
+
+    // one aligned window: unitsAgo 0 is the current (partial) second or minute, 1 the last complete one, ...
+    public WindowTotals tumbling(Resolution resolution, int unitsAgo, int dispenser, FuelGrade fuelGrade) {
+        Ring ring = ring(resolution);
+        if (unitsAgo < 0 || unitsAgo >= ring.slots - 1) {
+            throw new IllegalArgumentException("Can look back 0.." + (ring.slots - 2) + " " + ring.unitName + ": " + unitsAgo);
+        }
+        long current = ring.advance(clockMillis.getAsLong());
+        long unit = current - unitsAgo;
+        return difference(ring, unit, unitsAgo == 0 ? -1 : unit + 1, dispenser, fuelGrade);
+    }
+
+    public WindowTotals lastSeconds(int seconds, int dispenser, FuelGrade fuelGrade) {
+        return sliding(Resolution.SECOND, seconds, dispenser, fuelGrade);
+    }
+
+    public WindowTotals lastMinutes(int minutes, int dispenser, FuelGrade fuelGrade) {
+        return sliding(Resolution.MINUTE, minutes, dispenser, fuelGrade);
+    }
+
+    // everything since the station started
+    public WindowTotals total(int dispenser, FuelGrade fuelGrade) {
+        long[] sum = new long[FIELDS];
+        for (int cell = 0; cell < cells; cell++) {
+            if (matches(cell, dispenser, fuelGrade)) {
+                for (int f = 0; f < FIELDS; f++) {
+                    sum[f] += totals.get(cell * STRIDE + f);
+                }
+            }
+        }
+        return new WindowTotals(sum[0], sum[1], sum[2]);
+    }
+
+    public int getDispensers() {
+        return dispensers;
+    }
+
+    public int getSlots(Resolution resolution) {
+        return ring(resolution).slots;
+    }
+
+    // checkpoint(endUnit) - checkpoint(startUnit) summed over matching cells; endUnit -1 means the live totals
+    private WindowTotals difference(Ring ring, long startUnit, long endUnit, int dispenser, FuelGrade fuelGrade) {
+        long[] sum = new long[FIELDS];
+        for (int cell = 0; cell < cells; cell++) {
+            if (!matches(cell, dispenser, fuelGrade)) {
+                continue;
+            }
+            for (int f = 0; f < FIELDS; f++) {
+                long end = endUnit < 0 ? totals.get(cell * STRIDE + f) : ring.checkpoint(endUnit, cell, f);
+                sum[f] += end - ring.checkpoint(startUnit, cell, f);
+            }
+        }
+        return new WindowTotals(sum[0], sum[1], sum[2]);
+    }
+
+    private boolean matches(int cell, int dispenser, FuelGrade fuelGrade) {
+        return (dispenser == ALL_DISPENSERS || cell / grades == dispenser)
+                && (fuelGrade == null || cell % grades == fuelGrade.code());
+    }
+
+    private Ring ring(Resolution resolution) {
+        return resolution == Resolution.SECOND ? bySecond : byMinute;
+    }
+
+    // checkpoint of every cell's totals at the start of each of the last 'slots' seconds or minutes
+    private final class Ring {
+        private final long unitMillis;
+        private final String unitName;
+        private final int slots;
+        private final long startUnit;
+        private final long[] checkpoints;
+        private final AtomicLongArray slotUnit;
+        private final AtomicLong lastUnit;
+        private final AtomicBoolean rolling = new AtomicBoolean();
+
+        Ring(Resolution resolution, int slots, long nowMillis) {
+            this.unitMillis = resolution.millis;
+            this.unitName = resolution.name().toLowerCase() + "s";
+            this.slots = slots;
+            this.startUnit = nowMillis / unitMillis;
+            this.checkpoints = new long[slots * cells * FIELDS];
+            this.slotUnit = new AtomicLongArray(slots);
+            for (int i = 0; i < slots; i++) {
+                slotUnit.set(i, Long.MIN_VALUE);
+            }
+            slotUnit.set((int) (startUnit % slots), startUnit); // all zeros at the start
+            this.lastUnit = new AtomicLong(startUnit);
+        }
+
+        // writes the checkpoints for every unit that started since the last call; returns the current unit.
+        // one thread rolls at a time, the others carry on without waiting
+        long advance(long nowMillis) {
+            long unit = nowMillis / unitMillis;
+            long last = lastUnit.get();
+            if (unit <= last || !rolling.compareAndSet(false, true)) {
+                return Math.max(unit, last);
+            }
+            try {
+                last = lastUnit.get();
+                for (long u = Math.max(last + 1, unit - slots + 1); u <= unit; u++) {
+                    int slot = (int) (u % slots);
+                    slotUnit.set(slot, Long.MIN_VALUE);
+                    int base = slot * cells * FIELDS;
+                    for (int cell = 0; cell < cells; cell++) {
+                        for (int f = 0; f < FIELDS; f++) {
+                            checkpoints[base + cell * FIELDS + f] = totals.get(cell * STRIDE + f);
+                        }
+                    }
+                    slotUnit.set(slot, u); // publishes the checkpoint
+                }
+                lastUnit.set(Math.max(unit, last));
+            } finally {
+                rolling.set(false);
+            }
+            return unit;
+        }
+
+        long checkpoint(long unit, int cell, int field) {
+            if (unit <= startUnit) {
+                return 0L;
+            }
+            int slot = (int) (unit % slots);
+            while (true) {
+                long held = slotUnit.get(slot);
+                if (held == Long.MIN_VALUE) {
+                    Thread.onSpinWait(); // being written right now
+                    continue;
+                }
+                long value = checkpoints[slot * cells * FIELDS + cell * FIELDS + field];
+                if (slotUnit.get(slot) != held) {
+                    continue;
+                }
+                if (held < unit) {
+                    // another thread is still rolling up to this unit; use the newest finished one
+                    long last = lastUnit.get();
+                    if (last < unit) {
+                        return checkpoint(last, cell, field);
+                    }
+                    // the roll finished after the slot was read, so value is an older unit's; read it again
+                    continue;
+                }
+                // held > unit: the ring moved on while we were reading, the window comes out one ring short
+                return value;
+            }
+        }
+    }
+}
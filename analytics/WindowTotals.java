@@ -0,0 +1,41 @@
+package analytics;
+
+import money.Money;
+
+// sales in one window: number of sales, millilitres and revenue in sen (exact, no floating-point drift)
+public final class WindowTotals {
+    private final long count;
+    private final long ml;
+    private final long revenueSen;
+
+    public WindowTotals(long count, long ml, long revenueSen) {
+        this.count = count;
+        this.ml = ml;
+        this.revenueSen = revenueSen;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMl() {
+        return ml;
+    }
+
+    public double getLitres() {
+        return Money.litres(ml);
+    }
+
+    public long getRevenueSen() {
+        return revenueSen;
+    }
+
+    public double getRevenue() {
+        return Money.ringgit(revenueSen);
+    }
+
+    @Override
+    public String toString() {
+        return count + " sales, " + Money.appendMl(new StringBuilder(), ml) + " litres, RM" + Money.formatSen(revenueSen);
+    }
+}
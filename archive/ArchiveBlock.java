@@ -0,0 +1,444 @@
+package archive;
+
+import engine.FuelGrade;
+import receipt.Receipt;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+// up to ROWS receipts stored column by column, little-endian:
+//   header: magic, count, body bytes, CRC32C of the body, min/max receipt number, min/max timestamp,
+//           min/max dispenser, grade bitmask, the 7 column lengths, then count/ml/sen per grade
+//   body:   numbers      varint deltas (rows are in number order)
+//           timestamps   zigzag varint deltas, the first from minTime
+//           dispensers   dictionary (short size, int values) + one byte code per row
+//           grades       dictionary (short size, byte codes) + one byte code per row
+//           ml, sen      zigzag varints (fixed-point litres and total price)
+//           versions     zigzag varint deltas of the price version
+// the header alone answers "can this block match" and, when the block lies wholly inside the range, "what does it add"
+final class ArchiveBlock {
+    static final int MAGIC = 0x4B4C4252; // "RBLK"
+    static final int ROWS = 16384;
+    static final int COLUMNS = 7;
+    private static final int MAX_DICTIONARY = 256;
+    private static final int STATS_OFFSET = 60 + COLUMNS * 4;
+    static final int HEADER_BYTES = STATS_OFFSET + 24 * FuelGrade.count();
+
+    private static final int NUMBERS = 0, TIMES = 1, DISPENSERS = 2, GRADES = 3, ML = 4, SEN = 5, VERSIONS = 6;
+
+    final int count;
+    final long minNumber;
+    final long maxNumber;
+    final long minTime;
+    final long maxTime;
+    final int minDispenser;
+    final int maxDispenser;
+    final int gradeMask;
+    private final long[] gradeCount;
+    private final long[] gradeMl;
+    private final long[] gradeSen;
+    private final ByteBuffer body; // a view of the mapped archive file, never copied
+    private final int[] columnOffset = new int[COLUMNS];
+    private final int[] columnLength = new int[COLUMNS];
+
+    // reads the block at buffer's position and leaves the position after it
+    ArchiveBlock(ByteBuffer buffer) throws IOException {
+        int start = buffer.position();
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt(start) != MAGIC) {
+            throw new IOException("Not an archive block at " + start);
+        }
+        count = buffer.getInt(start + 4);
+        int bodyBytes = buffer.getInt(start + 8);
+        int crc = buffer.getInt(start + 12);
+        minNumber = buffer.getLong(start + 16);
+        maxNumber = buffer.getLong(start + 24);
+        minTime = buffer.getLong(start + 32);
+        maxTime = buffer.getLong(start + 40);
+        minDispenser = buffer.getInt(start + 48);
+        maxDispenser = buffer.getInt(start + 52);
+        gradeMask = buffer.getInt(start + 56);
+        int offset = 0;
+        for (int c = 0; c < COLUMNS; c++) {
+            columnOffset[c] = offset;
+            columnLength[c] = buffer.getInt(start + 60 + c * 4);
+            offset += columnLength[c];
+        }
+        int grades = FuelGrade.count();
+        gradeCount = new long[grades];
+        gradeMl = new long[grades];
+        gradeSen = new long[grades];
+        for (int g = 0; g < grades; g++) {
+            gradeCount[g] = buffer.getLong(start + STATS_OFFSET + g * 24);
+            gradeMl[g] = buffer.getLong(start + STATS_OFFSET + g * 24 + 8);
+            gradeSen[g] = buffer.getLong(start + STATS_OFFSET + g * 24 + 16);
+        }
+        if (offset != bodyBytes || start + HEADER_BYTES + bodyBytes > buffer.limit()) {
+            throw new IOException("Truncated archive block at " + start);
+        }
+        body = buffer.slice(start + HEADER_BYTES, bodyBytes).order(ByteOrder.LITTLE_ENDIAN);
+        CRC32C check = new CRC32C();
+        check.update(body.duplicate());
+        if ((int) check.getValue() != crc) {
+            throw new IOException("Archive block checksum mismatch at " + start);
+        }
+        buffer.position(start + HEADER_BYTES + bodyBytes);
+    }
+
+    // could any row match? answered from the header only
+    boolean mayMatch(long fromMillis, long toMillis, int gradeCode, int dispenser) {
+        return maxTime >= fromMillis && minTime < toMillis
+                && (gradeCode < 0 || (gradeMask & (1 << gradeCode)) != 0)
+                && (dispenser < 0 || (dispenser >= minDispenser && dispenser <= maxDispenser));
+    }
+
+    // adds count, ml and sen of the matching rows to totals; gradeCode and dispenser -1 match everything
+    void sum(long fromMillis, long toMillis, int gradeCode, int dispenser, long[] totals) {
+        if (!mayMatch(fromMillis, toMillis, gradeCode, dispenser)) {
+            return;
+        }
+        boolean inRange = minTime >= fromMillis && maxTime < toMillis;
+        boolean allDispensers = dispenser < 0 || (minDispenser == dispenser && maxDispenser == dispenser);
+        if (inRange && allDispensers) {
+            for (int g = 0; g < gradeCount.length; g++) {
+                if (gradeCode < 0 || g == gradeCode) {
+                    totals[0] += gradeCount[g];
+                    totals[1] += gradeMl[g];
+                    totals[2] += gradeSen[g];
+                }
+            }
+            return;
+        }
+        // filters become dictionary codes once, rows are then compared byte to byte
+        int gradeMatch = gradeCode < 0 ? -1 : dictionaryCode(GRADES, gradeCode);
+        int dispenserMatch = dispenser < 0 ? -1 : dictionaryCode(DISPENSERS, dispenser);
+        if ((gradeCode >= 0 && gradeMatch < 0) || (dispenser >= 0 && dispenserMatch < 0)) {
+            return;
+        }
+        ByteBuffer times = column(TIMES);
+        ByteBuffer ml = column(ML);
+        ByteBuffer sen = column(SEN);
+        int gradeCodes = codesOffset(GRADES);
+        int dispenserCodes = codesOffset(DISPENSERS);
+        long time = minTime;
+        long n = 0, litres = 0, revenue = 0;
+        for (int i = 0; i < count; i++) {
+            time += unzigzag(readVarint(times));
+            long rowMl = unzigzag(readVarint(ml));
+            long rowSen = unzigzag(readVarint(sen));
+            if (time >= fromMillis && time < toMillis
+                    && (gradeMatch < 0 || body.get(gradeCodes + i) == gradeMatch)
+                    && (dispenserMatch < 0 || (body.get(dispenserCodes + i) & 0xFF) == dispenserMatch)) {
+                n++;
+                litres += rowMl;
+                revenue += rowSen;
+            }
+        }
+        totals[0] += n;
+        totals[1] += litres;
+        totals[2] += revenue;
+    }
+
+    // decodes every row in the time range back into a Receipt
+    void forEach(long fromMillis, long toMillis, Consumer<Receipt> action) {
+        if (!mayMatch(fromMillis, toMillis, -1, -1)) {
+            return;
+        }
+        ByteBuffer numbers = column(NUMBERS);
+        ByteBuffer times = column(TIMES);
+        ByteBuffer ml = column(ML);
+        ByteBuffer sen = column(SEN);
+        ByteBuffer versions = column(VERSIONS);
+        int[] dispensers = dispenserDictionary();
+        byte[] grades = gradeDictionary();
+        int gradeCodes = codesOffset(GRADES);
+        int dispenserCodes = codesOffset(DISPENSERS);
+        long number = minNumber, time = minTime, version = 0;
+        for (int i = 0; i < count; i++) {
+            number += readVarint(numbers);
+            time += unzigzag(readVarint(times));
+            long rowMl = unzigzag(readVarint(ml));
+            long rowSen = unzigzag(readVarint(sen));
+            version += unzigzag(readVarint(versions));
+            if (time >= fromMillis && time < toMillis) {
+                action.accept(Receipt.exact(number, dispensers[body.get(dispenserCodes + i) & 0xFF],
+                        FuelGrade.fromCode(grades[body.get(gradeCodes + i)]), rowMl, rowSen, time, version));
+            }
+        }
+    }
+
+    // row index of the receipt, or -1; only the numbers column is decoded
+    int indexOf(long receiptNumber) {
+        if (receiptNumber < minNumber || receiptNumber > maxNumber) {
+            return -1;
+        }
+        ByteBuffer numbers = column(NUMBERS);
+        long number = minNumber;
+        for (int i = 0; i < count; i++) {
+            number += readVarint(numbers);
+            if (number == receiptNumber) {
+                return i;
+            }
+            if (number > receiptNumber) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    int bytes() {
+        return HEADER_BYTES + body.capacity();
+    }
+
+    private ByteBuffer column(int c) {
+        return body.slice(columnOffset[c], columnLength[c]).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private int dictionaryCode(int c, int value) {
+        int size = body.getShort(columnOffset[c]);
+        for (int i = 0; i < size; i++) {
+            int entry = c == DISPENSERS ? body.getInt(columnOffset[c] + 2 + i * 4) : body.get(columnOffset[c] + 2 + i);
+            if (entry == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int codesOffset(int c) {
+        int size = body.getShort(columnOffset[c]);
+        return columnOffset[c] + 2 + size * (c == DISPENSERS ? 4 : 1);
+    }
+
+    private int[] dispenserDictionary() {
+        int[] values = new int[body.getShort(columnOffset[DISPENSERS])];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = body.getInt(columnOffset[DISPENSERS] + 2 + i * 4);
+        }
+        return values;
+    }
+
+    private byte[] gradeDictionary() {
+        byte[] values = new byte[body.getShort(columnOffset[GRADES])];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = body.get(columnOffset[GRADES] + 2 + i);
+        }
+        return values;
+    }
+
+    // encodes rows from..from+n of columns (n cut short if a dictionary would overflow) into out; returns n
+    static int write(ReceiptColumns columns, int from, Bytes out) {
+        int end = Math.min(columns.size, from + ROWS);
+        int[] dispenserDictionary = new int[MAX_DICTIONARY];
+        int dispenserEntries = 0;
+        byte[] dispenserCodes = new byte[end - from];
+        for (int i = from; i < end; i++) {
+            int code = indexOf(dispenserDictionary, dispenserEntries, columns.dispensers[i]);
+            if (code < 0) {
+                if (dispenserEntries == MAX_DICTIONARY) {
+                    end = i;
+                    break;
+                }
+                code = dispenserEntries;
+                dispenserDictionary[dispenserEntries++] = columns.dispensers[i];
+            }
+            dispenserCodes[i - from] = (byte) code;
+        }
+        int n = end - from;
+
+        int grades = FuelGrade.count();
+        int[] gradeDictionary = new int[grades];
+        int gradeEntries = 0;
+        byte[] gradeCodes = new byte[n];
+        long[] gradeCount = new long[grades], gradeMl = new long[grades], gradeSen = new long[grades];
+        long minTime = Long.MAX_VALUE, maxTime = Long.MIN_VALUE;
+        int minDispenser = Integer.MAX_VALUE, maxDispenser = Integer.MIN_VALUE, gradeMask = 0;
+        for (int i = from; i < end; i++) {
+            int grade = columns.grades[i];
+            int code = indexOf(gradeDictionary, gradeEntries, grade);
+            if (code < 0) {
+                code = gradeEntries;
+                gradeDictionary[gradeEntries++] = grade;
+            }
+            gradeCodes[i - from] = (byte) code;
+            gradeMask |= 1 << grade;
+            gradeCount[grade]++;
+            gradeMl[grade] += columns.ml[i];
+            gradeSen[grade] += columns.sen[i];
+            minTime = Math.min(minTime, columns.timestamps[i]);
+            maxTime = Math.max(maxTime, columns.timestamps[i]);
+            minDispenser = Math.min(minDispenser, columns.dispensers[i]);
+            maxDispenser = Math.max(maxDispenser, columns.dispensers[i]);
+        }
+
+        int headerAt = out.size();
+        out.skip(HEADER_BYTES);
+        int bodyAt = out.size();
+        int[] lengths = new int[COLUMNS];
+        int mark = out.size();
+
+        long previous = columns.numbers[from];
+        for (int i = from; i < end; i++) {
+            out.putVarint(columns.numbers[i] - previous);
+            previous = columns.numbers[i];
+        }
+        lengths[NUMBERS] = out.size() - mark;
+        mark = out.size();
+        previous = minTime;
+        for (int i = from; i < end; i++) {
+            out.putVarint(zigzag(columns.timestamps[i] - previous));
+            previous = columns.timestamps[i];
+        }
+        lengths[TIMES] = out.size() - mark;
+        mark = out.size();
+        out.putShort((short) dispenserEntries);
+        for (int i = 0; i < dispenserEntries; i++) {
+            out.putInt(dispenserDictionary[i]);
+        }
+        out.put(dispenserCodes, 0, n);
+        lengths[DISPENSERS] = out.size() - mark;
+        mark = out.size();
+        out.putShort((short) gradeEntries);
+        for (int i = 0; i < gradeEntries; i++) {
+            out.put((byte) gradeDictionary[i]);
+        }
+        out.put(gradeCodes, 0, n);
+        lengths[GRADES] = out.size() - mark;
+        mark = out.size();
+        for (int i = from; i < end; i++) {
+            out.putVarint(zigzag(columns.ml[i]));
+        }
+        lengths[ML] = out.size() - mark;
+        mark = out.size();
+        for (int i = from; i < end; i++) {
+            out.putVarint(zigzag(columns.sen[i]));
+        }
+        lengths[SEN] = out.size() - mark;
+        mark = out.size();
+        previous = 0;
+        for (int i = from; i < end; i++) {
+            out.putVarint(zigzag(columns.versions[i] - previous));
+            previous = columns.versions[i];
+        }
+        lengths[VERSIONS] = out.size() - mark;
+
+        int bodyBytes = out.size() - bodyAt;
+        CRC32C crc = new CRC32C();
+        crc.update(out.array(), bodyAt, bodyBytes);
+        ByteBuffer header = ByteBuffer.wrap(out.array(), headerAt, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(n).putInt(bodyBytes).putInt((int) crc.getValue())
+                .putLong(columns.numbers[from]).putLong(columns.numbers[end - 1])
+                .putLong(minTime).putLong(maxTime)
+                .putInt(minDispenser).putInt(maxDispenser).putInt(gradeMask);
+        for (int length : lengths) {
+            header.putInt(length);
+        }
+        for (int g = 0; g < grades; g++) {
+            header.putLong(gradeCount[g]).putLong(gradeMl[g]).putLong(gradeSen[g]);
+        }
+        return n;
+    }
+
+    private static int indexOf(int[] values, int size, int value) {
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    // inverse of zigzag(long); applied to what readVarint returns
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+
+    // growable little-endian byte array for encoding blocks
+    static final class Bytes {
+        private byte[] data = new byte[1 << 16];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        byte[] array() {
+            return data;
+        }
+
+        void reset() {
+            size = 0;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+            }
+        }
+
+        void skip(int n) {
+            ensure(n);
+            size += n;
+        }
+
+        void put(byte b) {
+            ensure(1);
+            data[size++] = b;
+        }
+
+        void put(byte[] bytes, int offset, int length) {
+            ensure(length);
+            System.arraycopy(bytes, offset, data, size, length);
+            size += length;
+        }
+
+        void putShort(short value) {
+            ensure(2);
+            data[size++] = (byte) value;
+            data[size++] = (byte) (value >> 8);
+        }
+
+        void putInt(int value) {
+            ensure(4);
+            for (int i = 0; i < 4; i++) {
+                data[size++] = (byte) (value >> (8 * i));
+            }
+        }
+
+        void putLong(long value) {
+            ensure(8);
+            for (int i = 0; i < 8; i++) {
+                data[size++] = (byte) (value >> (8 * i));
+            }
+        }
+
+        void putVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                data[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package archive;
+
+import analytics.WindowTotals;
+import engine.FuelGrade;
+import receipt.Receipt;
+import receipt.ReceiptExporter;
+import receipt.ReceiptJournal;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// receipts compacted out of the journal into columnar, compressed blocks (see ArchiveBlock), for questions like
+// "diesel litres sold between two dates" that would otherwise read every receipt ever written.
+// each compaction writes one archive-<n>.arc file: magic, version, grade count, the new blocks, then the
+// journal/batch file offsets compacted so far, so the next run starts where this one stopped. files are written
+// to a temporary name and renamed, so a crash never leaves half an archive or receipts archived twice.
+// files are memory-mapped read-only and queries read the compressed columns in place
+public class ReceiptArchive implements AutoCloseable {
+    public static final int ALL_DISPENSERS = -1;
+    private static final String PREFIX = "archive-";
+    private static final String SUFFIX = ".arc";
+    private static final int FILE_MAGIC = 0x43524152; // "RARC"
+    private static final int SOURCES_MAGIC = 0x53524352; // "RCRS"
+    private static final int VERSION = 1;
+
+    private final Path directory;
+    private volatile List<ArchiveBlock> blocks = new ArrayList<>();
+    private final Map<String, Long> compactedTo = new HashMap<>(); // guarded by this
+    private int nextFile = 1; // guarded by this
+    private ScheduledExecutorService compactor;
+
+    private ReceiptArchive(Path directory) {
+        this.directory = directory;
+    }
+
+    public static ReceiptArchive open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        ReceiptArchive archive = new ReceiptArchive(directory);
+        List<ArchiveBlock> blocks = new ArrayList<>();
+        for (Path file : files(directory)) {
+            archive.load(file, blocks);
+            String name = file.getFileName().toString();
+            archive.nextFile = Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length())) + 1;
+        }
+        archive.blocks = blocks;
+        return archive;
+    }
+
+    // archives every complete journal line not archived yet; returns how many receipts were added
+    public synchronized int compact(Path journalDirectory) throws IOException {
+        List<Path> sources = ReceiptJournal.segments(journalDirectory);
+        sources.addAll(ReceiptJournal.batchFiles(journalDirectory));
+        ReceiptColumns columns = new ReceiptColumns();
+        Map<String, Long> reached = new HashMap<>(compactedTo);
+        for (Path source : sources) {
+            String name = source.getFileName().toString();
+            reached.put(name, ReceiptExporter.readFrom(source, compactedTo.getOrDefault(name, 0L), columns::add));
+        }
+        if (columns.size == 0) {
+            return 0;
+        }
+        columns.sortByNumber();
+
+        ArchiveBlock.Bytes out = new ArchiveBlock.Bytes();
+        out.putInt(FILE_MAGIC);
+        out.putInt(VERSION);
+        out.putInt(FuelGrade.count());
+        for (int row = 0; row < columns.size; ) {
+            row += ArchiveBlock.write(columns, row, out);
+        }
+        out.putInt(SOURCES_MAGIC);
+        out.putInt(reached.size());
+        for (Map.Entry<String, Long> entry : reached.entrySet()) {
+            byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            out.putShort((short) name.length);
+            out.put(name, 0, name.length);
+            out.putLong(entry.getValue());
+        }
+
+        Path file = directory.resolve(String.format("%s%08d%s", PREFIX, nextFile, SUFFIX));
+        Path temp = directory.resolve(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(out.array(), 0, out.size());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+        nextFile++;
+
+        List<ArchiveBlock> updated = new ArrayList<>(blocks);
+        load(file, updated);
+        blocks = updated;
+        return columns.size;
+    }
+
+    // reads one archive file's blocks into blocks and its source offsets into compactedTo
+    private void load(Path file, List<ArchiveBlock> blocks) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < 12 || buffer.getInt(0) != FILE_MAGIC) {
+            throw new IOException("Not a receipt archive: " + file);
+        }
+        if (buffer.getInt(4) != VERSION || buffer.getInt(8) != FuelGrade.count()) {
+            throw new IOException("Unsupported receipt archive version: " + file);
+        }
+        buffer.position(12);
+        while (buffer.remaining() >= 4 && buffer.getInt(buffer.position()) == ArchiveBlock.MAGIC) {
+            blocks.add(new ArchiveBlock(buffer));
+        }
+        if (buffer.remaining() < 8 || buffer.getInt() != SOURCES_MAGIC) {
+            throw new IOException("Receipt archive has no source offsets: " + file);
+        }
+        int sources = buffer.getInt();
+        for (int i = 0; i < sources; i++) {
+            byte[] name = new byte[buffer.getShort()];
+            buffer.get(name);
+            compactedTo.put(new String(name, StandardCharsets.UTF_8), buffer.getLong());
+        }
+    }
+
+    // count, litres and revenue of archived sales with fromMillis <= time < toMillis;
+    // grade null means every grade, dispenser ALL_DISPENSERS every dispenser
+    public WindowTotals sum(long fromMillis, long toMillis, FuelGrade grade, int dispenser) {
+        long[] totals = new long[3];
+        int gradeCode = grade == null ? -1 : grade.code();
+        for (ArchiveBlock block : blocks) {
+            block.sum(fromMillis, toMillis, gradeCode, dispenser, totals);
+        }
+        return new WindowTotals(totals[0], totals[1], totals[2]);
+    }
+
+    // every archived receipt with fromMillis <= time < toMillis, in receipt order within each compaction
+    public void forEach(long fromMillis, long toMillis, Consumer<Receipt> action) {
+        for (ArchiveBlock block : blocks) {
+            block.forEach(fromMillis, toMillis, action);
+        }
+    }
+
+    public Receipt find(long receiptNumber) {
+        for (ArchiveBlock block : blocks) {
+            int row = block.indexOf(receiptNumber);
+            if (row >= 0) {
+                Receipt[] found = new Receipt[1];
+                block.forEach(Long.MIN_VALUE, Long.MAX_VALUE, receipt -> {
+                    if (receipt.getNumber() == receiptNumber) {
+                        found[0] = receipt;
+                    }
+                });
+                return found[0];
+            }
+        }
+        return null;
+    }
+
+    public long getReceiptCount() {
+        long count = 0;
+        for (ArchiveBlock block : blocks) {
+            count += block.count;
+        }
+        return count;
+    }
+
+    public int getBlockCount() {
+        return blocks.size();
+    }
+
+    public long getBytes() {
+        long bytes = 0;
+        for (ArchiveBlock block : blocks) {
+            bytes += block.bytes();
+        }
+        return bytes;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    // compacts journalDirectory on a daemon thread every periodMillis
+    public synchronized void start(Path journalDirectory, long periodMillis) {
+        if (compactor != null) {
+            return;
+        }
+        compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "receipt-archive");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(() -> {
+            try {
+                compact(journalDirectory);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Receipt archive: " + e);
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        ScheduledExecutorService running;
+        synchronized (this) {
+            running = compactor;
+            compactor = null;
+        }
+        if (running != null) {
+            running.shutdown();
+            try {
+                running.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static List<Path> files(Path directory) throws IOException {
+        List<Path> result = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path path : stream) {
+                result.add(path);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    // usage: java archive.ReceiptArchive compact <journalDir> <archiveDir>
+    //        java archive.ReceiptArchive sum <archiveDir> <fuelType|all> <fromDate> <toDate> [dispenser]   (dates inclusive)
+    //        java archive.ReceiptArchive find <archiveDir> <receiptNumber>
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("compact")) {
+            try (ReceiptArchive archive = open(Paths.get(args[2]))) {
+                long start = System.nanoTime();
+                int added = archive.compact(Paths.get(args[1]));
+                System.out.printf("Archived %d receipts in %d ms; %d receipts in %d blocks, %d bytes%n", added,
+                        (System.nanoTime() - start) / 1_000_000, archive.getReceiptCount(), archive.getBlockCount(),
+                        archive.getBytes());
+            }
+        } else if (args.length >= 5 && args[0].equals("sum")) {
+            FuelGrade grade = args[2].equalsIgnoreCase("all") ? null : FuelGrade.parse(args[2]);
+            if (grade == null && !args[2].equalsIgnoreCase("all")) {
+                System.out.println("Invalid fuel type: " + args[2]);
+                return;
+            }
+            ZoneId zone = ZoneId.systemDefault();
+            long from = LocalDate.parse(args[3]).atStartOfDay(zone).toInstant().toEpochMilli();
+            long to = LocalDate.parse(args[4]).plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+            int dispenser = args.length > 5 ? Integer.parseInt(args[5]) : ALL_DISPENSERS;
+            try (ReceiptArchive archive = open(Paths.get(args[1]))) {
+                long start = System.nanoTime();
+                WindowTotals totals = archive.sum(from, to, grade, dispenser);
+                System.out.printf("%s (%d us)%n", totals, (System.nanoTime() - start) / 1000);
+            }
+        } else if (args.length >= 3 && args[0].equals("find")) {
+            try (ReceiptArchive archive = open(Paths.get(args[1]))) {
+                Receipt receipt = archive.find(Long.parseLong(args[2]));
+                if (receipt == null) {
+                    System.out.println("Receipt not found.");
+                } else {
+                    PrintWriter writer = new PrintWriter(System.out, true);
+                    receipt.writeText(writer);
+                }
+            }
+        } else {
+            System.out.println("Usage: ReceiptArchive compact <journalDir> <archiveDir>");
+            System.out.println("       ReceiptArchive sum <archiveDir> <fuelType|all> <fromDate> <toDate> [dispenser]");
+            System.out.println("       ReceiptArchive find <archiveDir> <receiptNumber>");
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package archive;
+
+import receipt.Receipt;
+
+import java.util.Arrays;
+
+// receipts waiting to be compacted, one primitive array per column. litres in ml, price in sen
+final class ReceiptColumns {
+    long[] numbers = new long[1024];
+    long[] timestamps = new long[1024];
+    int[] dispensers = new int[1024];
+    byte[] grades = new byte[1024];
+    long[] ml = new long[1024];
+    long[] sen = new long[1024];
+    long[] versions = new long[1024];
+    int size;
+
+    void add(Receipt receipt) {
+        if (size == numbers.length) {
+            int capacity = size * 2;
+            numbers = Arrays.copyOf(numbers, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            dispensers = Arrays.copyOf(dispensers, capacity);
+            grades = Arrays.copyOf(grades, capacity);
+            ml = Arrays.copyOf(ml, capacity);
+            sen = Arrays.copyOf(sen, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+        }
+        numbers[size] = receipt.getNumber();
+        timestamps[size] = receipt.getTimestampMillis();
+        dispensers[size] = receipt.getDispenser();
+        grades[size] = (byte) receipt.getFuelGrade().code();
+        ml[size] = receipt.getLitresMl();
+        sen[size] = receipt.getTotalSen();
+        versions[size] = receipt.getPriceVersion();
+        size++;
+    }
+
+    // journal segments and batch files interleave receipt numbers; blocks are written in number order
+    void sortByNumber() {
+        boolean sorted = true;
+        for (int i = 1; i < size && sorted; i++) {
+            sorted = numbers[i - 1] <= numbers[i];
+        }
+        if (sorted) {
+            return;
+        }
+        // rows reordered through a sorted index, each column copied once
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(numbers[a], numbers[b]));
+        long[] n = new long[size], t = new long[size], m = new long[size], s = new long[size], v = new long[size];
+        int[] d = new int[size];
+        byte[] g = new byte[size];
+        for (int i = 0; i < size; i++) {
+            int row = order[i];
+            n[i] = numbers[row];
+            t[i] = timestamps[row];
+            d[i] = dispensers[row];
+            g[i] = grades[row];
+            m[i] = ml[row];
+            s[i] = sen[row];
+            v[i] = versions[row];
+        }
+        numbers = n;
+        timestamps = t;
+        dispensers = d;
+        grades = g;
+        ml = m;
+        sen = s;
+        versions = v;
+    }
+}
@@ -0,0 +1,24 @@
+package batch;
+
+import engine.FuelGrade;
+
+import java.io.IOException;
+
+// told about every sale and refill a batch makes, from the worker thread that made it (so it must be thread-safe).
+// PetrolStation uses it to keep the ledger and event store in step with the engine
+public interface BatchListener {
+    BatchListener NONE = new BatchListener() {
+        @Override
+        public void sold(long receiptNumber, int dispenser, FuelGrade fuelGrade, long litresMl, long totalSen, long timestampMillis) {
+        }
+
+        @Override
+        public void refilled(int dispenser, long litresMl) {
+        }
+    };
+
+    void sold(long receiptNumber, int dispenser, FuelGrade fuelGrade, long litresMl, long totalSen, long timestampMillis)
+            throws IOException;
+
+    void refilled(int dispenser, long litresMl) throws IOException;
+}
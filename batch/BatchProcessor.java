@@ -0,0 +1,244 @@
+package batch;
+
+import engine.DispenserEngine;
+import engine.FuelGrade;
+import money.Money;
+import pricing.PriceSnapshot;
+import receipt.Receipt;
+import receipt.ReceiptJournal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// applies a whole POS file of purchases against a DispenserEngine. requests are grouped by dispenser:
+// each dispenser's requests run in file order on one worker, different dispensers run in parallel.
+// prices are read once per batch and the receipts are written to one file at the end instead of one per sale
+public class BatchProcessor implements AutoCloseable {
+    private final DispenserEngine engine;
+    private final ExecutorService workers;
+
+    public BatchProcessor(DispenserEngine engine, int threads) {
+        this.engine = engine;
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "batch-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // refillWhenEmpty tops a tank up and retries when a sale finds it low or empty, which is what happened
+    // at the terminal; without it those sales are refused like in purchaseFuel.
+    // receiptDirectory is normally the receipt journal's directory, so ReceiptExporter finds the receipts
+    public BatchSummary process(PurchaseBatch batch, PriceSnapshot prices, Path receiptDirectory, boolean refillWhenEmpty,
+                                BatchListener listener) throws IOException {
+        long start = System.nanoTime();
+        long timestamp = System.currentTimeMillis();
+        int dispensers = engine.size();
+        int size = batch.size();
+
+        // counting sort by dispenser keeps each dispenser's requests in file order
+        int[] offsets = new int[dispensers + 1];
+        int invalidDispenser = 0;
+        for (int i = 0; i < size; i++) {
+            int dispenser = batch.getDispenser(i);
+            if (engine.isValidDispenser(dispenser)) {
+                offsets[dispenser + 1]++;
+            } else {
+                invalidDispenser++;
+            }
+        }
+        for (int d = 0; d < dispensers; d++) {
+            offsets[d + 1] += offsets[d];
+        }
+        int[] order = new int[offsets[dispensers]];
+        int[] next = offsets.clone();
+        for (int i = 0; i < size; i++) {
+            int dispenser = batch.getDispenser(i);
+            if (engine.isValidDispenser(dispenser)) {
+                order[next[dispenser]++] = i;
+            }
+        }
+
+        long[] priceByCode = new long[FuelGrade.count()];
+        for (FuelGrade grade : FuelGrade.values()) {
+            priceByCode[grade.code()] = prices.priceSen(grade);
+        }
+
+        List<Future<DispenserRun>> runs = new ArrayList<>();
+        for (int d = 0; d < dispensers; d++) {
+            if (offsets[d + 1] > offsets[d]) {
+                DispenserRun run = new DispenserRun(d, batch, order, offsets[d], offsets[d + 1], priceByCode,
+                        prices.getVersion(), refillWhenEmpty, listener, timestamp);
+                runs.add(workers.submit(run, run));
+            }
+        }
+
+        int sold = 0;
+        int invalid = invalidDispenser;
+        int lowLevel = 0;
+        int notEnough = 0;
+        int refills = 0;
+        long soldMl = 0;
+        long revenueSen = 0;
+        long firstReceipt = Long.MAX_VALUE;
+        long lastReceipt = -1;
+        ByteBuffer[] receiptText = new ByteBuffer[runs.size()];
+        for (int r = 0; r < runs.size(); r++) {
+            DispenserRun run = await(runs.get(r));
+            sold += run.sold;
+            invalid += run.invalid;
+            lowLevel += run.lowLevel;
+            notEnough += run.notEnough;
+            refills += run.refills;
+            soldMl += run.soldMl;
+            revenueSen = Money.add(revenueSen, run.revenueSen);
+            firstReceipt = Math.min(firstReceipt, run.firstReceipt);
+            lastReceipt = Math.max(lastReceipt, run.lastReceipt);
+            receiptText[r] = ByteBuffer.wrap(run.receipts.toString().getBytes(StandardCharsets.US_ASCII));
+        }
+
+        Path receiptFile = null;
+        if (sold > 0) {
+            receiptFile = writeReceipts(receiptDirectory, firstReceipt, receiptText);
+        } else {
+            firstReceipt = -1;
+        }
+        return new BatchSummary(size, sold, invalid, lowLevel, notEnough, refills, soldMl, revenueSen, firstReceipt,
+                lastReceipt, receiptFile, System.nanoTime() - start);
+    }
+
+    // one gathering write and one force for the whole batch
+    private static Path writeReceipts(Path directory, long firstReceipt, ByteBuffer[] text) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(ReceiptJournal.batchFileName(firstReceipt));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long remaining = 0;
+            for (ByteBuffer buffer : text) {
+                remaining += buffer.remaining();
+            }
+            while (remaining > 0) {
+                remaining -= channel.write(text);
+            }
+            channel.force(true);
+        }
+        return file;
+    }
+
+    private static DispenserRun await(Future<DispenserRun> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Batch interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IOException("Batch worker failed", e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        workers.shutdown();
+    }
+
+    // one dispenser's share of the batch, run by a single worker
+    private final class DispenserRun implements Runnable {
+        private final int dispenser;
+        private final PurchaseBatch batch;
+        private final int[] order;
+        private final int from;
+        private final int to;
+        private final long[] priceByCode;
+        private final long priceVersion;
+        private final boolean refillWhenEmpty;
+        private final BatchListener listener;
+        private final long timestamp;
+        private final StringBuilder receipts;
+        int sold;
+        int invalid;
+        int lowLevel;
+        int notEnough;
+        int refills;
+        long soldMl;
+        long revenueSen;
+        long firstReceipt = Long.MAX_VALUE;
+        long lastReceipt = -1;
+
+        DispenserRun(int dispenser, PurchaseBatch batch, int[] order, int from, int to, long[] priceByCode,
+                     long priceVersion, boolean refillWhenEmpty, BatchListener listener, long timestamp) {
+            this.dispenser = dispenser;
+            this.batch = batch;
+            this.order = order;
+            this.from = from;
+            this.to = to;
+            this.priceByCode = priceByCode;
+            this.priceVersion = priceVersion;
+            this.refillWhenEmpty = refillWhenEmpty;
+            this.listener = listener;
+            this.timestamp = timestamp;
+            this.receipts = new StringBuilder((to - from) * 56);
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int k = from; k < to; k++) {
+                    apply(order[k]);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void apply(int index) throws IOException {
+            int code = batch.gradeCode(index);
+            long amountSen = batch.getAmountSen(index); // INVALID_AMOUNT is negative
+            long priceSen = code == PurchaseBatch.INVALID_GRADE ? 0 : priceByCode[code];
+            // the engine refuses amounts and prices that are not above zero, as it does for single sales
+            long receipt = engine.tryPurchaseSen(dispenser, amountSen, priceSen);
+            if (receipt == DispenserEngine.INVALID_AMOUNT || receipt == DispenserEngine.INVALID_PRICE) {
+                invalid++;
+                return;
+            }
+            if (refillWhenEmpty && (receipt == DispenserEngine.LOW_LEVEL || receipt == DispenserEngine.NOT_ENOUGH_PETROL)) {
+                long addedMl = engine.fillUpMl(dispenser);
+                refills++;
+                listener.refilled(dispenser, addedMl);
+                receipt = engine.tryPurchaseSen(dispenser, amountSen, priceSen);
+            }
+            if (receipt == DispenserEngine.LOW_LEVEL) {
+                lowLevel++;
+                return;
+            }
+            if (receipt < 0) {
+                notEnough++; // a single sale bigger than the tank
+                return;
+            }
+            long ml = Money.litresMl(amountSen, priceSen);
+            long totalSen = Money.totalSen(ml, priceSen);
+            FuelGrade grade = FuelGrade.fromCode(code);
+            Receipt.appendLogLine(receipts, receipt, dispenser, grade, ml, totalSen, timestamp, priceVersion);
+            listener.sold(receipt, dispenser, grade, ml, totalSen, timestamp);
+            sold++;
+            soldMl += ml;
+            revenueSen = Money.add(revenueSen, totalSen);
+            firstReceipt = Math.min(firstReceipt, receipt);
+            lastReceipt = Math.max(lastReceipt, receipt);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package batch;
+
+import engine.DispenserEngine;
+import engine.FuelGrade;
+import pricing.PriceSnapshot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+// usage: java batch.BatchRun generate <file.csv|file.bin> <requests> [dispensers]
+//                            run <file> [dispensers] [threads] [rounds]
+// run replays the file against a fresh engine (100 litre tanks, refilled when empty) and prints the summary;
+// a million requests on 12 dispensers should take a second or two on a laptop
+public class BatchRun {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: BatchRun generate <file.csv|file.bin> <requests> [dispensers] | run <file> [dispensers] [threads] [rounds]");
+            return;
+        }
+        Path file = Paths.get(args[1]);
+        switch (args[0]) {
+            case "generate":
+                generate(file, Integer.parseInt(args[2]), args.length > 3 ? Integer.parseInt(args[3]) : 12);
+                break;
+            case "run": {
+                int dispensers = args.length > 2 ? Integer.parseInt(args[2]) : 12;
+                int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+                int rounds = args.length > 4 ? Integer.parseInt(args[4]) : 3;
+                run(file, dispensers, threads, rounds);
+                break;
+            }
+            default:
+                System.out.println("Unknown command: " + args[0]);
+        }
+    }
+
+    private static void generate(Path file, int requests, int dispensers) throws IOException {
+        Random random = new Random(42);
+        PurchaseBatch batch = new PurchaseBatch(requests);
+        FuelGrade[] grades = FuelGrade.values();
+        for (int i = 0; i < requests; i++) {
+            batch.add(random.nextInt(dispensers), grades[random.nextInt(grades.length)], 10 + random.nextInt(19) * 5);
+        }
+        if (file.getFileName().toString().endsWith(".csv")) {
+            batch.writeCsv(file);
+        } else {
+            batch.writeBinary(file);
+        }
+        System.out.printf("Wrote %d requests for %d dispensers to %s (%d bytes)\n", requests, dispensers, file, Files.size(file));
+    }
+
+    private static void run(Path file, int dispensers, int threads, int rounds) throws IOException {
+        Path receipts = Files.createTempDirectory("batch-receipts");
+        PriceSnapshot prices = new PriceSnapshot(2.05, 3.47, 2.15, System.currentTimeMillis());
+        for (int round = 1; round <= rounds; round++) {
+            long start = System.nanoTime();
+            PurchaseBatch batch = PurchaseBatch.read(file);
+            long readNanos = System.nanoTime() - start;
+            DispenserEngine engine = new DispenserEngine(dispensers, 100.0, 20.0);
+            try (BatchProcessor processor = new BatchProcessor(engine, threads)) {
+                BatchSummary summary = processor.process(batch, prices, receipts, true, BatchListener.NONE);
+                System.out.printf("Round %d: read %.1f ms, %s\n", round, readNanos / 1e6, summary);
+                Files.deleteIfExists(summary.getReceiptFile());
+            }
+        }
+        Files.deleteIfExists(receipts);
+    }
+}
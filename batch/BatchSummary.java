@@ -0,0 +1,108 @@
+package batch;
+
+import money.Money;
+
+import java.nio.file.Path;
+
+// what one batch did: counts per outcome, litres and revenue sold, receipt range and how long it took
+public final class BatchSummary {
+    private final int requests;
+    private final int sold;
+    private final int invalidRequests;
+    private final int lowLevel;
+    private final int notEnoughPetrol;
+    private final int refills;
+    private final long soldMl;
+    private final long revenueSen;
+    private final long firstReceipt;
+    private final long lastReceipt;
+    private final Path receiptFile;
+    private final long elapsedNanos;
+
+    BatchSummary(int requests, int sold, int invalidRequests, int lowLevel, int notEnoughPetrol, int refills, long soldMl,
+                 long revenueSen, long firstReceipt, long lastReceipt, Path receiptFile, long elapsedNanos) {
+        this.requests = requests;
+        this.sold = sold;
+        this.invalidRequests = invalidRequests;
+        this.lowLevel = lowLevel;
+        this.notEnoughPetrol = notEnoughPetrol;
+        this.refills = refills;
+        this.soldMl = soldMl;
+        this.revenueSen = revenueSen;
+        this.firstReceipt = firstReceipt;
+        this.lastReceipt = lastReceipt;
+        this.receiptFile = receiptFile;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getRequests() {
+        return requests;
+    }
+
+    public int getSold() {
+        return sold;
+    }
+
+    // bad dispenser, unknown fuel type, no price or a non-positive amount
+    public int getInvalidRequests() {
+        return invalidRequests;
+    }
+
+    public int getLowLevel() {
+        return lowLevel;
+    }
+
+    public int getNotEnoughPetrol() {
+        return notEnoughPetrol;
+    }
+
+    public int getRefused() {
+        return invalidRequests + lowLevel + notEnoughPetrol;
+    }
+
+    public int getRefills() {
+        return refills;
+    }
+
+    public double getSoldLitres() {
+        return soldMl / 1000.0;
+    }
+
+    public double getRevenue() {
+        return Money.ringgit(revenueSen);
+    }
+
+    public long getRevenueSen() {
+        return revenueSen;
+    }
+
+    // -1 when nothing was sold
+    public long getFirstReceipt() {
+        return firstReceipt;
+    }
+
+    public long getLastReceipt() {
+        return lastReceipt;
+    }
+
+    // null when nothing was sold
+    public Path getReceiptFile() {
+        return receiptFile;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : requests / (elapsedNanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d requests in %.1f ms (%.0f/s): %d sold, %d invalid, %d low level, %d not enough petrol, "
+                        + "%d refills, %.2f litres, RM%s, receipts %d-%d%s",
+                requests, elapsedNanos / 1e6, getThroughput(), sold, invalidRequests, lowLevel, notEnoughPetrol, refills,
+                getSoldLitres(), Money.formatSen(revenueSen), firstReceipt, lastReceipt, receiptFile == null ? "" : " in " + receiptFile);
+    }
+}
@@ -0,0 +1,279 @@
+package batch;
+
+import engine.FuelGrade;
+import money.Money;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// a POS terminal's purchase requests in file order, kept as primitive columns (no object per request).
+// CSV: one "dispenser,amount,fuelType" per line, e.g. "0,50.00,ron95"; lines not starting with a digit are skipped.
+// binary: little-endian records of int dispenser, int FuelGrade.code(), double amount (RM).
+// amounts are kept in sen; one that is not a number (or too big to hold) is INVALID_AMOUNT and refused
+public final class PurchaseBatch {
+    static final int BINARY_RECORD_BYTES = 16;
+    static final int INVALID_GRADE = -1;
+    static final long INVALID_AMOUNT = Long.MIN_VALUE;
+    private static final int READ_BUFFER_BYTES = 1 << 20;
+
+    private int size;
+    private int[] dispensers;
+    private int[] gradeCodes;
+    private long[] amountsSen;
+
+    public PurchaseBatch(int expectedSize) {
+        int capacity = Math.max(16, expectedSize);
+        dispensers = new int[capacity];
+        gradeCodes = new int[capacity];
+        amountsSen = new long[capacity];
+    }
+
+    public void add(int dispenser, FuelGrade fuelGrade, double amount) {
+        add(dispenser, fuelGrade == null ? INVALID_GRADE : fuelGrade.code(), toSen(amount));
+    }
+
+    private static long toSen(double amount) {
+        return Money.isConvertible(amount, Money.SEN_PER_RINGGIT) ? Money.sen(amount) : INVALID_AMOUNT;
+    }
+
+    private void add(int dispenser, int gradeCode, long amountSen) {
+        if (size == dispensers.length) {
+            int grown = size * 2;
+            dispensers = Arrays.copyOf(dispensers, grown);
+            gradeCodes = Arrays.copyOf(gradeCodes, grown);
+            amountsSen = Arrays.copyOf(amountsSen, grown);
+        }
+        dispensers[size] = dispenser;
+        gradeCodes[size] = gradeCode;
+        amountsSen[size] = amountSen;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getDispenser(int index) {
+        return dispensers[index];
+    }
+
+    // null for a fuel type the station does not sell
+    public FuelGrade getFuelGrade(int index) {
+        int code = gradeCodes[index];
+        return code == INVALID_GRADE ? null : FuelGrade.fromCode(code);
+    }
+
+    // NaN for an amount that could not be read
+    public double getAmount(int index) {
+        long sen = amountsSen[index];
+        return sen == INVALID_AMOUNT ? Double.NaN : Money.ringgit(sen);
+    }
+
+    public long getAmountSen(int index) {
+        return amountsSen[index];
+    }
+
+    int gradeCode(int index) {
+        return gradeCodes[index];
+    }
+
+    public static PurchaseBatch read(Path file) throws IOException {
+        return file.getFileName().toString().endsWith(".csv") ? readCsv(file) : readBinary(file);
+    }
+
+    public static PurchaseBatch readCsv(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            PurchaseBatch batch = new PurchaseBatch((int) Math.min(Integer.MAX_VALUE - 8, channel.size() / 12));
+            ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+            byte[] bytes = buffer.array();
+            while (true) {
+                int read = channel.read(buffer);
+                int end = buffer.position();
+                int lineStart = 0;
+                for (int i = 0; i < end; i++) {
+                    if (bytes[i] == '\n') {
+                        batch.parseCsvLine(bytes, lineStart, i);
+                        lineStart = i + 1;
+                    }
+                }
+                if (read < 0) {
+                    if (lineStart < end) {
+                        batch.parseCsvLine(bytes, lineStart, end);
+                    }
+                    return batch;
+                }
+                if (lineStart == 0 && end == bytes.length) {
+                    throw new IOException("CSV line longer than " + READ_BUFFER_BYTES + " bytes in " + file);
+                }
+                // carry the unfinished line over to the next read
+                System.arraycopy(bytes, lineStart, bytes, 0, end - lineStart);
+                buffer.position(end - lineStart);
+            }
+        }
+    }
+
+    public static PurchaseBatch readBinary(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long records = channel.size() / BINARY_RECORD_BYTES;
+            PurchaseBatch batch = new PurchaseBatch((int) Math.min(Integer.MAX_VALUE - 8, records));
+            ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (channel.read(buffer) >= 0 || buffer.position() > 0) {
+                buffer.flip();
+                if (buffer.remaining() < BINARY_RECORD_BYTES) {
+                    break; // trailing partial record
+                }
+                while (buffer.remaining() >= BINARY_RECORD_BYTES) {
+                    int dispenser = buffer.getInt();
+                    int code = buffer.getInt();
+                    double amount = buffer.getDouble();
+                    batch.add(dispenser, code >= 0 && code < FuelGrade.count() ? code : INVALID_GRADE, toSen(amount));
+                }
+                buffer.compact();
+            }
+            return batch;
+        }
+    }
+
+    public void writeCsv(Path file) throws IOException {
+        StringBuilder text = new StringBuilder(size * 16 + 32);
+        text.append("dispenser,amount,fuelType\n");
+        for (int i = 0; i < size; i++) {
+            FuelGrade grade = getFuelGrade(i);
+            text.append(dispensers[i]).append(',');
+            if (amountsSen[i] == INVALID_AMOUNT) {
+                text.append("NaN");
+            } else {
+                Money.appendSen(text, amountsSen[i]);
+            }
+            text.append(',').append(grade == null ? "unknown" : grade.key()).append('\n');
+        }
+        Files.write(file, text.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public void writeBinary(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size * BINARY_RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < size; i++) {
+            buffer.putInt(dispensers[i]).putInt(gradeCodes[i]).putDouble(getAmount(i));
+        }
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    // dispenser,amount,fuelType without creating a String; a malformed line becomes an invalid request
+    private void parseCsvLine(byte[] bytes, int from, int to) {
+        if (to > from && bytes[to - 1] == '\r') {
+            to--;
+        }
+        if (from >= to || !(isDigit(bytes[from]) || bytes[from] == '-')) {
+            return; // blank or header line
+        }
+        int firstComma = indexOf(bytes, from, to, (byte) ',');
+        int secondComma = firstComma < 0 ? -1 : indexOf(bytes, firstComma + 1, to, (byte) ',');
+        if (secondComma < 0) {
+            add(-1, INVALID_GRADE, INVALID_AMOUNT);
+            return;
+        }
+        int dispenser = (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, parseLong(bytes, from, firstComma)));
+        long amountSen = parseSen(bytes, firstComma + 1, secondComma);
+        add(dispenser, gradeCode(bytes, secondComma + 1, to), amountSen);
+    }
+
+    private static int gradeCode(byte[] bytes, int from, int to) {
+        while (from < to && bytes[from] == ' ') {
+            from++;
+        }
+        while (to > from && bytes[to - 1] == ' ') {
+            to--;
+        }
+        for (FuelGrade grade : FuelGrade.values()) {
+            String key = grade.key();
+            if (key.length() != to - from) {
+                continue;
+            }
+            int i = 0;
+            while (i < key.length() && Character.toLowerCase(bytes[from + i]) == key.charAt(i)) {
+                i++;
+            }
+            if (i == key.length()) {
+                return grade.code();
+            }
+        }
+        return INVALID_GRADE;
+    }
+
+    private static long parseLong(byte[] bytes, int from, int to) {
+        boolean negative = from < to && bytes[from] == '-';
+        long value = 0;
+        for (int i = negative ? from + 1 : from; i < to; i++) {
+            if (!isDigit(bytes[i]) || value > Integer.MAX_VALUE) {
+                return -1;
+            }
+            value = value * 10 + (bytes[i] - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    // plain decimals as POS terminals write them ("50", "12.35") straight to sen, digits past the sen rounded
+    // half up; anything else is INVALID_AMOUNT and refused
+    private static long parseSen(byte[] bytes, int from, int to) {
+        long sen = 0;
+        int fractionDigits = -1; // -1 until the point
+        boolean roundUp = false;
+        boolean negative = from < to && bytes[from] == '-';
+        int digits = 0;
+        for (int i = negative ? from + 1 : from; i < to; i++) {
+            byte c = bytes[i];
+            if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else if (isDigit(c) && digits < 17) {
+                if (fractionDigits < 2) {
+                    sen = sen * 10 + (c - '0');
+                    if (fractionDigits >= 0) {
+                        fractionDigits++;
+                    }
+                } else if (fractionDigits == 2) {
+                    roundUp = c >= '5';
+                    fractionDigits++;
+                }
+                digits++;
+            } else {
+                return INVALID_AMOUNT;
+            }
+        }
+        if (digits == 0) {
+            return INVALID_AMOUNT;
+        }
+        for (int f = Math.max(fractionDigits, 0); f < 2; f++) {
+            sen *= 10;
+        }
+        if (roundUp) {
+            sen++;
+        }
+        return negative ? -sen : sen;
+    }
+
+    private static int indexOf(byte[] bytes, int from, int to, byte b) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isDigit(byte c) {
+        return c >= '0' && c <= '9';
+    }
+}
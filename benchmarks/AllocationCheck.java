@@ -0,0 +1,57 @@
+package benchmarks;
+
+import engine.DispenserEngine;
+import engine.FuelGrade;
+import pricing.PriceSnapshot;
+import pricing.StaticPriceSource;
+
+import java.lang.management.ManagementFactory;
+
+// verifies the allocation-free purchase path really allocates nothing once warmed up, using the
+// per-thread allocation counter (the same number JMH -prof gc reports as gc.alloc.rate.norm).
+// usage: java benchmarks.AllocationCheck [operations]; exits 1 if any bytes were allocated per op
+public class AllocationCheck {
+
+    public static void main(String[] args) {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        StaticPriceSource prices = new StaticPriceSource(2.05, 3.47, 2.15);
+        DispenserEngine engine = new DispenserEngine(8, 100_000.0, 0.1);
+        FuelGrade[] grades = FuelGrade.values();
+        String[] typed = {"RON95", "ron97", "Diesel"};
+
+        // warm up so the JIT has compiled (and escape-analysed) the path before we measure
+        long sink = run(engine, prices, grades, typed, operations * 5L);
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        sink += run(engine, prices, grades, typed, operations);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        double perOp = (double) allocated / operations;
+        System.out.printf("%d operations, %d bytes allocated, %.4f bytes/op (sink %d)\n", operations, allocated, perOp, sink);
+        // the counter itself may allocate a few bytes, so allow well under one byte per operation
+        if (perOp >= 1.0) {
+            System.out.println("FAILED: purchase path allocates");
+            System.exit(1);
+        }
+        System.out.println("PASSED");
+    }
+
+    private static long run(DispenserEngine engine, StaticPriceSource prices, FuelGrade[] grades, String[] typed, long operations) {
+        long sink = 0;
+        for (long i = 0; i < operations; i++) {
+            int dispenser = (int) (i & 7);
+            // parse at the edge (allocation-free), then everything works on the grade
+            FuelGrade grade = FuelGrade.parse(typed[(int) (i % 3)]);
+            PriceSnapshot snapshot = prices.current();
+            long receipt = engine.tryPurchase(dispenser, 20.0 + (i & 15), snapshot.price(grade));
+            if (receipt < 0) {
+                engine.fillUp(dispenser);
+            }
+            sink += receipt + grades[grade.code()].code();
+        }
+        return sink;
+    }
+}
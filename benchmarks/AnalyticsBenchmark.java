@@ -0,0 +1,77 @@
+package benchmarks;
+
+import analytics.SalesWindows;
+import engine.FuelGrade;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ingest cost per sale and query cost after millions of synthetic sales spread over a day of simulated time.
+// the query numbers should not move with 'history'
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnalyticsBenchmark {
+    private static final FuelGrade[] GRADES = FuelGrade.values();
+    private static final int DISPENSERS = 12;
+
+    @Param({"1000000", "10000000"})
+    public int history;
+
+    private SalesWindows windows;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // simulated clock: 'history' sales spread evenly over 24 hours
+        AtomicLong clock = new AtomicLong(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1));
+        long step = TimeUnit.DAYS.toMillis(1) / history;
+        windows = new SalesWindows(DISPENSERS, 3600, 1440, clock::get);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < history; i++) {
+            windows.recordSale(random.nextInt(DISPENSERS), GRADES[random.nextInt(GRADES.length)], 20_000, 4_100);
+            clock.addAndGet(Math.max(1, step));
+        }
+    }
+
+    @Benchmark
+    public void ingest() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        windows.recordSale(random.nextInt(DISPENSERS), GRADES[random.nextInt(GRADES.length)], 20_000, 4_100);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void ingest8Threads() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        windows.recordSale(random.nextInt(DISPENSERS), GRADES[random.nextInt(GRADES.length)], 20_000, 4_100);
+    }
+
+    // RON95 on one dispenser over the last hour
+    @Benchmark
+    public long lastHourOneDispenser() {
+        return windows.lastSeconds(3599, 3, FuelGrade.RON95).getMl();
+    }
+
+    // revenue of the last complete minute, whole station
+    @Benchmark
+    public long lastMinuteRevenue() {
+        return windows.tumbling(SalesWindows.Resolution.MINUTE, 1, SalesWindows.ALL_DISPENSERS, null).getRevenueSen();
+    }
+}
@@ -0,0 +1,141 @@
+package benchmarks;
+
+import analytics.WindowTotals;
+import archive.ReceiptArchive;
+import engine.FuelGrade;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import receipt.Receipt;
+import receipt.ReceiptExporter;
+import receipt.ReceiptJournal;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// "diesel litres sold in one week" over 30 days of receipts: one receipt_N.txt per sale (the old layout, which has
+// no sale time, so the file's modified time stands in for it), a scan of the text journal, and the columnar archive
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ArchiveBenchmark {
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @Param({"50000"})
+    public int receipts;
+
+    private Path directory;
+    private Path textReceipts;
+    private Path journal;
+    private ReceiptArchive archive;
+    private long from;
+    private long to;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("bench-archive");
+        textReceipts = directory.resolve("receipts");
+        journal = directory.resolve("journal");
+        Files.createDirectories(journal);
+        long start = System.currentTimeMillis() - 30 * DAY;
+        long step = 30 * DAY / receipts;
+        Random random = new Random(42);
+        StringBuilder line = new StringBuilder(128);
+        try (BufferedWriter writer = Files.newBufferedWriter(journal.resolve(ReceiptJournal.batchFileName(1)))) {
+            for (int i = 1; i <= receipts; i++) {
+                FuelGrade grade = FuelGrade.fromCode(random.nextInt(FuelGrade.count()));
+                double litres = (5_000 + random.nextInt(45_000)) / 1000.0;
+                Receipt receipt = new Receipt(i, random.nextInt(6), grade, litres, Math.round(litres * 205) / 100.0,
+                        start + i * step, 1L);
+                line.setLength(0);
+                Receipt.appendLogLine(line, i, receipt.getDispenser(), grade, receipt.getLitresMl(), receipt.getTotalSen(),
+                        receipt.getTimestampMillis(), 1L);
+                writer.append(line);
+                Path file = ReceiptExporter.writeReceiptFile(receipt, textReceipts);
+                Files.setLastModifiedTime(file, FileTime.fromMillis(receipt.getTimestampMillis()));
+            }
+        }
+        archive = ReceiptArchive.open(directory.resolve("archive"));
+        archive.compact(journal);
+        from = start + 10 * DAY;
+        to = from + 7 * DAY;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        archive.close();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public long textReceiptFiles() throws IOException {
+        long ml = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(textReceipts, "receipt_*.txt")) {
+            for (Path file : files) {
+                long modified = Files.getLastModifiedTime(file).toMillis();
+                if (modified < from || modified >= to) {
+                    continue;
+                }
+                boolean diesel = false;
+                try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    String text;
+                    while ((text = reader.readLine()) != null) {
+                        if (text.startsWith("Fuel Type: ")) {
+                            diesel = text.endsWith("diesel");
+                        } else if (diesel && text.startsWith("Litres: ")) {
+                            ml += Math.round(Double.parseDouble(text.substring(8)) * 1000);
+                        }
+                    }
+                }
+            }
+        }
+        return ml;
+    }
+
+    @Benchmark
+    public long journalScan() throws IOException {
+        long[] ml = new long[1];
+        new ReceiptExporter(journal).forEach(receipt -> {
+            if (receipt.getFuelGrade() == FuelGrade.DIESEL && receipt.getTimestampMillis() >= from
+                    && receipt.getTimestampMillis() < to) {
+                ml[0] += receipt.getLitresMl();
+            }
+        });
+        return ml[0];
+    }
+
+    @Benchmark
+    public WindowTotals archiveSum() {
+        return archive.sum(from, to, FuelGrade.DIESEL, ReceiptArchive.ALL_DISPENSERS);
+    }
+
+    @Benchmark
+    public WindowTotals archiveSumOneDispenser() {
+        return archive.sum(from, to, FuelGrade.DIESEL, 3);
+    }
+}
@@ -0,0 +1,25 @@
+package benchmarks;
+
+// the bookkeeping shared by the *Check programs: one "ok" or "FAIL" line per check, then PASSED or exit 1
+final class Checks {
+    private static int failures;
+
+    private Checks() {
+    }
+
+    static void check(String name, boolean passed) {
+        System.out.println((passed ? "ok    " : "FAIL  ") + name);
+        if (!passed) {
+            failures++;
+        }
+    }
+
+    // PASSED if every check so far passed, otherwise the count of failed ones and exit status 1
+    static void finish() {
+        if (failures > 0) {
+            System.out.println("FAILED: " + failures + " check(s)");
+            System.exit(1);
+        }
+        System.out.println("PASSED");
+    }
+}
@@ -0,0 +1,90 @@
+package benchmarks;
+
+import engine.DispenserEngine;
+import engine.FuelGrade;
+import engine.PurchaseResult;
+import idempotency.DedupCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// idempotency lookups with 8 threads on one cache: a retry found among 100 000 keys in a DedupCache, a new key
+// that has to be reserved, completed and make room, and a ConcurrentHashMap<Long, PurchaseResult> get for scale.
+// a ConcurrentHashMap has no ttl, bound or pending state, so it is only the floor
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class DedupCacheBenchmark {
+    private static final int KEYS = 100_000;
+
+    private DedupCache cache;
+    private ConcurrentHashMap<Long, PurchaseResult> map;
+    private DispenserEngine engine;
+    private final AtomicLong nextKey = new AtomicLong(KEYS);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // with room to spare, as it would be sized for a ttl's worth of sales
+        cache = new DedupCache(KEYS * 5 / 4, 3_600_000L);
+        map = new ConcurrentHashMap<>();
+        engine = new DispenserEngine(4, 1e12, 0.0);
+        for (long key = 1; key <= KEYS; key++) {
+            PurchaseResult result = engine.purchaseSen((int) (key & 3), 2_000L, 205L);
+            cache.begin(key, (int) (key & 3), FuelGrade.RON95, 2_000L);
+            cache.complete(key, result);
+            map.put(key, result);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Keys {
+        private final SplittableRandom random = new SplittableRandom();
+
+        long next() {
+            return 1 + random.nextInt(KEYS);
+        }
+    }
+
+    @Benchmark
+    public PurchaseResult retryHit(Keys keys) {
+        long key = keys.next();
+        PurchaseResult previous = cache.begin(key, (int) (key & 3), FuelGrade.RON95, 2_000L);
+        if (previous == null) {
+            cache.release(key); // evicted by newKey's run; not expected here
+        }
+        return previous;
+    }
+
+    // reserve, sell, complete: what every first request with a request id pays
+    @Benchmark
+    public PurchaseResult newKey() {
+        long key = nextKey.incrementAndGet();
+        PurchaseResult previous = cache.begin(key, (int) (key & 3), FuelGrade.RON95, 2_000L);
+        PurchaseResult result = engine.purchaseSen((int) (key & 3), 2_000L, 205L);
+        cache.complete(key, result);
+        return previous != null ? previous : result;
+    }
+
+    @Benchmark
+    public PurchaseResult concurrentHashMapGet(Keys keys) {
+        return map.get(keys.next());
+    }
+}
@@ -0,0 +1,217 @@
+package benchmarks;
+
+import engine.DispenserEngine;
+import engine.FuelGrade;
+import engine.PurchaseResult;
+import idempotency.DedupCache;
+import pricing.StaticPriceSource;
+import receipt.Receipt;
+import receipt.ReceiptJournal;
+import station.JournalReceiptSink;
+import station.StationCore;
+import station.StationVariant;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// retried purchases through StationCore with a DedupCache: a retry gets the first receipt back without touching
+// the tank, concurrent duplicates sell once, keys expire, the cache is rebuilt from the journal after a restart,
+// and a full cache gives up old keys before retried ones.
+// usage: java benchmarks.IdempotencyCheck; exits 1 if any check fails
+public class IdempotencyCheck {
+    private static final long HOUR = 3_600_000L;
+    private static final DispenserEngine BOTTOMLESS = new DispenserEngine(4, 1e9, 0.0);
+
+    public static void main(String[] args) throws Exception {
+        retryIsReplayed();
+        concurrentDuplicatesSellOnce();
+        expires();
+        rebuiltAfterRestart();
+        evictsOldKeysFirst();
+        Checks.finish();
+    }
+
+    private static void retryIsReplayed() {
+        List<Receipt> receipts = Collections.synchronizedList(new ArrayList<>());
+        StationCore core = core(new DedupCache(10_000, HOUR), receipts);
+        PurchaseResult first = core.sell(77L, 0, 50.0, FuelGrade.RON95);
+        double level = core.level(0);
+        PurchaseResult retry = core.sell(77L, 0, 50.0, FuelGrade.RON95);
+        Checks.check("retry returns receipt " + retry.getReceiptNumber() + " again", first.isOk() && !first.isReplayed()
+                && retry.isReplayed() && retry.getReceiptNumber() == first.getReceiptNumber()
+                && retry.getTotalSen() == first.getTotalSen() && retry.getLitresMl() == first.getLitresMl());
+        Checks.check("retry leaves the tank and the receipts alone", core.level(0) == level && receipts.size() == 1
+                && receipts.get(0).getRequestId() == 77L);
+
+        boolean rejected = false;
+        try {
+            core.sell(77L, 0, 60.0, FuelGrade.RON95);
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        Checks.check("same id for a different purchase is rejected", rejected && core.level(0) == level);
+
+        PurchaseResult refused = core.sell(88L, 9, 50.0, FuelGrade.RON95);
+        PurchaseResult afterRefusal = core.sell(88L, 1, 50.0, FuelGrade.RON95);
+        Checks.check("a refused sale does not use up its id", !refused.isOk() && afterRefusal.isOk() && !afterRefusal.isReplayed());
+
+        int replays = 200_000;
+        long started = System.nanoTime();
+        long sink = 0;
+        for (int i = 0; i < replays; i++) {
+            sink += core.sell(77L, 0, 50.0, FuelGrade.RON95).getReceiptNumber();
+        }
+        double micros = (System.nanoTime() - started) / 1_000.0 / replays;
+        Checks.check(String.format("replayed retry answered in %.2f us on average", micros),
+                micros < 50.0 && sink == replays * first.getReceiptNumber() && receipts.size() == 2);
+    }
+
+    private static void concurrentDuplicatesSellOnce() throws InterruptedException {
+        List<Receipt> receipts = Collections.synchronizedList(new ArrayList<>());
+        StationCore core = core(new DedupCache(10_000, HOUR), receipts);
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger replayed = new AtomicInteger();
+        AtomicLong receiptNumber = new AtomicLong(-1L);
+        boolean sameReceipt = true;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (long id = 1_000; id < 1_200; id++) {
+                    PurchaseResult result = core.sell(id, (int) (id % 2), 1.0, FuelGrade.DIESEL);
+                    if (result.isOk()) {
+                        (result.isReplayed() ? replayed : sold).incrementAndGet();
+                    }
+                    if (id == 1_000) {
+                        receiptNumber.compareAndSet(-1L, result.getReceiptNumber());
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        for (Receipt receipt : receipts) {
+            if (receipt.getRequestId() == 1_000L) {
+                sameReceipt = receipt.getNumber() == receiptNumber.get();
+            }
+        }
+        Checks.check(threads + " terminals x 200 ids: " + sold + " sold, " + replayed + " replayed",
+                sold.get() == 200 && replayed.get() == 200 * (threads - 1) && receipts.size() == 200 && sameReceipt);
+    }
+
+    private static void expires() {
+        AtomicLong clock = new AtomicLong(1_000_000L);
+        DedupCache cache = new DedupCache(100, 60_000L, 1_000L, clock::get);
+        cache.put(5L, 0, FuelGrade.RON97, 2_000L, 41L, 5_764L, 2_000L, clock.get());
+        PurchaseResult before = cache.begin(5L, 0, FuelGrade.RON97, 2_000L);
+        clock.addAndGet(60_000L);
+        PurchaseResult after = cache.begin(5L, 0, FuelGrade.RON97, 2_000L);
+        Checks.check("id replayed within its ttl, free again after it", before != null && before.getReceiptNumber() == 41L
+                && after == null);
+        cache.release(5L);
+    }
+
+    private static void rebuiltAfterRestart() throws IOException {
+        Path directory = Files.createTempDirectory("idempotency");
+        try {
+            Path journal = directory.resolve("journal");
+            StationCore core = new StationCore(new String[]{"A", "B"}, StationVariant.STATION.newEngine(2, 1L),
+                    new StaticPriceSource(2.05, 3.47, 2.15), new JournalReceiptSink(new ReceiptJournal(journal)),
+                    new DedupCache(10_000, HOUR));
+            long[] receiptFor = new long[1_001];
+            for (int id = 1; id <= 1_000; id++) {
+                PurchaseResult result = core.sell(id, id % 2, 1.0 + id % 7, FuelGrade.RON95);
+                if (!result.isOk()) {
+                    core.fillUpMl(id % 2);
+                    result = core.sell(id, id % 2, 1.0 + id % 7, FuelGrade.RON95);
+                }
+                receiptFor[id] = result.getReceiptNumber();
+            }
+            core.close();
+
+            DedupCache restarted = new DedupCache(10_000, HOUR);
+            long started = System.nanoTime();
+            int loaded = restarted.load(journal);
+            long millis = (System.nanoTime() - started) / 1_000_000L;
+            StationCore again = new StationCore(new String[]{"A", "B"}, StationVariant.STATION.newEngine(2, 1_001L),
+                    new StaticPriceSource(2.05, 3.47, 2.15), receipt -> { }, restarted);
+            PurchaseResult retry = again.sell(500L, 0, 1.0 + 500 % 7, FuelGrade.RON95);
+            Checks.check(loaded + " ids rebuilt from the journal in " + millis + " ms, retry of 500 replays receipt "
+                    + retry.getReceiptNumber(), loaded == 1_000 && retry.isReplayed()
+                    && retry.getReceiptNumber() == receiptFor[500] && again.level(0) == StationVariant.TANK_LITRES);
+
+            AtomicLong later = new AtomicLong(System.currentTimeMillis() + HOUR + 1L);
+            DedupCache expired = new DedupCache(10_000, HOUR, 1_000L, later::get);
+            Checks.check("receipts older than the ttl are not loaded", expired.load(journal) == 0 && expired.size() == 0);
+        } finally {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    // 100 terminals that already retried once keep retrying (one of them every 30 sales, so each id comes back
+    // every 3 000 sales) while 100 000 one-off sales stream through 1 000 entries. plain LRU would lose every one
+    private static void evictsOldKeysFirst() {
+        DedupCache cache = new DedupCache(1_000, HOUR);
+        long[] retried = new long[100];
+        for (int i = 0; i < retried.length; i++) {
+            retried[i] = -(i + 1L);
+            sell(cache, retried[i], i);
+            sell(cache, retried[i], i);
+        }
+        int retryHits = 0;
+        int retries = 0;
+        for (int i = 0; i < 100_000; i++) {
+            sell(cache, i + 1L, i);
+            if (i % 30 == 0) {
+                int t = (i / 30) % retried.length;
+                retries++;
+                if (sell(cache, retried[t], t)) {
+                    retryHits++;
+                }
+            }
+        }
+        boolean recentKept = true;
+        for (long id = 100_000; id > 100_000 - 150; id--) {
+            recentKept &= sell(cache, id, (int) (id - 1));
+        }
+        Checks.check("full cache keeps " + retryHits + "/" + retries + " retried ids and the 150 newest, "
+                + cache.getEvictions() + " evictions", retryHits == retries && recentKept
+                && cache.size() == cache.getCapacity());
+    }
+
+    // true when the cache already had it
+    private static boolean sell(DedupCache cache, long id, int i) {
+        PurchaseResult previous = cache.begin(id, i % 4, FuelGrade.RON95, 2_000L);
+        if (previous == null) {
+            cache.complete(id, BOTTOMLESS.purchaseSen(i % 4, 2_000L, 205L));
+            return false;
+        }
+        return true;
+    }
+
+    private static StationCore core(DedupCache cache, List<Receipt> receipts) {
+        return new StationCore(new String[]{"A", "B"}, StationVariant.STATION.newEngine(2, 1L),
+                new StaticPriceSource(2.05, 3.47, 2.15), receipts::add, cache);
+    }
+}
@@ -0,0 +1,86 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import pricing.FuelPriceParser;
+import pricing.PriceHistory;
+import pricing.PriceSnapshot;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// parsing the API response: the original split-based parseFuelPriceFromJson (called once per fuel type)
+// against the streaming FuelPriceParser, on the limit=1 response and on the full weekly catalogue
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonParseBenchmark {
+    @Param({"1", "2000"})
+    public int weeks;
+
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        payload = weeks == 1 ? Payloads.latest() : Payloads.catalogue(weeks);
+    }
+
+    @Benchmark
+    public void legacySplit(Blackhole blackhole) {
+        String response = new String(payload, StandardCharsets.UTF_8);
+        blackhole.consume(legacyParse(response, "ron95"));
+        blackhole.consume(legacyParse(response, "ron97"));
+        blackhole.consume(legacyParse(response, "diesel"));
+    }
+
+    @Benchmark
+    public PriceSnapshot streamingLatest() throws IOException {
+        return FuelPriceParser.parseLatest(new ByteArrayInputStream(payload), 0L);
+    }
+
+    @Benchmark
+    public PriceHistory streamingHistory() throws IOException {
+        return PriceHistory.load(new ByteArrayInputStream(payload));
+    }
+
+    // the original PetrolStation.parseFuelPriceFromJson, kept here as the baseline
+    private static double legacyParse(String jsonResponse, String fuelType) {
+        double fuelPrice = -1;
+        try {
+            if (jsonResponse.startsWith("[") && jsonResponse.endsWith("]")) {
+                jsonResponse = jsonResponse.substring(1, jsonResponse.length() - 1);
+            }
+            String[] keyValuePairs = jsonResponse.split(",");
+            for (String pair : keyValuePairs) {
+                String[] entry = pair.trim().split(":");
+                if (entry.length == 2) {
+                    String key = entry[0].trim();
+                    String value = entry[1].trim();
+                    if (("\"" + fuelType + "\"").equals(key)) {
+                        fuelPrice = Double.parseDouble(value);
+                        break;
+                    }
+                }
+            }
+        } catch (NumberFormatException e) {
+            fuelPrice = -1;
+        }
+        return fuelPrice;
+    }
+}
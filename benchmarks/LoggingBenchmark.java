@@ -0,0 +1,64 @@
+package benchmarks;
+
+import engine.FuelGrade;
+import logging.EventLog;
+import logging.OverflowPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+// cost of reporting one sale from 8 pumps: printf on a shared PrintStream vs publishing to the event log
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class LoggingBenchmark {
+    @Param({"DROP", "BLOCK"})
+    public String overflow;
+
+    private PrintStream console;
+    private EventLog log;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        console = new PrintStream(OutputStream.nullOutputStream());
+        String[] names = {"Dispenser A", "Dispenser B", "Dispenser C"};
+        log = new EventLog(names, new OutputStreamWriter(OutputStream.nullOutputStream()), true,
+                16384, OverflowPolicy.valueOf(overflow));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        log.close();
+    }
+
+    // what purchaseFuel used to do on every sale
+    @Benchmark
+    public void printfSale() {
+        console.printf("Filling up %.2f litres of %s at %s. Total price: RM%.2f\n", 4.93, "ron95", "Dispenser A", 10.0);
+    }
+
+    @Benchmark
+    public void publishSale() {
+        log.sale(0, FuelGrade.RON95, 1L, 4.93, 10.0);
+    }
+}
@@ -0,0 +1,90 @@
+package benchmarks;
+
+import money.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// the arithmetic of one sale: litres for the amount, the total for those litres, added to the running totals.
+// fixed point (money.Money) against the same rounding rules in BigDecimal, and the old double math
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoneyBenchmark {
+    private static final int SALES = 1024;
+
+    private final long[] amountSen = new long[SALES];
+    private final long[] priceSen = new long[SALES];
+    private final double[] amount = new double[SALES];
+    private final double[] price = new double[SALES];
+    private final BigDecimal[] amountDecimal = new BigDecimal[SALES];
+    private final BigDecimal[] priceDecimal = new BigDecimal[SALES];
+    private int next;
+
+    private long soldMl;
+    private long revenueSen;
+    private double soldLitres;
+    private double revenue;
+    private BigDecimal soldLitresDecimal;
+    private BigDecimal revenueDecimal;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        long[] prices = {205, 347, 215};
+        for (int i = 0; i < SALES; i++) {
+            amountSen[i] = 1_000 + random.nextInt(19_001);
+            priceSen[i] = prices[random.nextInt(prices.length)];
+            amount[i] = Money.ringgit(amountSen[i]);
+            price[i] = Money.ringgit(priceSen[i]);
+            amountDecimal[i] = BigDecimal.valueOf(amountSen[i], 2);
+            priceDecimal[i] = BigDecimal.valueOf(priceSen[i], 2);
+        }
+        soldLitresDecimal = BigDecimal.ZERO;
+        revenueDecimal = BigDecimal.ZERO;
+    }
+
+    @Benchmark
+    public long fixedPoint() {
+        int i = next++ & (SALES - 1);
+        long ml = Money.litresMl(amountSen[i], priceSen[i]);
+        soldMl = Money.add(soldMl, ml);
+        revenueSen = Money.add(revenueSen, Money.totalSen(ml, priceSen[i]));
+        return revenueSen;
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimal() {
+        int i = next++ & (SALES - 1);
+        BigDecimal litres = amountDecimal[i].divide(priceDecimal[i], 3, RoundingMode.HALF_UP);
+        soldLitresDecimal = soldLitresDecimal.add(litres);
+        revenueDecimal = revenueDecimal.add(litres.multiply(priceDecimal[i]).setScale(2, RoundingMode.HALF_UP));
+        return revenueDecimal;
+    }
+
+    // what purchaseFuel did before: no rounding until the receipt is printed
+    @Benchmark
+    public double doubleMath() {
+        int i = next++ & (SALES - 1);
+        double litres = Math.round(amount[i] / price[i] * 1000.0) / 1000.0;
+        soldLitres += litres;
+        revenue += litres * price[i];
+        return revenue;
+    }
+}
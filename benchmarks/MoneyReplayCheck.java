@@ -0,0 +1,156 @@
+package benchmarks;
+
+import engine.DispenserEngine;
+import money.Money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.SplittableRandom;
+
+// replays a seeded stream of sales (10 million by default) three ways: through DispenserEngine in fixed point,
+// with the same rounding rules in BigDecimal as the reference, and with the old double math.
+// the fixed-point run must match BigDecimal sale for sale and in every total, and its tank accounting must balance
+// to the millilitre; the double run shows the drift it replaces.
+// usage: java benchmarks.MoneyReplayCheck [sales]; exits 1 on any mismatch
+public class MoneyReplayCheck {
+    private static final int DISPENSERS = 12;
+    private static final long SEED = 42L;
+    private static final long[] BASE_PRICE_SEN = {205, 347, 215};
+    private static final long[] COMMON_AMOUNT_SEN = {2_000, 3_000, 5_000, 10_000};
+
+    public static void main(String[] args) {
+        int sales = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+
+        long started = System.nanoTime();
+        Totals fixed = fixedPoint(sales);
+        long fixedNanos = System.nanoTime() - started;
+
+        started = System.nanoTime();
+        Totals reference = bigDecimal(sales);
+        long decimalNanos = System.nanoTime() - started;
+
+        started = System.nanoTime();
+        double[] drift = doubleMath(sales);
+        long doubleNanos = System.nanoTime() - started;
+
+        System.out.printf("%d sales: %s litres, RM%s%n", sales, Money.appendMl(new StringBuilder(), fixed.ml),
+                Money.formatSen(fixed.sen));
+        System.out.printf("fixed point, through the engine %6d ms   BigDecimal %6d ms (%.1fx)   double %6d ms%n", fixedNanos / 1_000_000L,
+                decimalNanos / 1_000_000L, (double) decimalNanos / fixedNanos, doubleNanos / 1_000_000L);
+        System.out.printf("double math off by %.6f litres and RM%.6f%n", drift[0] - Money.litres(fixed.ml),
+                drift[1] - Money.ringgit(fixed.sen));
+
+        boolean passed = true;
+        if (fixed.ml != reference.ml || fixed.sen != reference.sen || fixed.checksum != reference.checksum) {
+            System.out.println("FAILED: fixed point and BigDecimal disagree (ml " + fixed.ml + " vs " + reference.ml
+                    + ", sen " + fixed.sen + " vs " + reference.sen + ")");
+            passed = false;
+        }
+        if (fixed.tankImbalanceMl != 0) {
+            System.out.println("FAILED: tanks are off by " + fixed.tankImbalanceMl + " ml");
+            passed = false;
+        }
+        if (!passed) {
+            System.exit(1);
+        }
+        System.out.println("PASSED");
+    }
+
+    private static Totals fixedPoint(int sales) {
+        DispenserEngine engine = new DispenserEngine(DISPENSERS, 10_000.0, 0.0);
+        long capacityMl = engine.getCapacityMl();
+        Sales stream = new Sales();
+        Totals totals = new Totals();
+        long refilledMl = 0;
+        for (int i = 0; i < sales; i++) {
+            stream.next(i);
+            long receipt = engine.tryPurchaseSen(stream.dispenser, stream.amountSen, stream.priceSen);
+            if (receipt < 0) {
+                refilledMl = Money.add(refilledMl, engine.fillUpMl(stream.dispenser));
+                receipt = engine.tryPurchaseSen(stream.dispenser, stream.amountSen, stream.priceSen);
+                if (receipt < 0) {
+                    throw new IllegalStateException("Sale " + i + " refused after a refill: " + receipt);
+                }
+            }
+            long ml = Money.litresMl(stream.amountSen, stream.priceSen);
+            totals.add(i, ml, Money.totalSen(ml, stream.priceSen));
+        }
+        long levelsMl = 0;
+        for (int d = 0; d < DISPENSERS; d++) {
+            levelsMl += engine.levelMl(d);
+        }
+        // everything that went in is either still in a tank or was sold
+        totals.tankImbalanceMl = DISPENSERS * capacityMl + refilledMl - levelsMl - totals.ml;
+        return totals;
+    }
+
+    private static Totals bigDecimal(int sales) {
+        Sales stream = new Sales();
+        Totals totals = new Totals();
+        BigDecimal litres = BigDecimal.ZERO;
+        BigDecimal revenue = BigDecimal.ZERO;
+        for (int i = 0; i < sales; i++) {
+            stream.next(i);
+            BigDecimal price = BigDecimal.valueOf(stream.priceSen, 2);
+            BigDecimal saleLitres = BigDecimal.valueOf(stream.amountSen, 2).divide(price, 3, RoundingMode.HALF_UP);
+            BigDecimal saleTotal = saleLitres.multiply(price).setScale(2, RoundingMode.HALF_UP);
+            litres = litres.add(saleLitres);
+            revenue = revenue.add(saleTotal);
+            totals.checksum += (i + 1L) * (saleLitres.unscaledValue().longValueExact() * 31L
+                    + saleTotal.unscaledValue().longValueExact());
+        }
+        totals.ml = litres.movePointRight(3).longValueExact();
+        totals.sen = revenue.movePointRight(2).longValueExact();
+        return totals;
+    }
+
+    // {litres, RM} as purchaseFuel used to add them up
+    private static double[] doubleMath(int sales) {
+        Sales stream = new Sales();
+        double litres = 0;
+        double revenue = 0;
+        for (int i = 0; i < sales; i++) {
+            stream.next(i);
+            double price = stream.priceSen / 100.0;
+            double saleLitres = Math.round(stream.amountSen / 100.0 / price * 1000.0) / 1000.0;
+            litres += saleLitres;
+            revenue += saleLitres * price;
+        }
+        return new double[]{litres, revenue};
+    }
+
+    // the same seeded sales for every pass; prices move by a few sen every million sales
+    private static final class Sales {
+        private final SplittableRandom random = new SplittableRandom(SEED);
+        private final long[] gradePriceSen = BASE_PRICE_SEN.clone();
+        int dispenser;
+        long amountSen;
+        long priceSen;
+
+        void next(int i) {
+            if (i > 0 && i % 1_000_000 == 0) {
+                for (int g = 0; g < gradePriceSen.length; g++) {
+                    gradePriceSen[g] = Math.max(150, gradePriceSen[g] + random.nextInt(-10, 11));
+                }
+            }
+            dispenser = random.nextInt(DISPENSERS);
+            int grade = random.nextInt(100);
+            priceSen = gradePriceSen[grade < 70 ? 0 : grade < 80 ? 1 : 2];
+            amountSen = random.nextInt(2) == 0 ? COMMON_AMOUNT_SEN[random.nextInt(COMMON_AMOUNT_SEN.length)]
+                    : 500 + random.nextInt(19_501);
+        }
+    }
+
+    private static final class Totals {
+        long ml;
+        long sen;
+        long checksum; // order-sensitive, so a swapped or mis-rounded sale shows up even if the totals agree
+        long tankImbalanceMl;
+
+        void add(int i, long saleMl, long saleSen) {
+            ml = Money.add(ml, saleMl);
+            sen = Money.add(sen, saleSen);
+            checksum += (i + 1L) * (saleMl * 31L + saleSen);
+        }
+    }
+}
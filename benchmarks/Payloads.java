@@ -0,0 +1,37 @@
+package benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+// fuelprice API responses for the parsing benchmarks, shaped like the real data.gov.my catalogue
+final class Payloads {
+    private Payloads() {
+    }
+
+    static byte[] latest() {
+        return ("[{\"series_type\":\"level\",\"date\":\"2024-01-03\",\"ron95\":2.05,\"ron97\":3.47,"
+                + "\"diesel\":2.15,\"diesel_eastmsia\":2.15}]").getBytes(StandardCharsets.UTF_8);
+    }
+
+    // newest first, one level row and one change_weekly row per week
+    static byte[] catalogue(int weeks) {
+        StringBuilder json = new StringBuilder(weeks * 220);
+        LocalDate first = LocalDate.of(2017, 3, 30);
+        json.append('[');
+        for (int i = weeks - 1; i >= 0; i--) {
+            String date = first.plusWeeks(i).toString();
+            double step = (i % 40) / 100.0;
+            json.append("{\"series_type\":\"level\",\"date\":\"").append(date)
+                    .append("\",\"ron95\":").append(2.05 + step)
+                    .append(",\"ron97\":").append(3.05 + step)
+                    .append(",\"diesel\":").append(2.15 + step)
+                    .append(",\"diesel_eastmsia\":").append(2.15 + step).append("},");
+            json.append("{\"series_type\":\"change_weekly\",\"date\":\"").append(date)
+                    .append("\",\"ron95\":0.01,\"ron97\":-0.02,\"diesel\":0.0,\"diesel_eastmsia\":0.0}");
+            if (i > 0) {
+                json.append(',');
+            }
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,158 @@
+package benchmarks;
+
+import pricing.CachedPriceProvider;
+import pricing.CircuitBreaker;
+import pricing.HttpPriceSource;
+import pricing.PriceCacheFile;
+import pricing.PriceSnapshot;
+import pricing.StubPriceServer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+// runs the price client against a local stub that injects latency and failures: connection reuse, timeouts,
+// retries, the circuit breaker and the last-known-good fallback.
+// usage: java benchmarks.PriceClientCheck; exits 1 if any scenario fails
+public class PriceClientCheck {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        try (StubPriceServer stub = new StubPriceServer(2.05, 3.47, 2.15)) {
+            reusesConnections(stub);
+            timesOut(stub);
+            retriesServerErrors(stub);
+            doesNotRetryClientErrors(stub);
+            breakerOpensAndRecovers(stub);
+            keepsLastKnownGood(stub);
+        }
+        Checks.finish();
+    }
+
+    private static void reusesConnections(StubPriceServer stub) throws IOException {
+        reset(stub);
+        HttpPriceSource source = client(stub, 3, new CircuitBreaker(5, 60_000L));
+        int connections = stub.connectionCount();
+        for (int i = 0; i < 50; i++) {
+            source.fetch();
+        }
+        int opened = stub.connectionCount() - connections;
+        Checks.check("50 fetches over " + opened + " connection(s)", opened <= 2);
+    }
+
+    private static void timesOut(StubPriceServer stub) {
+        reset(stub);
+        stub.setDelayMillis(2_000L);
+        HttpPriceSource source = client(stub, 1, new CircuitBreaker(5, 60_000L));
+        long started = System.nanoTime();
+        boolean failed = fails(source);
+        long millis = (System.nanoTime() - started) / 1_000_000L;
+        Checks.check("2 s stall fails after " + millis + " ms (timeout 300 ms)", failed && millis < 1_500L);
+        stub.setDelayMillis(0L);
+    }
+
+    private static void retriesServerErrors(StubPriceServer stub) throws IOException {
+        reset(stub);
+        HttpPriceSource source = client(stub, 3, new CircuitBreaker(5, 60_000L));
+        stub.failNext(2, 503);
+        int before = stub.requestCount();
+        PriceSnapshot snapshot = source.fetch();
+        Checks.check("two 503s then success in " + (stub.requestCount() - before) + " requests",
+                stub.requestCount() - before == 3 && snapshot.getRon95() == 2.05);
+    }
+
+    private static void doesNotRetryClientErrors(StubPriceServer stub) {
+        reset(stub);
+        HttpPriceSource source = client(stub, 3, new CircuitBreaker(5, 60_000L));
+        stub.setStatus(404);
+        int before = stub.requestCount();
+        boolean failed = fails(source);
+        Checks.check("404 is not retried (" + (stub.requestCount() - before) + " request)",
+                failed && stub.requestCount() - before == 1);
+        stub.setStatus(200);
+    }
+
+    private static void breakerOpensAndRecovers(StubPriceServer stub) throws IOException {
+        reset(stub);
+        AtomicLong clock = new AtomicLong(1_000_000L);
+        CircuitBreaker breaker = new CircuitBreaker(3, 10_000L, clock::get);
+        HttpPriceSource source = client(stub, 2, breaker);
+        stub.setStatus(503);
+        for (int i = 0; i < 3; i++) {
+            fails(source);
+        }
+        int before = stub.requestCount();
+        long started = System.nanoTime();
+        boolean failed = true;
+        for (int i = 0; i < 100; i++) {
+            failed &= fails(source);
+        }
+        long micros = (System.nanoTime() - started) / 1_000L;
+        Checks.check("open after 3 failed fetches, 100 calls refused in " + micros + " us without a request",
+                breaker.getState() == CircuitBreaker.State.OPEN && failed && stub.requestCount() == before);
+
+        // half-open: one trial call; it fails and the circuit opens again
+        clock.addAndGet(10_000L);
+        fails(source);
+        Checks.check("failed trial call reopens", breaker.getState() == CircuitBreaker.State.OPEN
+                && stub.requestCount() - before == 2);
+
+        // upstream back: the next trial call closes it
+        stub.setStatus(200);
+        clock.addAndGet(10_000L);
+        PriceSnapshot snapshot = source.fetch();
+        Checks.check("successful trial call closes", breaker.getState() == CircuitBreaker.State.CLOSED
+                && snapshot.getDiesel() == 2.15);
+    }
+
+    private static void keepsLastKnownGood(StubPriceServer stub) throws IOException {
+        reset(stub);
+        Path directory = Files.createTempDirectory("price-client");
+        Path cache = directory.resolve("prices.cache");
+        try {
+            HttpPriceSource source = client(stub, 2, new CircuitBreaker(2, 60_000L));
+            CachedPriceProvider provider = new CachedPriceProvider(source, 60_000L,
+                    new PriceSnapshot(2.03, 2.28, 1.99, 0L), cache);
+            stub.setPrices(2.60, 3.90, 2.95);
+            boolean refreshed = provider.refreshNow();
+            stub.setStatus(500);
+            boolean kept = !provider.refreshNow() & !provider.refreshNow() & !provider.refreshNow();
+            PriceSnapshot served = provider.current();
+            provider.close();
+            Checks.check("upstream down: still serving last good RON95 " + served.getRon95(),
+                    refreshed && kept && served.getRon95() == 2.60
+                            && source.getCircuitBreaker().getState() == CircuitBreaker.State.OPEN);
+
+            // and a restart with the upstream still down starts from the cache, not from 2017
+            CachedPriceProvider restarted = new CachedPriceProvider(source, 60_000L,
+                    new PriceSnapshot(2.03, 2.28, 1.99, 0L), cache);
+            PriceSnapshot cached = PriceCacheFile.read(cache);
+            Checks.check("restart serves cached RON95 " + restarted.current().getRon95(),
+                    cached != null && restarted.current().getRon95() == 2.60);
+            restarted.close();
+        } finally {
+            stub.setStatus(200);
+            stub.setPrices(2.05, 3.47, 2.15);
+            Files.deleteIfExists(cache);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static HttpPriceSource client(StubPriceServer stub, int attempts, CircuitBreaker breaker) {
+        return new HttpPriceSource(stub.url(), 300L, 300L, attempts, 10L, breaker);
+    }
+
+    private static boolean fails(HttpPriceSource source) {
+        try {
+            source.fetch();
+            return false;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private static void reset(StubPriceServer stub) {
+        stub.setStatus(200);
+        stub.setDelayMillis(0L);
+        stub.failNext(0, 503);
+    }
+}
@@ -0,0 +1,64 @@
+package benchmarks;
+
+import engine.FuelGrade;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pricing.CachedPriceProvider;
+import pricing.HttpPriceSource;
+import pricing.PriceSnapshot;
+import pricing.StubPriceServer;
+
+import java.util.concurrent.TimeUnit;
+
+// getFuelPrice on the sale path: read the cached snapshot and pick the fuel type
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PriceLookupBenchmark {
+    @Param({"ron95", "RON97", "diesel"})
+    public String fuelType;
+
+    private StubPriceServer stub;
+    private CachedPriceProvider prices;
+    private FuelGrade grade;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        stub = new StubPriceServer(2.05, 3.47, 2.15);
+        prices = new CachedPriceProvider(new HttpPriceSource(stub.url()), 60_000, PriceSnapshot.fallback2017());
+        prices.refreshNow();
+        grade = FuelGrade.of(fuelType);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        prices.close();
+        stub.close();
+    }
+
+    // parses the text on every call, like the old getFuelPrice(String)
+    @Benchmark
+    public double lookupByString() {
+        return prices.current().price(fuelType);
+    }
+
+    // grade parsed once at the edge, the lookup is an array read
+    @Benchmark
+    public double lookupByGrade() {
+        return prices.current().price(grade);
+    }
+}
@@ -0,0 +1,128 @@
+package benchmarks;
+
+import engine.DispenserEngine;
+import engine.FuelGrade;
+import engine.PurchaseResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import pricing.CachedPriceProvider;
+import pricing.HttpPriceSource;
+import pricing.PriceSnapshot;
+import pricing.StubPriceServer;
+import server.StationService;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// purchase throughput on the engine alone and through the whole PetrolStation.purchaseFuel path
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PurchaseBenchmark {
+    private static final FuelGrade[] GRADES = FuelGrade.values();
+
+    private StubPriceServer stub;
+    private CachedPriceProvider prices;
+    private DispenserEngine engine;
+    private StationService station;
+    private PrintStream console;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        stub = new StubPriceServer(2.05, 3.47, 2.15);
+        prices = new CachedPriceProvider(new HttpPriceSource(stub.url()), 60_000, PriceSnapshot.fallback2017());
+        prices.refreshNow();
+        engine = new DispenserEngine(24, 100_000.0, 0.1);
+
+        // PetrolStation sits in the default package, so it is reached through StationService
+        System.setProperty("receipt.dir", Files.createTempDirectory("bench-receipts").toString());
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        station = (StationService) Class.forName("PetrolStation")
+                .getConstructor(int.class, boolean.class)
+                .newInstance(3, false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        System.setOut(console);
+        prices.close();
+        stub.close();
+        station.getClass().getMethod("close").invoke(station);
+    }
+
+    private PurchaseResult enginePurchase() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int dispenser = random.nextInt(engine.size());
+        PurchaseResult result = engine.purchase(dispenser, 50.0, prices.current().price(GRADES[random.nextInt(3)]));
+        if (!result.isOk()) {
+            engine.fillUp(dispenser);
+        }
+        return result;
+    }
+
+    private PurchaseResult stationPurchase() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int dispenser = random.nextInt(3);
+        PurchaseResult result = station.purchaseFuel(dispenser, 20.0, GRADES[random.nextInt(3)]);
+        if (result.getStatus() == PurchaseResult.Status.LOW_LEVEL) {
+            station.fillUpDispenser(dispenser);
+        }
+        return result;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public PurchaseResult engineSingleThread() {
+        return enginePurchase();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public PurchaseResult engineEightThreads() {
+        return enginePurchase();
+    }
+
+    // the allocation-free path: grade code, snapshot array read, CAS on the level, receipt number back.
+    // run with -prof gc, gc.alloc.rate.norm should be ~0 B/op
+    @Benchmark
+    @Threads(1)
+    public long engineAllocationFree() {
+        int dispenser = ThreadLocalRandom.current().nextInt(engine.size());
+        FuelGrade grade = GRADES[dispenser % 3];
+        long receipt = engine.tryPurchase(dispenser, 50.0, prices.current().price(grade));
+        if (receipt < 0) {
+            engine.fillUp(dispenser);
+        }
+        return receipt;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public PurchaseResult stationSingleThread() {
+        return stationPurchase();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public PurchaseResult stationEightThreads() {
+        return stationPurchase();
+    }
+}
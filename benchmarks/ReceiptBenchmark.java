@@ -0,0 +1,86 @@
+package benchmarks;
+
+import engine.FuelGrade;
+import ledger.TransactionLedger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import receipt.FlushPolicy;
+import receipt.Receipt;
+import receipt.ReceiptJournal;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// cost per sale of persisting the receipt: the original one-file-per-sale printReceipt,
+// the batched journal and the memory-mapped ledger
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReceiptBenchmark {
+    private Path directory;
+    private ReceiptJournal journal;
+    private TransactionLedger ledger;
+    private long receiptNumber;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("bench-receipts");
+        journal = new ReceiptJournal(directory.resolve("journal"), FlushPolicy.PER_BATCH, 8192, 10, 64L * 1024 * 1024);
+        ledger = TransactionLedger.open(directory.resolve("ledger.dat"));
+        receiptNumber = 1;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws Exception {
+        journal.close();
+        ledger.close();
+    }
+
+    @Benchmark
+    public void legacyFilePerSale() throws IOException {
+        long number = receiptNumber++;
+        File folder = directory.resolve("legacy").toFile();
+        if (!folder.exists()) {
+            folder.mkdir();
+        }
+        String fileName = folder + "/receipt_" + number + ".txt";
+        try (PrintWriter writer = new PrintWriter(new FileWriter(fileName))) {
+            writer.println("Receipt Number: " + number);
+            writer.println("Dispenser: " + 1);
+            writer.println("Fuel Type: " + "ron95");
+            writer.println("Litres: " + String.format("%.2f", 24.39));
+            writer.println("Total Price: RM" + String.format("%.2f", 50.0));
+        }
+    }
+
+    @Benchmark
+    public long journalAppend() throws InterruptedException {
+        long number = receiptNumber++;
+        return journal.append(new Receipt(number, 1, FuelGrade.RON95, 24.39, 50.0, System.currentTimeMillis()));
+    }
+
+    @Benchmark
+    public long ledgerAppend() throws IOException {
+        long number = receiptNumber++;
+        ledger.append(number, 1, FuelGrade.RON95.code(), 24.39, 50.0, System.currentTimeMillis());
+        return number;
+    }
+}
@@ -0,0 +1,262 @@
+package benchmarks;
+
+import engine.FuelGrade;
+import engine.PurchaseResult;
+import engine.ReceiptSequence;
+import pricing.StaticPriceSource;
+import receipt.ReceiptNumberLease;
+import station.FolderLock;
+import station.StationCore;
+import station.StationVariant;
+import station.TextReceiptSink;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// several station JVMs at once on one receipt folder, half WITH_API and half WITHOUT_API, each leasing small blocks
+// of receipt numbers from the shared receipt.seq. no number may be handed out twice, every sale must have its own
+// receipt file with its own number in it, and a restart must carry on past everything sold. also checks that a
+// clean close gives the rest of a block back, that older receipt files are never overwritten, and that a second
+// PetrolStation cannot open a folder another process holds.
+// usage: java benchmarks.ReceiptNumberCheck [jvms] [sales per jvm]; exits 1 if any check fails
+public class ReceiptNumberCheck {
+    private static final int BLOCK = 10;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("sell")) {
+            sell(Paths.get(args[1]), StationVariant.valueOf(args[2]), Integer.parseInt(args[3]));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("lock")) {
+            FolderLock lock;
+            try {
+                lock = FolderLock.acquire(Paths.get(args[1]));
+            } catch (IllegalStateException e) {
+                System.exit(3);
+                return;
+            }
+            lock.close();
+            System.exit(0);
+        }
+        int jvms = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int sales = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        sharedFolder(jvms, sales);
+        closeGivesBlockBack();
+        olderFilesKept();
+        folderLocked();
+        leaseCost();
+        Checks.finish();
+    }
+
+    private static void sharedFolder(int jvms, int sales) throws Exception {
+        Path directory = Files.createTempDirectory("receipt-numbers");
+        try {
+            List<Process> processes = new ArrayList<>();
+            for (int i = 0; i < jvms; i++) {
+                StationVariant variant = i % 2 == 0 ? StationVariant.WITHOUT_API : StationVariant.WITH_API;
+                processes.add(java("-Dreceipt.block=" + BLOCK, ReceiptNumberCheck.class.getName(), "sell",
+                        directory.toString(), variant.name(), String.valueOf(sales)).start());
+            }
+            // receipt number -> the JVM that sold it
+            Map<Long, Integer> numbers = new HashMap<>();
+            long highest = 0;
+            int duplicates = 0;
+            int badFiles = 0;
+            int failed = 0;
+            for (int i = 0; i < jvms; i++) {
+                Process process = processes.get(i);
+                String prefix = (i % 2 == 0 ? StationVariant.WITHOUT_API : StationVariant.WITH_API).getReceiptFilePrefix();
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(),
+                        StandardCharsets.UTF_8))) {
+                    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                        long number = Long.parseLong(line);
+                        highest = Math.max(highest, number);
+                        if (numbers.put(number, i) != null) {
+                            duplicates++;
+                        }
+                        if (!hasReceipt(directory.resolve(prefix + number + ".txt"), number)) {
+                            badFiles++;
+                        }
+                    }
+                }
+                if (process.waitFor() != 0) {
+                    failed++;
+                }
+            }
+            long files;
+            try (Stream<Path> paths = Files.list(directory)) {
+                files = paths.filter(path -> path.toString().endsWith(".txt")).count();
+            }
+            // in number order, how often the next block belongs to a different JVM: they really ran side by side
+            int switches = 0;
+            Integer previous = null;
+            for (long n = 1; n <= highest; n++) {
+                Integer jvm = numbers.get(n);
+                if (jvm != null && previous != null && !jvm.equals(previous)) {
+                    switches++;
+                }
+                previous = jvm != null ? jvm : previous;
+            }
+            Checks.check(jvms + " JVMs x " + sales + " sales in blocks of " + BLOCK + ": " + numbers.size() + " numbers, "
+                    + duplicates + " handed out twice, " + switches + " hand-overs between JVMs", failed == 0
+                    && duplicates == 0 && numbers.size() == jvms * sales && switches >= jvms);
+            Checks.check(files + " receipt files, each with its own number", badFiles == 0 && files == (long) jvms * sales);
+
+            StationCore restarted = station(StationVariant.WITHOUT_API, directory);
+            long next = restarted.sell(0, 1.0, FuelGrade.RON95).getReceiptNumber();
+            restarted.close();
+            Checks.check("a restart carries on at " + next + ", past the highest number sold (" + highest + ")",
+                    next > highest && !numbers.containsKey(next));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static void closeGivesBlockBack() throws IOException {
+        Path directory = Files.createTempDirectory("receipt-numbers");
+        try {
+            StationCore first = station(StationVariant.WITH_API, directory);
+            for (int i = 0; i < 3; i++) {
+                first.sell(0, 1.0, FuelGrade.RON95);
+            }
+            first.close();
+            StationCore second = station(StationVariant.WITH_API, directory);
+            long next = second.sell(0, 1.0, FuelGrade.RON95).getReceiptNumber();
+            second.close();
+            Checks.check("a clean restart carries on at " + next + " with no gap", next == 4L);
+        } finally {
+            delete(directory);
+        }
+    }
+
+    // a folder from before receipt.seq: numbering starts after the receipts already there
+    private static void olderFilesKept() throws IOException {
+        Path directory = Files.createTempDirectory("receipt-numbers");
+        try {
+            String prefix = StationVariant.WITHOUT_API.getReceiptFilePrefix();
+            for (int n = 1; n <= 7; n++) {
+                Files.write(directory.resolve(prefix + n + ".txt"), List.of("old receipt " + n));
+            }
+            StationCore core = station(StationVariant.WITHOUT_API, directory);
+            long number = core.sell(0, 1.0, FuelGrade.RON95).getReceiptNumber();
+            core.close();
+            // and a file that is somehow there already is reported, not overwritten
+            List<String> messages = new ArrayList<>();
+            TextReceiptSink sink = new TextReceiptSink(directory, prefix, messages::add);
+            StationCore clash = new StationCore(new String[]{"A"}, StationVariant.WITHOUT_API.newEngine(1, 3L),
+                    new StaticPriceSource(2.05, 3.47, 2.15), sink);
+            clash.sell(0, 1.0, FuelGrade.RON95);
+            Checks.check("old receipts 1-7 kept, first new receipt is " + number, number == 8L
+                    && Files.readAllLines(directory.resolve(prefix + "3.txt")).equals(List.of("old receipt 3"))
+                    && sink.getErrors() == 1 && messages.get(0).endsWith("already exists"));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static void folderLocked() throws Exception {
+        Path directory = Files.createTempDirectory("receipt-numbers");
+        try {
+            FolderLock held = FolderLock.acquire(directory);
+            int whileHeld;
+            try {
+                whileHeld = java(ReceiptNumberCheck.class.getName(), "lock", directory.toString()).start().waitFor();
+            } finally {
+                held.close();
+            }
+            int afterwards = java(ReceiptNumberCheck.class.getName(), "lock", directory.toString()).start().waitFor();
+            Checks.check("another process cannot take a station's receipt folder until it lets go",
+                    whileHeld == 3 && afterwards == 0);
+        } finally {
+            delete(directory);
+        }
+    }
+
+    // what leasing adds per receipt number over the in-memory sequence; a lease is one locked, forced write
+    private static void leaseCost() throws IOException {
+        int numbers = 1_000_000;
+        ReceiptSequence inMemory = ReceiptSequence.inMemory(1L);
+        for (int round = 0; round < 3; round++) {
+            time(inMemory, numbers);
+        }
+        double memoryNanos = time(inMemory, numbers) / (double) numbers;
+        for (int block : new int[]{StationVariant.RECEIPT_BLOCK, 10_000}) {
+            Path directory = Files.createTempDirectory("receipt-numbers");
+            try {
+                ReceiptNumberLease leased = new ReceiptNumberLease(directory.resolve(ReceiptNumberLease.FILE_NAME),
+                        block, 1L);
+                time(leased, numbers);
+                double leasedNanos = time(leased, numbers) / (double) numbers;
+                long issued = leased.peek();
+                leased.close();
+                Checks.check(String.format("%.1f ns per number leased in blocks of %d (%d leases), %.1f ns in memory",
+                        leasedNanos, block, leased.getLeases(), memoryNanos), issued == 2L * numbers + 1L);
+            } finally {
+                delete(directory);
+            }
+        }
+    }
+
+    private static long time(ReceiptSequence sequence, int numbers) {
+        long started = System.nanoTime();
+        for (int i = 0; i < numbers; i++) {
+            sequence.next();
+        }
+        return System.nanoTime() - started;
+    }
+
+    // a child JVM: sales on four dispensers, one receipt number per line on stdout
+    private static void sell(Path directory, StationVariant variant, int sales) {
+        StationCore core = station(variant, directory);
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < sales; i++) {
+            int dispenser = i % 4;
+            PurchaseResult result = core.sell(dispenser, 1.0, FuelGrade.RON95);
+            if (!result.isOk()) {
+                core.fillUpMl(dispenser);
+                result = core.sell(dispenser, 1.0, FuelGrade.RON95);
+            }
+            out.append(result.getReceiptNumber()).append('\n');
+        }
+        long errors = ((TextReceiptSink) core.getReceiptSink()).getErrors();
+        core.close();
+        System.out.print(out);
+        System.out.flush();
+        System.exit(errors == 0 ? 0 : 2);
+    }
+
+    private static StationCore station(StationVariant variant, Path directory) {
+        return variant.create(new String[]{"A", "B", "C", "D"}, new StaticPriceSource(2.05, 3.47, 2.15), directory,
+                message -> { });
+    }
+
+    private static boolean hasReceipt(Path file, long number) throws IOException {
+        return Files.exists(file) && Files.readAllLines(file).contains("Receipt Number: " + number);
+    }
+
+    private static ProcessBuilder java(String... args) {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.addAll(List.of(args));
+        return new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT);
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
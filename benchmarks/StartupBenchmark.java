@@ -0,0 +1,90 @@
+package benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// cold start of `PetrolStation headless` in a fresh JVM each run, timed from process launch to the "Ready in" line.
+// the price API is a blackholed address, so a start that waited on the network would never get under a second.
+// usage: java -cp target/classes benchmarks.StartupBenchmark [runs]
+public class StartupBenchmark {
+    private static final String UNREACHABLE_API = "http://10.255.255.1/data-catalogue/?id=fuelprice&limit=1";
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        Path directory = Files.createTempDirectory("bench-startup");
+        try {
+            Path cached = directory.resolve("cached");
+            Files.createDirectories(cached);
+            try (Writer writer = Files.newBufferedWriter(cached.resolve("prices.cache"), StandardCharsets.UTF_8)) {
+                writer.write("ron95=2.05\nron97=3.47\ndiesel=2.15\nfetchedAt=" + System.currentTimeMillis() + "\n");
+            }
+            scenario("api down, cached prices", config(directory, "cached", UNREACHABLE_API), runs);
+            scenario("api down, no cache     ", config(directory, "uncached", UNREACHABLE_API), runs);
+            scenario("static prices          ", config(directory, "static", "static"), runs);
+        } finally {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private static Path config(Path directory, String name, String prices) throws IOException {
+        Path file = directory.resolve(name + ".properties");
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("dispensers=12\n");
+            writer.write("prices=" + prices + "\n");
+            writer.write("receipt.dir=" + directory.resolve(name).toString().replace("\\", "/") + "\n");
+            writer.write("server.port=0\n");
+        }
+        return file;
+    }
+
+    private static void scenario(String name, Path config, int runs) throws IOException, InterruptedException {
+        long[] launchToReady = new long[runs];
+        long[] constructor = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long[] timing = start(config);
+            launchToReady[i] = timing[0];
+            constructor[i] = timing[1];
+        }
+        Arrays.sort(launchToReady);
+        Arrays.sort(constructor);
+        System.out.printf("%s  launch to ready: min %4d  median %4d  max %4d ms   station startup: median %3d ms%n",
+                name, launchToReady[0], launchToReady[runs / 2], launchToReady[runs - 1], constructor[runs / 2]);
+    }
+
+    // {ms from launch to the ready line, ms the station reported for its own startup}
+    private static long[] start(Path config) throws IOException, InterruptedException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                "-Dstation.metrics=false", "PetrolStation", "headless", config.toString());
+        builder.redirectErrorStream(true);
+        long launched = System.nanoTime();
+        Process process = builder.start();
+        try (BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = out.readLine()) != null) {
+                if (line.startsWith("Ready in ")) {
+                    long elapsed = (System.nanoTime() - launched) / 1_000_000L;
+                    long reported = Long.parseLong(line.substring(9, line.indexOf(" ms")));
+                    return new long[]{elapsed, reported};
+                }
+            }
+            throw new IOException("Station exited before it was ready");
+        } finally {
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package benchmarks;
+
+import engine.FuelGrade;
+import engine.PurchaseResult;
+import money.Money;
+import pricing.CachedPriceProvider;
+import pricing.FuelPriceProvider;
+import pricing.HttpPriceSource;
+import pricing.PriceSnapshot;
+import pricing.StaticPriceSource;
+import pricing.StubPriceServer;
+import receipt.Receipt;
+import receipt.ReceiptExporter;
+import station.StationCore;
+import station.StationVariant;
+import station.TextReceiptSink;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+// runs every station configuration (StationVariant) through the same scripted refusals and the same seeded
+// workload, then reads the receipts back from wherever that configuration stores them.
+// every sale must match the fixed-point reference, receipt numbers must have no gaps, and all configurations
+// must agree sale for sale; WITH_API runs once more against the stub price server instead of fixed prices.
+// usage: java benchmarks.StationConformanceCheck [sales]; exits 1 if any check fails
+public class StationConformanceCheck {
+    private static final int DISPENSERS = 4;
+    private static final long SEED = 42L;
+    private static final double RON95 = 2.05;
+    private static final double RON97 = 3.47;
+    private static final double DIESEL = 2.15;
+    // what every configuration should charge, by FuelGrade code
+    private static final long[] PRICE_SEN = {Money.sen(RON95), Money.sen(RON97), Money.sen(DIESEL)};
+
+    public static void main(String[] args) throws IOException {
+        int sales = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+        Long expected = null;
+        for (StationVariant variant : StationVariant.values()) {
+            scripted(variant);
+            long checksum = workload(variant.name(), variant, new StaticPriceSource(RON95, RON97, DIESEL), sales);
+            if (expected == null) {
+                expected = checksum;
+            }
+            Checks.check(variant + " sells exactly what " + StationVariant.values()[0] + " sells", checksum == expected);
+        }
+        try (StubPriceServer stub = new StubPriceServer(RON95, RON97, DIESEL)) {
+            CachedPriceProvider prices = new CachedPriceProvider(new HttpPriceSource(stub.url()), 60_000L,
+                    PriceSnapshot.fallback2017());
+            Checks.check("WITH_API fetched prices from the stub", prices.refreshNow());
+            long checksum = workload("WITH_API over HTTP", StationVariant.WITH_API, prices, sales);
+            Checks.check("WITH_API over HTTP sells exactly what the others sell", expected != null && checksum == expected);
+        }
+        Checks.finish();
+    }
+
+    // the edge cases, one by one on a two-dispenser station
+    private static void scripted(StationVariant variant) throws IOException {
+        Path directory = Files.createTempDirectory("station-conformance");
+        try {
+            StationCore core = variant.create(new String[]{"A", "B"}, new StaticPriceSource(RON95, RON97, DIESEL),
+                    directory, message -> { });
+            Checks.check(variant + " unknown dispenser", status(core.sell(2, 10.0, FuelGrade.RON95), PurchaseResult.Status.INVALID_DISPENSER)
+                    && core.fillUpMl(-1) == -1L);
+            Checks.check(variant + " zero, negative or NaN amount", status(core.sell(0, 0.0, FuelGrade.RON95), PurchaseResult.Status.INVALID_AMOUNT)
+                    && status(core.sell(0, -10.0, FuelGrade.RON95), PurchaseResult.Status.INVALID_AMOUNT)
+                    && status(core.sell(7L, 0, Double.NaN, FuelGrade.RON95), PurchaseResult.Status.INVALID_AMOUNT)
+                    && status(core.sellSen(0, -1_000L, FuelGrade.RON95), PurchaseResult.Status.INVALID_AMOUNT)
+                    && core.level(0) == StationVariant.TANK_LITRES);
+            Checks.check(variant + " more than the tank holds",
+                    status(core.sell(0, 1_000.0, FuelGrade.RON95), PurchaseResult.Status.NOT_ENOUGH_PETROL));
+            // 80 litres out leaves exactly 20, then one more litre goes below STATION's minimum
+            PurchaseResult first = core.sell(0, 164.0, FuelGrade.RON95);
+            Checks.check(variant + " 80 litres for RM164.00", first.isOk() && first.getReceiptNumber() == 1L
+                    && first.getLitresMl() == 80_000L && first.getTotalSen() == 16_400L && core.level(0) == 20.0);
+            Checks.check(variant + " sells at the minimum", core.sell(0, 2.05, FuelGrade.RON95).isOk());
+            boolean refuses = core.level(0) < variant.getMinLevelLitres();
+            PurchaseResult low = core.sell(0, 2.05, FuelGrade.RON95);
+            Checks.check(variant + " below " + variant.getMinLevelLitres() + " litres",
+                    refuses ? status(low, PurchaseResult.Status.LOW_LEVEL) : low.isOk() && low.getReceiptNumber() == 3L);
+            long topUp = Money.ml(StationVariant.TANK_LITRES) - core.getEngine().levelMl(0);
+            Checks.check(variant + " fill-up adds " + Money.litres(topUp) + " litres",
+                    core.fillUpMl(0) == topUp && core.level(0) == StationVariant.TANK_LITRES);
+            core.close();
+
+            FuelPriceProvider noDiesel = () -> new PriceSnapshot(RON95, RON97, 0.0, 0L);
+            StationCore unpriced = variant.create(new String[]{"A"}, noDiesel, directory.resolve("unpriced"), message -> { });
+            Checks.check(variant + " no price, no sale", status(unpriced.sell(0, 10.0, FuelGrade.DIESEL), PurchaseResult.Status.INVALID_PRICE)
+                    && unpriced.sell(0, 10.0, FuelGrade.RON95).getReceiptNumber() == 1L);
+            unpriced.close();
+        } finally {
+            delete(directory);
+        }
+    }
+
+    // seeded sales; a refused sale fills the dispenser up and goes again, as a cashier would.
+    // returns an order-sensitive checksum of every sale
+    private static long workload(String name, StationVariant variant, FuelPriceProvider prices, int sales) throws IOException {
+        Path directory = Files.createTempDirectory("station-conformance");
+        try {
+            String[] names = new String[DISPENSERS];
+            for (int i = 0; i < DISPENSERS; i++) {
+                names[i] = "Dispenser " + (i + 1);
+            }
+            StationCore core = variant.create(names, prices, directory, message -> { });
+            SplittableRandom random = new SplittableRandom(SEED);
+            long[] litresMl = new long[sales + 1];
+            long[] totalSen = new long[sales + 1];
+            int[] dispensers = new int[sales + 1];
+            long checksum = 0;
+            int wrong = 0;
+            long started = System.nanoTime();
+            for (int i = 0; i < sales; i++) {
+                int dispenser = random.nextInt(DISPENSERS);
+                FuelGrade grade = FuelGrade.fromCode(random.nextInt(FuelGrade.count()));
+                long amountSen = 500 + random.nextInt(9_501);
+                PurchaseResult result = core.sellSen(dispenser, amountSen, grade);
+                if (!result.isOk()) {
+                    core.fillUpMl(dispenser);
+                    result = core.sellSen(dispenser, amountSen, grade);
+                }
+                long ml = Money.litresMl(amountSen, PRICE_SEN[grade.code()]);
+                if (!result.isOk() || result.getReceiptNumber() != i + 1L || result.getLitresMl() != ml
+                        || result.getTotalSen() != Money.totalSen(ml, PRICE_SEN[grade.code()])) {
+                    wrong++;
+                    continue;
+                }
+                litresMl[i + 1] = result.getLitresMl();
+                totalSen[i + 1] = result.getTotalSen();
+                dispensers[i + 1] = dispenser;
+                checksum = checksum * 31L + result.getReceiptNumber() * 1_000_003L + dispenser * 7L
+                        + result.getLitresMl() * 13L + result.getTotalSen();
+            }
+            long micros = (System.nanoTime() - started) / 1_000L;
+            TextReceiptSink textSink = core.getReceiptSink() instanceof TextReceiptSink
+                    ? (TextReceiptSink) core.getReceiptSink() : null;
+            core.close();
+            Checks.check(name + ": " + sales + " sales in " + micros / 1_000L + " ms, all priced by the reference", wrong == 0);
+
+            int bad = textSink != null ? readText(textSink, sales, litresMl, totalSen)
+                    : readJournal(directory.resolve("journal"), sales, litresMl, totalSen, dispensers);
+            Checks.check(name + ": receipts 1.." + sales + " read back", bad == 0);
+            return checksum;
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static int readJournal(Path journal, int sales, long[] litresMl, long[] totalSen, int[] dispensers) throws IOException {
+        boolean[] seen = new boolean[sales + 1];
+        int[] bad = new int[1];
+        new ReceiptExporter(journal).forEach(receipt -> {
+            long n = receipt.getNumber();
+            if (n < 1 || n > sales || seen[(int) n] || !same(receipt, litresMl[(int) n], totalSen[(int) n], dispensers[(int) n])) {
+                bad[0]++;
+            } else {
+                seen[(int) n] = true;
+            }
+        });
+        for (int n = 1; n <= sales; n++) {
+            if (!seen[n]) {
+                bad[0]++;
+            }
+        }
+        return bad[0];
+    }
+
+    private static boolean same(Receipt receipt, long ml, long sen, int dispenser) {
+        return receipt.getLitresMl() == ml && receipt.getTotalSen() == sen && receipt.getDispenser() == dispenser;
+    }
+
+    // the text layout keeps two decimals of litres, so litres are compared as printed
+    private static int readText(TextReceiptSink sink, int sales, long[] litresMl, long[] totalSen) throws IOException {
+        int bad = 0;
+        for (int n = 1; n <= sales; n++) {
+            Path file = sink.file(n);
+            if (!Files.exists(file)) {
+                bad++;
+                continue;
+            }
+            Map<String, String> fields = new HashMap<>();
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    int colon = line.indexOf(": ");
+                    if (colon > 0) {
+                        fields.put(line.substring(0, colon), line.substring(colon + 2));
+                    }
+                }
+            }
+            if (!String.valueOf(n).equals(fields.get("Receipt Number"))
+                    || !Money.formatLitres(litresMl[n]).equals(fields.get("Litres"))
+                    || !("RM" + Money.formatSen(totalSen[n])).equals(fields.get("Total Price"))) {
+                bad++;
+            }
+        }
+        return bad + (int) sink.getErrors();
+    }
+
+    private static boolean status(PurchaseResult result, PurchaseResult.Status expected) {
+        return result.getStatus() == expected && !result.isOk();
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package benchmarks;
+
+import engine.FuelGrade;
+import engine.PurchaseResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pricing.CachedPriceProvider;
+import pricing.StaticPriceSource;
+import station.StationCore;
+import station.StationVariant;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// one sale through StationCore for each station configuration: the engine and the price read are shared,
+// so the difference is the receipt sink (journal queue vs one text file per sale).
+// WITH_API reads a CachedPriceProvider over fixed prices, the network is not part of a sale any more
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StationCoreBenchmark {
+    private static final int DISPENSERS = 4;
+
+    @Param({"STATION", "WITH_API", "WITHOUT_API"})
+    public StationVariant variant;
+
+    private Path directory;
+    private StationCore core;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("bench-station");
+        StaticPriceSource fixed = new StaticPriceSource(2.05, 3.47, 2.15);
+        String[] names = new String[DISPENSERS];
+        for (int i = 0; i < DISPENSERS; i++) {
+            names[i] = "Dispenser " + (i + 1);
+        }
+        core = variant.create(names, variant == StationVariant.WITH_API
+                ? new CachedPriceProvider(fixed, 600_000L, fixed.fetch()) : fixed, directory, message -> { });
+    }
+
+    // RM20 of RON95 round-robin over the dispensers, filling up whenever one is refused
+    @Benchmark
+    public PurchaseResult sell() {
+        int dispenser = next++ & (DISPENSERS - 1);
+        PurchaseResult result = core.sellSen(dispenser, 2_000L, FuelGrade.RON95);
+        if (!result.isOk()) {
+            core.fillUpMl(dispenser);
+        }
+        return result;
+    }
+
+    // text receipts pile up quickly, so every iteration starts from an empty folder
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        core.close();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package config;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+// how a headless station is laid out and where it gets its prices, read from a properties file:
+//   dispensers=3
+//   dispenser.names=Pump 1,Pump 2,Pump 3       optional, one per dispenser
+//   prices=static                              static, api (data.gov.my) or the URL of an endpoint with the same shape
+//   prices.static=2.05,3.47,2.15               RON95, RON97, diesel for prices=static
+//   prices.cache=<receipt.dir>/prices.cache    last fetched prices, read at startup before any fetch
+//   prices.ttl.seconds=600
+//   receipt.dir=azmi,haikal,ubaid-receipt
+//   server.port=8080                           0 picks a free port
+//   server.threads=<4 per core>
+// -D<key>=... overrides the file, so one file can serve several instances
+public final class StationConfig {
+    public static final String API = "api";
+    public static final String STATIC = "static";
+
+    private final int dispensers;
+    private final String[] dispenserNames;
+    private final String prices;
+    private final double[] staticPrices;
+    private final Path priceCache;
+    private final long priceTtlMillis;
+    private final Path receiptDir;
+    private final int port;
+    private final int threads;
+
+    private StationConfig(Properties properties) {
+        dispensers = Integer.parseInt(value(properties, "dispensers", "3"));
+        if (dispensers <= 0) {
+            throw new IllegalArgumentException("dispensers must be positive: " + dispensers);
+        }
+        String names = value(properties, "dispenser.names", null);
+        dispenserNames = names == null ? null : names.split("\\s*,\\s*");
+        if (dispenserNames != null && dispenserNames.length != dispensers) {
+            throw new IllegalArgumentException("dispenser.names has " + dispenserNames.length + " names for "
+                    + dispensers + " dispensers");
+        }
+        prices = value(properties, "prices", STATIC);
+        String[] fixed = value(properties, "prices.static", "2.05,3.47,2.15").split("\\s*,\\s*");
+        if (fixed.length != 3) {
+            throw new IllegalArgumentException("prices.static needs RON95, RON97 and diesel prices");
+        }
+        staticPrices = new double[3];
+        for (int i = 0; i < 3; i++) {
+            staticPrices[i] = Double.parseDouble(fixed[i]);
+            if (!(staticPrices[i] > 0)) {
+                throw new IllegalArgumentException("prices.static must be positive: " + fixed[i]);
+            }
+        }
+        receiptDir = Paths.get(value(properties, "receipt.dir", "azmi,haikal,ubaid-receipt"));
+        String cache = value(properties, "prices.cache", null);
+        priceCache = cache == null ? receiptDir.resolve("prices.cache") : Paths.get(cache);
+        priceTtlMillis = Long.parseLong(value(properties, "prices.ttl.seconds", "600")) * 1000L;
+        port = Integer.parseInt(value(properties, "server.port", "8080"));
+        threads = Integer.parseInt(value(properties, "server.threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors() * 4)));
+    }
+
+    private static String value(Properties properties, String key, String defaultValue) {
+        String value = System.getProperty(key, properties.getProperty(key, defaultValue));
+        return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+    }
+
+    // file may be null: defaults and -D overrides only
+    public static StationConfig load(Path file) {
+        Properties properties = new Properties();
+        if (file != null) {
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error reading station config " + file, e);
+            }
+        }
+        return new StationConfig(properties);
+    }
+
+    public static StationConfig from(Properties properties) {
+        return new StationConfig(properties);
+    }
+
+    public int getDispensers() {
+        return dispensers;
+    }
+
+    // null when the file names none
+    public String[] getDispenserNames() {
+        return dispenserNames == null ? null : dispenserNames.clone();
+    }
+
+    // STATIC, API or a URL
+    public String getPrices() {
+        return prices;
+    }
+
+    public double[] getStaticPrices() {
+        return staticPrices.clone();
+    }
+
+    public Path getPriceCache() {
+        return priceCache;
+    }
+
+    public long getPriceTtlMillis() {
+        return priceTtlMillis;
+    }
+
+    public Path getReceiptDir() {
+        return receiptDir;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+}
@@ -0,0 +1,240 @@
+package dispatch;
+
+import engine.DispenserEngine;
+import engine.FuelGrade;
+import engine.PurchaseResult;
+import metrics.LatencyHistogram;
+import money.Money;
+import pricing.PriceSnapshot;
+import pricing.StaticPriceSource;
+import simulator.Workload;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// usage: java dispatch.DispatchSimulation [dispensers] [hours] [customersPerHour] [seed]
+// replays the same seeded day of customers (simulator.Workload: rush hours 07-09 and 17-19, the usual grade mix and
+// amounts) on 100 litre tanks with a 20 litre minimum, diesel at the first two dispensers only, three ways:
+//   random      - each customer pulls up at a dispenser that sells their grade, at random
+//   round-robin - the attendant waves each customer to the next dispenser with their grade, in turn
+//   shortest    - PumpDispatcher: shortest expected wait, refills planned in, including one straight after a
+//                 customer who leaves the tank under 40 litres
+// each dispenser serves its line in order. a customer who reaches a tank that cannot cover them waits while it is
+// refilled (5 minutes), as with fillUpDispenser. service is handling (45 s plus an exponential 45 s on average) plus
+// the litres at 40 l/min, drawn once per customer so all three runs serve the same day. prints the wait from arrival
+// to nozzle in hand over the day and over the rush hours; exits 1 if a PumpDispatcher customer ever found a tank short
+public class DispatchSimulation {
+    private static final double TANK_LITRES = 100.0;
+    private static final double MIN_LITRES = 20.0;
+    private static final int DIESEL_DISPENSERS = 2;
+    private static final long REFILL_NANOS = 5 * 60_000_000_000L;
+    private static final long FLOW_ML_PER_SECOND = 40_000L / 60L;
+    // PumpDispatcher refills straight after a customer who leaves less than this (-Ddispatch.refill.below)
+    private static final double REFILL_BELOW_LITRES = Double.parseDouble(System.getProperty("dispatch.refill.below", "40"));
+    private static final StaticPriceSource PRICES = new StaticPriceSource(2.05, 3.47, 2.15);
+    private static final int IDLE = -1;
+    private static final int REFILLING = -2;
+
+    enum Policy { RANDOM, ROUND_ROBIN, SHORTEST }
+
+    public static void main(String[] args) {
+        int dispensers = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        int hours = args.length > 1 ? Integer.parseInt(args[1]) : 24;
+        double perHour = args.length > 2 ? Double.parseDouble(args[2]) : 40.0;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42L;
+
+        Workload workload = Workload.generate(seed, dispensers, hours * 3_600_000L, perHour / 3600.0);
+        Random random = new Random(seed + 1);
+        long[] handlingNanos = new long[workload.size()];
+        for (int i = 0; i < handlingNanos.length; i++) {
+            handlingNanos[i] = 45_000_000_000L + (long) (-Math.log(1.0 - random.nextDouble()) * 45e9);
+        }
+        System.out.printf("%d dispensers (diesel at %d), %d h, %d customers%n", dispensers, DIESEL_DISPENSERS, hours,
+                workload.size());
+        System.out.println("              wait: mean     p50     p95     p99     max | rush: mean     p95 | waited on a refill");
+        Result shortest = null;
+        for (Policy policy : Policy.values()) {
+            Result result = run(policy, workload, handlingNanos, dispensers, seed);
+            System.out.printf("%-12s %s%n", policy.name().toLowerCase().replace('_', '-'), result);
+            if (policy == Policy.SHORTEST) {
+                shortest = result;
+            }
+        }
+        if (shortest.shortTanks > 0) {
+            System.out.println("FAILED: " + shortest.shortTanks + " dispatched customers found their tank short");
+            System.exit(1);
+        }
+    }
+
+    private static Result run(Policy policy, Workload workload, long[] handlingNanos, int dispensers, long seed) {
+        AtomicLong clock = new AtomicLong();
+        DispenserEngine engine = new DispenserEngine(dispensers, TANK_LITRES, MIN_LITRES);
+        PumpDispatcher.Builder builder = PumpDispatcher.builder(engine, PRICES)
+                .flowLitresPerMinute(FLOW_ML_PER_SECOND * 60.0 / Money.ML_PER_LITRE)
+                .refillMillis(REFILL_NANOS / 1_000_000L)
+                .refillBelowLitres(REFILL_BELOW_LITRES)
+                .clock(clock::get);
+        // dispensers that sell each grade, by FuelGrade code
+        List<List<Integer>> selling = new ArrayList<>();
+        for (int code = 0; code < FuelGrade.count(); code++) {
+            selling.add(new ArrayList<>());
+        }
+        for (int d = 0; d < dispensers; d++) {
+            boolean diesel = d < DIESEL_DISPENSERS;
+            if (!diesel) {
+                builder.grades(d, FuelGrade.RON95, FuelGrade.RON97);
+            }
+            for (FuelGrade grade : FuelGrade.values()) {
+                if (diesel || grade != FuelGrade.DIESEL) {
+                    selling.get(grade.code()).add(d);
+                }
+            }
+        }
+        PumpDispatcher dispatcher = builder.build();
+        SplittableRandom random = new SplittableRandom(seed + 2);
+        int[] turn = new int[FuelGrade.count()];
+        PriceSnapshot prices = PRICES.current();
+
+        List<ArrayDeque<Integer>> lines = new ArrayList<>();
+        for (int d = 0; d < dispensers; d++) {
+            lines.add(new ArrayDeque<>());
+        }
+        int[] serving = new int[dispensers];
+        Ticket[] tickets = new Ticket[dispensers];
+        long[] finishAt = new long[dispensers];
+        Arrays.fill(serving, IDLE);
+
+        Result result = new Result();
+        long dayNanos = workload.getDurationNanos();
+        int next = 0;
+        while (true) {
+            int finishing = -1;
+            for (int d = 0; d < dispensers; d++) {
+                if (serving[d] != IDLE && (finishing < 0 || finishAt[d] < finishAt[finishing])) {
+                    finishing = d;
+                }
+            }
+            long arrival = next < workload.size() ? workload.arrivalNanos(next) : Long.MAX_VALUE;
+            if (finishing < 0 && arrival == Long.MAX_VALUE) {
+                break;
+            }
+            if (finishing >= 0 && finishAt[finishing] <= arrival) {
+                clock.set(finishAt[finishing]);
+                Ticket done = tickets[finishing];
+                tickets[finishing] = null;
+                if (done != null) {
+                    dispatcher.complete(done, clock.get());
+                    if (done.isFillUpAfter()) {
+                        // the refill planned after that customer; nobody is waiting on it yet
+                        serving[finishing] = REFILLING;
+                        finishAt[finishing] = clock.get() + REFILL_NANOS;
+                        result.refillsBetween++;
+                        continue;
+                    }
+                }
+                serving[finishing] = IDLE;
+                start(finishing, lines, serving, tickets, finishAt, engine, dispatcher, workload, handlingNanos, prices,
+                        clock.get(), dayNanos, result);
+                continue;
+            }
+            clock.set(arrival);
+            FuelGrade grade = workload.grade(next);
+            List<Integer> eligible = selling.get(grade.code());
+            int dispenser;
+            if (policy == Policy.RANDOM) {
+                dispenser = eligible.get(random.nextInt(eligible.size()));
+            } else if (policy == Policy.ROUND_ROBIN) {
+                dispenser = eligible.get(turn[grade.code()]++ % eligible.size());
+            } else {
+                Ticket ticket = dispatcher.assign(grade, Money.sen(workload.amount(next)));
+                dispenser = ticket.getDispenser();
+            }
+            lines.get(dispenser).add(next);
+            result.longestLine = Math.max(result.longestLine, lines.get(dispenser).size());
+            next++;
+            if (serving[dispenser] == IDLE) {
+                start(dispenser, lines, serving, tickets, finishAt, engine, dispatcher, workload, handlingNanos, prices,
+                        arrival, dayNanos, result);
+            }
+        }
+        return result;
+    }
+
+    // the pump takes the next customer in its line, refilling first if the tank cannot cover them
+    private static void start(int d, List<ArrayDeque<Integer>> lines, int[] serving, Ticket[] tickets, long[] finishAt,
+                              DispenserEngine engine, PumpDispatcher dispatcher, Workload workload, long[] handlingNanos,
+                              PriceSnapshot prices, long now, long dayNanos, Result result) {
+        Integer customer = lines.get(d).poll();
+        if (customer == null) {
+            return;
+        }
+        long amountSen = Money.sen(workload.amount(customer));
+        long priceSen = prices.priceSen(workload.grade(customer));
+        long ml = Money.litresMl(amountSen, priceSen);
+        long refillNanos = 0L;
+        Ticket ticket = dispatcher.next(d);
+        if (ticket != null) {
+            tickets[d] = ticket;
+            dispatcher.begin(ticket);
+            if (ticket.isFillUpFirst()) {
+                refillNanos = REFILL_NANOS;
+            }
+        }
+        long level = engine.levelMl(d);
+        if (level < engine.getMinLevelMl() || ml > level) {
+            if (ticket != null) {
+                result.shortTanks++;
+            }
+            engine.fillUpMl(d);
+            refillNanos += REFILL_NANOS;
+        }
+        PurchaseResult sale = engine.purchaseSen(d, amountSen, priceSen);
+        if (!sale.isOk()) {
+            result.shortTanks++;
+        }
+        long pumping = now + refillNanos;
+        long wait = pumping - workload.arrivalNanos(customer);
+        result.record(wait, workload.arrivalNanos(customer), dayNanos, refillNanos > 0);
+        serving[d] = customer;
+        finishAt[d] = pumping + handlingNanos[customer] + ml * 1_000_000_000L / FLOW_ML_PER_SECOND;
+    }
+
+    private static final class Result {
+        final LatencyHistogram waits = new LatencyHistogram();
+        final LatencyHistogram rushWaits = new LatencyHistogram();
+        long refillWaits;
+        long refillsBetween;
+        long shortTanks;
+        int longestLine;
+
+        void record(long waitNanos, long arrivalNanos, long dayNanos, boolean refilled) {
+            waits.record(waitNanos);
+            long hourOfDay = (long) (24.0 * arrivalNanos / dayNanos);
+            if ((hourOfDay >= 7 && hourOfDay < 9) || (hourOfDay >= 17 && hourOfDay < 19)) {
+                rushWaits.record(waitNanos);
+            }
+            if (refilled) {
+                refillWaits++;
+            }
+        }
+
+        @Override
+        public String toString() {
+            LatencyHistogram.Snapshot all = waits.snapshot();
+            LatencyHistogram.Snapshot rush = rushWaits.snapshot();
+            return String.format("%6.0f s %5d s %5d s %5d s %5d s | %6.0f s %5d s | %d (%d refills between customers), longest line %d",
+                    all.mean() / 1e9, seconds(all.percentile(0.50)), seconds(all.percentile(0.95)),
+                    seconds(all.percentile(0.99)), seconds(all.max()), rush.mean() / 1e9, seconds(rush.percentile(0.95)),
+                    refillWaits, refillsBetween, longestLine);
+        }
+
+        private static long seconds(long nanos) {
+            return Math.round(nanos / 1e9);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package dispatch;
+
+import engine.DispenserEngine;
+import engine.FuelGrade;
+import engine.PurchaseResult;
+import pricing.StaticPriceSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// arrivals from many threads at once into one PumpDispatcher while a pump thread per dispenser serves its line
+// against a real engine with small tanks. every customer must be served exactly once, in the order queued, and no
+// sale may be refused: the plan must never promise a tank more than it will hold.
+// usage: java dispatch.DispatchStressRun [dispensers] [arrivalThreads] [customersPerThread]
+public class DispatchStressRun {
+
+    public static void main(String[] args) throws InterruptedException {
+        int dispensers = args.length > 0 ? Integer.parseInt(args[0]) : 12;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int perThread = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+
+        DispenserEngine engine = new DispenserEngine(dispensers, 100.0, 20.0);
+        PumpDispatcher.Builder builder = PumpDispatcher.builder(engine, new StaticPriceSource(2.05, 3.47, 2.15))
+                .refillBelowLitres(40.0);
+        for (int d = 2; d < dispensers; d++) {
+            builder.grades(d, FuelGrade.RON95, FuelGrade.RON97);
+        }
+        PumpDispatcher dispatcher = builder.build();
+        long startMl = engine.getCapacityMl() * dispensers;
+
+        AtomicLong soldMl = new AtomicLong();
+        AtomicLong refilledMl = new AtomicLong();
+        AtomicLong served = new AtomicLong();
+        AtomicLong refused = new AtomicLong();
+        AtomicLong outOfOrder = new AtomicLong();
+        AtomicLong assignNanos = new AtomicLong();
+        AtomicBoolean arrivalsDone = new AtomicBoolean();
+
+        List<Thread> pumps = new ArrayList<>();
+        for (int d = 0; d < dispensers; d++) {
+            int dispenser = d;
+            Thread pump = new Thread(() -> {
+                long lastPosition = 0;
+                while (true) {
+                    Ticket ticket = dispatcher.next(dispenser);
+                    if (ticket == null) {
+                        if (arrivalsDone.get() && dispatcher.queueLength(dispenser) == 0) {
+                            return;
+                        }
+                        Thread.yield();
+                        continue;
+                    }
+                    refilledMl.addAndGet(dispatcher.begin(ticket));
+                    PurchaseResult sale = engine.purchaseSen(dispenser, ticket.getAmountSen(), ticket.getPriceSen());
+                    if (sale.isOk()) {
+                        soldMl.addAndGet(sale.getLitresMl());
+                    } else {
+                        refused.incrementAndGet();
+                    }
+                    // the line is taken in the order it was queued, nobody skipped or served twice
+                    if (ticket.position != ++lastPosition) {
+                        outOfOrder.incrementAndGet();
+                    }
+                    refilledMl.addAndGet(dispatcher.complete(ticket, System.nanoTime()));
+                    served.incrementAndGet();
+                }
+            }, "pump-" + d);
+            pumps.add(pump);
+            pump.start();
+        }
+
+        List<Thread> arrivals = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            Thread arrival = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long spent = 0;
+                for (int i = 0; i < perThread; i++) {
+                    FuelGrade grade = FuelGrade.fromCode(random.nextInt(FuelGrade.count()));
+                    long began = System.nanoTime();
+                    dispatcher.assign(grade, 1_000 + random.nextInt(14_001));
+                    spent += System.nanoTime() - began;
+                }
+                assignNanos.addAndGet(spent);
+            }, "arrivals-" + t);
+            arrivals.add(arrival);
+            arrival.start();
+        }
+        for (Thread arrival : arrivals) {
+            arrival.join();
+        }
+        long arrivalElapsed = System.nanoTime() - start;
+        arrivalsDone.set(true);
+        for (Thread pump : pumps) {
+            pump.join();
+        }
+
+        long endMl = 0;
+        for (int d = 0; d < dispensers; d++) {
+            endMl += engine.levelMl(d);
+        }
+        long customers = (long) threads * perThread;
+        long lostMl = startMl + refilledMl.get() - soldMl.get() - endMl;
+        System.out.printf("%d customers from %d threads in %.1f ms (%.0f assignments/s, %.0f ns each)%n", customers,
+                threads, arrivalElapsed / 1e6, customers / (arrivalElapsed / 1e9), (double) assignNanos.get() / customers);
+        System.out.println("Served: " + served.get() + " of " + dispatcher.getAssigned() + " assigned, "
+                + dispatcher.getTurnedAway() + " turned away");
+        System.out.println("Refills planned: " + dispatcher.getRefillsPlanned());
+        System.out.println("Sales refused at the pump: " + refused.get());
+        System.out.println("Lost millilitres: " + lostMl);
+        System.out.println("Served out of line order: " + outOfOrder.get());
+        if (served.get() != customers || dispatcher.getAssigned() != customers || refused.get() != 0 || lostMl != 0
+                || outOfOrder.get() != 0) {
+            System.out.println("FAILED");
+            System.exit(1);
+        }
+        System.out.println("PASSED");
+    }
+}
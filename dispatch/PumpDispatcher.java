@@ -0,0 +1,291 @@
+package dispatch;
+
+import engine.DispenserEngine;
+import engine.FuelGrade;
+import money.Money;
+import pricing.FuelPriceProvider;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// sends each arriving customer to the dispenser where they start pumping soonest (join shortest expected wait)
+// instead of leaving it to whichever pump they drive up to.
+// every dispenser keeps a FIFO line of Tickets and a plan: when the pump should be free, and the litres promised to
+// everyone in line. a customer's expected service is handling time plus their litres at the pump's flow rate, so
+// one RM150 fill-up weighs more than three RM20 ones. a dispenser that does not sell the grade is skipped; one
+// whose tank would be short or under the minimum by this customer's turn only gets them with a refill planned in
+// front, which costs refill time. a customer who leaves the tank under the refill mark gets a refill planned right
+// after them, so it happens while the line moves elsewhere rather than in front of the next customer there.
+// equal waits go to the tank with more left, away from the next refill.
+// assignment is lock-free: the plan lives in the dispenser's last ticket, so queueing a customer is one CAS on the
+// tail of the line, and a lost race just plans again. the pump side (next, begin, complete) runs one thread per
+// dispenser, which is what a pump is
+public final class PumpDispatcher {
+    private static final int GENERATION_SHIFT = 40;
+    private static final long SERVED_ML_MASK = (1L << GENERATION_SHIFT) - 1;
+    private static final long GENERATION_MASK = (1L << 23) - 1;
+
+    private final DispenserEngine engine;
+    private final FuelPriceProvider prices;
+    private final int[] gradeMasks;
+    private final long flowMlPerSecond;
+    private final long handlingNanos;
+    private final long refillNanos;
+    private final long refillBelowMl;
+    private final LongSupplier clock;
+    private final AtomicReferenceArray<Ticket> heads; // the ticket last taken by the pump
+    private final AtomicReferenceArray<Ticket> tails; // the ticket last queued, holding the plan
+    // per dispenser, written by its pump: the refill generation it is on << GENERATION_SHIFT | ml sold since
+    private final AtomicLongArray served;
+    // how late (positive) or early the pump finished its last customer against the plan
+    private final AtomicLongArray driftNanos;
+    private final LongAdder assigned = new LongAdder();
+    private final LongAdder refillsPlanned = new LongAdder();
+    private final LongAdder turnedAway = new LongAdder();
+
+    private PumpDispatcher(Builder builder) {
+        engine = builder.engine;
+        prices = builder.prices;
+        gradeMasks = builder.gradeMasks.clone();
+        flowMlPerSecond = builder.flowMlPerSecond;
+        handlingNanos = builder.handlingNanos;
+        refillNanos = builder.refillNanos;
+        refillBelowMl = builder.refillBelowMl;
+        clock = builder.clock;
+        int n = engine.size();
+        heads = new AtomicReferenceArray<>(n);
+        tails = new AtomicReferenceArray<>(n);
+        served = new AtomicLongArray(n);
+        driftNanos = new AtomicLongArray(n);
+        long now = clock.getAsLong();
+        for (int d = 0; d < n; d++) {
+            Ticket start = new Ticket(d, null, 0L, 0L, 0L, false, false, now, 0L, now, 0L, 0L, now, 0L);
+            heads.set(d, start);
+            tails.set(d, start);
+        }
+    }
+
+    public static Builder builder(DispenserEngine engine, FuelPriceProvider prices) {
+        return new Builder(engine, prices);
+    }
+
+    // queues the customer at the dispenser with the shortest expected wait; null if none can serve them
+    // (no dispenser sells the grade, no price for it, or more than a full tank)
+    public Ticket assign(FuelGrade grade, long amountSen) {
+        long priceSen = prices.current().priceSen(grade);
+        if (priceSen <= 0 || amountSen <= 0) {
+            turnedAway.increment();
+            return null;
+        }
+        long ml = Money.litresMl(amountSen, priceSen);
+        long serviceNanos = handlingNanos + ml * 1_000_000_000L / flowMlPerSecond;
+        int gradeBit = 1 << grade.code();
+        while (true) {
+            long now = clock.getAsLong();
+            int best = -1;
+            Ticket bestTail = null;
+            boolean bestRefill = false;
+            long bestWait = Long.MAX_VALUE;
+            long bestLeftMl = -1L;
+            long bestDrift = 0L;
+            for (int d = 0; d < gradeMasks.length; d++) {
+                if ((gradeMasks[d] & gradeBit) == 0) {
+                    continue;
+                }
+                Ticket tail = tails.get(d);
+                long leftMl = leftMl(d, tail);
+                boolean refill = !canSell(leftMl, ml);
+                if (refill && !canSell(engine.getCapacityMl(), ml)) {
+                    continue;
+                }
+                long drift = driftNanos.get(d);
+                long wait = Math.max(tail.busyUntilNanos + drift, now) - now + (refill ? refillNanos : 0L);
+                long afterMl = (refill ? engine.getCapacityMl() : leftMl) - ml;
+                if (wait < bestWait || (wait == bestWait && afterMl > bestLeftMl)) {
+                    best = d;
+                    bestTail = tail;
+                    bestRefill = refill;
+                    bestWait = wait;
+                    bestLeftMl = afterMl;
+                    bestDrift = drift;
+                }
+            }
+            if (best < 0) {
+                turnedAway.increment();
+                return null;
+            }
+            // the plan is kept in the pump's own timeline; drift shifts it to the clock
+            long plannedStart = Math.max(bestTail.busyUntilNanos, now - bestDrift);
+            long serviceEnd = plannedStart + (bestRefill ? refillNanos : 0L) + serviceNanos;
+            long generation = bestRefill ? (bestTail.generation + 1) & GENERATION_MASK : bestTail.generation;
+            long plannedMl = (bestRefill ? 0L : bestTail.plannedMl) + ml;
+            boolean refillAfter = bestLeftMl < refillBelowMl;
+            Ticket ticket = new Ticket(best, grade, amountSen, priceSen, ml, bestRefill, refillAfter, now, bestWait,
+                    serviceEnd, refillAfter ? (generation + 1) & GENERATION_MASK : generation,
+                    refillAfter ? 0L : plannedMl, refillAfter ? serviceEnd + refillNanos : serviceEnd,
+                    bestTail.position + 1);
+            if (tails.compareAndSet(best, bestTail, ticket)) {
+                bestTail.next = ticket;
+                assigned.increment();
+                if (bestRefill) {
+                    refillsPlanned.increment();
+                }
+                if (refillAfter) {
+                    refillsPlanned.increment();
+                }
+                return ticket;
+            }
+        }
+    }
+
+    // the next customer in the dispenser's line, or null if there is none (or one is still being linked in)
+    public Ticket next(int dispenser) {
+        while (true) {
+            Ticket head = heads.get(dispenser);
+            Ticket next = head.next;
+            if (next == null) {
+                return null;
+            }
+            if (heads.compareAndSet(dispenser, head, next)) {
+                return next;
+            }
+        }
+    }
+
+    // at the pump, before the sale: carries out the refill planned in front of this customer, if any.
+    // returns the ml added
+    public long begin(Ticket ticket) {
+        if (!ticket.isFillUpFirst()) {
+            return 0L;
+        }
+        // a refill after the customer starts the generation after theirs
+        return fillUp(ticket.getDispenser(), ticket.isFillUpAfter() ? ticket.generation - 1 : ticket.generation);
+    }
+
+    // at the pump, after the sale (or its refusal): takes the customer's litres out of the plan, lines the expected
+    // waits up with when the pump really finished, and carries out a refill planned after them.
+    // returns the ml that refill added, 0 if there was none
+    public long complete(Ticket ticket, long finishedNanos) {
+        int dispenser = ticket.getDispenser();
+        served.addAndGet(dispenser, ticket.getLitresMl());
+        driftNanos.set(dispenser, finishedNanos - ticket.serviceEndNanos);
+        return ticket.isFillUpAfter() ? fillUp(dispenser, ticket.generation) : 0L;
+    }
+
+    // what a customer sent to this dispenser now would wait, refills aside
+    public long expectedWaitNanos(int dispenser) {
+        long now = clock.getAsLong();
+        return Math.max(tails.get(dispenser).busyUntilNanos + driftNanos.get(dispenser), now) - now;
+    }
+
+    // customers queued at the dispenser and not yet taken by the pump
+    public long queueLength(int dispenser) {
+        return tails.get(dispenser).position - heads.get(dispenser).position;
+    }
+
+    public int size() {
+        return gradeMasks.length;
+    }
+
+    public long getAssigned() {
+        return assigned.sum();
+    }
+
+    public long getRefillsPlanned() {
+        return refillsPlanned.sum();
+    }
+
+    public long getTurnedAway() {
+        return turnedAway.sum();
+    }
+
+    private long fillUp(int dispenser, long generation) {
+        long added = engine.fillUpMl(dispenser);
+        // after the fill, so a planner that sees the new generation also sees the full tank
+        served.set(dispenser, (generation & GENERATION_MASK) << GENERATION_SHIFT);
+        return added;
+    }
+
+    // ml in the dispenser's tank once everyone in line has been served
+    private long leftMl(int dispenser, Ticket tail) {
+        // served before the level: the pump sells and then counts, so a sale in between is counted twice, never missed
+        long servedNow = served.get(dispenser);
+        if (servedNow >>> GENERATION_SHIFT != tail.generation) {
+            return engine.getCapacityMl() - tail.plannedMl; // a refill is still ahead in the line
+        }
+        return engine.levelMl(dispenser) - (tail.plannedMl - (servedNow & SERVED_ML_MASK));
+    }
+
+    // what DispenserEngine checks before a sale
+    private boolean canSell(long levelMl, long ml) {
+        return levelMl >= engine.getMinLevelMl() && ml <= levelMl;
+    }
+
+    public static final class Builder {
+        private final DispenserEngine engine;
+        private final FuelPriceProvider prices;
+        private final int[] gradeMasks;
+        private long flowMlPerSecond = 40_000L / 60L; // 40 litres a minute
+        private long handlingNanos = 90_000_000_000L; // pulling in, paying, pulling out
+        private long refillNanos = 5 * 60_000_000_000L;
+        private long refillBelowMl = -1L;
+        private LongSupplier clock = System::nanoTime;
+
+        private Builder(DispenserEngine engine, FuelPriceProvider prices) {
+            this.engine = engine;
+            this.prices = prices;
+            gradeMasks = new int[engine.size()];
+            Arrays.fill(gradeMasks, (1 << FuelGrade.count()) - 1);
+        }
+
+        // the grades this dispenser sells; all of them unless set
+        public Builder grades(int dispenser, FuelGrade... grades) {
+            if (!engine.isValidDispenser(dispenser)) {
+                throw new IllegalArgumentException("Invalid dispenser: " + dispenser);
+            }
+            int mask = 0;
+            for (FuelGrade grade : grades) {
+                mask |= 1 << grade.code();
+            }
+            gradeMasks[dispenser] = mask;
+            return this;
+        }
+
+        public Builder flowLitresPerMinute(double litresPerMinute) {
+            if (!(litresPerMinute > 0)) {
+                throw new IllegalArgumentException("Flow must be positive: " + litresPerMinute);
+            }
+            flowMlPerSecond = Math.max(1L, Math.round(litresPerMinute * Money.ML_PER_LITRE / 60.0));
+            return this;
+        }
+
+        public Builder handlingMillis(long millis) {
+            handlingNanos = millis * 1_000_000L;
+            return this;
+        }
+
+        // how long a planned refill keeps the dispenser from selling
+        public Builder refillMillis(long millis) {
+            refillNanos = millis * 1_000_000L;
+            return this;
+        }
+
+        // plans a refill straight after any customer who leaves less than this in the tank; off unless set
+        public Builder refillBelowLitres(double litres) {
+            refillBelowMl = Money.ml(litres);
+            return this;
+        }
+
+        public Builder clock(LongSupplier nanos) {
+            clock = nanos;
+            return this;
+        }
+
+        public PumpDispatcher build() {
+            return new PumpDispatcher(this);
+        }
+    }
+}
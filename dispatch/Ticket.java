@@ -0,0 +1,86 @@
+package dispatch;
+
+import engine.FuelGrade;
+
+// one customer sent to a dispenser by PumpDispatcher, and a node in that dispenser's queue. what was planned for
+// them is fixed at assignment; next links the customer behind them
+public final class Ticket {
+    private final int dispenser;
+    private final FuelGrade grade;
+    private final long amountSen;
+    private final long priceSen;
+    private final long litresMl;
+    private final boolean fillUpFirst;
+    private final boolean fillUpAfter;
+    private final long assignedNanos;
+    private final long expectedWaitNanos;
+
+    // when this customer's sale should be over, in the pump's own timeline
+    final long serviceEndNanos;
+    // the dispenser's plan once this customer (and any refill after them) is queued: refill generation, ml taken by
+    // everyone queued in that generation, when the pump should be free again, and how many customers have been
+    // queued there so far
+    final long generation;
+    final long plannedMl;
+    final long busyUntilNanos;
+    final long position;
+    volatile Ticket next;
+
+    Ticket(int dispenser, FuelGrade grade, long amountSen, long priceSen, long litresMl, boolean fillUpFirst,
+           boolean fillUpAfter, long assignedNanos, long expectedWaitNanos, long serviceEndNanos, long generation,
+           long plannedMl, long busyUntilNanos, long position) {
+        this.dispenser = dispenser;
+        this.grade = grade;
+        this.amountSen = amountSen;
+        this.priceSen = priceSen;
+        this.litresMl = litresMl;
+        this.fillUpFirst = fillUpFirst;
+        this.fillUpAfter = fillUpAfter;
+        this.assignedNanos = assignedNanos;
+        this.expectedWaitNanos = expectedWaitNanos;
+        this.serviceEndNanos = serviceEndNanos;
+        this.generation = generation;
+        this.plannedMl = plannedMl;
+        this.busyUntilNanos = busyUntilNanos;
+        this.position = position;
+    }
+
+    public int getDispenser() {
+        return dispenser;
+    }
+
+    public FuelGrade getGrade() {
+        return grade;
+    }
+
+    public long getAmountSen() {
+        return amountSen;
+    }
+
+    // the price the litres were planned at; sell at this price so the tank plan holds
+    public long getPriceSen() {
+        return priceSen;
+    }
+
+    public long getLitresMl() {
+        return litresMl;
+    }
+
+    // the tank would be short by this customer's turn, so the plan refills it first
+    public boolean isFillUpFirst() {
+        return fillUpFirst;
+    }
+
+    // this customer leaves the tank low enough that the plan refills it straight after them
+    public boolean isFillUpAfter() {
+        return fillUpAfter;
+    }
+
+    public long getAssignedNanos() {
+        return assignedNanos;
+    }
+
+    public long getExpectedWaitNanos() {
+        return expectedWaitNanos;
+    }
+}
@@ -0,0 +1,200 @@
+package engine;
+
+import money.Money;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// tank levels for every dispenser, safe to call from many pump threads at once.
+// levels are kept as whole millilitres in an AtomicLongArray and updated with CAS,
+// so two sales on the same dispenser can never both take the last litres. the sale itself is worked out in
+// whole sen and millilitres (money.Money); the double entry points round their arguments to sen first
+public class DispenserEngine {
+    public static final long ML_PER_LITRE = Money.ML_PER_LITRE;
+
+    private final AtomicLongArray levelsMl;
+    private final long capacityMl;
+    private final long minLevelMl;
+    private final ReceiptSequence receiptSequence;
+
+    public DispenserEngine(int numDispensers, double capacityLitres, double minLevelLitres) {
+        this(numDispensers, capacityLitres, minLevelLitres, 1L);
+    }
+
+    public DispenserEngine(int numDispensers, double capacityLitres, double minLevelLitres, long firstReceiptNumber) {
+        this(numDispensers, capacityLitres, minLevelLitres, ReceiptSequence.inMemory(firstReceiptNumber));
+    }
+
+    public DispenserEngine(int numDispensers, double capacityLitres, double minLevelLitres, ReceiptSequence receiptSequence) {
+        if (numDispensers <= 0) {
+            throw new IllegalArgumentException("Number of dispensers must be positive: " + numDispensers);
+        }
+        this.capacityMl = toMl(capacityLitres);
+        this.minLevelMl = toMl(minLevelLitres);
+        this.levelsMl = new AtomicLongArray(numDispensers);
+        for (int i = 0; i < numDispensers; i++) {
+            levelsMl.set(i, capacityMl);
+        }
+        this.receiptSequence = receiptSequence;
+    }
+
+    // tryPurchase results that are not receipt numbers
+    public static final long INVALID_DISPENSER = -1L;
+    public static final long LOW_LEVEL = -2L;
+    public static final long NOT_ENOUGH_PETROL = -3L;
+    public static final long INVALID_PRICE = -4L;
+    public static final long INVALID_AMOUNT = -5L;
+
+    // takes amount (RM) worth of fuel at fuelPrice (RM per litre) out of the dispenser's tank
+    public PurchaseResult purchase(int dispenser, double amount, double fuelPrice) {
+        if (!isValidDispenser(dispenser)) {
+            return PurchaseResult.rejected(PurchaseResult.Status.INVALID_DISPENSER, dispenser);
+        }
+        if (!(fuelPrice > 0) || !Money.isConvertible(fuelPrice, Money.SEN_PER_RINGGIT)) {
+            return PurchaseResult.rejected(PurchaseResult.Status.INVALID_PRICE, dispenser);
+        }
+        if (!(amount > 0)) {
+            return PurchaseResult.rejected(PurchaseResult.Status.INVALID_AMOUNT, dispenser);
+        }
+        if (!Money.isConvertible(amount, Money.SEN_PER_RINGGIT)) {
+            // more than any tank holds
+            return PurchaseResult.rejected(PurchaseResult.Status.NOT_ENOUGH_PETROL, dispenser);
+        }
+        return purchaseSen(dispenser, Money.sen(amount), Money.sen(fuelPrice));
+    }
+
+    // the same sale in fixed point: amountSen worth at priceSenPerLitre
+    public PurchaseResult purchaseSen(int dispenser, long amountSen, long priceSenPerLitre) {
+        long outcome = tryPurchaseSen(dispenser, amountSen, priceSenPerLitre);
+        if (outcome == INVALID_DISPENSER) {
+            return PurchaseResult.rejected(PurchaseResult.Status.INVALID_DISPENSER, dispenser);
+        } else if (outcome == LOW_LEVEL) {
+            return PurchaseResult.rejected(PurchaseResult.Status.LOW_LEVEL, dispenser);
+        } else if (outcome == NOT_ENOUGH_PETROL) {
+            return PurchaseResult.rejected(PurchaseResult.Status.NOT_ENOUGH_PETROL, dispenser);
+        } else if (outcome == INVALID_PRICE) {
+            return PurchaseResult.rejected(PurchaseResult.Status.INVALID_PRICE, dispenser);
+        } else if (outcome == INVALID_AMOUNT) {
+            return PurchaseResult.rejected(PurchaseResult.Status.INVALID_AMOUNT, dispenser);
+        }
+        long ml = Money.litresMl(amountSen, priceSenPerLitre);
+        return new PurchaseResult(PurchaseResult.Status.OK, outcome, dispenser, ml, Money.totalSen(ml, priceSenPerLitre));
+    }
+
+    // allocation-free sale: returns the receipt number, or one of the negative codes above.
+    // the litres sold are litresMl(amount, fuelPrice)
+    public long tryPurchase(int dispenser, double amount, double fuelPrice) {
+        if (!isValidDispenser(dispenser)) {
+            return INVALID_DISPENSER;
+        }
+        if (!(fuelPrice > 0) || !Money.isConvertible(fuelPrice, Money.SEN_PER_RINGGIT)) {
+            return INVALID_PRICE;
+        }
+        if (!(amount > 0)) {
+            return INVALID_AMOUNT; // zero, negative or NaN
+        }
+        if (!Money.isConvertible(amount, Money.SEN_PER_RINGGIT)) {
+            return NOT_ENOUGH_PETROL; // more than any tank holds
+        }
+        return tryPurchaseSen(dispenser, Money.sen(amount), Money.sen(fuelPrice));
+    }
+
+    // the litres sold are Money.litresMl(amountSen, priceSenPerLitre), the total Money.totalSen of those
+    public long tryPurchaseSen(int dispenser, long amountSen, long priceSenPerLitre) {
+        if (!isValidDispenser(dispenser)) {
+            return INVALID_DISPENSER;
+        }
+        if (priceSenPerLitre <= 0) {
+            return INVALID_PRICE;
+        }
+        if (amountSen <= 0) {
+            return INVALID_AMOUNT; // zero or negative
+        }
+
+        long wantedMl = Money.litresMl(amountSen, priceSenPerLitre);
+        if (wantedMl == 0) {
+            return INVALID_AMOUNT; // buys less than half a millilitre: no sale, no receipt number
+        }
+        long current;
+        do {
+            current = levelsMl.get(dispenser);
+            if (current < minLevelMl) {
+                return LOW_LEVEL;
+            }
+            if (wantedMl > current) {
+                return NOT_ENOUGH_PETROL;
+            }
+        } while (!levelsMl.compareAndSet(dispenser, current, current - wantedMl));
+
+        // only successful sales take a number, so an in-memory sequence has no gaps
+        return receiptSequence.next();
+    }
+
+    public static long litresMl(double amount, double fuelPrice) {
+        return Money.litresMl(Money.sen(amount), Money.sen(fuelPrice));
+    }
+
+    // tops the tank back up to capacity, returns the litres added
+    public double fillUp(int dispenser) {
+        return Money.litres(fillUpMl(dispenser));
+    }
+
+    public long fillUpMl(int dispenser) {
+        checkDispenser(dispenser);
+        return capacityMl - levelsMl.getAndSet(dispenser, capacityMl);
+    }
+
+    // puts back a level recovered after a restart, before any pump is running
+    public void restoreLevelMl(int dispenser, long ml) {
+        checkDispenser(dispenser);
+        levelsMl.set(dispenser, Math.max(0L, Math.min(ml, capacityMl)));
+    }
+
+    public double level(int dispenser) {
+        checkDispenser(dispenser);
+        return Money.litres(levelsMl.get(dispenser));
+    }
+
+    public long levelMl(int dispenser) {
+        checkDispenser(dispenser);
+        return levelsMl.get(dispenser);
+    }
+
+    public boolean isBelowMinimum(int dispenser) {
+        return levelMl(dispenser) < minLevelMl;
+    }
+
+    public int size() {
+        return levelsMl.length();
+    }
+
+    public long getCapacityMl() {
+        return capacityMl;
+    }
+
+    // a sale is refused while the tank holds less than this
+    public long getMinLevelMl() {
+        return minLevelMl;
+    }
+
+    public long peekNextReceiptNumber() {
+        return receiptSequence.peek();
+    }
+
+    public ReceiptSequence getReceiptSequence() {
+        return receiptSequence;
+    }
+
+    public boolean isValidDispenser(int dispenser) {
+        return dispenser >= 0 && dispenser < levelsMl.length();
+    }
+
+    private void checkDispenser(int dispenser) {
+        if (!isValidDispenser(dispenser)) {
+            throw new IllegalArgumentException("Invalid dispenser: " + dispenser);
+        }
+    }
+
+    static long toMl(double litres) {
+        return Money.ml(litres);
+    }
+}
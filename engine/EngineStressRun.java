@@ -0,0 +1,82 @@
+package engine;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// hammers one engine from a thread pool and checks that no litres go missing and no receipt number repeats.
+// usage: java engine.EngineStressRun [dispensers] [threads] [salesPerThread]
+public class EngineStressRun {
+
+    public static void main(String[] args) throws InterruptedException {
+        int dispensers = args.length > 0 ? Integer.parseInt(args[0]) : 48;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int salesPerThread = args.length > 2 ? Integer.parseInt(args[2]) : 50_000;
+
+        DispenserEngine engine = new DispenserEngine(dispensers, 100.0, 0.1);
+        long startMl = engine.getCapacityMl() * dispensers;
+
+        AtomicLong soldMl = new AtomicLong();
+        AtomicLong refilledMl = new AtomicLong();
+        AtomicLong sales = new AtomicLong();
+        long maxReceipts = (long) threads * salesPerThread;
+        AtomicLongArray seen = new AtomicLongArray((int) ((maxReceipts >> 6) + 1));
+        AtomicLong duplicates = new AtomicLong();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < salesPerThread; i++) {
+                    int dispenser = random.nextInt(dispensers);
+                    if (random.nextInt(20) == 0) {
+                        refilledMl.addAndGet(engine.fillUpMl(dispenser));
+                        continue;
+                    }
+                    PurchaseResult result = engine.purchase(dispenser, 5 + random.nextInt(60), 2.05);
+                    if (!result.isOk()) {
+                        continue;
+                    }
+                    soldMl.addAndGet(result.getLitresMl());
+                    sales.incrementAndGet();
+                    long id = result.getReceiptNumber() - 1;
+                    int word = (int) (id >> 6);
+                    long bit = 1L << (id & 63);
+                    long old;
+                    do {
+                        old = seen.get(word);
+                        if ((old & bit) != 0) {
+                            duplicates.incrementAndGet();
+                            break;
+                        }
+                    } while (!seen.compareAndSet(word, old, old | bit));
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.MINUTES);
+        long elapsed = System.nanoTime() - start;
+
+        long endMl = 0;
+        for (int i = 0; i < dispensers; i++) {
+            endMl += engine.levelMl(i);
+        }
+        long lostMl = startMl + refilledMl.get() - soldMl.get() - endMl;
+        boolean gapless = engine.peekNextReceiptNumber() - 1 == sales.get();
+
+        System.out.printf("%d sales in %.1f ms (%.0f ops/s)\n", sales.get(), elapsed / 1e6,
+                (double) threads * salesPerThread / (elapsed / 1e9));
+        System.out.println("Lost millilitres: " + lostMl);
+        System.out.println("Duplicate receipt numbers: " + duplicates.get());
+        System.out.println("Receipt sequence gapless: " + gapless);
+        if (lostMl != 0 || duplicates.get() != 0 || !gapless) {
+            System.out.println("FAILED");
+            System.exit(1);
+        }
+        System.out.println("PASSED");
+    }
+}
@@ -0,0 +1,77 @@
+package engine;
+
+// fuel types sold at the station. parse the customer's text once at the edge, then pass the grade
+// (or its code) around instead of lowercasing and comparing strings on every sale
+public enum FuelGrade {
+    RON95(0, "ron95"),
+    RON97(1, "ron97"),
+    DIESEL(2, "diesel");
+
+    private static final FuelGrade[] BY_CODE = values();
+
+    private final int code;
+    private final String key;
+
+    FuelGrade(int code, String key) {
+        this.code = code;
+        this.key = key;
+    }
+
+    public int code() {
+        return code;
+    }
+
+    // lowercase name used in the API, receipts and journal
+    public String key() {
+        return key;
+    }
+
+    public static int count() {
+        return BY_CODE.length;
+    }
+
+    public static FuelGrade fromCode(int code) {
+        if (code < 0 || code >= BY_CODE.length) {
+            throw new IllegalArgumentException("Invalid fuel type code: " + code);
+        }
+        return BY_CODE[code];
+    }
+
+    // case-insensitive, no allocation; returns null for an unknown fuel type
+    public static FuelGrade parse(CharSequence text) {
+        if (text == null) {
+            return null;
+        }
+        for (FuelGrade grade : BY_CODE) {
+            if (matches(grade.key, text)) {
+                return grade;
+            }
+        }
+        return null;
+    }
+
+    // like parse but throws, for callers that already validated the input
+    public static FuelGrade of(CharSequence text) {
+        FuelGrade grade = parse(text);
+        if (grade == null) {
+            throw new IllegalArgumentException("Invalid fuel type: " + text);
+        }
+        return grade;
+    }
+
+    private static boolean matches(String key, CharSequence text) {
+        if (key.length() != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                c = (char) (c + ('a' - 'A'));
+            }
+            if (c != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,80 @@
+package engine;
+
+import money.Money;
+
+// outcome of one sale, returned instead of printing so callers decide what to show
+public final class PurchaseResult {
+    public enum Status {
+        OK,
+        INVALID_DISPENSER,
+        LOW_LEVEL,
+        NOT_ENOUGH_PETROL,
+        INVALID_PRICE,
+        INVALID_AMOUNT
+    }
+
+    private final Status status;
+    private final long receiptNumber;
+    private final int dispenser;
+    private final long litresMl;
+    private final long totalSen;
+    private final boolean replayed;
+
+    PurchaseResult(Status status, long receiptNumber, int dispenser, long litresMl, long totalSen) {
+        this(status, receiptNumber, dispenser, litresMl, totalSen, false);
+    }
+
+    private PurchaseResult(Status status, long receiptNumber, int dispenser, long litresMl, long totalSen, boolean replayed) {
+        this.status = status;
+        this.receiptNumber = receiptNumber;
+        this.dispenser = dispenser;
+        this.litresMl = litresMl;
+        this.totalSen = totalSen;
+        this.replayed = replayed;
+    }
+
+    // a sale that already went through, answered again for a retried request; nothing was taken from the tank
+    public static PurchaseResult replayed(long receiptNumber, int dispenser, long litresMl, long totalSen) {
+        return new PurchaseResult(Status.OK, receiptNumber, dispenser, litresMl, totalSen, true);
+    }
+
+    static PurchaseResult rejected(Status status, int dispenser) {
+        return new PurchaseResult(status, -1, dispenser, 0L, 0L);
+    }
+
+    public boolean isOk() {
+        return status == Status.OK;
+    }
+
+    public boolean isReplayed() {
+        return replayed;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public long getReceiptNumber() {
+        return receiptNumber;
+    }
+
+    public int getDispenser() {
+        return dispenser;
+    }
+
+    public double getLitres() {
+        return Money.litres(litresMl);
+    }
+
+    public double getTotalPrice() {
+        return Money.ringgit(totalSen);
+    }
+
+    public long getLitresMl() {
+        return litresMl;
+    }
+
+    public long getTotalSen() {
+        return totalSen;
+    }
+}
@@ -0,0 +1,32 @@
+package engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// where DispenserEngine takes the number of each successful sale. in memory by default; receipt.ReceiptNumberLease
+// hands out numbers leased in blocks from a counter file, so several processes can share one receipt folder
+public interface ReceiptSequence extends AutoCloseable {
+    long next();
+
+    // the number next() would return, for reporting
+    long peek();
+
+    @Override
+    default void close() {
+    }
+
+    // numbers from first up, with no gaps
+    static ReceiptSequence inMemory(long first) {
+        AtomicLong sequence = new AtomicLong(first);
+        return new ReceiptSequence() {
+            @Override
+            public long next() {
+                return sequence.getAndIncrement();
+            }
+
+            @Override
+            public long peek() {
+                return sequence.get();
+            }
+        };
+    }
+}
@@ -0,0 +1,342 @@
+package eventstore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+// append-only log of station events (purchase, fill-up, price change) in fixed-width binary records,
+// plus periodic snapshots of the state they add up to. on open the latest snapshot is loaded and
+// only the events after it are replayed, so a restart costs one file read and a short tail.
+// record n lives at HEADER_BYTES + n * RECORD_BYTES and ends with a CRC32C, the same layout as the ledger
+public class EventStore implements AutoCloseable {
+    static final int MAGIC = 0x50455654; // "PEVT"
+    static final int SNAPSHOT_MAGIC = 0x50534e50; // "PSNP"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+    static final int RECORD_BYTES = 56;
+    static final int PAYLOAD_BYTES = 48;
+    static final int CHUNK_RECORDS = 1 << 18; // 14 MB per mapped chunk
+    static final long CHUNK_BYTES = (long) CHUNK_RECORDS * RECORD_BYTES;
+    // slots after the recovered end that are cleared, so records from before a crash cannot reappear
+    static final int TAIL_CLEAR = 256;
+    static final int SNAPSHOTS_KEPT = 2;
+
+    public static final int PURCHASE = 1;
+    public static final int FILL = 2;
+    public static final int PRICES = 3;
+
+    private final Path directory;
+    private final FileChannel channel;
+    private final AtomicLong nextSequence;
+    private final StationState recovered;
+    private final ScheduledExecutorService snapshotter;
+    private volatile MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+    private final ThreadLocal<CRC32C> crc = ThreadLocal.withInitial(CRC32C::new);
+    // state as of the last snapshot, only touched under the snapshot lock
+    private final StationState shadow;
+
+    private EventStore(Path directory, FileChannel channel, StationState state, long snapshotIntervalMillis) throws IOException {
+        this.directory = directory;
+        this.channel = channel;
+        long start = state.getSequence();
+        long end = replay(start, Long.MAX_VALUE, state);
+        clearTail(end);
+        this.recovered = state.copy();
+        this.shadow = state;
+        this.nextSequence = new AtomicLong(end);
+        if (snapshotIntervalMillis > 0) {
+            snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "event-snapshots");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotter.scheduleWithFixedDelay(this::snapshotQuietly, snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            snapshotter = null;
+        }
+    }
+
+    // opens (or creates) the store in dir. initial is the state before any event was ever recorded
+    // and decides the number of dispensers; a snapshot for a different layout is an error
+    public static EventStore open(Path dir, StationState initial, long snapshotIntervalMillis) throws IOException {
+        Files.createDirectories(dir);
+        FileChannel channel = FileChannel.open(dir.resolve("events.dat"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER_BYTES) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, RECORD_BYTES);
+                channel.write(header, 0);
+            } else {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                channel.read(header, 0);
+                if (header.getInt(0) != MAGIC || header.getInt(8) != RECORD_BYTES) {
+                    throw new IOException("Not an event store: " + dir);
+                }
+            }
+            StationState state = loadLatestSnapshot(dir, initial.size());
+            return new EventStore(dir, channel, state != null ? state : initial.copy(), snapshotIntervalMillis);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // state at open: latest snapshot plus the events after it
+    public StationState recovered() {
+        return recovered.copy();
+    }
+
+    public long size() {
+        return nextSequence.get();
+    }
+
+    public long purchase(int dispenser, int fuelCode, long litresMl, long receiptNumber, double totalPrice) throws IOException {
+        return append(PURCHASE, dispenser, fuelCode, litresMl, receiptNumber, Double.doubleToRawLongBits(totalPrice));
+    }
+
+    public long fill(int dispenser, long litresMl) throws IOException {
+        return append(FILL, dispenser, 0, litresMl, 0L, 0L);
+    }
+
+    public long prices(double ron95, double ron97, double diesel) throws IOException {
+        return append(PRICES, -1, 0, Double.doubleToRawLongBits(ron95), Double.doubleToRawLongBits(ron97),
+                Double.doubleToRawLongBits(diesel));
+    }
+
+    private long append(int type, int dispenser, int fuelCode, long a, long b, long c) throws IOException {
+        long sequence = nextSequence.getAndIncrement();
+        MappedByteBuffer chunk = chunk(sequence);
+        int offset = (int) (sequence % CHUNK_RECORDS) * RECORD_BYTES;
+        chunk.putLong(offset, sequence);
+        chunk.putLong(offset + 8, System.currentTimeMillis());
+        chunk.putShort(offset + 16, (short) type);
+        chunk.putShort(offset + 18, (short) fuelCode);
+        chunk.putInt(offset + 20, dispenser);
+        chunk.putLong(offset + 24, a);
+        chunk.putLong(offset + 32, b);
+        chunk.putLong(offset + 40, c);
+        chunk.putInt(offset + 48, checksum(chunk, offset));
+        return sequence;
+    }
+
+    // calls the visitor for every intact event from 'from' up to 'to' (exclusive) and returns where it stopped.
+    // replay stops at the first missing or torn record
+    public long replay(long from, long to, EventVisitor visitor) throws IOException {
+        long slots = (channel.size() - HEADER_BYTES) / RECORD_BYTES;
+        long limit = Math.min(to, slots);
+        long sequence = from;
+        while (sequence < limit && isValid(sequence)) {
+            MappedByteBuffer chunk = chunk(sequence);
+            int offset = (int) (sequence % CHUNK_RECORDS) * RECORD_BYTES;
+            long timestamp = chunk.getLong(offset + 8);
+            int type = chunk.getShort(offset + 16);
+            int dispenser = chunk.getInt(offset + 20);
+            long a = chunk.getLong(offset + 24);
+            long b = chunk.getLong(offset + 32);
+            long c = chunk.getLong(offset + 40);
+            switch (type) {
+                case PURCHASE:
+                    visitor.purchase(sequence, timestamp, dispenser, chunk.getShort(offset + 18), a, b, Double.longBitsToDouble(c));
+                    break;
+                case FILL:
+                    visitor.fill(sequence, timestamp, dispenser, a);
+                    break;
+                case PRICES:
+                    visitor.prices(sequence, timestamp, Double.longBitsToDouble(a), Double.longBitsToDouble(b), Double.longBitsToDouble(c));
+                    break;
+                default:
+                    throw new IOException("Unknown event type " + type + " at " + sequence);
+            }
+            sequence++;
+        }
+        return Math.max(sequence, from);
+    }
+
+    // brings the snapshot state up to the latest event and writes it out; returns the state written
+    public synchronized StationState snapshot() throws IOException {
+        long before = shadow.getSequence();
+        replay(before, nextSequence.get(), shadow);
+        if (shadow.getSequence() != before || latestSnapshots(directory).isEmpty()) {
+            writeSnapshot(directory, shadow);
+        }
+        return shadow.copy();
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException e) {
+            System.err.println("Error writing station snapshot: " + e.getMessage());
+        }
+    }
+
+    private void clearTail(long end) throws IOException {
+        long slots = (channel.size() - HEADER_BYTES) / RECORD_BYTES;
+        for (long sequence = end; sequence < Math.min(slots, end + TAIL_CLEAR); sequence++) {
+            MappedByteBuffer chunk = chunk(sequence);
+            chunk.putLong((int) (sequence % CHUNK_RECORDS) * RECORD_BYTES, -1L);
+        }
+    }
+
+    private boolean isValid(long sequence) throws IOException {
+        MappedByteBuffer chunk = chunk(sequence);
+        int offset = (int) (sequence % CHUNK_RECORDS) * RECORD_BYTES;
+        return chunk.getLong(offset) == sequence && chunk.getInt(offset + 48) == checksum(chunk, offset);
+    }
+
+    private int checksum(ByteBuffer chunk, int offset) {
+        CRC32C c = crc.get();
+        c.reset();
+        c.update(chunk.slice(offset, PAYLOAD_BYTES));
+        return (int) c.getValue();
+    }
+
+    private MappedByteBuffer chunk(long sequence) throws IOException {
+        int index = (int) (sequence / CHUNK_RECORDS);
+        MappedByteBuffer[] current = chunks;
+        if (index < current.length && current[index] != null) {
+            return current[index];
+        }
+        return mapChunk(index);
+    }
+
+    private synchronized MappedByteBuffer mapChunk(int index) throws IOException {
+        MappedByteBuffer[] current = chunks;
+        if (index < current.length && current[index] != null) {
+            return current[index];
+        }
+        MappedByteBuffer[] grown = current;
+        if (index >= current.length) {
+            grown = new MappedByteBuffer[index + 1];
+            System.arraycopy(current, 0, grown, 0, current.length);
+        }
+        grown[index] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + index * CHUNK_BYTES, CHUNK_BYTES);
+        chunks = grown;
+        return grown[index];
+    }
+
+    public void force() {
+        for (MappedByteBuffer chunk : chunks) {
+            if (chunk != null) {
+                chunk.force();
+            }
+        }
+    }
+
+    // takes a last snapshot so the next start has no tail to replay
+    @Override
+    public void close() throws IOException {
+        if (snapshotter != null) {
+            snapshotter.shutdownNow();
+        }
+        force();
+        snapshot();
+        channel.close();
+    }
+
+    // snapshot-<sequence>.bin: magic, version, sequence, last receipt, levels, prices, CRC32C of everything before it
+    static void writeSnapshot(Path dir, StationState state) throws IOException {
+        long[] levels = state.levels();
+        double[] prices = state.prices();
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 4 + 8 + 8 + 4 + levels.length * 8 + 4 + prices.length * 8 + 4);
+        buffer.putInt(SNAPSHOT_MAGIC).putInt(VERSION).putLong(state.getSequence()).putLong(state.getLastReceiptNumber());
+        buffer.putInt(levels.length);
+        for (long level : levels) {
+            buffer.putLong(level);
+        }
+        buffer.putInt(prices.length);
+        for (double price : prices) {
+            buffer.putDouble(price);
+        }
+        CRC32C c = new CRC32C();
+        c.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) c.getValue());
+        buffer.flip();
+
+        Path target = dir.resolve(String.format("snapshot-%016d.bin", state.getSequence()));
+        Path temp = dir.resolve(target.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        List<Path> snapshots = latestSnapshots(dir);
+        for (int i = SNAPSHOTS_KEPT; i < snapshots.size(); i++) {
+            Files.deleteIfExists(snapshots.get(i));
+        }
+    }
+
+    // newest first; a damaged snapshot is skipped in favour of the one before it
+    static StationState loadLatestSnapshot(Path dir, int numDispensers) throws IOException {
+        for (Path file : latestSnapshots(dir)) {
+            StationState state = readSnapshot(file);
+            if (state == null) {
+                continue;
+            }
+            if (state.size() != numDispensers) {
+                throw new IOException("Snapshot " + file.getFileName() + " has " + state.size()
+                        + " dispensers, station has " + numDispensers);
+            }
+            return state;
+        }
+        return null;
+    }
+
+    static StationState readSnapshot(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.remaining() < 28 || buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != VERSION) {
+            return null;
+        }
+        try {
+            long sequence = buffer.getLong();
+            long lastReceipt = buffer.getLong();
+            long[] levels = new long[buffer.getInt()];
+            for (int i = 0; i < levels.length; i++) {
+                levels[i] = buffer.getLong();
+            }
+            double[] prices = new double[buffer.getInt()];
+            for (int i = 0; i < prices.length; i++) {
+                prices[i] = buffer.getDouble();
+            }
+            CRC32C c = new CRC32C();
+            c.update(buffer.array(), 0, buffer.position());
+            if (buffer.getInt() != (int) c.getValue()) {
+                return null;
+            }
+            return new StationState(levels, prices, lastReceipt, sequence);
+        } catch (RuntimeException e) {
+            return null; // truncated or garbage sizes
+        }
+    }
+
+    static List<Path> latestSnapshots(Path dir) throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "snapshot-*.bin")) {
+            for (Path file : files) {
+                snapshots.add(file);
+            }
+        }
+        // the sequence is zero-padded, so name order is sequence order
+        snapshots.sort(Collections.reverseOrder());
+        return snapshots;
+    }
+}
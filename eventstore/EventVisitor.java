@@ -0,0 +1,10 @@
+package eventstore;
+
+// one callback per event type, called in sequence order by EventStore.replay
+public interface EventVisitor {
+    void purchase(long sequence, long timestampMillis, int dispenser, int fuelCode, long litresMl, long receiptNumber, double totalPrice);
+
+    void fill(long sequence, long timestampMillis, int dispenser, long litresMl);
+
+    void prices(long sequence, long timestampMillis, double ron95, double ron97, double diesel);
+}
@@ -0,0 +1,175 @@
+package eventstore;
+
+import engine.DispenserEngine;
+import engine.FuelGrade;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Random;
+
+// usage: java eventstore.ReplayTool rebuild <dir> [dispensers]
+//                                   generate <dir> <events> [dispensers]
+//                                   bench <dir> [yyyy-mm-dd] [rounds]
+// dir is the station's events folder, e.g. azmi,haikal,ubaid-receipt/events
+public class ReplayTool {
+    private static final double CAPACITY_LITRES = 100.0;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: ReplayTool rebuild <dir> [dispensers] | generate <dir> <events> [dispensers] | bench <dir> [yyyy-mm-dd] [rounds]");
+            return;
+        }
+        Path dir = Paths.get(args[1]);
+        switch (args[0]) {
+            case "rebuild":
+                rebuild(dir, args.length > 2 ? Integer.parseInt(args[2]) : dispensersIn(dir));
+                break;
+            case "generate":
+                generate(dir, Long.parseLong(args[2]), args.length > 3 ? Integer.parseInt(args[3]) : 3);
+                break;
+            case "bench":
+                bench(dir, args.length > 2 && !args[2].equals("all") ? LocalDate.parse(args[2]) : null,
+                        args.length > 3 ? Integer.parseInt(args[3]) : 5);
+                break;
+            default:
+                System.out.println("Unknown command: " + args[0]);
+        }
+    }
+
+    // restart path (snapshot + tail) next to a replay of every event from the start; both should agree
+    private static void rebuild(Path dir, int dispensers) throws IOException {
+        StationState initial = StationState.full(dispensers, Math.round(CAPACITY_LITRES * DispenserEngine.ML_PER_LITRE));
+        long start = System.nanoTime();
+        try (EventStore store = EventStore.open(dir, initial, 0)) {
+            StationState recovered = store.recovered();
+            System.out.printf("Snapshot + tail: %s (%.2f ms)\n", recovered, (System.nanoTime() - start) / 1e6);
+
+            StationState full = initial.copy();
+            start = System.nanoTime();
+            store.replay(0, Long.MAX_VALUE, full);
+            System.out.printf("Full replay:     %s (%.2f ms)\n", full, (System.nanoTime() - start) / 1e6);
+            System.out.println(full.equals(recovered) ? "States match." : "States DIFFER.");
+        }
+    }
+
+    // a station's worth of random sales and the fill-ups they need, for benchmarking
+    private static void generate(Path dir, long events, int dispensers) throws IOException {
+        StationState initial = StationState.full(dispensers, Math.round(CAPACITY_LITRES * DispenserEngine.ML_PER_LITRE));
+        DispenserEngine engine = new DispenserEngine(dispensers, CAPACITY_LITRES, 0.0);
+        Random random = new Random(42);
+        double[] prices = {2.05, 3.47, 2.15};
+        long start = System.nanoTime();
+        try (EventStore store = EventStore.open(dir, initial, 0)) {
+            long written = 1;
+            store.prices(prices[0], prices[1], prices[2]);
+            while (written < events) {
+                int dispenser = random.nextInt(dispensers);
+                FuelGrade grade = FuelGrade.fromCode(random.nextInt(FuelGrade.count()));
+                double amount = 10 + random.nextInt(19) * 5;
+                double price = prices[grade.code()];
+                long receipt = engine.tryPurchase(dispenser, amount, price);
+                if (receipt == DispenserEngine.NOT_ENOUGH_PETROL) {
+                    double litres = engine.fillUp(dispenser);
+                    store.fill(dispenser, Math.round(litres * DispenserEngine.ML_PER_LITRE));
+                } else {
+                    long ml = DispenserEngine.litresMl(amount, price);
+                    store.purchase(dispenser, grade.code(), ml, receipt, ml * price / DispenserEngine.ML_PER_LITRE);
+                }
+                written++;
+            }
+            System.out.printf("Wrote %d events in %.1f ms, store now holds %d\n", events,
+                    (System.nanoTime() - start) / 1e6, store.size());
+        }
+    }
+
+    // loads a day's purchases and fill-ups and runs them through a fresh DispenserEngine as fast as it goes
+    private static void bench(Path dir, LocalDate day, int rounds) throws IOException {
+        int dispensers = dispensersIn(dir);
+        StationState initial = StationState.full(dispensers, Math.round(CAPACITY_LITRES * DispenserEngine.ML_PER_LITRE));
+        DayEvents dayEvents = new DayEvents(day);
+        try (EventStore store = EventStore.open(dir, initial, 0)) {
+            store.replay(0, Long.MAX_VALUE, dayEvents);
+        }
+        int count = dayEvents.count;
+        System.out.printf("Replaying %d events%s on %d dispensers\n", count, day == null ? "" : " from " + day, dispensers);
+
+        for (int round = 1; round <= rounds; round++) {
+            DispenserEngine engine = new DispenserEngine(dispensers, CAPACITY_LITRES, 0.0);
+            long refused = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                int dispenser = dayEvents.dispensers[i];
+                if (dayEvents.amounts[i] < 0) {
+                    engine.fillUp(dispenser);
+                } else if (engine.tryPurchase(dispenser, dayEvents.amounts[i], dayEvents.prices[i]) < 0) {
+                    refused++;
+                }
+            }
+            long nanos = System.nanoTime() - start;
+            System.out.printf("Round %d: %.1f ms, %.0f events/s, %d refused\n", round, nanos / 1e6,
+                    count / (nanos / 1e9), refused);
+        }
+    }
+
+    private static int dispensersIn(Path dir) throws IOException {
+        for (Path file : EventStore.latestSnapshots(dir)) {
+            StationState state = EventStore.readSnapshot(file);
+            if (state != null) {
+                return state.size();
+            }
+        }
+        return 3;
+    }
+
+    // primitive columns of the events to replay: a fill-up is stored as a negative amount
+    private static final class DayEvents implements EventVisitor {
+        private final LocalDate day;
+        private int count;
+        private int[] dispensers = new int[1024];
+        private double[] amounts = new double[1024];
+        private double[] prices = new double[1024];
+
+        DayEvents(LocalDate day) {
+            this.day = day;
+        }
+
+        @Override
+        public void purchase(long sequence, long timestampMillis, int dispenser, int fuelCode, long litresMl, long receiptNumber, double totalPrice) {
+            if (onDay(timestampMillis) && litresMl > 0) {
+                add(dispenser, totalPrice, totalPrice * DispenserEngine.ML_PER_LITRE / litresMl);
+            }
+        }
+
+        @Override
+        public void fill(long sequence, long timestampMillis, int dispenser, long litresMl) {
+            if (onDay(timestampMillis)) {
+                add(dispenser, -1, 0);
+            }
+        }
+
+        @Override
+        public void prices(long sequence, long timestampMillis, double ron95, double ron97, double diesel) {
+        }
+
+        private boolean onDay(long timestampMillis) {
+            return day == null || Instant.ofEpochMilli(timestampMillis).atZone(ZoneId.systemDefault()).toLocalDate().equals(day);
+        }
+
+        private void add(int dispenser, double amount, double price) {
+            if (count == dispensers.length) {
+                dispensers = Arrays.copyOf(dispensers, count * 2);
+                amounts = Arrays.copyOf(amounts, count * 2);
+                prices = Arrays.copyOf(prices, count * 2);
+            }
+            dispensers[count] = dispenser;
+            amounts[count] = amount;
+            prices[count] = price;
+            count++;
+        }
+    }
+}
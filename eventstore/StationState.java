@@ -0,0 +1,120 @@
+package eventstore;
+
+import engine.FuelGrade;
+
+import java.util.Arrays;
+
+// what the station looks like after applying every event before getSequence():
+// tank levels in millilitres, the last prices seen and the last receipt number handed out
+public final class StationState implements EventVisitor {
+    private final long[] levelsMl;
+    private final double[] prices = new double[FuelGrade.count()];
+    private long lastReceiptNumber;
+    private long sequence;
+
+    public StationState(long[] levelsMl) {
+        this.levelsMl = levelsMl.clone();
+    }
+
+    // every tank full, nothing sold yet
+    public static StationState full(int numDispensers, long capacityMl) {
+        long[] levels = new long[numDispensers];
+        Arrays.fill(levels, capacityMl);
+        return new StationState(levels);
+    }
+
+    StationState(long[] levelsMl, double[] prices, long lastReceiptNumber, long sequence) {
+        this(levelsMl);
+        System.arraycopy(prices, 0, this.prices, 0, this.prices.length);
+        this.lastReceiptNumber = lastReceiptNumber;
+        this.sequence = sequence;
+    }
+
+    public StationState copy() {
+        return new StationState(levelsMl, prices, lastReceiptNumber, sequence);
+    }
+
+    @Override
+    public void purchase(long sequence, long timestampMillis, int dispenser, int fuelCode, long litresMl, long receiptNumber, double totalPrice) {
+        if (dispenser >= 0 && dispenser < levelsMl.length) {
+            levelsMl[dispenser] -= litresMl;
+        }
+        lastReceiptNumber = Math.max(lastReceiptNumber, receiptNumber);
+        this.sequence = sequence + 1;
+    }
+
+    @Override
+    public void fill(long sequence, long timestampMillis, int dispenser, long litresMl) {
+        if (dispenser >= 0 && dispenser < levelsMl.length) {
+            levelsMl[dispenser] += litresMl;
+        }
+        this.sequence = sequence + 1;
+    }
+
+    @Override
+    public void prices(long sequence, long timestampMillis, double ron95, double ron97, double diesel) {
+        prices[FuelGrade.RON95.code()] = ron95;
+        prices[FuelGrade.RON97.code()] = ron97;
+        prices[FuelGrade.DIESEL.code()] = diesel;
+        this.sequence = sequence + 1;
+    }
+
+    public int size() {
+        return levelsMl.length;
+    }
+
+    public long getLevelMl(int dispenser) {
+        return levelsMl[dispenser];
+    }
+
+    // 0 until a price event has been seen
+    public double getPrice(FuelGrade fuelGrade) {
+        return prices[fuelGrade.code()];
+    }
+
+    public long getLastReceiptNumber() {
+        return lastReceiptNumber;
+    }
+
+    // number of events applied, the next event to replay
+    public long getSequence() {
+        return sequence;
+    }
+
+    long[] levels() {
+        return levelsMl;
+    }
+
+    double[] prices() {
+        return prices;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof StationState)) {
+            return false;
+        }
+        StationState that = (StationState) other;
+        return sequence == that.sequence && lastReceiptNumber == that.lastReceiptNumber
+                && Arrays.equals(levelsMl, that.levelsMl) && Arrays.equals(prices, that.prices);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(sequence) * 31 + Arrays.hashCode(levelsMl);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append("events=").append(sequence).append(" lastReceipt=").append(lastReceiptNumber).append(" levels=[");
+        for (int i = 0; i < levelsMl.length; i++) {
+            if (i > 0) {
+                text.append(", ");
+            }
+            text.append(levelsMl[i] / 1000.0);
+        }
+        text.append("] prices=").append(Arrays.toString(prices));
+        return text.toString();
+    }
+}
@@ -0,0 +1,299 @@
+package fleet;
+
+import money.Money;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+// every station, dispenser and tank of the fleet in flat primitive arrays (struct-of-arrays).
+// a "nozzle" is one fuel grade on one dispenser and has its own tank; nozzles of a dispenser are
+// contiguous, dispensers of a station are contiguous, so a station is just a range of indices.
+public final class Fleet {
+    public static final long ML_PER_LITRE = Money.ML_PER_LITRE;
+    // returned by purchase instead of the millilitres sold
+    public static final long INVALID = -1L;
+    public static final long NOT_ENOUGH_PETROL = -2L;
+    public static final long NO_PRICE = -3L;
+
+    private final String[] stationNames;
+    private final String[] gradeNames;
+    private final int[] stationFirstDispenser; // stations + 1 entries
+    private final int[] dispenserFirstNozzle; // dispensers + 1 entries
+    private final int[] nozzleStation;
+    private final byte[] nozzleGrade;
+    private final long[] capacityMl;
+    private final AtomicLongArray levelMl;
+    private final AtomicLongArray soldMl;
+    private final AtomicLongArray revenueSen;
+    private final AtomicLongArray salesCount;
+    private final AtomicLongArray priceSen; // station * gradeCount + grade, sen per litre; setPrice while selling
+
+    private Fleet(Builder builder) {
+        int stations = builder.stationNames.size();
+        int dispensers = builder.dispenserStation.size();
+        int nozzles = builder.nozzleGrade.size();
+        stationNames = builder.stationNames.toArray(new String[0]);
+        gradeNames = builder.gradeNames.toArray(new String[0]);
+
+        stationFirstDispenser = new int[stations + 1];
+        dispenserFirstNozzle = new int[dispensers + 1];
+        nozzleStation = new int[nozzles];
+        nozzleGrade = new byte[nozzles];
+        capacityMl = new long[nozzles];
+        levelMl = new AtomicLongArray(nozzles);
+        soldMl = new AtomicLongArray(nozzles);
+        revenueSen = new AtomicLongArray(nozzles);
+        salesCount = new AtomicLongArray(nozzles);
+        priceSen = new AtomicLongArray(builder.priceSen);
+
+        // builder adds dispensers station by station, so counting gives the offsets
+        for (int d = 0; d < dispensers; d++) {
+            stationFirstDispenser[builder.dispenserStation.get(d) + 1]++;
+            dispenserFirstNozzle[d + 1] = dispenserFirstNozzle[d] + builder.dispenserNozzles.get(d);
+        }
+        for (int s = 0; s < stations; s++) {
+            stationFirstDispenser[s + 1] += stationFirstDispenser[s];
+        }
+        for (int n = 0; n < nozzles; n++) {
+            nozzleStation[n] = builder.nozzleStation.get(n);
+            nozzleGrade[n] = builder.nozzleGrade.get(n);
+            capacityMl[n] = builder.nozzleCapacity.get(n);
+            levelMl.set(n, capacityMl[n]);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // stations that all look the same: every dispenser sells every grade from its own tank
+    public static Fleet uniform(int stations, int dispensersPerStation, String[] grades, double tankLitres, double[] gradePrices) {
+        Builder builder = builder();
+        for (int s = 0; s < stations; s++) {
+            int station = builder.addStation("Station " + (s + 1));
+            for (int d = 0; d < dispensersPerStation; d++) {
+                builder.addDispenser(station, grades, tankLitres);
+            }
+            for (int g = 0; g < grades.length; g++) {
+                builder.setPrice(station, grades[g], gradePrices[g]);
+            }
+        }
+        return builder.build();
+    }
+
+    public int stationCount() {
+        return stationNames.length;
+    }
+
+    public String stationName(int station) {
+        return stationNames[station];
+    }
+
+    public int dispenserCount(int station) {
+        return stationFirstDispenser[station + 1] - stationFirstDispenser[station];
+    }
+
+    public int nozzleCount() {
+        return nozzleGrade.length;
+    }
+
+    public int gradeCode(String grade) {
+        for (int g = 0; g < gradeNames.length; g++) {
+            if (gradeNames[g].equalsIgnoreCase(grade)) {
+                return g;
+            }
+        }
+        return -1;
+    }
+
+    public String gradeName(int grade) {
+        return gradeNames[grade];
+    }
+
+    // index of the tank for this grade on this dispenser, -1 if the dispenser does not sell it
+    public int nozzle(int station, int dispenser, int grade) {
+        if (station < 0 || station >= stationNames.length || dispenser < 0 || dispenser >= dispenserCount(station)) {
+            return -1;
+        }
+        int global = stationFirstDispenser[station] + dispenser;
+        for (int n = dispenserFirstNozzle[global]; n < dispenserFirstNozzle[global + 1]; n++) {
+            if (nozzleGrade[n] == grade) {
+                return n;
+            }
+        }
+        return -1;
+    }
+
+    public double price(int station, int grade) {
+        return Money.ringgit(priceSen.get(station * gradeNames.length + grade));
+    }
+
+    public void setPrice(int station, int grade, double price) {
+        priceSen.set(station * gradeNames.length + grade, Money.sen(price));
+    }
+
+    // sells amount (RM) of grade at the dispenser; returns the millilitres sold or one of the negative codes.
+    // INVALID also for an amount that is not a number above zero or too small to buy any fuel
+    public long purchase(int station, int dispenser, int grade, double amount) {
+        int n = nozzle(station, dispenser, grade);
+        if (n < 0 || !(amount > 0) || !Money.isConvertible(amount, Money.SEN_PER_RINGGIT)) {
+            return INVALID;
+        }
+        long price = priceSen.get(station * gradeNames.length + grade);
+        if (price <= 0) {
+            return NO_PRICE;
+        }
+        long amountSen = Money.sen(amount);
+        if (amountSen <= 0) {
+            return INVALID; // less than half a sen
+        }
+        long wanted = Money.litresMl(amountSen, price);
+        if (wanted == 0) {
+            return INVALID; // buys less than half a millilitre, not a sale
+        }
+        long current;
+        do {
+            current = levelMl.get(n);
+            if (wanted > current) {
+                return NOT_ENOUGH_PETROL;
+            }
+        } while (!levelMl.compareAndSet(n, current, current - wanted));
+        soldMl.addAndGet(n, wanted);
+        revenueSen.addAndGet(n, Money.totalSen(wanted, price));
+        salesCount.incrementAndGet(n);
+        return wanted;
+    }
+
+    // tops the tank up, returns the millilitres added
+    public long refill(int nozzle) {
+        return capacityMl[nozzle] - levelMl.getAndSet(nozzle, capacityMl[nozzle]);
+    }
+
+    public long levelMl(int nozzle) {
+        return levelMl.get(nozzle);
+    }
+
+    public int nozzleStation(int nozzle) {
+        return nozzleStation[nozzle];
+    }
+
+    public int nozzleGrade(int nozzle) {
+        return nozzleGrade[nozzle];
+    }
+
+    // fleet-wide queries, each station's range of nozzles is summed on the common fork-join pool
+
+    public double totalLevelLitres(int grade) {
+        return sumByStation(levelMl, grade) / (double) ML_PER_LITRE;
+    }
+
+    public double totalSoldLitres(int grade) {
+        return sumByStation(soldMl, grade) / (double) ML_PER_LITRE;
+    }
+
+    public long totalSales() {
+        return sumByStation(salesCount, -1);
+    }
+
+    public double totalRevenue() {
+        return Money.ringgit(sumByStation(revenueSen, -1));
+    }
+
+    public double[] revenueByStation() {
+        double[] revenue = new double[stationNames.length];
+        IntStream.range(0, stationNames.length).parallel()
+                .forEach(s -> revenue[s] = Money.ringgit(sumStation(revenueSen, s, -1)));
+        return revenue;
+    }
+
+    // tanks at or below the given fraction of their capacity, e.g. 0.2 for 20%
+    public int[] lowTanks(double fraction) {
+        return IntStream.range(0, stationNames.length).parallel()
+                .flatMap(s -> {
+                    int from = dispenserFirstNozzle[stationFirstDispenser[s]];
+                    int to = dispenserFirstNozzle[stationFirstDispenser[s + 1]];
+                    return IntStream.range(from, to).filter(n -> levelMl.get(n) <= capacityMl[n] * fraction);
+                })
+                .toArray();
+    }
+
+    private long sumByStation(AtomicLongArray column, int grade) {
+        return IntStream.range(0, stationNames.length).parallel().mapToLong(s -> sumStation(column, s, grade)).sum();
+    }
+
+    private long sumStation(AtomicLongArray column, int station, int grade) {
+        int from = dispenserFirstNozzle[stationFirstDispenser[station]];
+        int to = dispenserFirstNozzle[stationFirstDispenser[station + 1]];
+        long sum = 0;
+        for (int n = from; n < to; n++) {
+            if (grade < 0 || nozzleGrade[n] == grade) {
+                sum += column.get(n);
+            }
+        }
+        return sum;
+    }
+
+    public static final class Builder {
+        private final List<String> stationNames = new ArrayList<>();
+        private final List<String> gradeNames = new ArrayList<>();
+        private final List<Integer> dispenserStation = new ArrayList<>();
+        private final List<Integer> dispenserNozzles = new ArrayList<>();
+        private final List<Integer> nozzleStation = new ArrayList<>();
+        private final List<Byte> nozzleGrade = new ArrayList<>();
+        private final List<Long> nozzleCapacity = new ArrayList<>();
+        private final List<double[]> pendingPrices = new ArrayList<>(); // {station, grade, price}
+        private long[] priceSen;
+
+        private Builder() {
+        }
+
+        public int addStation(String name) {
+            stationNames.add(name);
+            return stationNames.size() - 1;
+        }
+
+        // dispensers must be added station by station (all of station 0, then station 1, ...)
+        public Builder addDispenser(int station, String[] grades, double tankLitres) {
+            if (station != stationNames.size() - 1) {
+                throw new IllegalStateException("Add dispensers to the most recently added station");
+            }
+            dispenserStation.add(station);
+            dispenserNozzles.add(grades.length);
+            for (String grade : grades) {
+                nozzleStation.add(station);
+                nozzleGrade.add((byte) grade(grade));
+                nozzleCapacity.add(Money.ml(tankLitres));
+            }
+            return this;
+        }
+
+        public Builder setPrice(int station, String grade, double price) {
+            pendingPrices.add(new double[]{station, grade(grade), price});
+            return this;
+        }
+
+        private int grade(String name) {
+            String key = name.toLowerCase();
+            int index = gradeNames.indexOf(key);
+            if (index < 0) {
+                if (gradeNames.size() == Byte.MAX_VALUE) {
+                    throw new IllegalStateException("Too many fuel grades");
+                }
+                gradeNames.add(key);
+                index = gradeNames.size() - 1;
+            }
+            return index;
+        }
+
+        public Fleet build() {
+            // the grade count is only known now, so lay the price table out at the end
+            priceSen = new long[stationNames.size() * gradeNames.size()];
+            for (double[] p : pendingPrices) {
+                priceSen[(int) p[0] * gradeNames.size() + (int) p[1]] = Money.sen(p[2]);
+            }
+            return new Fleet(this);
+        }
+    }
+}
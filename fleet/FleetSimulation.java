@@ -0,0 +1,56 @@
+package fleet;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+// builds a fleet of mixed stations, sells from all of them in parallel and times the fleet-wide queries.
+// usage: java fleet.FleetSimulation [stations] [salesPerStation]
+public class FleetSimulation {
+
+    public static void main(String[] args) {
+        int stations = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int salesPerStation = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        String[] allGrades = {"ron95", "ron97", "diesel", "diesel_b7", "ron100"};
+
+        Fleet.Builder builder = Fleet.builder();
+        for (int s = 0; s < stations; s++) {
+            int station = builder.addStation("Station " + (s + 1));
+            int dispensers = 4 + s % 9; // 4 to 12 pumps
+            for (int d = 0; d < dispensers; d++) {
+                int grades = 2 + (s + d) % 4;
+                String[] sold = new String[grades];
+                System.arraycopy(allGrades, 0, sold, 0, grades);
+                builder.addDispenser(station, sold, 10_000.0);
+            }
+            builder.setPrice(station, "ron95", 2.05)
+                    .setPrice(station, "ron97", 3.47)
+                    .setPrice(station, "diesel", 2.15)
+                    .setPrice(station, "diesel_b7", 2.35)
+                    .setPrice(station, "ron100", 4.80);
+        }
+        Fleet fleet = builder.build();
+        System.out.println("Fleet: " + fleet.stationCount() + " stations, " + fleet.nozzleCount() + " tanks");
+
+        long start = System.nanoTime();
+        IntStream.range(0, stations).parallel().forEach(s -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < salesPerStation; i++) {
+                int dispenser = random.nextInt(fleet.dispenserCount(s));
+                int grade = random.nextInt(3);
+                if (fleet.purchase(s, dispenser, grade, 20 + random.nextInt(80)) == Fleet.NOT_ENOUGH_PETROL) {
+                    fleet.refill(fleet.nozzle(s, dispenser, grade));
+                }
+            }
+        });
+        System.out.printf("Sales: %d in %.1f ms\n", fleet.totalSales(), (System.nanoTime() - start) / 1e6);
+
+        start = System.nanoTime();
+        double revenue = fleet.totalRevenue();
+        double ron95Left = fleet.totalLevelLitres(fleet.gradeCode("ron95"));
+        double dieselSold = fleet.totalSoldLitres(fleet.gradeCode("diesel"));
+        int[] low = fleet.lowTanks(0.2);
+        System.out.printf("Aggregates in %.2f ms\n", (System.nanoTime() - start) / 1e6);
+        System.out.printf("Revenue RM%.2f, RON95 in tanks %.1f l, diesel sold %.1f l, tanks below 20%%: %d\n",
+                revenue, ron95Left, dieselSold, low.length);
+    }
+}
@@ -0,0 +1,519 @@
+package idempotency;
+
+import engine.FuelGrade;
+import engine.PurchaseResult;
+import receipt.Receipt;
+import receipt.ReceiptExporter;
+import receipt.ReceiptJournal;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// the idempotency keys of recent sales (a terminal's request id, any non-zero long) with the result each one got,
+// so a retried request is answered from here instead of selling again.
+// an entry lives ttl after its sale. the cache should hold a ttl's worth of sales; if it fills up anyway it evicts
+// as a segmented LRU: new keys go on probation, a retry moves a key to the protected segment (80%), and room is made
+// from the oldest probation key first. there is deliberately no TinyLFU admission filter in front: it would turn
+// away exactly the keys seen once, and those are the ones a retry is about to ask for.
+// each key and its result sit in one stretch of a long[], split over independently locked segments by key hash, so a hit
+// allocates only the returned PurchaseResult. a key already in the protected segment is answered without the lock,
+// seqlock style: read, then check no writer ran meanwhile. a key whose sale is in progress is pending and cannot be
+// evicted; a second request with it waits for the first to finish
+public final class DedupCache {
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_SEGMENT_CAPACITY = 64;
+    private static final byte PENDING = 0;
+    private static final byte PROBATION = 1;
+    private static final byte PROTECTED = 2;
+
+    private final Segment[] segments;
+    private final int capacity;
+    private final long ttlMillis;
+    private final long waitMillis;
+    private final LongSupplier clock;
+    private final LongAdder hits = new LongAdder();
+
+    public DedupCache(int capacity, long ttlMillis) {
+        this(capacity, ttlMillis, 10_000L, System::currentTimeMillis);
+    }
+
+    // waitMillis: how long a duplicate waits for the sale it duplicates before giving up
+    public DedupCache(int capacity, long ttlMillis, long waitMillis, LongSupplier clock) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("ttl must be positive: " + ttlMillis);
+        }
+        int count = 1;
+        while (count < MAX_SEGMENTS && (long) count * 2 * MIN_SEGMENT_CAPACITY <= capacity) {
+            count <<= 1;
+        }
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            // spread the remainder so the segments add up to exactly capacity
+            segments[i] = new Segment(capacity / count + (i < capacity % count ? 1 : 0));
+        }
+        this.capacity = capacity;
+        this.ttlMillis = ttlMillis;
+        this.waitMillis = waitMillis;
+        this.clock = clock;
+    }
+
+    // the result key already got, or null when the caller now holds key and must complete() or release() it.
+    // throws IllegalArgumentException if key was used for a different purchase
+    public PurchaseResult begin(long key, int dispenser, FuelGrade fuelGrade, long amountSen) {
+        checkKey(key);
+        long hash = hash(key);
+        long now = clock.getAsLong();
+        Segment segment = segmentFor(hash);
+        PurchaseResult replay = segment.replayUnlocked(key, hash, dispenser, fuelGrade.code(), amountSen, now);
+        return replay != null ? replay : segment.begin(key, hash, dispenser, fuelGrade.code(), amountSen, now);
+    }
+
+    // records the sale key was held for; a refused sale changed nothing, so its key is released for a retry
+    public void complete(long key, PurchaseResult result) {
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        if (result.isOk()) {
+            segment.complete(key, hash, result, clock.getAsLong() + ttlMillis);
+        } else {
+            segment.release(key, hash);
+        }
+    }
+
+    public void release(long key) {
+        long hash = hash(key);
+        segmentFor(hash).release(key, hash);
+    }
+
+    // a sale that happened at soldAtMillis, e.g. read back from the journal; ignored if it has already expired.
+    // amountSen is -1 when unknown, which skips the amount in the same-purchase check
+    public void put(long key, int dispenser, FuelGrade fuelGrade, long amountSen, long receiptNumber, long litresMl,
+                    long totalSen, long soldAtMillis) {
+        checkKey(key);
+        long expiresAt = soldAtMillis + ttlMillis;
+        long now = clock.getAsLong();
+        if (expiresAt <= now) {
+            return;
+        }
+        long hash = hash(key);
+        segmentFor(hash).put(key, hash, dispenser, fuelGrade.code(), amountSen, receiptNumber, litresMl, totalSen, expiresAt,
+                now);
+    }
+
+    // rebuilds the cache after a restart from the receipts journaled within the last ttl, oldest first.
+    // receipts carry no amount, so for these the same-purchase check compares dispenser and fuel type only.
+    // returns how many keys were loaded
+    public int load(Path journalDirectory) throws IOException {
+        if (!Files.isDirectory(journalDirectory)) {
+            return 0;
+        }
+        long cutoff = clock.getAsLong() - ttlMillis;
+        List<Path> files = ReceiptJournal.segments(journalDirectory);
+        List<List<Receipt>> recent = new ArrayList<>();
+        // newest segment first, stopping at the first one that reaches back past the cutoff
+        for (int i = files.size() - 1; i >= 0; i--) {
+            List<Receipt> keyed = new ArrayList<>();
+            long[] oldest = {Long.MAX_VALUE};
+            ReceiptExporter.readFrom(files.get(i), 0L, receipt -> {
+                oldest[0] = Math.min(oldest[0], receipt.getTimestampMillis());
+                if (receipt.getRequestId() != 0L && receipt.getTimestampMillis() > cutoff) {
+                    keyed.add(receipt);
+                }
+            });
+            recent.add(keyed);
+            if (oldest[0] <= cutoff) {
+                break;
+            }
+        }
+        int loaded = 0;
+        for (int i = recent.size() - 1; i >= 0; i--) {
+            for (Receipt receipt : recent.get(i)) {
+                put(receipt.getRequestId(), receipt.getDispenser(), receipt.getFuelGrade(), -1L, receipt.getNumber(),
+                        receipt.getLitresMl(), receipt.getTotalSen(), receipt.getTimestampMillis());
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.capacity - segment.freeCount;
+            }
+        }
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    // retries answered from the cache
+    public long getHits() {
+        return hits.sum();
+    }
+
+    // keys dropped before their ttl to make room; a retry after that sells again, so this should stay at 0
+    public long getEvictions() {
+        long evictions = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                evictions += segment.evictions;
+            }
+        }
+        return evictions;
+    }
+
+    private static void checkKey(long key) {
+        if (key == 0L) {
+            throw new IllegalArgumentException("Request id must not be 0");
+        }
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> 32) & (segments.length - 1)];
+    }
+
+    // murmur3's 64-bit finalizer, so sequential request ids spread over segments and table positions
+    private static long hash(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    private final class Segment {
+        // one entry per STRIDE longs, so a lookup touches one cache line of entries plus the index:
+        // key, expiry, receipt number, ml, sen, amount (sen, -1 unknown), dispenser | grade << 32 | queue << 40,
+        // and the queue links (prev << 32 | next). slots capacity and capacity + 1 are the heads of the probation and
+        // protected lists, most recent first
+        private static final int STRIDE = 8;
+        private static final int KEY = 0;
+        private static final int EXPIRES = 1;
+        private static final int RECEIPT = 2;
+        private static final int ML = 3;
+        private static final int SEN = 4;
+        private static final int AMOUNT = 5;
+        private static final int META = 6;
+        private static final int LINKS = 7;
+
+        final int capacity;
+        final int protectedCapacity;
+        final long[] entries;
+        final int[] sizes = new int[3];
+        // open addressing over slots: slot + 1, 0 for empty
+        final int[] table;
+        final int tableMask;
+        final int[] free;
+        int freeCount;
+        long evictions;
+        // odd while a writer is changing the segment; every locked change bumps it twice
+        volatile long version;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+            protectedCapacity = capacity * 4 / 5;
+            entries = new long[(capacity + 2) * STRIDE];
+            for (int head = capacity; head < capacity + 2; head++) {
+                setLinks(head, head, head);
+            }
+            int tableSize = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+            table = new int[tableSize];
+            tableMask = tableSize - 1;
+            free = new int[capacity];
+            for (int i = 0; i < capacity; i++) {
+                free[i] = capacity - 1 - i;
+            }
+            freeCount = capacity;
+        }
+
+        // the lock-free path: only a protected key whose fields read the same on both sides of the version check.
+        // anything else (probation, pending, expired, a different purchase, a writer at work) goes through begin
+        PurchaseResult replayUnlocked(long key, long hash, int dispenser, int grade, long amount, long now) {
+            long stamp = version;
+            if ((stamp & 1L) != 0L) {
+                return null;
+            }
+            int slot = find(key, hash);
+            if (slot < 0) {
+                return null;
+            }
+            int base = slot * STRIDE;
+            long meta = entries[base + META];
+            long expiry = entries[base + EXPIRES];
+            long storedAmount = entries[base + AMOUNT];
+            long receiptNumber = entries[base + RECEIPT];
+            long ml = entries[base + ML];
+            long sen = entries[base + SEN];
+            VarHandle.acquireFence(); // the reads above happen before the version is read again
+            if (version != stamp || queue(meta) != PROTECTED || expiry <= now || !samePurchase(meta, storedAmount, dispenser, grade, amount)) {
+                return null;
+            }
+            hits.increment();
+            return PurchaseResult.replayed(receiptNumber, (int) meta, ml, sen);
+        }
+
+        synchronized PurchaseResult begin(long key, long hash, int dispenser, int grade, long amount, long now) {
+            long deadline = System.nanoTime() + waitMillis * 1_000_000L;
+            int slot;
+            while ((slot = find(key, hash)) >= 0 && queueAt(slot) == PENDING) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new IllegalStateException("Request " + key + " is still being processed");
+                }
+                try {
+                    wait(Math.max(1L, remaining / 1_000_000L));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted waiting for request " + key);
+                }
+            }
+            version++;
+            try {
+                if (slot >= 0 && entries[slot * STRIDE + EXPIRES] <= now) {
+                    remove(slot, hash);
+                    slot = -1;
+                }
+                if (slot >= 0) {
+                    int base = slot * STRIDE;
+                    if (!samePurchase(entries[base + META], entries[base + AMOUNT], dispenser, grade, amount)) {
+                        throw new IllegalArgumentException("Request id " + key + " was already used for a different purchase");
+                    }
+                    touch(slot);
+                    hits.increment();
+                    return PurchaseResult.replayed(entries[base + RECEIPT], (int) entries[base + META], entries[base + ML],
+                            entries[base + SEN]);
+                }
+                slot = allocate(now);
+                int base = slot * STRIDE;
+                entries[base + KEY] = key;
+                entries[base + AMOUNT] = amount;
+                entries[base + META] = meta(dispenser, grade, PENDING);
+                sizes[PENDING]++;
+                insert(slot, hash);
+                return null;
+            } finally {
+                version++;
+            }
+        }
+
+        synchronized void complete(long key, long hash, PurchaseResult result, long expiry) {
+            int slot = find(key, hash);
+            if (slot < 0 || queueAt(slot) != PENDING) {
+                throw new IllegalStateException("Request " + key + " was not begun");
+            }
+            version++;
+            int base = slot * STRIDE;
+            entries[base + RECEIPT] = result.getReceiptNumber();
+            entries[base + ML] = result.getLitresMl();
+            entries[base + SEN] = result.getTotalSen();
+            entries[base + EXPIRES] = expiry;
+            sizes[PENDING]--;
+            link(slot, PROBATION);
+            version++;
+            notifyAll();
+        }
+
+        synchronized void release(long key, long hash) {
+            int slot = find(key, hash);
+            if (slot >= 0 && queueAt(slot) == PENDING) {
+                version++;
+                remove(slot, hash);
+                version++;
+                notifyAll();
+            }
+        }
+
+        synchronized void put(long key, long hash, int dispenser, int grade, long amount, long receiptNumber, long ml,
+                              long sen, long expiry, long now) {
+            if (find(key, hash) >= 0) {
+                return;
+            }
+            version++;
+            try {
+                int slot = allocate(now);
+                int base = slot * STRIDE;
+                entries[base + KEY] = key;
+                entries[base + EXPIRES] = expiry;
+                entries[base + RECEIPT] = receiptNumber;
+                entries[base + ML] = ml;
+                entries[base + SEN] = sen;
+                entries[base + AMOUNT] = amount;
+                entries[base + META] = meta(dispenser, grade, PENDING);
+                insert(slot, hash);
+                link(slot, PROBATION);
+            } finally {
+                version++;
+            }
+        }
+
+        // a hit: to the front of protected, pushing its oldest key back to probation when that is full
+        private void touch(int slot) {
+            unlink(slot);
+            link(slot, PROTECTED);
+            if (sizes[PROTECTED] > protectedCapacity) {
+                int demoted = prev(head(PROTECTED));
+                unlink(demoted);
+                link(demoted, PROBATION);
+            }
+        }
+
+        // a free slot, evicting if the segment is full
+        private int allocate(long now) {
+            if (freeCount == 0) {
+                evict(now);
+            }
+            if (freeCount == 0) {
+                throw new IllegalStateException("Dedup cache full of requests still being processed");
+            }
+            return free[--freeCount];
+        }
+
+        private void evict(long now) {
+            // something past its ttl costs nothing to drop
+            for (byte queue = PROBATION; queue <= PROTECTED; queue++) {
+                int oldest = prev(head(queue));
+                if (oldest != head(queue) && entries[oldest * STRIDE + EXPIRES] <= now) {
+                    remove(oldest, hash(entries[oldest * STRIDE + KEY]));
+                    return;
+                }
+            }
+            byte queue = sizes[PROBATION] > 0 ? PROBATION : PROTECTED;
+            int oldest = prev(head(queue));
+            if (oldest == head(queue)) {
+                return; // nothing linked, everything is pending
+            }
+            remove(oldest, hash(entries[oldest * STRIDE + KEY]));
+            evictions++;
+        }
+
+        private int head(byte queue) {
+            return capacity + queue - 1;
+        }
+
+        private byte queueAt(int slot) {
+            return queue(entries[slot * STRIDE + META]);
+        }
+
+        private int prev(int slot) {
+            return (int) (entries[slot * STRIDE + LINKS] >>> 32);
+        }
+
+        private int next(int slot) {
+            return (int) entries[slot * STRIDE + LINKS];
+        }
+
+        private void setLinks(int slot, int prev, int next) {
+            entries[slot * STRIDE + LINKS] = (long) prev << 32 | (next & 0xFFFFFFFFL);
+        }
+
+        private void setPrev(int slot, int prev) {
+            setLinks(slot, prev, next(slot));
+        }
+
+        private void setNext(int slot, int next) {
+            setLinks(slot, prev(slot), next);
+        }
+
+        // at the most recent end
+        private void link(int slot, byte queue) {
+            int head = head(queue);
+            int first = next(head);
+            setNext(head, slot);
+            setLinks(slot, head, first);
+            setPrev(first, slot);
+            int base = slot * STRIDE;
+            entries[base + META] = meta((int) entries[base + META], grade(entries[base + META]), queue);
+            sizes[queue]++;
+        }
+
+        private void unlink(int slot) {
+            int prev = prev(slot);
+            int next = next(slot);
+            setNext(prev, next);
+            setPrev(next, prev);
+            sizes[queueAt(slot)]--;
+        }
+
+        private void remove(int slot, long hash) {
+            if (queueAt(slot) == PENDING) {
+                sizes[PENDING]--;
+            } else {
+                unlink(slot);
+            }
+            delete(slot, hash);
+            free[freeCount++] = slot;
+        }
+
+        private int find(long key, long hash) {
+            for (int i = (int) hash & tableMask; ; i = (i + 1) & tableMask) {
+                int entry = table[i];
+                if (entry == 0) {
+                    return -1;
+                }
+                if (entries[(entry - 1) * STRIDE + KEY] == key) {
+                    return entry - 1;
+                }
+            }
+        }
+
+        private void insert(int slot, long hash) {
+            int i = (int) hash & tableMask;
+            while (table[i] != 0) {
+                i = (i + 1) & tableMask;
+            }
+            table[i] = slot + 1;
+        }
+
+        // linear-probing delete: shift later entries of the run back so lookups never stop at a false hole
+        private void delete(int slot, long hash) {
+            int i = (int) hash & tableMask;
+            while (table[i] != slot + 1) {
+                i = (i + 1) & tableMask;
+            }
+            table[i] = 0;
+            for (int j = (i + 1) & tableMask; table[j] != 0; j = (j + 1) & tableMask) {
+                int home = (int) hash(entries[(table[j] - 1) * STRIDE + KEY]) & tableMask;
+                // move the entry at j into the hole unless its home lies cyclically in (i, j]
+                boolean stays = i <= j ? (home > i && home <= j) : (home > i || home <= j);
+                if (!stays) {
+                    table[i] = table[j];
+                    table[j] = 0;
+                    i = j;
+                }
+            }
+        }
+    }
+
+    private static long meta(int dispenser, int grade, byte queue) {
+        return (dispenser & 0xFFFFFFFFL) | (long) (grade & 0xFF) << 32 | (long) queue << 40;
+    }
+
+    private static int grade(long meta) {
+        return (int) (meta >>> 32) & 0xFF;
+    }
+
+    private static byte queue(long meta) {
+        return (byte) (meta >>> 40);
+    }
+
+    private static boolean samePurchase(long meta, long storedAmount, int dispenser, int grade, long amount) {
+        return (int) meta == dispenser && grade(meta) == grade && (storedAmount < 0 || storedAmount == amount);
+    }
+}
@@ -0,0 +1,56 @@
+package ledger;
+
+import engine.FuelGrade;
+
+// one sale as stored in the ledger
+public final class LedgerRecord {
+    private final long receiptId;
+    private final int dispenser;
+    private final int fuelCode;
+    private final double litres;
+    private final double price;
+    private final long timestampMillis;
+
+    public LedgerRecord(long receiptId, int dispenser, int fuelCode, double litres, double price, long timestampMillis) {
+        this.receiptId = receiptId;
+        this.dispenser = dispenser;
+        this.fuelCode = fuelCode;
+        this.litres = litres;
+        this.price = price;
+        this.timestampMillis = timestampMillis;
+    }
+
+    public long getReceiptId() {
+        return receiptId;
+    }
+
+    public int getDispenser() {
+        return dispenser;
+    }
+
+    public int getFuelCode() {
+        return fuelCode;
+    }
+
+    public FuelGrade getFuelGrade() {
+        return FuelGrade.fromCode(fuelCode);
+    }
+
+    public double getLitres() {
+        return litres;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "LedgerRecord{receiptId=" + receiptId + ", dispenser=" + dispenser + ", fuelCode=" + fuelCode
+                + ", litres=" + litres + ", price=" + price + ", timestampMillis=" + timestampMillis + "}";
+    }
+}
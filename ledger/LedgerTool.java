@@ -0,0 +1,49 @@
+package ledger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// usage: java ledger.LedgerTool fill <file> <records> | open <file> | get <file> <receiptId>
+public class LedgerTool {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: LedgerTool fill <file> <records> | open <file> | get <file> <receiptId>");
+            return;
+        }
+        Path file = Paths.get(args[1]);
+        switch (args[0]) {
+            case "fill": {
+                long records = Long.parseLong(args[2]);
+                long start = System.nanoTime();
+                try (TransactionLedger ledger = TransactionLedger.open(file)) {
+                    long id = ledger.nextReceiptId();
+                    for (long i = 0; i < records; i++, id++) {
+                        ledger.append(id, (int) (i % 3), (int) (i % 3), 10.0, 20.5, System.currentTimeMillis());
+                    }
+                    System.out.printf("Appended %d records in %.1f ms, next receipt %d\n", records,
+                            (System.nanoTime() - start) / 1e6, ledger.nextReceiptId());
+                }
+                break;
+            }
+            case "open": {
+                long start = System.nanoTime();
+                try (TransactionLedger ledger = TransactionLedger.open(file)) {
+                    System.out.printf("Opened %d records in %.2f ms, next receipt %d\n", ledger.size(),
+                            (System.nanoTime() - start) / 1e6, ledger.nextReceiptId());
+                }
+                break;
+            }
+            case "get": {
+                try (TransactionLedger ledger = TransactionLedger.open(file)) {
+                    LedgerRecord record = ledger.get(Long.parseLong(args[2]));
+                    System.out.println(record == null ? "Receipt not found." : record.toString());
+                }
+                break;
+            }
+            default:
+                System.out.println("Unknown command: " + args[0]);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package ledger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+// memory-mapped ledger of fixed-width sale records (fuel type stored as FuelGrade.code()). record n lives at HEADER_BYTES + n * RECORD_BYTES
+// where n = receiptId - baseId, so looking up a receipt is one offset calculation.
+// each record ends with a CRC32C; on open only the tail after the last saved high-water mark is checked.
+public class TransactionLedger implements AutoCloseable {
+    static final int MAGIC = 0x504c4447; // "PLDG"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+    static final int RECORD_BYTES = 48;
+    static final int PAYLOAD_BYTES = 40;
+    static final int CHUNK_RECORDS = 1 << 20; // 48 MB per mapped chunk
+    static final long CHUNK_BYTES = (long) CHUNK_RECORDS * RECORD_BYTES;
+    // how many records before the saved high-water mark are re-verified on open (torn writes)
+    static final int TAIL_CHECK = 64;
+
+    // header layout
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_RECORD_BYTES = 8;
+    private static final int H_BASE_ID = 16;
+    private static final int H_HIGH_WATER = 24;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final long baseId;
+    private final AtomicLong highWater = new AtomicLong();
+    private volatile MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+    private final ThreadLocal<CRC32C> crc = ThreadLocal.withInitial(CRC32C::new);
+
+    private TransactionLedger(FileChannel channel, MappedByteBuffer header, long baseId, long recoveredHighWater) {
+        this.channel = channel;
+        this.header = header;
+        this.baseId = baseId;
+        this.highWater.set(recoveredHighWater);
+    }
+
+    public static TransactionLedger open(Path file) throws IOException {
+        return open(file, 1L);
+    }
+
+    // opens (or creates, numbering from firstReceiptId) the ledger file and recovers the tail
+    public static TransactionLedger open(Path file, long firstReceiptId) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean fresh = channel.size() < HEADER_BYTES;
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        if (fresh) {
+            header.putInt(H_MAGIC, MAGIC);
+            header.putInt(H_VERSION, VERSION);
+            header.putInt(H_RECORD_BYTES, RECORD_BYTES);
+            header.putLong(H_BASE_ID, firstReceiptId);
+            header.putLong(H_HIGH_WATER, 0L);
+            header.force();
+        } else if (header.getInt(H_MAGIC) != MAGIC || header.getInt(H_RECORD_BYTES) != RECORD_BYTES) {
+            channel.close();
+            throw new IOException("Not a transaction ledger: " + file);
+        }
+
+        TransactionLedger ledger = new TransactionLedger(channel, header, header.getLong(H_BASE_ID), header.getLong(H_HIGH_WATER));
+        ledger.recoverTail();
+        return ledger;
+    }
+
+    private void recoverTail() throws IOException {
+        long slots = (channel.size() - HEADER_BYTES) / RECORD_BYTES;
+        long mark = highWater.get();
+        // records written after the header was last saved
+        while (mark < slots && isValid(mark)) {
+            mark++;
+        }
+        // torn writes at the end: drop trailing records whose checksum does not match
+        long floor = Math.max(0, mark - TAIL_CHECK);
+        while (mark > floor && !isValid(mark - 1)) {
+            mark--;
+        }
+        highWater.set(mark);
+        header.putLong(H_HIGH_WATER, mark);
+    }
+
+    // the receipt number to continue from after a restart
+    public long nextReceiptId() {
+        return baseId + highWater.get();
+    }
+
+    public long size() {
+        return highWater.get();
+    }
+
+    public void append(long receiptId, int dispenser, int fuelCode, double litres, double price, long timestampMillis)
+            throws IOException {
+        long slot = receiptId - baseId;
+        if (slot < 0) {
+            throw new IllegalArgumentException("Receipt " + receiptId + " is before the start of the ledger (" + baseId + ")");
+        }
+        MappedByteBuffer chunk = chunk(slot);
+        int offset = (int) (slot % CHUNK_RECORDS) * RECORD_BYTES;
+        chunk.putLong(offset, receiptId);
+        chunk.putInt(offset + 8, dispenser);
+        chunk.putInt(offset + 12, fuelCode);
+        chunk.putDouble(offset + 16, litres);
+        chunk.putDouble(offset + 24, price);
+        chunk.putLong(offset + 32, timestampMillis);
+        chunk.putInt(offset + 40, checksum(chunk, offset));
+
+        long mark = highWater.accumulateAndGet(slot + 1, Math::max);
+        header.putLong(H_HIGH_WATER, mark);
+    }
+
+    // O(1): receipt id -> slot -> offset. returns null when the receipt was never written
+    public LedgerRecord get(long receiptId) throws IOException {
+        long slot = receiptId - baseId;
+        if (slot < 0 || slot >= highWater.get() || !isValid(slot)) {
+            return null;
+        }
+        MappedByteBuffer chunk = chunk(slot);
+        int offset = (int) (slot % CHUNK_RECORDS) * RECORD_BYTES;
+        return new LedgerRecord(chunk.getLong(offset), chunk.getInt(offset + 8), chunk.getInt(offset + 12),
+                chunk.getDouble(offset + 16), chunk.getDouble(offset + 24), chunk.getLong(offset + 32));
+    }
+
+    private boolean isValid(long slot) throws IOException {
+        MappedByteBuffer chunk = chunk(slot);
+        int offset = (int) (slot % CHUNK_RECORDS) * RECORD_BYTES;
+        return chunk.getLong(offset) == baseId + slot && chunk.getInt(offset + 40) == checksum(chunk, offset);
+    }
+
+    private int checksum(ByteBuffer chunk, int offset) {
+        CRC32C c = crc.get();
+        c.reset();
+        c.update(chunk.slice(offset, PAYLOAD_BYTES));
+        return (int) c.getValue();
+    }
+
+    private MappedByteBuffer chunk(long slot) throws IOException {
+        int index = (int) (slot / CHUNK_RECORDS);
+        MappedByteBuffer[] current = chunks;
+        if (index < current.length && current[index] != null) {
+            return current[index];
+        }
+        return mapChunk(index);
+    }
+
+    private synchronized MappedByteBuffer mapChunk(int index) throws IOException {
+        MappedByteBuffer[] current = chunks;
+        if (index < current.length && current[index] != null) {
+            return current[index];
+        }
+        MappedByteBuffer[] grown = current;
+        if (index >= current.length) {
+            grown = new MappedByteBuffer[index + 1];
+            System.arraycopy(current, 0, grown, 0, current.length);
+        }
+        grown[index] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + index * CHUNK_BYTES, CHUNK_BYTES);
+        chunks = grown;
+        return grown[index];
+    }
+
+    public void force() {
+        for (MappedByteBuffer chunk : chunks) {
+            if (chunk != null) {
+                chunk.force();
+            }
+        }
+        header.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+}
@@ -0,0 +1,268 @@
+package logging;
+
+import engine.FuelGrade;
+import pricing.PriceSnapshot;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+// station event log: pumps publish typed events into a lock-free ring and return straight away,
+// one consumer thread formats them and writes them to the console or a file.
+// -Dstation.log=<file> writes to a file instead of the console,
+// -Dstation.log.overflow=DROP|BLOCK picks what happens when the ring is full,
+// -Dstation.log.capacity=<power of two> sizes the ring
+public class EventLog implements AutoCloseable {
+    private static final long IDLE_PARK_NANOS = 200_000L;
+
+    private final EventRing ring;
+    private final String[] dispenserNames;
+    private final Writer out;
+    private final boolean ownsOut;
+    private final StringBuilder line = new StringBuilder(128);
+    private final Thread consumer;
+    private volatile boolean running = true;
+    private volatile long written;
+    private long reportedDrops;
+
+    public EventLog(String[] dispenserNames, Writer out, boolean ownsOut, int capacity, OverflowPolicy overflowPolicy) {
+        this.ring = new EventRing(capacity, overflowPolicy);
+        this.dispenserNames = dispenserNames.clone();
+        this.out = out;
+        this.ownsOut = ownsOut;
+        consumer = new Thread(this::run, "station-log");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    public static EventLog console(String[] dispenserNames, int capacity, OverflowPolicy overflowPolicy) {
+        Writer console = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        return new EventLog(dispenserNames, console, false, capacity, overflowPolicy);
+    }
+
+    public static EventLog file(String[] dispenserNames, Path file, int capacity, OverflowPolicy overflowPolicy) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        return new EventLog(dispenserNames, writer, true, capacity, overflowPolicy);
+    }
+
+    // configured from the station.log* system properties
+    public static EventLog fromSystemProperties(String[] dispenserNames) {
+        int capacity = Integer.getInteger("station.log.capacity", 16384);
+        OverflowPolicy policy = OverflowPolicy.valueOf(System.getProperty("station.log.overflow", "BLOCK"));
+        String file = System.getProperty("station.log");
+        if (file == null || file.equals("console")) {
+            return console(dispenserNames, capacity, policy);
+        }
+        try {
+            return file(dispenserNames, Paths.get(file), capacity, policy);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error opening log file " + file, e);
+        }
+    }
+
+    public void sale(int dispenser, FuelGrade fuelGrade, long receiptNumber, double litres, double totalPrice) {
+        ring.publish(EventType.SALE, dispenser, fuelGrade.code(), receiptNumber, litres, totalPrice, 0.0, null);
+    }
+
+    // the receipt is on the journal's queue; it reaches the disk with the writer's next batch
+    public void receiptQueued(long receiptNumber, String directory) {
+        ring.publish(EventType.RECEIPT_QUEUED, -1, -1, receiptNumber, 0.0, 0.0, 0.0, directory);
+    }
+
+    public void receiptError(String message) {
+        ring.publish(EventType.RECEIPT_ERROR, -1, -1, 0L, 0.0, 0.0, 0.0, message);
+    }
+
+    // INVALID_DISPENSER, LOW_LEVEL, NOT_ENOUGH_PETROL, INVALID_PRICE or INVALID_AMOUNT
+    public void refused(EventType type, int dispenser) {
+        ring.publish(type, dispenser, -1, 0L, 0.0, 0.0, 0.0, null);
+    }
+
+    public void refill(int dispenser, double litres) {
+        ring.publish(EventType.REFILL, dispenser, -1, 0L, litres, 0.0, 0.0, null);
+    }
+
+    public void level(int dispenser, double litres) {
+        ring.publish(EventType.LEVEL, dispenser, -1, 0L, litres, 0.0, 0.0, null);
+    }
+
+    public void prices(PriceSnapshot prices) {
+        ring.publish(EventType.PRICES, -1, -1, 0L, prices.getRon95(), prices.getRon97(), prices.getDiesel(), null);
+    }
+
+    public void priceRefreshFailed(boolean usingFallback) {
+        ring.publish(EventType.PRICE_REFRESH_FAILED, -1, -1, usingFallback ? 1L : 0L, 0.0, 0.0, 0.0, null);
+    }
+
+    public void message(String text) {
+        ring.publish(EventType.MESSAGE, -1, -1, 0L, 0.0, 0.0, 0.0, text);
+    }
+
+    public long dropped() {
+        return ring.dropped();
+    }
+
+    // waits until everything published before this call has been written out
+    public void awaitDrained() {
+        long target = ring.claimedCount();
+        while (written < target && consumer.isAlive()) {
+            LockSupport.unpark(consumer);
+            LockSupport.parkNanos(50_000L);
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (ownsOut) {
+                out.close();
+            } else {
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing event log: " + e.getMessage());
+        }
+    }
+
+    private void run() {
+        long total = 0;
+        while (true) {
+            boolean stopping = !running;
+            int count = ring.drain(this::write);
+            if (count > 0 || ring.dropped() != reportedDrops) {
+                total += count;
+                reportDrops();
+                flushQuietly();
+                written = total;
+            } else if (stopping) {
+                return;
+            } else {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private void reportDrops() {
+        long drops = ring.dropped();
+        if (drops != reportedDrops) {
+            line.setLength(0);
+            line.append("[log] ").append(drops - reportedDrops).append(" events dropped, ring full\n");
+            reportedDrops = drops;
+            writeLine();
+        }
+    }
+
+    private void write(EventType type, int dispenser, int grade, long number, double first, double second, double third,
+                       long timestampMillis, String text) {
+        line.setLength(0);
+        switch (type) {
+            case SALE:
+                line.append("Filling up ");
+                appendTwoDecimals(first);
+                line.append(" litres of ").append(FuelGrade.fromCode(grade).key()).append(" at ")
+                        .append(dispenserName(dispenser)).append(". Total price: RM");
+                appendTwoDecimals(second);
+                line.append('\n');
+                break;
+            case RECEIPT_QUEUED:
+                line.append("Receipt ").append(number).append(" queued to ").append(text).append('\n');
+                break;
+            case RECEIPT_ERROR:
+                line.append("Error saving receipt: ").append(text).append('\n');
+                break;
+            case INVALID_DISPENSER:
+                line.append("Invalid dispenser. Please try again.\n");
+                break;
+            case LOW_LEVEL:
+                line.append("Warning: Low petrol level at ").append(dispenserName(dispenser)).append(". Please top up more fuel.\n");
+                break;
+            case NOT_ENOUGH_PETROL:
+                line.append("Error: Not enough petrol in ").append(dispenserName(dispenser)).append(". Topping up the fuel.\n");
+                break;
+            case INVALID_PRICE:
+                line.append("Error: Invalid fuel price. Please try again.\n");
+                break;
+            case INVALID_AMOUNT:
+                line.append("Error: Invalid amount, too small to buy any fuel. Please try again.\n");
+                break;
+            case REFILL:
+                line.append("Dispenser ").append(dispenser).append(" filled up with ");
+                appendTwoDecimals(first);
+                line.append(" litres.\n");
+                break;
+            case LEVEL:
+                line.append("Petrol level at dispenser ").append(dispenser).append(": ");
+                appendTwoDecimals(first);
+                line.append(" litres\n");
+                break;
+            case PRICES:
+                line.append("RON95 Price: RM").append(first).append('\n')
+                        .append("RON97 Price: RM").append(second).append('\n')
+                        .append("Diesel Price: RM").append(third).append('\n');
+                break;
+            case PRICE_REFRESH_FAILED:
+                line.append("Error updating fuel prices, using last known prices.\n");
+                if (number == 1L) {
+                    line.append("Using latest updated price 2017:\n");
+                }
+                break;
+            default:
+                line.append(text).append('\n');
+        }
+        writeLine();
+    }
+
+    // same text as %.2f for the litre and ringgit amounts printed here, without a Formatter
+    private void appendTwoDecimals(double value) {
+        long cents = Math.round(Math.abs(value) * 100.0);
+        if (value < 0 && cents != 0) {
+            line.append('-');
+        }
+        line.append(cents / 100).append('.');
+        long fraction = cents % 100;
+        if (fraction < 10) {
+            line.append('0');
+        }
+        line.append(fraction);
+    }
+
+    private String dispenserName(int dispenser) {
+        return dispenser >= 0 && dispenser < dispenserNames.length ? dispenserNames[dispenser] : "Dispenser " + dispenser;
+    }
+
+    private void writeLine() {
+        try {
+            out.append(line);
+        } catch (IOException e) {
+            System.err.println("Error writing event log: " + e.getMessage());
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Error writing event log: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// lock-free multi-producer / single-consumer ring of pre-allocated event slots.
+// producers claim a sequence with CAS, fill the slot's primitive fields and publish the sequence;
+// the consumer reads slots in order. nothing is allocated per event unless it carries a text.
+final class EventRing {
+    private static final EventType[] TYPES = EventType.values(); // values() copies the array on every call
+
+    private final int mask;
+    private final int[] types;
+    private final int[] dispensers;
+    private final int[] grades;
+    private final long[] numbers;
+    private final double[] firstValues;
+    private final double[] secondValues;
+    private final double[] thirdValues;
+    private final long[] timestamps;
+    private final String[] texts;
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final OverflowPolicy overflowPolicy;
+
+    EventRing(int capacity, OverflowPolicy overflowPolicy) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.mask = capacity - 1;
+        this.overflowPolicy = overflowPolicy;
+        types = new int[capacity];
+        dispensers = new int[capacity];
+        grades = new int[capacity];
+        numbers = new long[capacity];
+        firstValues = new double[capacity];
+        secondValues = new double[capacity];
+        thirdValues = new double[capacity];
+        timestamps = new long[capacity];
+        texts = new String[capacity];
+        published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1L);
+        }
+    }
+
+    // returns false when the event was dropped
+    boolean publish(EventType type, int dispenser, int grade, long number, double first, double second, double third, String text) {
+        long sequence;
+        int spins = 0;
+        while (true) {
+            sequence = claimed.get();
+            if (sequence - consumed.get() > mask) {
+                if (overflowPolicy == OverflowPolicy.DROP) {
+                    dropped.incrementAndGet();
+                    return false;
+                }
+                // back-pressure: spin briefly, then sleep until the consumer catches up
+                if (++spins < 100) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(10_000L);
+                }
+                continue;
+            }
+            if (claimed.compareAndSet(sequence, sequence + 1)) {
+                break;
+            }
+        }
+        int slot = (int) sequence & mask;
+        types[slot] = type.ordinal();
+        dispensers[slot] = dispenser;
+        grades[slot] = grade;
+        numbers[slot] = number;
+        firstValues[slot] = first;
+        secondValues[slot] = second;
+        thirdValues[slot] = third;
+        timestamps[slot] = System.currentTimeMillis();
+        texts[slot] = text;
+        published.set(slot, sequence); // volatile write publishes the plain fields above
+        return true;
+    }
+
+    // consumer side: hands every published event to the handler, returns how many
+    int drain(EventHandler handler) {
+        long next = consumed.get();
+        int count = 0;
+        while (true) {
+            int slot = (int) next & mask;
+            if (published.get(slot) != next) {
+                break;
+            }
+            handler.on(TYPES[types[slot]], dispensers[slot], grades[slot], numbers[slot],
+                    firstValues[slot], secondValues[slot], thirdValues[slot], timestamps[slot], texts[slot]);
+            texts[slot] = null;
+            next++;
+            count++;
+            consumed.lazySet(next);
+        }
+        return count;
+    }
+
+    // sequences handed out so far, including ones still being filled in
+    long claimedCount() {
+        return claimed.get();
+    }
+
+    long dropped() {
+        return dropped.get();
+    }
+
+    interface EventHandler {
+        void on(EventType type, int dispenser, int grade, long number, double first, double second, double third,
+                long timestampMillis, String text);
+    }
+}
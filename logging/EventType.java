@@ -0,0 +1,18 @@
+package logging;
+
+// what happened at the station; each type has its own line format in EventLog
+public enum EventType {
+    SALE,
+    RECEIPT_QUEUED,
+    RECEIPT_ERROR,
+    INVALID_DISPENSER,
+    LOW_LEVEL,
+    NOT_ENOUGH_PETROL,
+    INVALID_PRICE,
+    INVALID_AMOUNT,
+    REFILL,
+    LEVEL,
+    PRICES,
+    PRICE_REFRESH_FAILED,
+    MESSAGE
+}
@@ -0,0 +1,9 @@
+package logging;
+
+// what a producer does when the event ring is full
+public enum OverflowPolicy {
+    // drop the event and count it, the sale carries on
+    DROP,
+    // wait for the consumer to make room (back-pressure)
+    BLOCK
+}
@@ -0,0 +1,118 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// HDR-style latency histogram: log-linear buckets with 32 sub-buckets per power of two (~3% precision)
+// from 1 ns up to Long.MAX_VALUE. recording is a couple of shifts and one atomic add on a stripe chosen
+// by thread, so pumps recording at the same time rarely touch the same cache line.
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    private static final int STRIPES = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+
+    private final AtomicLongArray[] stripes = new AtomicLongArray[STRIPES];
+    private final AtomicLongArray maxByStripe = new AtomicLongArray(STRIPES * 8); // padded, one slot per 64 bytes
+
+    public LatencyHistogram() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new AtomicLongArray(BUCKETS);
+        }
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        stripes[stripe].incrementAndGet(bucket(nanos));
+        int slot = stripe * 8;
+        long max = maxByStripe.get(slot);
+        while (nanos > max && !maxByStripe.compareAndSet(slot, max, nanos)) {
+            max = maxByStripe.get(slot);
+        }
+    }
+
+    static int bucket(long value) {
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        if (msb < SUB_BUCKET_BITS) {
+            return (int) value;
+        }
+        int shift = msb - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    // highest value that falls into the bucket
+    static long bucketUpperBound(int index) {
+        int block = index >>> SUB_BUCKET_BITS;
+        if (block == 0) {
+            return index;
+        }
+        long lower = (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << (block - 1);
+        return lower + (1L << (block - 1)) - 1;
+    }
+
+    // copy of the counts at this moment; recording carries on while the copy is taken
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long max = 0;
+        for (int s = 0; s < STRIPES; s++) {
+            AtomicLongArray stripe = stripes[s];
+            for (int b = 0; b < BUCKETS; b++) {
+                counts[b] += stripe.get(b);
+            }
+            max = Math.max(max, maxByStripe.get(s * 8));
+        }
+        return new Snapshot(counts, max);
+    }
+
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long max;
+        private final double mean;
+
+        private Snapshot(long[] counts, long max) {
+            this.counts = counts;
+            long total = 0;
+            double sum = 0;
+            for (int b = 0; b < counts.length; b++) {
+                if (counts[b] != 0) {
+                    total += counts[b];
+                    sum += (double) counts[b] * bucketUpperBound(b);
+                }
+            }
+            this.count = total;
+            this.max = max;
+            this.mean = total == 0 ? 0 : sum / total;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public long max() {
+            return max;
+        }
+
+        public double mean() {
+            return mean;
+        }
+
+        // e.g. 0.99 for p99, reported as the upper bound of the bucket
+        public long percentile(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int b = 0; b < counts.length; b++) {
+                seen += counts[b];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(b), max);
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// writes StationMetrics.render() to a file every period, replacing it atomically so readers never see half a file
+public class MetricsSnapshotWriter implements AutoCloseable {
+    private final StationMetrics metrics;
+    private final Path file;
+    private final ScheduledExecutorService scheduler;
+
+    public MetricsSnapshotWriter(StationMetrics metrics, Path file, long periodMillis) {
+        this.metrics = metrics;
+        this.file = file;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-snapshot-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(this::writeQuietly, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void write() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, "metrics", ".tmp");
+        Files.write(temp, metrics.render().getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void writeQuietly() {
+        try {
+            write();
+        } catch (IOException e) {
+            // try again next period
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        writeQuietly();
+    }
+}
@@ -0,0 +1,148 @@
+package metrics;
+
+import engine.FuelGrade;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// counters and latency histograms for one station. everything is a LongAdder or a striped histogram,
+// so recording from many pump threads does not contend.
+// start the JVM with -Dstation.metrics=false to turn it off: ENABLED is a constant, so the JIT drops
+// every "if (StationMetrics.ENABLED)" block at the call sites
+public final class StationMetrics {
+    public static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("station.metrics"));
+
+    private final int dispensers;
+    private final LongAdder[] sales; // dispenser * grades + grade
+    private final LongAdder[] soldMl;
+    private final LongAdder[] revenueSen;
+    private final LongAdder[] lowLevelEvents; // per dispenser
+    private final LongAdder refused = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder refills = new LongAdder();
+    private final LongAdder refilledMl = new LongAdder();
+    private final LongAdder priceRefreshes = new LongAdder();
+    private final LongAdder priceRefreshFailures = new LongAdder();
+    private final LatencyHistogram purchaseLatency = new LatencyHistogram();
+    private final LatencyHistogram priceRefreshLatency = new LatencyHistogram();
+    private final LatencyHistogram receiptWriteLatency = new LatencyHistogram();
+    private final LatencyHistogram journalFlushLatency = new LatencyHistogram();
+
+    public StationMetrics(int dispensers) {
+        this.dispensers = dispensers;
+        int cells = dispensers * FuelGrade.count();
+        sales = adders(cells);
+        soldMl = adders(cells);
+        revenueSen = adders(cells);
+        lowLevelEvents = adders(dispensers);
+    }
+
+    private static LongAdder[] adders(int size) {
+        LongAdder[] adders = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    public void recordSale(int dispenser, FuelGrade grade, long ml, long totalSen, long latencyNanos) {
+        int cell = dispenser * FuelGrade.count() + grade.code();
+        sales[cell].increment();
+        soldMl[cell].add(ml);
+        revenueSen[cell].add(totalSen);
+        purchaseLatency.record(latencyNanos);
+    }
+
+    public void recordRefused(long latencyNanos) {
+        refused.increment();
+        purchaseLatency.record(latencyNanos);
+    }
+
+    // a retried request answered with the sale it already made
+    public void recordReplay(long latencyNanos) {
+        replayed.increment();
+        purchaseLatency.record(latencyNanos);
+    }
+
+    // a dispenser was found below MIN_PETROL_LEVEL
+    public void recordLowLevel(int dispenser) {
+        if (dispenser >= 0 && dispenser < dispensers) {
+            lowLevelEvents[dispenser].increment();
+        }
+    }
+
+    public void recordRefill(long ml) {
+        refills.increment();
+        refilledMl.add(ml);
+    }
+
+    public void recordPriceRefresh(long latencyNanos, boolean ok) {
+        priceRefreshes.increment();
+        if (!ok) {
+            priceRefreshFailures.increment();
+        }
+        priceRefreshLatency.record(latencyNanos);
+    }
+
+    public void recordReceiptWrite(long latencyNanos) {
+        receiptWriteLatency.record(latencyNanos);
+    }
+
+    public void recordJournalFlush(long latencyNanos) {
+        journalFlushLatency.record(latencyNanos);
+    }
+
+    public long sales(int dispenser, FuelGrade grade) {
+        return sales[dispenser * FuelGrade.count() + grade.code()].sum();
+    }
+
+    public long totalSales() {
+        long total = 0;
+        for (LongAdder adder : sales) {
+            total += adder.sum();
+        }
+        return total;
+    }
+
+    public LatencyHistogram.Snapshot purchaseLatency() {
+        return purchaseLatency.snapshot();
+    }
+
+    // Prometheus text exposition format
+    public String render() {
+        StringBuilder out = new StringBuilder(4096);
+        for (int d = 0; d < dispensers; d++) {
+            for (FuelGrade grade : FuelGrade.values()) {
+                int cell = d * FuelGrade.count() + grade.code();
+                String labels = "{dispenser=\"" + d + "\",grade=\"" + grade.key() + "\"}";
+                out.append("station_sales_total").append(labels).append(' ').append(sales[cell].sum()).append('\n');
+                out.append("station_litres_dispensed_total").append(labels).append(' ')
+                        .append(soldMl[cell].sum() / 1000.0).append('\n');
+                out.append("station_revenue_rm_total").append(labels).append(' ')
+                        .append(revenueSen[cell].sum() / 100.0).append('\n');
+            }
+            out.append("station_low_level_events_total{dispenser=\"").append(d).append("\"} ")
+                    .append(lowLevelEvents[d].sum()).append('\n');
+        }
+        out.append("station_sales_refused_total ").append(refused.sum()).append('\n');
+        out.append("station_sales_replayed_total ").append(replayed.sum()).append('\n');
+        out.append("station_refills_total ").append(refills.sum()).append('\n');
+        out.append("station_litres_refilled_total ").append(refilledMl.sum() / 1000.0).append('\n');
+        out.append("station_price_refresh_total ").append(priceRefreshes.sum()).append('\n');
+        out.append("station_price_refresh_failures_total ").append(priceRefreshFailures.sum()).append('\n');
+        histogram(out, "station_purchase_latency_seconds", purchaseLatency.snapshot());
+        histogram(out, "station_price_refresh_latency_seconds", priceRefreshLatency.snapshot());
+        histogram(out, "station_receipt_write_latency_seconds", receiptWriteLatency.snapshot());
+        histogram(out, "station_journal_flush_latency_seconds", journalFlushLatency.snapshot());
+        return out.toString();
+    }
+
+    private static void histogram(StringBuilder out, String name, LatencyHistogram.Snapshot snapshot) {
+        double[] quantiles = {0.5, 0.9, 0.99, 0.999};
+        for (double q : quantiles) {
+            out.append(name).append("{quantile=\"").append(q).append("\"} ")
+                    .append(snapshot.percentile(q) / 1e9).append('\n');
+        }
+        out.append(name).append("_max ").append(snapshot.max() / 1e9).append('\n');
+        out.append(name).append("_count ").append(snapshot.count()).append('\n');
+    }
+}
@@ -0,0 +1,185 @@
+package money;
+
+// fixed-point money and volume: ringgit as whole sen and litres as whole millilitres, both in a long.
+// every rounding happens once, in one of these places, and always half up (half away from zero):
+//   litres bought for a prepaid amount   ml  = amountSen * 1000 / priceSenPerLitre
+//   total charged for the litres sold    sen = ml * priceSenPerLitre / 1000
+//   doubles and text coming in           to the nearest sen or ml
+// products and sums are overflow-checked and throw ArithmeticException instead of wrapping;
+// nothing here allocates except the String helpers
+public final class Money {
+    public static final long SEN_PER_RINGGIT = 100L;
+    public static final long ML_PER_LITRE = 1000L;
+    // beyond 2^53 a double no longer holds every whole sen or ml, so edge conversions refuse it
+    public static final double MAX_EXACT = 9007199254740992.0;
+
+    private static final long[] POW10 = {1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L};
+
+    private Money() {
+    }
+
+    // RM 2.05 -> 205
+    public static long sen(double ringgit) {
+        return scale(ringgit, SEN_PER_RINGGIT);
+    }
+
+    // 9.756 litres -> 9756
+    public static long ml(double litres) {
+        return scale(litres, ML_PER_LITRE);
+    }
+
+    // true when sen(value) / ml(value) will not throw
+    public static boolean isConvertible(double value, long unitsPerWhole) {
+        return Math.abs(value * unitsPerWhole) < MAX_EXACT;
+    }
+
+    private static long scale(double value, long unitsPerWhole) {
+        double scaled = value * unitsPerWhole;
+        if (!(Math.abs(scaled) < MAX_EXACT)) {
+            throw new ArithmeticException("Not a fixed-point amount: " + value);
+        }
+        // Math.round is half up towards +infinity; keep negatives symmetric
+        return scaled < 0 ? -Math.round(-scaled) : Math.round(scaled);
+    }
+
+    public static double ringgit(long sen) {
+        return (double) sen / SEN_PER_RINGGIT;
+    }
+
+    public static double litres(long ml) {
+        return (double) ml / ML_PER_LITRE;
+    }
+
+    // how many millilitres amountSen buys at priceSenPerLitre
+    public static long litresMl(long amountSen, long priceSenPerLitre) {
+        return divideHalfUp(Math.multiplyExact(amountSen, ML_PER_LITRE), priceSenPerLitre);
+    }
+
+    // what ml millilitres cost at priceSenPerLitre
+    public static long totalSen(long ml, long priceSenPerLitre) {
+        return divideHalfUp(Math.multiplyExact(ml, priceSenPerLitre), ML_PER_LITRE);
+    }
+
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    public static long multiply(long value, long factor) {
+        return Math.multiplyExact(value, factor);
+    }
+
+    // dividend / divisor rounded half away from zero; divisor must be positive
+    public static long divideHalfUp(long dividend, long divisor) {
+        if (divisor <= 0) {
+            throw new ArithmeticException("Divisor must be positive: " + divisor);
+        }
+        long quotient = dividend / divisor;
+        long remainder = Math.abs(dividend % divisor);
+        // remainder >= divisor - remainder, written so it cannot overflow
+        if (remainder >= divisor - remainder) {
+            quotient += dividend < 0 ? -1 : 1;
+        }
+        return quotient;
+    }
+
+    // exact decimal text ("12.34", "-0.5", "20") to units with `digits` decimals, extra digits rounded half up.
+    // exponent forms ("1.0E-4", as Double.toString writes small values) go through a double
+    public static long parse(CharSequence text, int digits) {
+        int length = text.length();
+        if (length == 0 || digits < 0 || digits >= POW10.length) {
+            throw new NumberFormatException("Bad decimal: \"" + text + "\"");
+        }
+        int i = 0;
+        boolean negative = text.charAt(0) == '-';
+        if (negative || text.charAt(0) == '+') {
+            i++;
+        }
+        long value = 0;
+        int fraction = -1; // digits seen after the point, -1 before it
+        boolean roundUp = false;
+        boolean anyDigit = false;
+        for (; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '.' && fraction < 0) {
+                fraction = 0;
+            } else if (c >= '0' && c <= '9') {
+                anyDigit = true;
+                if (fraction < digits) {
+                    value = Math.addExact(Math.multiplyExact(value, 10L), c - '0');
+                    if (fraction >= 0) {
+                        fraction++;
+                    }
+                } else if (fraction == digits) {
+                    roundUp = c >= '5'; // the first dropped digit decides
+                    fraction++;
+                }
+            } else if ((c == 'e' || c == 'E') && anyDigit) {
+                double parsed = Double.parseDouble(text.toString());
+                return scale(parsed, POW10[digits]);
+            } else {
+                throw new NumberFormatException("Bad decimal: \"" + text + "\"");
+            }
+        }
+        if (!anyDigit) {
+            throw new NumberFormatException("Bad decimal: \"" + text + "\"");
+        }
+        int given = Math.max(0, Math.min(fraction, digits));
+        value = Math.multiplyExact(value, POW10[digits - given]);
+        if (roundUp) {
+            value = Math.addExact(value, 1L);
+        }
+        return negative ? -value : value;
+    }
+
+    public static long parseSen(CharSequence ringgit) {
+        return parse(ringgit, 2);
+    }
+
+    public static long parseMl(CharSequence litres) {
+        return parse(litres, 3);
+    }
+
+    // units with `digits` decimals as plain text: appendScaled(sb, 2005, 2) -> "20.05"
+    public static StringBuilder appendScaled(StringBuilder sb, long units, int digits) {
+        if (units < 0) {
+            sb.append('-');
+            if (units == Long.MIN_VALUE) {
+                throw new ArithmeticException("Cannot format " + units);
+            }
+            units = -units;
+        }
+        long unit = POW10[digits];
+        sb.append(units / unit);
+        if (digits > 0) {
+            sb.append('.');
+            long fraction = units % unit;
+            for (long pad = unit / 10; pad > 1 && fraction < pad; pad /= 10) {
+                sb.append('0');
+            }
+            sb.append(fraction);
+        }
+        return sb;
+    }
+
+    public static StringBuilder appendSen(StringBuilder sb, long sen) {
+        return appendScaled(sb, sen, 2);
+    }
+
+    public static StringBuilder appendMl(StringBuilder sb, long ml) {
+        return appendScaled(sb, ml, 3);
+    }
+
+    // "20.05"
+    public static String formatSen(long sen) {
+        return appendSen(new StringBuilder(24), sen).toString();
+    }
+
+    // litres to two decimals as printed on receipts, 9756 ml -> "9.76"
+    public static String formatLitres(long ml) {
+        return appendScaled(new StringBuilder(24), divideHalfUp(ml, 10L), 2).toString();
+    }
+}
@@ -0,0 +1,141 @@
+package pricing;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// keeps the last fetched prices in memory and refreshes them on one background thread.
+// sales only read the volatile snapshot; if the upstream fails the old prices are kept (stale-while-revalidate).
+// with a cache file, the prices last fetched are read from it at startup and it is rewritten after every fetch
+public class CachedPriceProvider implements FuelPriceProvider {
+    private final PriceSource source;
+    private final long ttlMillis;
+    private final Path cacheFile;
+    private final ScheduledExecutorService refresher;
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+    private volatile PriceSnapshot snapshot;
+    private volatile long lastAttemptMillis;
+    private volatile long failedRefreshes;
+    private volatile PriceRefreshListener listener;
+
+    public CachedPriceProvider(PriceSource source, long ttlMillis, PriceSnapshot initial) {
+        this(source, ttlMillis, initial, null);
+    }
+
+    // initial is used only when cacheFile is missing or unreadable
+    public CachedPriceProvider(PriceSource source, long ttlMillis, PriceSnapshot initial, Path cacheFile) {
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("ttl must be positive: " + ttlMillis);
+        }
+        this.source = source;
+        this.ttlMillis = ttlMillis;
+        this.cacheFile = cacheFile;
+        PriceSnapshot cached = PriceCacheFile.read(cacheFile);
+        this.snapshot = cached != null ? cached : initial;
+        this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "fuel-price-refresher");
+            t.setDaemon(true);
+            return t;
+        });
+        refresher.scheduleWithFixedDelay(this::refreshQuietly, ttlMillis, ttlMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public PriceSnapshot current() {
+        PriceSnapshot current = snapshot;
+        // expired and the scheduled refresh has not caught up yet: serve stale, refresh in the background
+        if (System.currentTimeMillis() - current.getFetchedAtMillis() > ttlMillis
+                && System.currentTimeMillis() - lastAttemptMillis > ttlMillis) {
+            triggerRefresh();
+        }
+        return current;
+    }
+
+    // blocking refresh, used at startup; returns false and keeps the old prices when the upstream fails
+    public boolean refreshNow() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            return refresh();
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    public void triggerRefresh() {
+        if (refreshing.compareAndSet(false, true)) {
+            try {
+                refresher.execute(() -> {
+                    try {
+                        refresh();
+                    } finally {
+                        refreshing.set(false);
+                    }
+                });
+            } catch (RuntimeException e) {
+                refreshing.set(false);
+            }
+        }
+    }
+
+    private void refreshQuietly() {
+        if (refreshing.compareAndSet(false, true)) {
+            try {
+                refresh();
+            } finally {
+                refreshing.set(false);
+            }
+        }
+    }
+
+    private boolean refresh() {
+        lastAttemptMillis = System.currentTimeMillis();
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            PriceSnapshot fetched = source.fetch();
+            if (fetched != null && fetched.isValid()) {
+                snapshot = fetched;
+                ok = true;
+                if (cacheFile != null) {
+                    PriceCacheFile.write(cacheFile, fetched);
+                }
+            }
+        } catch (UncheckedIOException e) {
+            // fetched but not cached: the next restart starts from older prices, nothing worse
+        } catch (IOException | RuntimeException e) {
+            // keep serving the previous snapshot
+        }
+        if (!ok) {
+            failedRefreshes++;
+        }
+        PriceRefreshListener current = listener;
+        if (current != null) {
+            current.refreshed(System.nanoTime() - start, ok);
+        }
+        return ok;
+    }
+
+    public void setRefreshListener(PriceRefreshListener listener) {
+        this.listener = listener;
+    }
+
+    public boolean isStale() {
+        return System.currentTimeMillis() - snapshot.getFetchedAtMillis() > ttlMillis;
+    }
+
+    public long getFailedRefreshes() {
+        return failedRefreshes;
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+    }
+}
@@ -0,0 +1,85 @@
+package pricing;
+
+import java.util.function.LongSupplier;
+
+// stops calling an upstream that keeps failing. after failureThreshold failures in a row the circuit opens and
+// calls fail fast for openMillis; then a single trial call is let through (half-open) and its outcome closes the
+// circuit again or reopens it for another openMillis
+public final class CircuitBreaker {
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final LongSupplier clockMillis;
+
+    private State state = State.CLOSED; // guarded by this
+    private int consecutiveFailures;
+    private long openedAtMillis;
+    private long rejected;
+    private long opened;
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this(failureThreshold, openMillis, System::currentTimeMillis);
+    }
+
+    public CircuitBreaker(int failureThreshold, long openMillis, LongSupplier clockMillis) {
+        if (failureThreshold <= 0 || openMillis <= 0) {
+            throw new IllegalArgumentException("failure threshold and open time must be positive");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.clockMillis = clockMillis;
+    }
+
+    // false while open (and while the half-open trial call is out); the caller must then not call the upstream
+    public synchronized boolean allowRequest() {
+        if (state == State.OPEN && clockMillis.getAsLong() - openedAtMillis >= openMillis) {
+            state = State.HALF_OPEN;
+            return true;
+        }
+        if (state == State.CLOSED) {
+            return true;
+        }
+        rejected++;
+        return false;
+    }
+
+    public synchronized void recordSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (state != State.OPEN) {
+                opened++;
+            }
+            state = State.OPEN;
+            openedAtMillis = clockMillis.getAsLong();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    // 0 unless open
+    public synchronized long millisUntilRetry() {
+        return state == State.OPEN ? Math.max(0L, openedAtMillis + openMillis - clockMillis.getAsLong()) : 0L;
+    }
+
+    // calls refused because the circuit was open
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    // times the circuit has opened
+    public synchronized long getOpened() {
+        return opened;
+    }
+}
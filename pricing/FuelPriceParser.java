@@ -0,0 +1,360 @@
+package pricing;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// single-pass pull parser for the data.gov.my fuelprice response. it reads straight from the stream,
+// keeps one reusable byte buffer for keys/strings and reports every row that has fuel prices:
+//   [{"series_type":"level","date":"2024-01-03","ron95":2.05,"ron97":3.47,"diesel":2.15,...}, ...]
+// nested objects/arrays and unknown fields are skipped, so the shape can grow without breaking us
+public final class FuelPriceParser {
+
+    public interface RowHandler {
+        // epochDay is Integer.MIN_VALUE when the row has no date; a missing price is NaN
+        void row(int epochDay, boolean level, double ron95, double ron97, double diesel);
+    }
+
+    private static final byte[] KEY_DATE = ascii("date");
+    private static final byte[] KEY_SERIES_TYPE = ascii("series_type");
+    private static final byte[] KEY_RON95 = ascii("ron95");
+    private static final byte[] KEY_RON97 = ascii("ron97");
+    private static final byte[] KEY_DIESEL = ascii("diesel");
+    private static final byte[] VALUE_LEVEL = ascii("level");
+    private static final double[] POW10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18};
+
+    private final InputStream in;
+    private final byte[] buffer;
+    private int position;
+    private int limit;
+    private byte[] text = new byte[64];
+    private int textLength;
+
+    private FuelPriceParser(InputStream in, int bufferSize) {
+        this.in = in;
+        this.buffer = new byte[bufferSize];
+    }
+
+    public static void parse(InputStream in, RowHandler handler) throws IOException {
+        // small responses (the limit=1 endpoint) do not need the full 8 KB read buffer
+        int available = in.available();
+        FuelPriceParser parser = new FuelPriceParser(in, available > 0 ? Math.max(512, Math.min(8192, available)) : 8192);
+        parser.skipWhitespace();
+        if (parser.peek() < 0) {
+            throw new IOException("Empty fuel price response");
+        }
+        parser.value(handler);
+    }
+
+    // latest "level" row of a response, e.g. the limit=1 endpoint
+    public static PriceSnapshot parseLatest(InputStream in, long fetchedAtMillis) throws IOException {
+        double[] latest = {Double.NaN, Double.NaN, Double.NaN};
+        int[] latestDay = {Integer.MIN_VALUE};
+        boolean[] found = {false};
+        parse(in, (epochDay, level, ron95, ron97, diesel) -> {
+            if (level && (!found[0] || epochDay >= latestDay[0])) {
+                found[0] = true;
+                latestDay[0] = epochDay;
+                latest[0] = ron95;
+                latest[1] = ron97;
+                latest[2] = diesel;
+            }
+        });
+        if (!found[0]) {
+            throw new IOException("No fuel price row in response");
+        }
+        return new PriceSnapshot(latest[0], latest[1], latest[2], fetchedAtMillis);
+    }
+
+    private void value(RowHandler handler) throws IOException {
+        skipWhitespace();
+        int c = peek();
+        if (c == '{') {
+            object(handler);
+        } else if (c == '[') {
+            next();
+            skipWhitespace();
+            if (peek() == ']') {
+                next();
+                return;
+            }
+            while (true) {
+                value(handler);
+                skipWhitespace();
+                int separator = next();
+                if (separator == ']') {
+                    return;
+                }
+                if (separator != ',') {
+                    throw error("Expected , or ] in array");
+                }
+            }
+        } else if (c == '"') {
+            string();
+        } else {
+            scalar();
+        }
+    }
+
+    private void object(RowHandler handler) throws IOException {
+        next(); // {
+        int epochDay = Integer.MIN_VALUE;
+        boolean level = true;
+        boolean hasPrice = false;
+        double ron95 = Double.NaN;
+        double ron97 = Double.NaN;
+        double diesel = Double.NaN;
+
+        skipWhitespace();
+        if (peek() == '}') {
+            next();
+            return;
+        }
+        while (true) {
+            skipWhitespace();
+            if (peek() != '"') {
+                throw error("Expected field name");
+            }
+            string();
+            skipWhitespace();
+            if (next() != ':') {
+                throw error("Expected : after field name");
+            }
+            skipWhitespace();
+
+            if (textEquals(KEY_RON95)) {
+                ron95 = number();
+                hasPrice = true;
+            } else if (textEquals(KEY_RON97)) {
+                ron97 = number();
+                hasPrice = true;
+            } else if (textEquals(KEY_DIESEL)) {
+                diesel = number();
+                hasPrice = true;
+            } else if (textEquals(KEY_DATE) && peek() == '"') {
+                string();
+                epochDay = epochDay();
+            } else if (textEquals(KEY_SERIES_TYPE) && peek() == '"') {
+                string();
+                level = textEquals(VALUE_LEVEL);
+            } else {
+                value(handler);
+            }
+
+            skipWhitespace();
+            int separator = next();
+            if (separator == '}') {
+                break;
+            }
+            if (separator != ',') {
+                throw error("Expected , or } in object");
+            }
+        }
+        if (hasPrice) {
+            handler.row(epochDay, level, ron95, ron97, diesel);
+        }
+    }
+
+    // reads a string into the text buffer (escapes are kept as the escaped character)
+    private void string() throws IOException {
+        next(); // opening quote
+        textLength = 0;
+        while (true) {
+            int c = next();
+            if (c < 0) {
+                throw error("Unterminated string");
+            }
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                c = next();
+                if (c == 'u') {
+                    for (int i = 0; i < 4; i++) {
+                        next();
+                    }
+                    c = '?';
+                }
+            }
+            if (textLength == text.length) {
+                byte[] grown = new byte[text.length * 2];
+                System.arraycopy(text, 0, grown, 0, textLength);
+                text = grown;
+            }
+            text[textLength++] = (byte) c;
+        }
+    }
+
+    // true/false/null or a number we are not interested in
+    private void scalar() throws IOException {
+        int c = peek();
+        while (c >= 0 && c != ',' && c != '}' && c != ']' && !isWhitespace(c)) {
+            next();
+            c = peek();
+        }
+    }
+
+    private double number() throws IOException {
+        int c = peek();
+        if (c == 'n') {
+            scalar(); // null
+            return Double.NaN;
+        }
+        if (c == '"') {
+            // some feeds quote their numbers
+            string();
+            return parseNumber(text, 0, textLength);
+        }
+        textLength = 0;
+        while (c >= 0 && (c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E' || (c >= '0' && c <= '9'))) {
+            if (textLength == text.length) {
+                throw error("Number too long");
+            }
+            text[textLength++] = (byte) next();
+            c = peek();
+        }
+        return parseNumber(text, 0, textLength);
+    }
+
+    static double parseNumber(byte[] bytes, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean fraction = false;
+        boolean any = false;
+        for (; i < to; i++) {
+            byte b = bytes[i];
+            if (b >= '0' && b <= '9') {
+                any = true;
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits += mantissa == 0 ? 0 : 1;
+                    if (fraction) {
+                        scale++;
+                    }
+                } else if (!fraction) {
+                    scale--;
+                }
+            } else if (b == '.' && !fraction) {
+                fraction = true;
+            } else if (b == 'e' || b == 'E') {
+                int exponent = (int) parseNumber(bytes, i + 1, to);
+                scale -= exponent;
+                break;
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (!any) {
+            return Double.NaN;
+        }
+        double value;
+        if (scale >= 0 && scale < POW10.length) {
+            value = mantissa / POW10[scale];
+        } else if (scale < 0 && -scale < POW10.length) {
+            value = mantissa * POW10[-scale];
+        } else {
+            value = mantissa / Math.pow(10, scale);
+        }
+        return negative ? -value : value;
+    }
+
+    // "2024-01-03" or "2024-01-03T00:00:00" -> days since 1970-01-01, without building a LocalDate
+    private int epochDay() {
+        if (textLength < 10 || text[4] != '-' || text[7] != '-') {
+            return Integer.MIN_VALUE;
+        }
+        int year = digits(0, 4);
+        int month = digits(5, 2);
+        int day = digits(8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31) {
+            return Integer.MIN_VALUE;
+        }
+        return daysFromCivil(year, month, day);
+    }
+
+    static int daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private int digits(int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int d = text[i] - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    private boolean textEquals(byte[] expected) {
+        if (textLength != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < textLength; i++) {
+            if (text[i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void skipWhitespace() throws IOException {
+        while (isWhitespace(peek())) {
+            next();
+        }
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position] & 0xff;
+    }
+
+    private int next() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++] & 0xff;
+    }
+
+    private boolean fill() throws IOException {
+        int read = in.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    private IOException error(String message) {
+        return new IOException("Invalid fuel price JSON: " + message);
+    }
+
+    private static byte[] ascii(String s) {
+        byte[] bytes = new byte[s.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) s.charAt(i);
+        }
+        return bytes;
+    }
+}
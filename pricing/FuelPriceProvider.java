@@ -0,0 +1,10 @@
+package pricing;
+
+// what the station reads prices from on the sale path; current() must never block on the network
+public interface FuelPriceProvider extends AutoCloseable {
+    PriceSnapshot current();
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,128 @@
+package pricing;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+// fetches the latest prices from the data.gov.my fuelprice catalogue (or a stub with the same shape).
+// one java.net.http client per source, so connections are kept alive and reused (HTTP/2 where the server offers
+// it); every call has a connect and a request timeout; I/O errors, timeouts, 429 and 5xx are retried with
+// exponential backoff and full jitter; and a circuit breaker fails fast once the upstream keeps failing.
+// a failed fetch throws: callers keep the last good prices (CachedPriceProvider, PriceCacheFile)
+public class HttpPriceSource implements PriceSource {
+    public static final String DEFAULT_URL = "https://api.data.gov.my/data-catalogue/?id=fuelprice&limit=1";
+    public static final String HISTORY_URL = "https://api.data.gov.my/data-catalogue/?id=fuelprice";
+    // longest wait between two attempts, however many attempts are configured
+    static final long MAX_BACKOFF_MILLIS = 30_000L;
+
+    private final URI endpoint;
+    private final HttpClient client;
+    private final Duration requestTimeout;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final CircuitBreaker breaker;
+
+    public HttpPriceSource() {
+        this(DEFAULT_URL);
+    }
+
+    // 2 s to connect, 5 s per request, 3 attempts from 200 ms backoff, open for 60 s after 5 failed fetches
+    public HttpPriceSource(String endpoint) {
+        this(endpoint, 2_000L, 5_000L, 3, 200L, new CircuitBreaker(5, 60_000L));
+    }
+
+    public HttpPriceSource(String endpoint, long connectTimeoutMillis, long requestTimeoutMillis, int maxAttempts,
+                           long backoffMillis, CircuitBreaker breaker) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("maxAttempts must be positive: " + maxAttempts);
+        }
+        if (backoffMillis < 0) {
+            throw new IllegalArgumentException("backoffMillis must not be negative: " + backoffMillis);
+        }
+        this.endpoint = URI.create(endpoint);
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMillis);
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+        this.breaker = breaker;
+    }
+
+    @Override
+    public PriceSnapshot fetch() throws IOException {
+        byte[] body = get();
+        PriceSnapshot snapshot = FuelPriceParser.parseLatest(new ByteArrayInputStream(body), System.currentTimeMillis());
+        if (!snapshot.isValid()) {
+            throw new IOException("Missing fuel price in response");
+        }
+        return snapshot;
+    }
+
+    // reads every row at this endpoint into a PriceHistory; use HISTORY_URL for the full catalogue since 2017
+    public PriceHistory fetchHistory() throws IOException {
+        return PriceHistory.load(new ByteArrayInputStream(get()));
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return breaker;
+    }
+
+    // one logical call: up to maxAttempts requests, counted by the breaker as a single success or failure
+    private byte[] get() throws IOException {
+        if (!breaker.allowRequest()) {
+            throw new IOException("Price API circuit open, next try in " + breaker.millisUntilRetry() + " ms");
+        }
+        HttpRequest request = HttpRequest.newBuilder(endpoint).timeout(requestTimeout).GET().build();
+        IOException failure = null;
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            boolean retryable;
+            try {
+                HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                int status = response.statusCode();
+                if (status == 200) {
+                    breaker.recordSuccess();
+                    return response.body();
+                }
+                failure = new IOException("HTTP response code: " + status);
+                retryable = status == 429 || status >= 500;
+            } catch (IOException e) {
+                // includes HttpConnectTimeoutException and HttpTimeoutException
+                failure = e;
+                retryable = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                breaker.recordFailure();
+                throw new InterruptedIOException("Interrupted fetching fuel prices");
+            }
+            if (!retryable || attempt == maxAttempts) {
+                break;
+            }
+            try {
+                Thread.sleep(backoffDelay(backoffMillis, attempt));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        breaker.recordFailure();
+        throw failure;
+    }
+
+    // full jitter: anywhere from 0 up to backoffMillis * 2^attempt (capped), so retries from many stations spread out
+    static long backoffDelay(long backoffMillis, int attempt) {
+        // the shift stays below the highest bit, so it cannot overflow
+        long ceiling = attempt < Long.numberOfLeadingZeros(backoffMillis) - 1
+                ? Math.min(backoffMillis << attempt, MAX_BACKOFF_MILLIS)
+                : MAX_BACKOFF_MILLIS;
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+}
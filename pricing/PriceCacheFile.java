@@ -0,0 +1,56 @@
+package pricing;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+// the last prices fetched, kept on disk so a restart has real prices straight away instead of waiting on the
+// network (or falling back to 2017). plain properties: ron95, ron97, diesel and fetchedAt (epoch millis)
+public final class PriceCacheFile {
+    private PriceCacheFile() {
+    }
+
+    // null when there is no cache yet or it cannot be read; a bad cache is never worse than no cache
+    public static PriceSnapshot read(Path file) {
+        if (file == null || !Files.isRegularFile(file)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+            PriceSnapshot snapshot = new PriceSnapshot(Double.parseDouble(properties.getProperty("ron95")),
+                    Double.parseDouble(properties.getProperty("ron97")),
+                    Double.parseDouble(properties.getProperty("diesel")),
+                    Long.parseLong(properties.getProperty("fetchedAt")));
+            return snapshot.isValid() ? snapshot : null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // written to a temporary file and renamed, so a crash mid-write leaves the previous cache
+    public static void write(Path file, PriceSnapshot snapshot) {
+        Properties properties = new Properties();
+        properties.setProperty("ron95", Double.toString(snapshot.getRon95()));
+        properties.setProperty("ron97", Double.toString(snapshot.getRon97()));
+        properties.setProperty("diesel", Double.toString(snapshot.getDiesel()));
+        properties.setProperty("fetchedAt", Long.toString(snapshot.getFetchedAtMillis()));
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = parent.resolve(file.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                properties.store(writer, "last fetched fuel prices");
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing price cache " + file, e);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package pricing;
+
+import engine.FuelGrade;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+// the whole fuelprice catalogue held column by column: one int[] of dates and one int[] of prices
+// in sen per fuel type, sorted by date. price lookups are a binary search over the date column.
+public final class PriceHistory {
+    private final int[] epochDays;
+    private final int[] ron95Sen;
+    private final int[] ron97Sen;
+    private final int[] dieselSen;
+
+    private PriceHistory(int[] epochDays, int[] ron95Sen, int[] ron97Sen, int[] dieselSen) {
+        this.epochDays = epochDays;
+        this.ron95Sen = ron95Sen;
+        this.ron97Sen = ron97Sen;
+        this.dieselSen = dieselSen;
+    }
+
+    // reads every weekly "level" row of a catalogue response
+    public static PriceHistory load(InputStream in) throws IOException {
+        Builder builder = new Builder();
+        FuelPriceParser.parse(in, builder);
+        return builder.build();
+    }
+
+    public int size() {
+        return epochDays.length;
+    }
+
+    public LocalDate firstDate() {
+        return LocalDate.ofEpochDay(epochDays[0]);
+    }
+
+    public LocalDate lastDate() {
+        return LocalDate.ofEpochDay(epochDays[epochDays.length - 1]);
+    }
+
+    // prices in force on the given day (the latest row on or before it), or null before the first row
+    public PriceSnapshot pricesOn(LocalDate date) {
+        int row = rowOn((int) date.toEpochDay());
+        if (row < 0) {
+            return null;
+        }
+        return new PriceSnapshot(ron95Sen[row] / 100.0, ron97Sen[row] / 100.0, dieselSen[row] / 100.0, 0L);
+    }
+
+    // price in sen of the grade on the given day, -1 before the first row
+    public int priceSenOn(int epochDay, FuelGrade grade) {
+        int row = rowOn(epochDay);
+        if (row < 0) {
+            return -1;
+        }
+        switch (grade) {
+            case RON95:
+                return ron95Sen[row];
+            case RON97:
+                return ron97Sen[row];
+            default:
+                return dieselSen[row];
+        }
+    }
+
+    private int rowOn(int epochDay) {
+        int index = Arrays.binarySearch(epochDays, epochDay);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    private static final class Builder implements FuelPriceParser.RowHandler {
+        private int[] days = new int[1024];
+        private int[] ron95 = new int[1024];
+        private int[] ron97 = new int[1024];
+        private int[] diesel = new int[1024];
+        private int count;
+        private boolean sorted = true;
+
+        @Override
+        public void row(int epochDay, boolean level, double ron95Price, double ron97Price, double dieselPrice) {
+            if (!level || epochDay == Integer.MIN_VALUE) {
+                return;
+            }
+            if (count == days.length) {
+                int capacity = count * 2;
+                days = Arrays.copyOf(days, capacity);
+                ron95 = Arrays.copyOf(ron95, capacity);
+                ron97 = Arrays.copyOf(ron97, capacity);
+                diesel = Arrays.copyOf(diesel, capacity);
+            }
+            if (count > 0 && epochDay < days[count - 1]) {
+                sorted = false;
+            }
+            days[count] = epochDay;
+            ron95[count] = toSen(ron95Price);
+            ron97[count] = toSen(ron97Price);
+            diesel[count] = toSen(dieselPrice);
+            count++;
+        }
+
+        PriceHistory build() {
+            if (count == 0) {
+                throw new IllegalStateException("No fuel price rows");
+            }
+            if (sorted) {
+                return new PriceHistory(Arrays.copyOf(days, count), Arrays.copyOf(ron95, count),
+                        Arrays.copyOf(ron97, count), Arrays.copyOf(diesel, count));
+            }
+            // the API lists newest first; sort the rows by date (day * 2^20 + row keeps it a primitive sort)
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = ((long) days[i] << 20) | i;
+            }
+            Arrays.sort(keys);
+            int[] d = new int[count];
+            int[] r95 = new int[count];
+            int[] r97 = new int[count];
+            int[] ds = new int[count];
+            for (int i = 0; i < count; i++) {
+                int row = (int) (keys[i] & 0xFFFFF);
+                d[i] = days[row];
+                r95[i] = ron95[row];
+                r97[i] = ron97[row];
+                ds[i] = diesel[row];
+            }
+            return new PriceHistory(d, r95, r97, ds);
+        }
+
+        private static int toSen(double price) {
+            return Double.isNaN(price) ? -1 : (int) Math.round(price * 100);
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package pricing;
+
+// told about every upstream refresh attempt, e.g. for metrics
+public interface PriceRefreshListener {
+    void refreshed(long latencyNanos, boolean ok);
+}
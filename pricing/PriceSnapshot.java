@@ -0,0 +1,99 @@
+package pricing;
+
+import engine.FuelGrade;
+import money.Money;
+
+// immutable set of fuel prices, swapped in whole so a sale never sees half an update.
+// prices are held in sen per litre; a price that is not a finite number is kept as 0 (invalid).
+// version is set by PriceTable when the prices take effect (0 = never published); receipts record it
+public final class PriceSnapshot {
+    private final long[] sen; // indexed by FuelGrade.code()
+    private final long fetchedAtMillis;
+    private final long version;
+
+    public PriceSnapshot(double ron95, double ron97, double diesel, long fetchedAtMillis) {
+        this(ron95, ron97, diesel, fetchedAtMillis, 0L);
+    }
+
+    public PriceSnapshot(double ron95, double ron97, double diesel, long fetchedAtMillis, long version) {
+        this(toSen(ron95), toSen(ron97), toSen(diesel), fetchedAtMillis, version);
+    }
+
+    private PriceSnapshot(long ron95Sen, long ron97Sen, long dieselSen, long fetchedAtMillis, long version) {
+        this.sen = new long[FuelGrade.count()];
+        sen[FuelGrade.RON95.code()] = ron95Sen;
+        sen[FuelGrade.RON97.code()] = ron97Sen;
+        sen[FuelGrade.DIESEL.code()] = dieselSen;
+        this.fetchedAtMillis = fetchedAtMillis;
+        this.version = version;
+    }
+
+    public static PriceSnapshot ofSen(long ron95Sen, long ron97Sen, long dieselSen, long fetchedAtMillis) {
+        return new PriceSnapshot(ron95Sen, ron97Sen, dieselSen, fetchedAtMillis, 0L);
+    }
+
+    private static long toSen(double price) {
+        return Money.isConvertible(price, Money.SEN_PER_RINGGIT) ? Money.sen(price) : 0L;
+    }
+
+    public PriceSnapshot withVersion(long version) {
+        return new PriceSnapshot(sen[FuelGrade.RON95.code()], sen[FuelGrade.RON97.code()], sen[FuelGrade.DIESEL.code()],
+                fetchedAtMillis, version);
+    }
+
+    // same prices for every grade, whatever the version or fetch time
+    public boolean samePrices(PriceSnapshot other) {
+        for (int i = 0; i < sen.length; i++) {
+            if (sen[i] != other.sen[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // latest updated price 2017, used when nothing has ever been fetched
+    public static PriceSnapshot fallback2017() {
+        return new PriceSnapshot(2.03, 2.28, 1.99, 0L);
+    }
+
+    public double price(FuelGrade grade) {
+        return Money.ringgit(sen[grade.code()]);
+    }
+
+    public long priceSen(FuelGrade grade) {
+        return sen[grade.code()];
+    }
+
+    public double price(String fuelType) {
+        return price(FuelGrade.of(fuelType));
+    }
+
+    public double getRon95() {
+        return Money.ringgit(sen[FuelGrade.RON95.code()]);
+    }
+
+    public double getRon97() {
+        return Money.ringgit(sen[FuelGrade.RON97.code()]);
+    }
+
+    public double getDiesel() {
+        return Money.ringgit(sen[FuelGrade.DIESEL.code()]);
+    }
+
+    public long getFetchedAtMillis() {
+        return fetchedAtMillis;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isValid() {
+        for (long price : sen) {
+            if (price <= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,8 @@
+package pricing;
+
+import java.io.IOException;
+
+// where prices come from (the data.gov.my API, a fixed table, a local stub...)
+public interface PriceSource {
+    PriceSnapshot fetch() throws IOException;
+}
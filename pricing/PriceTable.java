@@ -0,0 +1,183 @@
+package pricing;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+// the prices sales are charged at: one immutable, versioned PriceSnapshot behind a single atomic reference.
+// a change is a new snapshot swapped in whole, so a sale sees either the old table or the
+// new one, never a mix, and never waits. changes come from the upstream provider (polled off the sale path),
+// from publish(), or from activations scheduled ahead of time such as the weekly Wednesday-midnight change.
+// a failed upstream refresh changes nothing: the last published prices stay in force.
+// the version is the time the prices took effect (epoch millis, bumped by one if two changes share a millisecond),
+// so it is unique and increasing across restarts and a receipt's version says which prices it was charged at
+public class PriceTable implements FuelPriceProvider {
+    public static final ZoneId MALAYSIA = ZoneId.of("Asia/Kuala_Lumpur");
+
+    private final FuelPriceProvider upstream;
+    private final LongSupplier clockMillis;
+    private final AtomicReference<PriceSnapshot> current;
+    private final ConcurrentSkipListMap<Long, PriceSnapshot> scheduled = new ConcurrentSkipListMap<>();
+    private final ScheduledExecutorService poller;
+    private volatile long nextActivationMillis = Long.MAX_VALUE;
+    private PriceSnapshot lastUpstream;
+
+    // upstream may be null for a table fed only by publish() and schedule()
+    public PriceTable(FuelPriceProvider upstream, PriceSnapshot initial, long pollMillis) {
+        this(upstream, initial, pollMillis, System::currentTimeMillis);
+    }
+
+    public PriceTable(FuelPriceProvider upstream, PriceSnapshot initial, long pollMillis, LongSupplier clockMillis) {
+        this.upstream = upstream;
+        this.clockMillis = clockMillis;
+        this.current = new AtomicReference<>(initial.withVersion(clockMillis.getAsLong()));
+        if (upstream != null && pollMillis > 0) {
+            poller = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "price-table");
+                thread.setDaemon(true);
+                return thread;
+            });
+            poller.scheduleWithFixedDelay(this::poll, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+        } else {
+            poller = null;
+        }
+    }
+
+    // one volatile read; a scheduled change that is due is switched in here, so it applies to the first sale
+    // after its time even if the poller is late
+    @Override
+    public PriceSnapshot current() {
+        if (clockMillis.getAsLong() >= nextActivationMillis) {
+            activateDue();
+        }
+        return current.get();
+    }
+
+    // makes prices effective now; returns the snapshot in force afterwards (unchanged when the prices are the same)
+    public PriceSnapshot publish(PriceSnapshot prices) {
+        return publish(prices, clockMillis.getAsLong());
+    }
+
+    private PriceSnapshot publish(PriceSnapshot prices, long effectiveAtMillis) {
+        if (!prices.isValid()) {
+            throw new IllegalArgumentException("Refusing to publish invalid prices");
+        }
+        while (true) {
+            PriceSnapshot previous = current.get();
+            if (previous.samePrices(prices)) {
+                return previous;
+            }
+            PriceSnapshot next = prices.withVersion(Math.max(previous.getVersion() + 1, effectiveAtMillis));
+            if (current.compareAndSet(previous, next)) {
+                return next;
+            }
+        }
+    }
+
+    // prices that take effect at effectiveAtMillis; a later schedule for the same instant replaces this one
+    public void schedule(PriceSnapshot prices, long effectiveAtMillis) {
+        if (!prices.isValid()) {
+            throw new IllegalArgumentException("Refusing to schedule invalid prices");
+        }
+        scheduled.put(effectiveAtMillis, prices);
+        updateNextActivation();
+        if (clockMillis.getAsLong() >= effectiveAtMillis) {
+            activateDue();
+        }
+    }
+
+    public boolean cancel(long effectiveAtMillis) {
+        boolean removed = scheduled.remove(effectiveAtMillis) != null;
+        updateNextActivation();
+        return removed;
+    }
+
+    // pending activations by time
+    public Map<Long, PriceSnapshot> getScheduled() {
+        return new ConcurrentSkipListMap<>(scheduled);
+    }
+
+    // picks up a change from the upstream provider; called by the poller and once after a blocking refresh
+    public synchronized void poll() {
+        if (upstream == null) {
+            return;
+        }
+        PriceSnapshot latest = upstream.current();
+        if (latest != lastUpstream) {
+            PriceSnapshot previous = lastUpstream;
+            lastUpstream = latest;
+            // only a real change upstream is published, so a scheduled change is not undone by an
+            // upstream that has not caught up with it yet
+            if (latest.isValid() && (previous == null || !previous.samePrices(latest))) {
+                publish(latest);
+            }
+        }
+        if (clockMillis.getAsLong() >= nextActivationMillis) {
+            activateDue();
+        }
+    }
+
+    // publishes the latest due change before removing it, so no sale can slip through in between;
+    // two threads doing this at once publish the same prices, which gives one version.
+    // only the entries seen here are removed, and only if unchanged: a schedule() that lands meanwhile,
+    // at the same instant or an earlier one, stays and is activated in turn
+    private void activateDue() {
+        long now = clockMillis.getAsLong();
+        Map.Entry<Long, PriceSnapshot> latest = scheduled.floorEntry(now);
+        if (latest != null) {
+            // due changes waiting before this one; it supersedes them
+            List<Map.Entry<Long, PriceSnapshot>> superseded = new ArrayList<>(scheduled.headMap(latest.getKey()).entrySet());
+            publish(latest.getValue(), latest.getKey());
+            scheduled.remove(latest.getKey(), latest.getValue());
+            for (Map.Entry<Long, PriceSnapshot> entry : superseded) {
+                scheduled.remove(entry.getKey(), entry.getValue());
+            }
+        }
+        updateNextActivation();
+    }
+
+    // read again after the write, so a racing schedule() or activation cannot leave a stale time behind
+    private void updateNextActivation() {
+        long next;
+        do {
+            next = firstKey();
+            nextActivationMillis = next;
+        } while (next != firstKey());
+    }
+
+    private long firstKey() {
+        Map.Entry<Long, PriceSnapshot> first = scheduled.firstEntry();
+        return first == null ? Long.MAX_VALUE : first.getKey();
+    }
+
+    // next Wednesday 00:00 in the given zone, strictly after nowMillis: when the weekly prices change
+    public static long nextWeeklyChange(long nowMillis, ZoneId zone) {
+        ZonedDateTime now = Instant.ofEpochMilli(nowMillis).atZone(zone);
+        ZonedDateTime midnight = now.toLocalDate().with(TemporalAdjusters.nextOrSame(DayOfWeek.WEDNESDAY)).atStartOfDay(zone);
+        if (!midnight.isAfter(now)) {
+            midnight = midnight.plusWeeks(1);
+        }
+        return midnight.toInstant().toEpochMilli();
+    }
+
+    @Override
+    public void close() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+        if (upstream != null) {
+            upstream.close();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package pricing;
+
+// fixed prices, used for the version without API
+public class StaticPriceSource implements PriceSource, FuelPriceProvider {
+    private final PriceSnapshot snapshot;
+
+    public StaticPriceSource(double ron95, double ron97, double diesel) {
+        this.snapshot = new PriceSnapshot(ron95, ron97, diesel, System.currentTimeMillis());
+    }
+
+    @Override
+    public PriceSnapshot fetch() {
+        return snapshot;
+    }
+
+    @Override
+    public PriceSnapshot current() {
+        return snapshot;
+    }
+}
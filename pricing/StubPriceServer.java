@@ -0,0 +1,109 @@
+package pricing;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// local stand-in for api.data.gov.my so tests and benchmarks never hit the real network.
+// can inject latency and failures, and counts the client connections it has seen
+public class StubPriceServer implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private volatile String body;
+    private volatile int status = 200;
+    private volatile int failureStatus = 503;
+    private volatile long delayMillis;
+
+    public StubPriceServer(double ron95, double ron97, double diesel) throws IOException {
+        setPrices(ron95, ron97, diesel);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/data-catalogue/", exchange -> {
+            requests.incrementAndGet();
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            long delay = delayMillis;
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            int code = failuresLeft.getAndUpdate(n -> Math.max(0, n - 1)) > 0 ? failureStatus : status;
+            if (code == 200) {
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            } else {
+                exchange.sendResponseHeaders(code, -1);
+                exchange.close();
+            }
+        });
+        // a delayed answer must not hold up the others
+        handlers = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "stub-price-server");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(handlers);
+        server.start();
+    }
+
+    public void setPrices(double ron95, double ron97, double diesel) {
+        body = "[{\"series_type\":\"level\",\"date\":\"2024-01-03\",\"ron95\":" + ron95
+                + ",\"ron97\":" + ron97 + ",\"diesel\":" + diesel + ",\"diesel_eastmsia\":" + diesel + "}]";
+    }
+
+    // make the stub answer with an error status (e.g. 503) until set back to 200
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    // answer every request this much later
+    public void setDelayMillis(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    // answer the next count requests with status, then go back to normal
+    public void failNext(int count, int status) {
+        failureStatus = status;
+        failuresLeft.set(count);
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/data-catalogue/?id=fuelprice&limit=1";
+    }
+
+    public int requestCount() {
+        return requests.get();
+    }
+
+    // distinct client connections (by remote port) seen so far
+    public int connectionCount() {
+        return clientPorts.size();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    public static void main(String[] args) throws IOException {
+        StubPriceServer stub = new StubPriceServer(2.05, 3.47, 2.15);
+        System.out.println("Stub fuel price API running at " + stub.url());
+    }
+}
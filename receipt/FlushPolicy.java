@@ -0,0 +1,11 @@
+package receipt;
+
+// when the journal writer forces appended receipts to disk
+public enum FlushPolicy {
+    // fsync after every batch the writer drains from the queue
+    PER_BATCH,
+    // write every batch, fsync at most once per flush interval
+    TIMED,
+    // wait up to the flush interval for a bigger batch, then one fsync for the whole group
+    GROUP_COMMIT
+}
@@ -0,0 +1,143 @@
+package receipt;
+
+import engine.FuelGrade;
+import money.Money;
+
+import java.io.PrintWriter;
+
+// one sale as it is written to the journal, litres and total held exactly in millilitres and sen
+public final class Receipt {
+    private final long number;
+    private final int dispenser;
+    private final FuelGrade fuelGrade;
+    private final long litresMl;
+    private final long totalSen;
+    private final long timestampMillis;
+    private final long priceVersion; // PriceSnapshot.getVersion() the sale was charged at, 0 if unknown
+    private final long requestId; // the terminal's idempotency key, 0 for none
+
+    public Receipt(long number, int dispenser, FuelGrade fuelGrade, double litres, double totalPrice, long timestampMillis) {
+        this(number, dispenser, fuelGrade, litres, totalPrice, timestampMillis, 0L);
+    }
+
+    public Receipt(long number, int dispenser, FuelGrade fuelGrade, double litres, double totalPrice, long timestampMillis,
+                   long priceVersion) {
+        this(number, dispenser, fuelGrade, Money.ml(litres), Money.sen(totalPrice), timestampMillis, priceVersion, 0L);
+    }
+
+    private Receipt(long number, int dispenser, FuelGrade fuelGrade, long litresMl, long totalSen, long timestampMillis,
+                    long priceVersion, long requestId) {
+        this.number = number;
+        this.dispenser = dispenser;
+        this.fuelGrade = fuelGrade;
+        this.litresMl = litresMl;
+        this.totalSen = totalSen;
+        this.timestampMillis = timestampMillis;
+        this.priceVersion = priceVersion;
+        this.requestId = requestId;
+    }
+
+    // a sale as the engine worked it out, with no rounding on the way in
+    public static Receipt exact(long number, int dispenser, FuelGrade fuelGrade, long litresMl, long totalSen,
+                                long timestampMillis, long priceVersion) {
+        return exact(number, dispenser, fuelGrade, litresMl, totalSen, timestampMillis, priceVersion, 0L);
+    }
+
+    // the same for a sale a terminal sent with an idempotency key
+    public static Receipt exact(long number, int dispenser, FuelGrade fuelGrade, long litresMl, long totalSen,
+                                long timestampMillis, long priceVersion, long requestId) {
+        return new Receipt(number, dispenser, fuelGrade, litresMl, totalSen, timestampMillis, priceVersion, requestId);
+    }
+
+    // journal line: number, dispenser, fuel type, litres, total price, timestamp, price version separated by tabs,
+    // then the request id for sales that have one
+    void appendLogLine(StringBuilder sb) {
+        appendLogLine(sb, number, dispenser, fuelGrade, litresMl, totalSen, timestampMillis, priceVersion, requestId);
+    }
+
+    // the same line without a Receipt object, for writers that produce receipts in bulk.
+    // litres are written with three decimals and the total with two, so the text is exact
+    public static void appendLogLine(StringBuilder sb, long number, int dispenser, FuelGrade fuelGrade, long litresMl,
+                                     long totalSen, long timestampMillis, long priceVersion) {
+        appendLogLine(sb, number, dispenser, fuelGrade, litresMl, totalSen, timestampMillis, priceVersion, 0L);
+    }
+
+    public static void appendLogLine(StringBuilder sb, long number, int dispenser, FuelGrade fuelGrade, long litresMl,
+                                     long totalSen, long timestampMillis, long priceVersion, long requestId) {
+        sb.append(number).append('\t')
+                .append(dispenser).append('\t')
+                .append(fuelGrade.key()).append('\t');
+        Money.appendMl(sb, litresMl).append('\t');
+        Money.appendSen(sb, totalSen).append('\t')
+                .append(timestampMillis).append('\t')
+                .append(priceVersion);
+        if (requestId != 0L) {
+            sb.append('\t').append(requestId);
+        }
+        sb.append('\n');
+    }
+
+    // journals written before price versions have six fields; older journals wrote full doubles
+    // ("9.75609756097561"), which are rounded to the ml and sen here
+    static Receipt parseLogLine(String line) {
+        String[] fields = line.split("\t");
+        if (fields.length < 6 || fields.length > 8) {
+            throw new IllegalArgumentException("Bad journal line: " + line);
+        }
+        return exact(Long.parseLong(fields[0]), Integer.parseInt(fields[1]), FuelGrade.of(fields[2]),
+                Money.parseMl(fields[3]), Money.parseSen(fields[4]), Long.parseLong(fields[5]),
+                fields.length >= 7 ? Long.parseLong(fields[6]) : 0L, fields.length == 8 ? Long.parseLong(fields[7]) : 0L);
+    }
+
+    // same layout as the old receipt_N.txt files, plus the price version when there is one
+    public void writeText(PrintWriter writer) {
+        writer.println("Receipt Number: " + number);
+        writer.println("Dispenser: " + dispenser);
+        writer.println("Fuel Type: " + fuelGrade.key());
+        writer.println("Litres: " + Money.formatLitres(litresMl));
+        writer.println("Total Price: RM" + Money.formatSen(totalSen));
+        if (priceVersion > 0) {
+            writer.println("Price Version: " + priceVersion);
+        }
+    }
+
+    public long getNumber() {
+        return number;
+    }
+
+    public int getDispenser() {
+        return dispenser;
+    }
+
+    public FuelGrade getFuelGrade() {
+        return fuelGrade;
+    }
+
+    public double getLitres() {
+        return Money.litres(litresMl);
+    }
+
+    public double getTotalPrice() {
+        return Money.ringgit(totalSen);
+    }
+
+    public long getLitresMl() {
+        return litresMl;
+    }
+
+    public long getTotalSen() {
+        return totalSen;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public long getPriceVersion() {
+        return priceVersion;
+    }
+
+    public long getRequestId() {
+        return requestId;
+    }
+}
@@ -0,0 +1,148 @@
+package receipt;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+
+// turns journal entries back into individual receipt_N.txt files when somebody asks for them
+public class ReceiptExporter {
+    private final Path journalDirectory;
+
+    public ReceiptExporter(Path journalDirectory) {
+        this.journalDirectory = journalDirectory;
+    }
+
+    // journal segments first, then the files written by batch replays
+    public void forEach(Consumer<Receipt> action) throws IOException {
+        List<Path> files = ReceiptJournal.segments(journalDirectory);
+        files.addAll(ReceiptJournal.batchFiles(journalDirectory));
+        for (Path segment : files) {
+            try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isEmpty()) {
+                        action.accept(Receipt.parseLogLine(line));
+                    }
+                }
+            }
+        }
+    }
+
+    // receipts of one journal or batch file from a byte offset on, complete lines only (the writer may be mid-line);
+    // returns the offset after the last complete line, where the next read should start
+    public static long readFrom(Path file, long offset, Consumer<Receipt> action) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+            long position = offset;
+            long consumed = offset;
+            while (true) {
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    return consumed;
+                }
+                position += read;
+                buffer.flip();
+                byte[] bytes = buffer.array();
+                int start = 0;
+                for (int i = 0; i < buffer.limit(); i++) {
+                    if (bytes[i] == '\n') {
+                        if (i > start) {
+                            action.accept(Receipt.parseLogLine(new String(bytes, start, i - start, StandardCharsets.UTF_8)));
+                        }
+                        start = i + 1;
+                    }
+                }
+                consumed += start;
+                if (start == 0 && buffer.limit() == buffer.capacity()) {
+                    throw new IOException("Journal line longer than " + buffer.capacity() + " bytes in " + file);
+                }
+                buffer.position(start);
+                buffer.compact();
+            }
+        }
+    }
+
+    public Receipt find(long receiptNumber) throws IOException {
+        Receipt[] found = new Receipt[1];
+        forEach(receipt -> {
+            if (receipt.getNumber() == receiptNumber) {
+                found[0] = receipt;
+            }
+        });
+        return found[0];
+    }
+
+    // writes receipt_N.txt for one receipt, returns null when it is not in the journal
+    public Path export(long receiptNumber, Path outputDirectory) throws IOException {
+        Receipt receipt = find(receiptNumber);
+        return receipt == null ? null : writeReceiptFile(receipt, outputDirectory);
+    }
+
+    public int exportAll(Path outputDirectory) throws IOException {
+        int[] count = new int[1];
+        IOException[] error = new IOException[1];
+        forEach(receipt -> {
+            if (error[0] != null) {
+                return;
+            }
+            try {
+                writeReceiptFile(receipt, outputDirectory);
+                count[0]++;
+            } catch (IOException e) {
+                error[0] = e;
+            }
+        });
+        if (error[0] != null) {
+            throw error[0];
+        }
+        return count[0];
+    }
+
+    public static Path writeReceiptFile(Receipt receipt, Path outputDirectory) throws IOException {
+        return writeReceiptFile(receipt, outputDirectory, "receipt_");
+    }
+
+    // <filePrefix><number>.txt, e.g. receiptwithapi_3.txt
+    public static Path writeReceiptFile(Receipt receipt, Path outputDirectory, String filePrefix) throws IOException {
+        return writeReceiptFile(receipt, outputDirectory, filePrefix, true);
+    }
+
+    // replace false: FileAlreadyExistsException rather than overwrite a receipt that is already there
+    public static Path writeReceiptFile(Receipt receipt, Path outputDirectory, String filePrefix, boolean replace)
+            throws IOException {
+        Files.createDirectories(outputDirectory);
+        Path file = outputDirectory.resolve(filePrefix + receipt.getNumber() + ".txt");
+        StandardOpenOption create = replace ? StandardOpenOption.CREATE : StandardOpenOption.CREATE_NEW;
+        try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(Files.newOutputStream(file, create,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)))) {
+            receipt.writeText(writer);
+        }
+        return file;
+    }
+
+    // usage: java receipt.ReceiptExporter <journalDir> <outputDir> [receiptNumber]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: ReceiptExporter <journalDir> <outputDir> [receiptNumber]");
+            return;
+        }
+        ReceiptExporter exporter = new ReceiptExporter(Paths.get(args[0]));
+        Path output = Paths.get(args[1]);
+        if (args.length > 2) {
+            Path file = exporter.export(Long.parseLong(args[2]), output);
+            System.out.println(file == null ? "Receipt not found." : "Receipt saved to " + file);
+        } else {
+            System.out.println("Exported " + exporter.exportAll(output) + " receipts to " + output);
+        }
+    }
+}
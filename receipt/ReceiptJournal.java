@@ -0,0 +1,293 @@
+package receipt;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+// append-only receipt log. sales put receipts on a bounded queue and return straight away;
+// one writer thread drains them in batches into segment files (receipts-00000001.log, ...)
+public class ReceiptJournal implements AutoCloseable {
+    public static final String SEGMENT_PREFIX = "receipts-";
+    public static final String SEGMENT_SUFFIX = ".log";
+    // receipts written in one go by batch.BatchProcessor, same line format as the segments
+    public static final String BATCH_PREFIX = "batch-";
+
+    private final Path directory;
+    private final FlushPolicy flushPolicy;
+    private final long flushIntervalNanos;
+    private final long segmentBytes;
+    private final int maxBatch;
+    private final ArrayBlockingQueue<Receipt> queue;
+    private final Thread writer;
+
+    private final Object enqueueLock = new Object();
+    private final Object durableLock = new Object();
+    private long enqueued; // guarded by enqueueLock
+    private volatile boolean closed; // set under enqueueLock, so no receipt is queued after close() has begun
+    private volatile int waitingForRoom;
+    private volatile long durable;
+    private volatile IOException failure;
+    private volatile LongConsumer flushListener;
+
+    private FileChannel segment;
+    private int segmentIndex;
+    private long lastForceNanos;
+    private long written;
+
+    public ReceiptJournal(Path directory) throws IOException {
+        this(directory, FlushPolicy.PER_BATCH, 8192, 10, 64L * 1024 * 1024);
+    }
+
+    public ReceiptJournal(Path directory, FlushPolicy flushPolicy, int queueCapacity, long flushIntervalMillis,
+                          long segmentBytes) throws IOException {
+        this.directory = directory;
+        this.flushPolicy = flushPolicy;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.segmentBytes = segmentBytes;
+        this.maxBatch = Math.max(1, Math.min(queueCapacity, 1024));
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        Files.createDirectories(directory);
+        List<Path> existing = segments(directory);
+        segmentIndex = existing.isEmpty() ? 1 : segmentNumber(existing.get(existing.size() - 1));
+        openSegment();
+        lastForceNanos = System.nanoTime();
+
+        writer = new Thread(this::runWriter, "receipt-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // queues the receipt; blocks only when the queue is full (back-pressure). returns a ticket for awaitDurable.
+    // IllegalStateException once the journal is closed or its writer has stopped
+    public long append(Receipt receipt) throws InterruptedException {
+        synchronized (enqueueLock) {
+            while (true) {
+                if (closed) {
+                    throw new IllegalStateException("Receipt journal is closed");
+                }
+                // nothing would ever write the receipt
+                if (failure != null || !writer.isAlive()) {
+                    throw new IllegalStateException("Receipt journal writer stopped", failure);
+                }
+                // offer, never put: a full queue must not hold the lock that flush() and close() need
+                if (queue.offer(receipt)) {
+                    return ++enqueued;
+                }
+                // wait() lets go of the lock; the writer wakes us when it takes a batch, the timeout covers a missed wake-up
+                waitingForRoom++;
+                try {
+                    enqueueLock.wait(10);
+                } finally {
+                    waitingForRoom--;
+                }
+            }
+        }
+    }
+
+    // waits until the receipt with this ticket has been forced to disk
+    public void awaitDurable(long ticket) throws InterruptedException, IOException {
+        synchronized (durableLock) {
+            while (durable < ticket) {
+                if (failure != null) {
+                    throw failure;
+                }
+                if (!writer.isAlive()) {
+                    throw new IOException("Receipt journal writer stopped");
+                }
+                durableLock.wait(100);
+            }
+        }
+    }
+
+    // waits until everything appended so far is on disk
+    public void flush() throws InterruptedException, IOException {
+        long ticket;
+        synchronized (enqueueLock) {
+            ticket = enqueued;
+        }
+        awaitDurable(ticket);
+    }
+
+    public long durableCount() {
+        return durable;
+    }
+
+    public int backlog() {
+        return queue.size();
+    }
+
+    // told how long each batch took to write (and force, if the policy forced it)
+    public void setFlushListener(LongConsumer flushListener) {
+        this.flushListener = flushListener;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    private void runWriter() {
+        List<Receipt> batch = new ArrayList<>(maxBatch);
+        StringBuilder line = new StringBuilder(128);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(256 * 1024);
+        try {
+            while (!closed || !queue.isEmpty()) {
+                Receipt first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    if (written > durable) {
+                        force();
+                    }
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                if (flushPolicy == FlushPolicy.GROUP_COMMIT) {
+                    long deadline = System.nanoTime() + flushIntervalNanos;
+                    while (batch.size() < maxBatch && !closed) {
+                        long remaining = deadline - System.nanoTime();
+                        Receipt next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                        queue.drainTo(batch, maxBatch - batch.size());
+                    }
+                }
+                if (waitingForRoom > 0) {
+                    synchronized (enqueueLock) {
+                        enqueueLock.notifyAll();
+                    }
+                }
+
+                long writeStart = System.nanoTime();
+                for (Receipt receipt : batch) {
+                    line.setLength(0);
+                    receipt.appendLogLine(line);
+                    byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+                    if (buffer.remaining() < bytes.length) {
+                        drain(buffer);
+                    }
+                    buffer.put(bytes);
+                }
+                drain(buffer);
+                written += batch.size();
+                batch.clear();
+
+                if (flushPolicy != FlushPolicy.TIMED || System.nanoTime() - lastForceNanos >= flushIntervalNanos) {
+                    force();
+                }
+                LongConsumer listener = flushListener;
+                if (listener != null) {
+                    listener.accept(System.nanoTime() - writeStart);
+                }
+                if (segment.size() >= segmentBytes) {
+                    segment.close();
+                    segmentIndex++;
+                    openSegment();
+                }
+            }
+            force();
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                segment.close();
+            } catch (IOException ignored) {
+                // nothing left to do
+            }
+            synchronized (durableLock) {
+                durableLock.notifyAll();
+            }
+        }
+    }
+
+    private void drain(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            segment.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void force() throws IOException {
+        segment.force(false);
+        lastForceNanos = System.nanoTime();
+        synchronized (durableLock) {
+            durable = written;
+            durableLock.notifyAll();
+        }
+    }
+
+    private void openSegment() throws IOException {
+        Path path = directory.resolve(segmentName(segmentIndex));
+        segment = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    // appends after this get IllegalStateException; everything queued before it is written out first
+    @Override
+    public void close() throws IOException {
+        synchronized (enqueueLock) {
+            closed = true;
+            enqueueLock.notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing the receipt journal");
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    static String segmentName(int index) {
+        return String.format("%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX);
+    }
+
+    static int segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    // segment files in write order
+    public static List<Path> segments(Path directory) throws IOException {
+        return list(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX);
+    }
+
+    // bulk receipt files in the journal directory, in receipt order
+    public static List<Path> batchFiles(Path directory) throws IOException {
+        return list(directory, BATCH_PREFIX + "*" + SEGMENT_SUFFIX);
+    }
+
+    public static String batchFileName(long firstReceipt) {
+        return String.format("%s%016d%s", BATCH_PREFIX, firstReceipt, SEGMENT_SUFFIX);
+    }
+
+    private static List<Path> list(Path directory, String glob) throws IOException {
+        List<Path> result = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return result;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+            for (Path path : stream) {
+                result.add(path);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+}
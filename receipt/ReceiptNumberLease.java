@@ -0,0 +1,176 @@
+package receipt;
+
+import engine.ReceiptSequence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// receipt numbers leased in blocks from a counter file that every process writing to one receipt folder shares.
+// the file holds the first number nobody has leased yet (8 bytes); a lease reads it and moves it on by blockSize
+// under FileChannel.lock, once per block, so sales themselves never coordinate. within a block numbers go out
+// lock-free. a process that stops leaves a gap of at most the rest of its block, and none when close() can hand
+// the rest back because nobody leased after it
+public final class ReceiptNumberLease implements ReceiptSequence {
+    public static final String FILE_NAME = "receipt.seq";
+
+    // FileChannel locks belong to the whole JVM (a second lock from this JVM throws), so leases on one file in this
+    // JVM take turns on a monitor first
+    private static final ConcurrentHashMap<Path, Object> LOCAL_LOCKS = new ConcurrentHashMap<>();
+
+    private final Path file;
+    private final int blockSize;
+    private final long first;
+    private final Object localLock;
+    private volatile Block block;
+    private boolean closed;
+    private long leases;
+
+    // first: the lowest number to hand out when the counter is behind it (a new file, or receipts older than it)
+    public ReceiptNumberLease(Path file, int blockSize, long first) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        this.file = file.toAbsolutePath().normalize();
+        this.blockSize = blockSize;
+        this.first = first;
+        localLock = LOCAL_LOCKS.computeIfAbsent(this.file, key -> new Object());
+        try {
+            if (this.file.getParent() != null) {
+                Files.createDirectories(this.file.getParent());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error opening receipt counter " + file, e);
+        }
+        block = lease();
+    }
+
+    @Override
+    public long next() {
+        Block current = block;
+        long number = current.next.getAndIncrement();
+        return number < current.end ? number : nextBlock(current);
+    }
+
+    private synchronized long nextBlock(Block exhausted) {
+        while (true) {
+            Block current = block;
+            if (current != exhausted) {
+                long number = current.next.getAndIncrement();
+                if (number < current.end) {
+                    return number;
+                }
+                exhausted = current;
+            } else if (closed) {
+                throw new IllegalStateException("Receipt numbers from " + file + " are closed");
+            } else {
+                block = lease();
+            }
+        }
+    }
+
+    @Override
+    public long peek() {
+        Block current = block;
+        return Math.min(current.next.get(), current.end);
+    }
+
+    // hands the unused rest of the block back if the counter still stands at its end
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        Block current = block;
+        // anything taken from now on is past the end and lands in nextBlock, which refuses
+        long unused = Math.min(current.next.getAndSet(current.end), current.end);
+        if (unused == current.end) {
+            return;
+        }
+        synchronized (localLock) {
+            try (FileChannel channel = open()) {
+                FileLock lock = channel.lock();
+                try {
+                    if (read(channel) == current.end) {
+                        write(channel, unused);
+                    }
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error returning receipt numbers to " + file, e);
+            }
+        }
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    // blocks taken so far, i.e. how often this process touched the counter file
+    public synchronized long getLeases() {
+        return leases;
+    }
+
+    private Block lease() {
+        long start;
+        synchronized (localLock) {
+            try (FileChannel channel = open()) {
+                FileLock lock = channel.lock();
+                try {
+                    start = Math.max(read(channel), first);
+                    write(channel, Math.addExact(start, blockSize));
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error leasing receipt numbers from " + file, e);
+            }
+        }
+        leases++;
+        return new Block(start, start + blockSize);
+    }
+
+    private FileChannel open() throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    // 0 for a new (or short) file
+    private static long read(FileChannel channel) throws IOException {
+        if (channel.size() < Long.BYTES) {
+            return 0L;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        int read;
+        do {
+            read = channel.read(buffer, buffer.position());
+        } while (read >= 0 && buffer.hasRemaining());
+        return buffer.getLong(0);
+    }
+
+    private static void write(FileChannel channel, long value) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).putLong(0, value);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, buffer.position());
+        }
+        channel.force(false);
+    }
+
+    private static final class Block {
+        final AtomicLong next;
+        final long end;
+
+        Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
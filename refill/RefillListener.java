@@ -0,0 +1,6 @@
+package refill;
+
+// told about every refill the scheduler delivers, on the scheduler's thread
+public interface RefillListener {
+    void refilled(int dispenser, long litresMl);
+}
@@ -0,0 +1,205 @@
+package refill;
+
+import engine.DispenserEngine;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.LongSupplier;
+
+// refills tanks before they run low instead of after a sale has been refused.
+// every tick it samples each tank, keeps an exponentially weighted consumption rate (ml/s) and projects when
+// the tank will drop below the minimum, keeping back room for one more large sale (the recent peak drawn in a
+// single tick, decaying over the smoothing period). a refill is ordered when that is closer than the delivery lead time
+// plus a safety margin; tanks that would need one soon after ride along in the same batch.
+// deliveries top the tank up with DispenserEngine.fillUp, a single atomic swap, so sales never wait for it
+public class RefillScheduler implements AutoCloseable {
+    private static final long NOT_ORDERED = -1L;
+
+    private final DispenserEngine engine;
+    private final long minLevelMl;
+    private final long leadTimeMillis;
+    private final long safetyMillis;
+    private final double smoothingMillis;
+    private final LongSupplier clockMillis;
+    private final double[] rateMlPerSecond;
+    private final long[] lastLevelMl;
+    private final long[] pendingUseMl;
+    private final double[] peakMl;
+    private final long[] arrivalMillis;
+    private final AtomicIntegerArray urgent;
+    private long lastSampleMillis;
+    private volatile RefillListener listener;
+    private volatile long refills;
+    private volatile long batches;
+    private ScheduledExecutorService ticker;
+
+    public RefillScheduler(DispenserEngine engine, long minLevelMl, long leadTimeMillis) {
+        this(engine, minLevelMl, leadTimeMillis, 60_000L, 300_000L, System::currentTimeMillis);
+    }
+
+    // smoothingMillis is the EWMA time constant: how quickly the rate follows a change such as a rush hour
+    public RefillScheduler(DispenserEngine engine, long minLevelMl, long leadTimeMillis, long safetyMillis,
+                           long smoothingMillis, LongSupplier clockMillis) {
+        this.engine = engine;
+        this.minLevelMl = minLevelMl;
+        this.leadTimeMillis = leadTimeMillis;
+        this.safetyMillis = safetyMillis;
+        this.smoothingMillis = smoothingMillis;
+        this.clockMillis = clockMillis;
+        int n = engine.size();
+        rateMlPerSecond = new double[n];
+        lastLevelMl = new long[n];
+        pendingUseMl = new long[n];
+        peakMl = new double[n];
+        arrivalMillis = new long[n];
+        urgent = new AtomicIntegerArray(n);
+        for (int d = 0; d < n; d++) {
+            lastLevelMl[d] = engine.levelMl(d);
+            arrivalMillis[d] = NOT_ORDERED;
+        }
+        lastSampleMillis = clockMillis.getAsLong();
+    }
+
+    public void setListener(RefillListener listener) {
+        this.listener = listener;
+    }
+
+    // runs tick() on a daemon thread every tickMillis
+    public synchronized void start(long tickMillis) {
+        if (ticker != null) {
+            return;
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "refill-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(() -> {
+            try {
+                tick();
+            } catch (RuntimeException e) {
+                System.err.println("Refill scheduler: " + e);
+            }
+        }, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // a sale found the tank short: order a refill on the next tick whatever the projection says
+    public void requestRefill(int dispenser) {
+        if (engine.isValidDispenser(dispenser)) {
+            urgent.set(dispenser, 1);
+        }
+    }
+
+    // one round of deliver, sample, project and order. not thread-safe: called by the ticker or a simulation
+    public void tick() {
+        long now = clockMillis.getAsLong();
+        deliver(now);
+        sample(now);
+        order(now);
+    }
+
+    private void deliver(long now) {
+        for (int d = 0; d < arrivalMillis.length; d++) {
+            if (arrivalMillis[d] != NOT_ORDERED && arrivalMillis[d] <= now) {
+                long before = engine.levelMl(d);
+                long added = engine.fillUpMl(d);
+                arrivalMillis[d] = NOT_ORDERED;
+                if (added > 0) {
+                    refills++;
+                }
+                // what was sold since the last sample still counts towards the rate
+                pendingUseMl[d] += Math.max(0L, lastLevelMl[d] - before);
+                lastLevelMl[d] = engine.levelMl(d);
+                RefillListener current = listener;
+                if (current != null && added > 0) {
+                    current.refilled(d, added);
+                }
+            }
+        }
+    }
+
+    private void sample(long now) {
+        long elapsed = now - lastSampleMillis;
+        if (elapsed <= 0) {
+            return;
+        }
+        double weight = 1.0 - Math.exp(-elapsed / smoothingMillis);
+        for (int d = 0; d < rateMlPerSecond.length; d++) {
+            long level = engine.levelMl(d);
+            // a tank that went up was filled by somebody else; count it as no consumption
+            long used = Math.max(0L, lastLevelMl[d] - level) + pendingUseMl[d];
+            pendingUseMl[d] = 0;
+            double instant = used * 1000.0 / elapsed;
+            rateMlPerSecond[d] += weight * (instant - rateMlPerSecond[d]);
+            peakMl[d] = Math.max(used, peakMl[d] * (1.0 - weight));
+            lastLevelMl[d] = level;
+        }
+        lastSampleMillis = now;
+    }
+
+    private void order(long now) {
+        long horizon = leadTimeMillis + safetyMillis;
+        boolean batchOpen = false;
+        for (int d = 0; d < arrivalMillis.length; d++) {
+            boolean asked = urgent.getAndSet(d, 0) == 1;
+            if (arrivalMillis[d] == NOT_ORDERED && !isFull(d) && (asked || millisUntilMinimum(d) <= horizon)) {
+                arrivalMillis[d] = now + leadTimeMillis;
+                batchOpen = true;
+            }
+        }
+        if (!batchOpen) {
+            return;
+        }
+        batches++;
+        // tanks that would need their own delivery before this one could come round again join the batch
+        for (int d = 0; d < arrivalMillis.length; d++) {
+            if (arrivalMillis[d] == NOT_ORDERED && !isFull(d) && millisUntilMinimum(d) <= 2 * horizon) {
+                arrivalMillis[d] = now + leadTimeMillis;
+            }
+        }
+    }
+
+    private boolean isFull(int dispenser) {
+        return engine.levelMl(dispenser) >= engine.getCapacityMl();
+    }
+
+    // projected time until the tank, less room for one large sale, drops below the minimum at the current rate;
+    // Long.MAX_VALUE when idle
+    public long millisUntilMinimum(int dispenser) {
+        double above = engine.levelMl(dispenser) - minLevelMl - peakMl[dispenser];
+        if (above <= 0) {
+            return 0L;
+        }
+        double rate = rateMlPerSecond[dispenser];
+        if (rate <= 1e-9) {
+            return Long.MAX_VALUE;
+        }
+        return (long) Math.min(Long.MAX_VALUE, above / rate * 1000.0);
+    }
+
+    public double getRateMlPerSecond(int dispenser) {
+        return rateMlPerSecond[dispenser];
+    }
+
+    public boolean isRefillOrdered(int dispenser) {
+        return arrivalMillis[dispenser] != NOT_ORDERED;
+    }
+
+    public long getRefills() {
+        return refills;
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+            ticker = null;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package refill;
+
+import engine.DispenserEngine;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+// usage: java refill.RefillSimulation [dispensers] [hours] [leadMinutes] [seed]
+// leadMinutes defaults to 0, like fillUpDispenser; a longer lead time models a tanker that has to drive out
+// replays the same seeded day of customers twice on 100 litre tanks:
+//   reactive  - what PetrolStation did: a sale that finds the tank short is refused and the tank is filled
+//               on the spot, a tank below MIN_PETROL_LEVEL refuses sales until the attendant's next round
+//   scheduled - RefillScheduler ticking every second with the given delivery lead time
+// and prints how many sales each refused
+public class RefillSimulation {
+    private static final double CAPACITY_LITRES = 100.0;
+    private static final double MIN_LITRES = 20.0;
+    private static final double PRICE = 2.05;
+    private static final long ATTENDANT_ROUND_MILLIS = 10 * 60_000L;
+
+    public static void main(String[] args) {
+        int dispensers = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        int hours = args.length > 1 ? Integer.parseInt(args[1]) : 24;
+        long leadMillis = (args.length > 2 ? Long.parseLong(args[2]) : 0) * 60_000L;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42L;
+
+        Result reactive = run(dispensers, hours, leadMillis, seed, false);
+        Result scheduled = run(dispensers, hours, leadMillis, seed, true);
+        System.out.printf("%d dispensers, %d h, delivery lead time %d min%n", dispensers, hours, leadMillis / 60_000L);
+        System.out.println("reactive:  " + reactive);
+        System.out.println("scheduled: " + scheduled);
+    }
+
+    private static Result run(int dispensers, int hours, long leadMillis, long seed, boolean scheduled) {
+        Random random = new Random(seed);
+        AtomicLong clock = new AtomicLong();
+        DispenserEngine engine = new DispenserEngine(dispensers, CAPACITY_LITRES, MIN_LITRES);
+        long minLevelMl = Math.round(MIN_LITRES * DispenserEngine.ML_PER_LITRE);
+        RefillScheduler scheduler = scheduled
+                ? new RefillScheduler(engine, minLevelMl, leadMillis, 60_000L, 300_000L, clock::get)
+                : null;
+        Result result = new Result();
+
+        // next customer per dispenser, exponential gaps: one every 8 minutes, one every 2.5 minutes at rush hour
+        long[] nextArrival = new long[dispensers];
+        for (int d = 0; d < dispensers; d++) {
+            nextArrival[d] = gap(random, 0L);
+        }
+        long end = hours * 3_600_000L;
+        for (long now = 0; now < end; now += 1000L) {
+            clock.set(now);
+            for (int d = 0; d < dispensers; d++) {
+                while (nextArrival[d] <= now) {
+                    sale(engine, scheduler, d, 10 + random.nextInt(19) * 5, result);
+                    nextArrival[d] += gap(random, nextArrival[d]);
+                }
+                if (engine.isBelowMinimum(d)) {
+                    result.secondsBelowMinimum++;
+                }
+            }
+            if (scheduler != null) {
+                scheduler.tick();
+            } else if (now % ATTENDANT_ROUND_MILLIS == 0) {
+                for (int d = 0; d < dispensers; d++) {
+                    if (engine.isBelowMinimum(d)) {
+                        engine.fillUp(d);
+                        result.refills++;
+                    }
+                }
+            }
+        }
+        if (scheduler != null) {
+            result.refills = scheduler.getRefills();
+            result.batches = scheduler.getBatches();
+        }
+        return result;
+    }
+
+    private static void sale(DispenserEngine engine, RefillScheduler scheduler, int dispenser, double amount, Result result) {
+        long outcome = engine.tryPurchase(dispenser, amount, PRICE);
+        if (outcome >= 0) {
+            result.sold++;
+            return;
+        }
+        result.refused++;
+        if (outcome == DispenserEngine.NOT_ENOUGH_PETROL) {
+            if (scheduler != null) {
+                scheduler.requestRefill(dispenser);
+            } else {
+                engine.fillUp(dispenser);
+                result.refills++;
+            }
+        }
+    }
+
+    private static long gap(Random random, long at) {
+        long hourOfDay = (at / 3_600_000L) % 24;
+        boolean rush = (hourOfDay >= 7 && hourOfDay < 9) || (hourOfDay >= 17 && hourOfDay < 19);
+        double meanMillis = rush ? 150_000.0 : 480_000.0;
+        return Math.max(1L, (long) (-Math.log(1.0 - random.nextDouble()) * meanMillis));
+    }
+
+    private static final class Result {
+        long sold;
+        long refused;
+        long refills;
+        long batches;
+        long secondsBelowMinimum;
+
+        @Override
+        public String toString() {
+            return String.format("%d sold, %d refused (%.2f%%), %d refills%s, %.1f tank-minutes below minimum",
+                    sold, refused, 100.0 * refused / Math.max(1, sold + refused), refills,
+                    batches > 0 ? " in " + batches + " batches" : "", secondsBelowMinimum / 60.0);
+        }
+    }
+}
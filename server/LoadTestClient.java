@@ -0,0 +1,87 @@
+package server;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// fires purchase requests at a running StationServer from many client threads and reports latency and throughput.
+// usage: java server.LoadTestClient [baseUrl] [clients] [requestsPerClient] [dispensers]
+public class LoadTestClient {
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://127.0.0.1:8080";
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        int requestsPerClient = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        int dispensers = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+        String[] fuelTypes = {"ron95", "ron97", "diesel"};
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newFixedThreadPool(4))
+                .build();
+        long[][] latencies = new long[clients][requestsPerClient];
+        AtomicLong errors = new AtomicLong();
+        AtomicLong refused = new AtomicLong();
+
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        long start = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            long[] mine = latencies[c];
+            pool.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < requestsPerClient; i++) {
+                    int dispenser = random.nextInt(dispensers);
+                    String query = "dispenser=" + dispenser + "&amount=" + (5 + random.nextInt(50))
+                            + "&fuelType=" + fuelTypes[random.nextInt(fuelTypes.length)];
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/purchase?" + query))
+                            .POST(HttpRequest.BodyPublishers.noBody())
+                            .timeout(Duration.ofSeconds(10))
+                            .build();
+                    long t0 = System.nanoTime();
+                    try {
+                        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                        mine[i] = System.nanoTime() - t0;
+                        if (response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                        } else if (!response.body().contains("\"OK\"")) {
+                            refused.incrementAndGet();
+                            client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/fillup?dispenser=" + dispenser))
+                                    .POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.discarding());
+                        }
+                    } catch (Exception e) {
+                        mine[i] = System.nanoTime() - t0;
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.HOURS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long[] all = new long[clients * requestsPerClient];
+        for (int c = 0; c < clients; c++) {
+            System.arraycopy(latencies[c], 0, all, c * requestsPerClient, requestsPerClient);
+        }
+        Arrays.sort(all);
+        System.out.printf("Requests: %d in %.2f s (%.0f req/s)\n", all.length, seconds, all.length / seconds);
+        System.out.printf("Latency p50: %.3f ms, p99: %.3f ms, max: %.3f ms\n",
+                percentile(all, 0.50) / 1e6, percentile(all, 0.99) / 1e6, all[all.length - 1] / 1e6);
+        System.out.println("Refused (low tank): " + refused.get() + ", errors: " + errors.get());
+        System.exit(0);
+    }
+
+    static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
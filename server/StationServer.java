@@ -0,0 +1,300 @@
+package server;
+
+import analytics.SalesWindows;
+import analytics.WindowTotals;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import engine.FuelGrade;
+import engine.PurchaseResult;
+import metrics.StationMetrics;
+import money.Money;
+import pricing.PriceSnapshot;
+import pricing.PriceTable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// embedded HTTP/JSON front-end so pumps and POS terminals can drive the station remotely.
+//   POST /purchase?dispenser=0&amount=50&fuelType=ron95[&requestId=<non-zero long>]
+//        a retry with the same requestId returns the first sale again ("replayed":true), it does not sell twice
+//   POST /fillup?dispenser=0
+//   GET  /levels
+//   GET  /prices
+//   POST /prices/schedule?ron95=2.05&ron97=3.47&diesel=2.15[&at=<epoch millis>]  (default: next Wednesday 00:00 MYT)
+//   GET  /ready    (200 once the station is up, 503 while it shuts down)
+//   GET  /metrics  (Prometheus text format, when the station has metrics)
+//   GET  /sales?window=60&unit=second|minute[&dispenser=0][&fuelType=ron95]  sliding window, when the station has analytics
+//   GET  /sales?ago=1&unit=minute[...]  one tumbling window (0 = current, 1 = last complete)
+// parameters may also be sent as an application/x-www-form-urlencoded body
+public class StationServer implements AutoCloseable {
+    static {
+        // small JSON responses otherwise sit in Nagle's buffer waiting for a delayed ACK (~40 ms per request)
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final StationService station;
+
+    public StationServer(StationService station, int port, int threads) throws IOException {
+        this(station, null, port, threads);
+    }
+
+    public StationServer(StationService station, StationMetrics metrics, int port, int threads) throws IOException {
+        this(station, metrics, null, port, threads);
+    }
+
+    public StationServer(StationService station, StationMetrics metrics, SalesWindows analytics, int port, int threads)
+            throws IOException {
+        this.station = station;
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "station-http");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext("/ready", exchange -> {
+            boolean ready = station.isReady();
+            send(exchange, ready ? 200 : 503, "{\"ready\":" + ready + "}");
+        });
+        server.createContext("/purchase", handler("POST", this::purchase));
+        server.createContext("/fillup", handler("POST", this::fillUp));
+        server.createContext("/levels", handler("GET", this::levels));
+        server.createContext("/prices", handler("GET", this::prices));
+        server.createContext("/prices/schedule", handler("POST", this::schedulePrices));
+        if (metrics != null) {
+            server.createContext("/metrics", exchange -> {
+                byte[] body = metrics.render().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+        }
+        if (analytics != null) {
+            server.createContext("/sales", handler("GET", params -> sales(analytics, params)));
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private interface Endpoint {
+        // returns the JSON body; throws IllegalArgumentException for a bad request
+        String handle(Map<String, String> params);
+    }
+
+    private HttpHandler handler(String method, Endpoint endpoint) {
+        return exchange -> {
+            try {
+                if (!method.equals(exchange.getRequestMethod())) {
+                    send(exchange, 405, "{\"error\":\"Use " + method + "\"}");
+                    return;
+                }
+                send(exchange, 200, endpoint.handle(params(exchange)));
+            } catch (IllegalArgumentException e) {
+                send(exchange, 400, "{\"error\":" + quote(e.getMessage()) + "}");
+            } catch (RuntimeException e) {
+                send(exchange, 500, "{\"error\":" + quote(String.valueOf(e.getMessage())) + "}");
+            }
+        };
+    }
+
+    private String purchase(Map<String, String> params) {
+        int dispenser = intParam(params, "dispenser");
+        double amount = doubleParam(params, "amount");
+        if (!(amount > 0) || Double.isInfinite(amount)) {
+            throw new IllegalArgumentException("Invalid amount: " + params.get("amount"));
+        }
+        FuelGrade fuelGrade = FuelGrade.parse(required(params, "fuelType"));
+        if (fuelGrade == null) {
+            throw new IllegalArgumentException("Invalid fuel type: " + params.get("fuelType"));
+        }
+        long requestId = params.containsKey("requestId") ? longParam(params, "requestId") : 0L;
+        PurchaseResult result = station.purchaseFuel(requestId, dispenser, amount, fuelGrade);
+        StringBuilder json = new StringBuilder(160);
+        json.append("{\"status\":\"").append(result.getStatus()).append('"')
+                .append(",\"dispenser\":").append(dispenser)
+                .append(",\"fuelType\":\"").append(fuelGrade.key()).append('"');
+        if (result.isOk()) {
+            json.append(",\"receiptNumber\":").append(result.getReceiptNumber()).append(",\"litres\":");
+            Money.appendMl(json, result.getLitresMl()).append(",\"totalPrice\":");
+            Money.appendSen(json, result.getTotalSen());
+            if (result.isReplayed()) {
+                json.append(",\"replayed\":true");
+            }
+        }
+        return json.append('}').toString();
+    }
+
+    private String fillUp(Map<String, String> params) {
+        int dispenser = intParam(params, "dispenser");
+        double added = station.fillUpDispenser(dispenser);
+        if (added < 0) {
+            throw new IllegalArgumentException("Invalid dispenser: " + dispenser);
+        }
+        return "{\"dispenser\":" + dispenser + ",\"litresAdded\":" + added + "}";
+    }
+
+    private String levels(Map<String, String> params) {
+        double[] levels = station.getPetrolLevels();
+        StringBuilder json = new StringBuilder("{\"levels\":[");
+        for (int i = 0; i < levels.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"dispenser\":").append(i).append(",\"litres\":").append(levels[i]).append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    private String prices(Map<String, String> params) {
+        PriceSnapshot prices = station.getFuelPrices();
+        return "{\"ron95\":" + prices.getRon95() + ",\"ron97\":" + prices.getRon97()
+                + ",\"diesel\":" + prices.getDiesel() + ",\"fetchedAt\":" + prices.getFetchedAtMillis()
+                + ",\"version\":" + prices.getVersion() + "}";
+    }
+
+    private String schedulePrices(Map<String, String> params) {
+        PriceSnapshot prices = new PriceSnapshot(doubleParam(params, "ron95"), doubleParam(params, "ron97"),
+                doubleParam(params, "diesel"), System.currentTimeMillis());
+        if (!prices.isValid()) {
+            throw new IllegalArgumentException("Prices must be positive");
+        }
+        long at;
+        if (params.containsKey("at")) {
+            try {
+                at = Long.parseLong(params.get("at"));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid at: " + params.get("at"));
+            }
+        } else {
+            at = PriceTable.nextWeeklyChange(System.currentTimeMillis(), PriceTable.MALAYSIA);
+        }
+        station.schedulePrices(prices, at);
+        return "{\"scheduled\":true,\"effectiveAt\":" + at + "}";
+    }
+
+    private static String sales(SalesWindows analytics, Map<String, String> params) {
+        String unit = params.getOrDefault("unit", "second");
+        SalesWindows.Resolution resolution;
+        if (unit.equalsIgnoreCase("second")) {
+            resolution = SalesWindows.Resolution.SECOND;
+        } else if (unit.equalsIgnoreCase("minute")) {
+            resolution = SalesWindows.Resolution.MINUTE;
+        } else {
+            throw new IllegalArgumentException("Invalid unit: " + unit);
+        }
+        int dispenser = params.containsKey("dispenser") ? intParam(params, "dispenser") : SalesWindows.ALL_DISPENSERS;
+        if (dispenser != SalesWindows.ALL_DISPENSERS && (dispenser < 0 || dispenser >= analytics.getDispensers())) {
+            throw new IllegalArgumentException("Invalid dispenser: " + dispenser);
+        }
+        FuelGrade fuelGrade = null;
+        if (params.containsKey("fuelType")) {
+            fuelGrade = FuelGrade.parse(params.get("fuelType"));
+            if (fuelGrade == null) {
+                throw new IllegalArgumentException("Invalid fuel type: " + params.get("fuelType"));
+            }
+        }
+        WindowTotals totals = params.containsKey("ago")
+                ? analytics.tumbling(resolution, intParam(params, "ago"), dispenser, fuelGrade)
+                : analytics.sliding(resolution, params.containsKey("window") ? intParam(params, "window") : 60, dispenser, fuelGrade);
+        StringBuilder json = new StringBuilder(64).append("{\"count\":").append(totals.getCount()).append(",\"litres\":");
+        Money.appendMl(json, totals.getMl()).append(",\"revenue\":");
+        return Money.appendSen(json, totals.getRevenueSen()).append('}').toString();
+    }
+
+    private static Map<String, String> params(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parseQuery(exchange.getRequestURI().getRawQuery(), params);
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded")) {
+            try (InputStream body = exchange.getRequestBody()) {
+                parseQuery(new String(body.readAllBytes(), StandardCharsets.UTF_8), params);
+            }
+        }
+        return params;
+    }
+
+    private static void parseQuery(String query, Map<String, String> into) {
+        if (query == null || query.isEmpty()) {
+            return;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                into.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing parameter: " + name);
+        }
+        return value;
+    }
+
+    private static int intParam(Map<String, String> params, String name) {
+        try {
+            return Integer.parseInt(required(params, name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + params.get(name));
+        }
+    }
+
+    private static long longParam(Map<String, String> params, String name) {
+        try {
+            return Long.parseLong(required(params, name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + params.get(name));
+        }
+    }
+
+    private static double doubleParam(Map<String, String> params, String name) {
+        try {
+            return Double.parseDouble(required(params, name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + params.get(name));
+        }
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package server;
+
+import engine.FuelGrade;
+import engine.PurchaseResult;
+import pricing.PriceSnapshot;
+
+// the station operations the HTTP front-end exposes
+public interface StationService {
+    PurchaseResult purchaseFuel(int dispenser, double amount, FuelGrade fuelGrade);
+
+    // with the terminal's request id (0 for none): a retry gets the first result back instead of a second sale
+    PurchaseResult purchaseFuel(long requestId, int dispenser, double amount, FuelGrade fuelGrade);
+
+    // returns the litres added, or -1 for an invalid dispenser
+    double fillUpDispenser(int dispenser);
+
+    double[] getPetrolLevels();
+
+    PriceSnapshot getFuelPrices();
+
+    // started and not shutting down; what GET /ready reports
+    boolean isReady();
+
+    // prices that take effect at the given time without pausing sales
+    void schedulePrices(PriceSnapshot prices, long effectiveAtMillis);
+}
@@ -0,0 +1,65 @@
+package simulator;
+
+import engine.DispenserEngine;
+import engine.FuelGrade;
+import engine.PurchaseResult;
+import pricing.PriceSnapshot;
+import receipt.FlushPolicy;
+import receipt.Receipt;
+import receipt.ReceiptJournal;
+import refill.RefillScheduler;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// the station's sale path without console, ledger or event store: engine, receipt journal and refill scheduler,
+// with PetrolStation's minimum level. PetrolStation has 100 litre tanks; bigger ones keep a heavy load on the sale
+// path instead of on refills
+public class EngineTarget implements SaleTarget, AutoCloseable {
+    public static final double STATION_TANK_LITRES = 100.0;
+    private static final double MIN_LITRES = 0.1;
+
+    private final DispenserEngine engine;
+    private final PriceSnapshot prices;
+    private final ReceiptJournal journal;
+    private final RefillScheduler refillScheduler;
+
+    public EngineTarget(int dispensers, double tankLitres, PriceSnapshot prices, Path receiptDirectory) throws IOException {
+        this.engine = new DispenserEngine(dispensers, tankLitres, MIN_LITRES);
+        this.prices = prices;
+        this.journal = new ReceiptJournal(receiptDirectory, FlushPolicy.PER_BATCH, 8192, 10, 64L * 1024 * 1024);
+        this.refillScheduler = new RefillScheduler(engine, Math.round(MIN_LITRES * DispenserEngine.ML_PER_LITRE), 0L);
+        refillScheduler.start(100L);
+    }
+
+    @Override
+    public PurchaseResult sell(int dispenser, double amount, FuelGrade fuelGrade) {
+        PurchaseResult result = engine.purchase(dispenser, amount, prices.price(fuelGrade));
+        if (result.isOk()) {
+            try {
+                journal.append(Receipt.exact(result.getReceiptNumber(), dispenser, fuelGrade, result.getLitresMl(),
+                        result.getTotalSen(), System.currentTimeMillis(), prices.getVersion()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else if (result.getStatus() == PurchaseResult.Status.NOT_ENOUGH_PETROL) {
+            refillScheduler.requestRefill(dispenser);
+        }
+        return result;
+    }
+
+    @Override
+    public int receiptBacklog() {
+        return journal.backlog();
+    }
+
+    public long getRefills() {
+        return refillScheduler.getRefills();
+    }
+
+    @Override
+    public void close() throws IOException {
+        refillScheduler.close();
+        journal.close();
+    }
+}
@@ -0,0 +1,238 @@
+package simulator;
+
+import engine.PurchaseResult;
+import metrics.LatencyHistogram;
+import pricing.PriceSnapshot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+// drives a SaleTarget with a Workload instead of the console loop.
+//   open loop   - customers arrive at the workload's times whether or not earlier ones have been served, and wait
+//                 for one of 'workers' threads; shows what happens when the station falls behind
+//   closed loop - 'customers' threads each buy, optionally think, and buy again; shows the most the station can do
+// both report throughput, response/service time percentiles, sales refused for a low tank and the receipt backlog
+public class LoadSimulator {
+    private final SaleTarget target;
+    private final Workload workload;
+
+    private final LatencyHistogram response = new LatencyHistogram();
+    private final LatencyHistogram service = new LatencyHistogram();
+    private final LongAdder sold = new LongAdder();
+    private final LongAdder lowLevel = new LongAdder();
+    private final LongAdder notEnough = new LongAdder();
+    private final LongAdder other = new LongAdder();
+
+    public LoadSimulator(SaleTarget target, Workload workload) {
+        this.target = target;
+        this.workload = workload;
+    }
+
+    public SimulationReport runOpen(int workers) throws InterruptedException {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), daemon("sim-customer"));
+        Monitor monitor = new Monitor(pool);
+        monitor.start();
+        long start = System.nanoTime();
+        for (int i = 0; i < workload.size(); i++) {
+            long due = start + workload.arrivalNanos(i);
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            int customer = i;
+            pool.execute(() -> serve(customer, due));
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.HOURS);
+        long elapsed = System.nanoTime() - start;
+        monitor.stop();
+        return report("open loop, " + workers + " workers", elapsed, monitor);
+    }
+
+    public SimulationReport runClosed(int customers, long thinkMillis, long seed) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        long start = System.nanoTime();
+        long end = start + workload.getDurationNanos();
+        Monitor monitor = new Monitor(null);
+        monitor.start();
+        Thread[] threads = new Thread[customers];
+        for (int c = 0; c < customers; c++) {
+            Random think = new Random(seed + c);
+            threads[c] = new Thread(() -> {
+                while (System.nanoTime() < end) {
+                    // the workload's customers in order, round again if the run outlasts them
+                    int i = Math.floorMod(next.getAndIncrement(), workload.size());
+                    serve(i, System.nanoTime());
+                    if (thinkMillis > 0) {
+                        long pause = (long) (-Math.log(1.0 - think.nextDouble()) * thinkMillis * 1_000_000L);
+                        LockSupport.parkNanos(pause);
+                    }
+                }
+            }, "sim-customer");
+            threads[c].setDaemon(true);
+            threads[c].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        monitor.stop();
+        return report("closed loop, " + customers + " customers" + (thinkMillis > 0 ? ", " + thinkMillis + " ms think time" : ""),
+                elapsed, monitor);
+    }
+
+    private void serve(int i, long arrivedNanos) {
+        long started = System.nanoTime();
+        PurchaseResult result = target.sell(workload.dispenser(i), workload.amount(i), workload.grade(i));
+        long finished = System.nanoTime();
+        service.record(finished - started);
+        response.record(finished - arrivedNanos);
+        switch (result.getStatus()) {
+            case OK:
+                sold.increment();
+                break;
+            case LOW_LEVEL:
+                lowLevel.increment();
+                break;
+            case NOT_ENOUGH_PETROL:
+                notEnough.increment();
+                break;
+            default:
+                other.increment();
+                break;
+        }
+    }
+
+    private SimulationReport report(String mode, long elapsedNanos, Monitor monitor) {
+        return new SimulationReport(mode, elapsedNanos, sold.sum(), lowLevel.sum(), notEnough.sum(), other.sum(),
+                response.snapshot(), service.snapshot(), monitor.maxBacklog, target.receiptBacklog(),
+                monitor.maxWaiting);
+    }
+
+    // samples the receipt backlog and, in open loop, the customers waiting for a worker every 10 ms
+    private final class Monitor {
+        private final ThreadPoolExecutor pool;
+        private final AtomicBoolean running = new AtomicBoolean(true);
+        private final Thread thread;
+        private volatile int maxBacklog;
+        private volatile int maxWaiting;
+
+        Monitor(ThreadPoolExecutor pool) {
+            this.pool = pool;
+            this.maxWaiting = pool == null ? -1 : 0;
+            this.thread = new Thread(this::run, "sim-monitor");
+            thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        private void run() {
+            while (running.get()) {
+                sample();
+                LockSupport.parkNanos(10_000_000L);
+            }
+        }
+
+        private void sample() {
+            maxBacklog = Math.max(maxBacklog, target.receiptBacklog());
+            if (pool != null) {
+                maxWaiting = Math.max(maxWaiting, pool.getQueue().size());
+            }
+        }
+
+        void stop() throws InterruptedException {
+            running.set(false);
+            thread.join();
+            sample();
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // usage: java simulator.LoadSimulator [open|closed] [dispensers] [seconds] [customers/s] [threads] [seed] [thinkMillis]
+    // runs against the engine, receipt journal and refill scheduler (EngineTarget) with receipts in a temp folder and
+    // -Dsim.tank.litres tanks (default 100, as in the station); java PetrolStation simulate ... takes the same
+    // arguments and runs against the whole station
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Options options = Options.parse(args, 0);
+        Path receipts = Files.createTempDirectory("simulated-receipts");
+        Workload workload = options.workload();
+        try (EngineTarget target = new EngineTarget(options.dispensers,
+                Double.parseDouble(System.getProperty("sim.tank.litres", String.valueOf(EngineTarget.STATION_TANK_LITRES))),
+                new PriceSnapshot(2.05, 3.47, 2.15, 0L, 1L),
+                receipts.resolve("journal"))) {
+            System.out.println(options.run(target, workload));
+            System.out.println("  refills " + target.getRefills());
+        } finally {
+            try (Stream<Path> paths = Files.walk(receipts)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    // the command line shared with PetrolStation simulate; args[from] is the mode. the defaults squeeze a busy
+    // day at 12 dispensers (about 2000 customers) into 10 s
+    public static final class Options {
+        public final boolean open;
+        public final int dispensers;
+        public final long seconds;
+        public final double rate;
+        public final int threads;
+        public final long seed;
+        public final long thinkMillis;
+
+        private Options(boolean open, int dispensers, long seconds, double rate, int threads, long seed, long thinkMillis) {
+            this.open = open;
+            this.dispensers = dispensers;
+            this.seconds = seconds;
+            this.rate = rate;
+            this.threads = threads;
+            this.seed = seed;
+            this.thinkMillis = thinkMillis;
+        }
+
+        public static Options parse(String[] args, int from) {
+            String mode = args.length > from ? args[from] : "open";
+            if (!mode.equals("open") && !mode.equals("closed")) {
+                throw new IllegalArgumentException("Mode must be open or closed: " + mode);
+            }
+            return new Options(mode.equals("open"),
+                    args.length > from + 1 ? Integer.parseInt(args[from + 1]) : 12,
+                    args.length > from + 2 ? Long.parseLong(args[from + 2]) : 10L,
+                    args.length > from + 3 ? Double.parseDouble(args[from + 3]) : 200.0,
+                    args.length > from + 4 ? Integer.parseInt(args[from + 4]) : 64,
+                    args.length > from + 5 ? Long.parseLong(args[from + 5]) : 42L,
+                    args.length > from + 6 ? Long.parseLong(args[from + 6]) : 0L);
+        }
+
+        public Workload workload() {
+            return Workload.generate(seed, dispensers, seconds * 1000L, rate);
+        }
+
+        public SimulationReport run(SaleTarget target, Workload workload) throws InterruptedException {
+            LoadSimulator simulator = new LoadSimulator(target, workload);
+            return open ? simulator.runOpen(threads) : simulator.runClosed(threads, thinkMillis, seed);
+        }
+    }
+}
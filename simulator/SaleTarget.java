@@ -0,0 +1,12 @@
+package simulator;
+
+import engine.FuelGrade;
+import engine.PurchaseResult;
+
+// what the simulator drives: the bare engine (EngineTarget) or a whole station
+public interface SaleTarget {
+    PurchaseResult sell(int dispenser, double amount, FuelGrade fuelGrade);
+
+    // receipts accepted but not yet written out
+    int receiptBacklog();
+}
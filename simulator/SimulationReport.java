@@ -0,0 +1,95 @@
+package simulator;
+
+import metrics.LatencyHistogram;
+
+// what one run did. response time is measured from when the customer arrived (open loop: the scheduled arrival,
+// so time spent waiting for a free worker counts), service time from when the sale started
+public final class SimulationReport {
+    private final String mode;
+    private final long elapsedNanos;
+    private final long sold;
+    private final long refusedLowLevel;
+    private final long refusedNotEnough;
+    private final long refusedOther;
+    private final LatencyHistogram.Snapshot response;
+    private final LatencyHistogram.Snapshot service;
+    private final int maxReceiptBacklog;
+    private final int finalReceiptBacklog;
+    private final int maxWaitingCustomers;
+
+    SimulationReport(String mode, long elapsedNanos, long sold, long refusedLowLevel, long refusedNotEnough,
+                     long refusedOther, LatencyHistogram.Snapshot response, LatencyHistogram.Snapshot service,
+                     int maxReceiptBacklog, int finalReceiptBacklog, int maxWaitingCustomers) {
+        this.mode = mode;
+        this.elapsedNanos = elapsedNanos;
+        this.sold = sold;
+        this.refusedLowLevel = refusedLowLevel;
+        this.refusedNotEnough = refusedNotEnough;
+        this.refusedOther = refusedOther;
+        this.response = response;
+        this.service = service;
+        this.maxReceiptBacklog = maxReceiptBacklog;
+        this.finalReceiptBacklog = finalReceiptBacklog;
+        this.maxWaitingCustomers = maxWaitingCustomers;
+    }
+
+    public long getAttempted() {
+        return sold + getRefused();
+    }
+
+    public long getSold() {
+        return sold;
+    }
+
+    public long getRefused() {
+        return refusedLowLevel + refusedNotEnough + refusedOther;
+    }
+
+    // refused because the tank was low or could not cover the amount
+    public long getRefusedForLowTank() {
+        return refusedLowLevel + refusedNotEnough;
+    }
+
+    public double getThroughput() {
+        return getAttempted() * 1e9 / Math.max(1, elapsedNanos);
+    }
+
+    public LatencyHistogram.Snapshot getResponse() {
+        return response;
+    }
+
+    public LatencyHistogram.Snapshot getService() {
+        return service;
+    }
+
+    public int getMaxReceiptBacklog() {
+        return maxReceiptBacklog;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(512);
+        sb.append(String.format("%s: %d customers in %.2f s, %.0f sales/s%n", mode, getAttempted(), elapsedNanos / 1e9,
+                getThroughput()));
+        sb.append(String.format("  sold %d, refused %d (%.2f%%): %d low level, %d not enough petrol, %d other%n",
+                sold, getRefused(), 100.0 * getRefused() / Math.max(1, getAttempted()), refusedLowLevel,
+                refusedNotEnough, refusedOther));
+        sb.append("  response ").append(percentiles(response)).append(System.lineSeparator());
+        sb.append("  service  ").append(percentiles(service)).append(System.lineSeparator());
+        sb.append(String.format("  receipt backlog max %d, at end %d", maxReceiptBacklog, finalReceiptBacklog));
+        if (maxWaitingCustomers >= 0) {
+            sb.append(String.format(", customers waiting max %d", maxWaitingCustomers));
+        }
+        return sb.toString();
+    }
+
+    private static String percentiles(LatencyHistogram.Snapshot histogram) {
+        return String.format("p50 %s  p90 %s  p99 %s  p99.9 %s  max %s", micros(histogram.percentile(0.50)),
+                micros(histogram.percentile(0.90)), micros(histogram.percentile(0.99)),
+                micros(histogram.percentile(0.999)), micros(histogram.max()));
+    }
+
+    private static String micros(long nanos) {
+        return nanos >= 10_000_000L ? String.format("%.1f ms", nanos / 1e6) : String.format("%.1f us", nanos / 1e3);
+    }
+}
@@ -0,0 +1,138 @@
+package simulator;
+
+import engine.FuelGrade;
+
+import java.util.Random;
+
+// a seeded, repeatable stream of customers: same seed, same customers, same order.
+// each dispenser gets its own Poisson arrivals; a day's shape (two rush hours at 07-09 and 17-19 with ~3x the
+// traffic) is squeezed into the run, so a 60 s run still sees its rush hours.
+// grade mix and purchase amounts follow what a Malaysian forecourt sells: mostly RON95, round ringgit amounts
+public final class Workload {
+    private static final double RUSH_FACTOR = 3.2; // 480 s vs 150 s between customers, as in refill.RefillSimulation
+    private static final double[] GRADE_MIX = {0.70, 0.10, 0.20}; // by FuelGrade code: RON95, RON97, diesel
+    private static final double[] COMMON_AMOUNTS = {20, 30, 50, 100};
+    private static final double[] COMMON_SHARE = {0.15, 0.10, 0.30, 0.10};
+
+    private final int dispensers;
+    private final long durationNanos;
+    private final long[] arrivalNanos; // offset from the start of the run, ascending
+    private final int[] dispenser;
+    private final FuelGrade[] grade;
+    private final double[] amount;
+
+    private Workload(int dispensers, long durationNanos, int size) {
+        this.dispensers = dispensers;
+        this.durationNanos = durationNanos;
+        this.arrivalNanos = new long[size];
+        this.dispenser = new int[size];
+        this.grade = new FuelGrade[size];
+        this.amount = new double[size];
+    }
+
+    // ratePerSecond customers per second on average over the whole station
+    public static Workload generate(long seed, int dispensers, long durationMillis, double ratePerSecond) {
+        if (dispensers <= 0 || durationMillis <= 0 || !(ratePerSecond > 0)) {
+            throw new IllegalArgumentException("Workload needs dispensers, a duration and a rate");
+        }
+        long durationNanos = durationMillis * 1_000_000L;
+        // base rate such that 20 quiet hours and 4 rush hours average out to ratePerSecond
+        double baseRatePerDispenser = ratePerSecond / (20.0 / 24 + RUSH_FACTOR * 4.0 / 24) / dispensers;
+        double baseMeanGapNanos = 1e9 / baseRatePerDispenser;
+
+        Random random = new Random(seed);
+        long[] next = new long[dispensers];
+        for (int d = 0; d < dispensers; d++) {
+            next[d] = gap(random, 0L, durationNanos, baseMeanGapNanos);
+        }
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8, (long) (ratePerSecond * durationMillis / 1000.0 * 1.2) + 16);
+        Workload workload = new Workload(dispensers, durationNanos, capacity);
+        int size = 0;
+        while (true) {
+            // the dispenser whose customer arrives first; dispensers are few, a linear scan is enough
+            int d = 0;
+            for (int i = 1; i < dispensers; i++) {
+                if (next[i] < next[d]) {
+                    d = i;
+                }
+            }
+            if (next[d] >= durationNanos || size == capacity) {
+                break;
+            }
+            workload.arrivalNanos[size] = next[d];
+            workload.dispenser[size] = d;
+            workload.grade[size] = pickGrade(random);
+            workload.amount[size] = pickAmount(random);
+            size++;
+            next[d] += gap(random, next[d], durationNanos, baseMeanGapNanos);
+        }
+        return workload.truncate(size);
+    }
+
+    private static long gap(Random random, long at, long durationNanos, double baseMeanGapNanos) {
+        long hourOfDay = (long) (24.0 * at / durationNanos);
+        boolean rush = (hourOfDay >= 7 && hourOfDay < 9) || (hourOfDay >= 17 && hourOfDay < 19);
+        double meanNanos = rush ? baseMeanGapNanos / RUSH_FACTOR : baseMeanGapNanos;
+        return Math.max(1L, (long) (-Math.log(1.0 - random.nextDouble()) * meanNanos));
+    }
+
+    private static FuelGrade pickGrade(Random random) {
+        double r = random.nextDouble();
+        for (int code = 0; code < GRADE_MIX.length - 1; code++) {
+            r -= GRADE_MIX[code];
+            if (r < 0) {
+                return FuelGrade.fromCode(code);
+            }
+        }
+        return FuelGrade.fromCode(GRADE_MIX.length - 1);
+    }
+
+    // a round amount most of the time, otherwise RM10 to RM150 in RM5 steps
+    private static double pickAmount(Random random) {
+        double r = random.nextDouble();
+        for (int i = 0; i < COMMON_AMOUNTS.length; i++) {
+            r -= COMMON_SHARE[i];
+            if (r < 0) {
+                return COMMON_AMOUNTS[i];
+            }
+        }
+        return 10 + random.nextInt(29) * 5;
+    }
+
+    private Workload truncate(int size) {
+        Workload exact = new Workload(dispensers, durationNanos, size);
+        System.arraycopy(arrivalNanos, 0, exact.arrivalNanos, 0, size);
+        System.arraycopy(dispenser, 0, exact.dispenser, 0, size);
+        System.arraycopy(grade, 0, exact.grade, 0, size);
+        System.arraycopy(amount, 0, exact.amount, 0, size);
+        return exact;
+    }
+
+    public int size() {
+        return arrivalNanos.length;
+    }
+
+    public int getDispensers() {
+        return dispensers;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public long arrivalNanos(int i) {
+        return arrivalNanos[i];
+    }
+
+    public int dispenser(int i) {
+        return dispenser[i];
+    }
+
+    public FuelGrade grade(int i) {
+        return grade[i];
+    }
+
+    public double amount(int i) {
+        return amount[i];
+    }
+}
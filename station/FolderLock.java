@@ -0,0 +1,55 @@
+package station;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// keeps a second PetrolStation out of a receipt folder that one is using: the ledger, journal and event store in it
+// have one writer each. the operating system drops the lock with the process, so a crash never leaves it stuck
+public final class FolderLock implements AutoCloseable {
+    public static final String FILE_NAME = "station.lock";
+
+    private final FileChannel channel;
+    private final FileLock lock;
+
+    private FolderLock(FileChannel channel, FileLock lock) {
+        this.channel = channel;
+        this.lock = lock;
+    }
+
+    // IllegalStateException when another station (in this or another process) holds the folder
+    public static FolderLock acquire(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(FILE_NAME);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IllegalStateException("Receipt folder " + directory + " is in use by another station");
+        }
+        return new FolderLock(channel, lock);
+    }
+
+    @Override
+    public void close() {
+        try {
+            lock.release();
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error releasing " + FILE_NAME, e);
+        }
+    }
+}
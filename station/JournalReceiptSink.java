@@ -0,0 +1,39 @@
+package station;
+
+import receipt.Receipt;
+import receipt.ReceiptJournal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+// receipts queued to the append-only journal; the journal's writer thread does the file I/O
+public final class JournalReceiptSink implements ReceiptSink {
+    private final ReceiptJournal journal;
+
+    public JournalReceiptSink(ReceiptJournal journal) {
+        this.journal = journal;
+    }
+
+    @Override
+    public void accept(Receipt receipt) {
+        try {
+            journal.append(receipt);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public ReceiptJournal getJournal() {
+        return journal;
+    }
+
+    // flushes and closes the journal
+    @Override
+    public void close() {
+        try {
+            journal.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error closing receipt journal", e);
+        }
+    }
+}
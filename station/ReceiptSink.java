@@ -0,0 +1,16 @@
+package station;
+
+import receipt.Receipt;
+
+// where a station's receipts go: the journal, one text file each, or nowhere. a sink deals with its own errors,
+// the sale has already happened by the time it is called
+public interface ReceiptSink extends AutoCloseable {
+    ReceiptSink NONE = receipt -> {
+    };
+
+    void accept(Receipt receipt);
+
+    @Override
+    default void close() {
+    }
+}
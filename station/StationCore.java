@@ -0,0 +1,147 @@
+package station;
+
+import engine.DispenserEngine;
+import engine.FuelGrade;
+import engine.PurchaseResult;
+import idempotency.DedupCache;
+import money.Money;
+import pricing.FuelPriceProvider;
+import pricing.PriceSnapshot;
+import receipt.Receipt;
+
+// the part every station front end shares: tanks and receipt numbers (DispenserEngine), where prices come from
+// and where receipts go. PetrolStation, PetrolStationWithApi and PetrolStationWithoutApi are configurations of this,
+// see StationVariant; what they print and record around a sale stays with them
+public final class StationCore implements AutoCloseable {
+    private final String[] dispenserNames;
+    private final DispenserEngine engine;
+    private final FuelPriceProvider prices;
+    private final ReceiptSink receipts;
+    private final DedupCache dedup; // null when sales carry no request ids
+
+    public StationCore(String[] dispenserNames, DispenserEngine engine, FuelPriceProvider prices, ReceiptSink receipts) {
+        this(dispenserNames, engine, prices, receipts, null);
+    }
+
+    public StationCore(String[] dispenserNames, DispenserEngine engine, FuelPriceProvider prices, ReceiptSink receipts,
+                       DedupCache dedup) {
+        if (dispenserNames.length != engine.size()) {
+            throw new IllegalArgumentException(dispenserNames.length + " names for " + engine.size() + " dispensers");
+        }
+        this.dispenserNames = dispenserNames.clone();
+        this.engine = engine;
+        this.prices = prices;
+        this.receipts = receipts;
+        this.dedup = dedup;
+    }
+
+    // amount (RM) of fuelGrade at whatever the price is now; a receipt goes to the sink only when the sale went through.
+    // an amount that is not above zero is INVALID_AMOUNT, decided by the engine for every entry point
+    public PurchaseResult sell(int dispenser, double amount, FuelGrade fuelGrade) {
+        return sell(0L, dispenser, amount, fuelGrade);
+    }
+
+    // the same with the terminal's request id (0 for none), which goes on the receipt. with a dedup cache, a retry
+    // of a sale that went through gets the first result back (isReplayed()) without touching the tank or writing
+    // another receipt; IllegalArgumentException if the id was used for a different purchase
+    public PurchaseResult sell(long requestId, int dispenser, double amount, FuelGrade fuelGrade) {
+        if (requestId == 0L || dedup == null) {
+            return sale(requestId, dispenser, amount, fuelGrade);
+        }
+        long amountSen = Money.isConvertible(amount, Money.SEN_PER_RINGGIT) ? Money.sen(amount) : -1L;
+        if (amountSen <= 0) {
+            // the engine refuses it whatever the id says, so it never takes a slot in the cache
+            return sale(requestId, dispenser, amount, fuelGrade);
+        }
+        PurchaseResult previous = dedup.begin(requestId, dispenser, fuelGrade, amountSen);
+        if (previous != null) {
+            return previous;
+        }
+        PurchaseResult result;
+        try {
+            result = sale(requestId, dispenser, amount, fuelGrade);
+        } catch (RuntimeException | Error e) {
+            dedup.release(requestId);
+            throw e;
+        }
+        dedup.complete(requestId, result);
+        return result;
+    }
+
+    private PurchaseResult sale(long requestId, int dispenser, double amount, FuelGrade fuelGrade) {
+        // one snapshot for the whole sale, so the price and the version on the receipt always belong together
+        PriceSnapshot snapshot = prices.current();
+        PurchaseResult result = engine.purchase(dispenser, amount, snapshot.price(fuelGrade));
+        if (result.isOk()) {
+            receipts.accept(Receipt.exact(result.getReceiptNumber(), dispenser, fuelGrade, result.getLitresMl(),
+                    result.getTotalSen(), System.currentTimeMillis(), snapshot.getVersion(), requestId));
+        }
+        return result;
+    }
+
+    // the same in fixed point, for callers that already hold sen
+    public PurchaseResult sellSen(int dispenser, long amountSen, FuelGrade fuelGrade) {
+        PriceSnapshot snapshot = prices.current();
+        PurchaseResult result = engine.purchaseSen(dispenser, amountSen, snapshot.priceSen(fuelGrade));
+        if (result.isOk()) {
+            receipts.accept(Receipt.exact(result.getReceiptNumber(), dispenser, fuelGrade, result.getLitresMl(),
+                    result.getTotalSen(), System.currentTimeMillis(), snapshot.getVersion()));
+        }
+        return result;
+    }
+
+    // tops the tank up; millilitres added, -1 for an unknown dispenser
+    public long fillUpMl(int dispenser) {
+        if (!engine.isValidDispenser(dispenser)) {
+            return -1L;
+        }
+        return engine.fillUpMl(dispenser);
+    }
+
+    public double level(int dispenser) {
+        return engine.level(dispenser);
+    }
+
+    public boolean isValidDispenser(int dispenser) {
+        return engine.isValidDispenser(dispenser);
+    }
+
+    public int size() {
+        return engine.size();
+    }
+
+    public String getDispenserName(int dispenser) {
+        return dispenserNames[dispenser];
+    }
+
+    public PriceSnapshot currentPrices() {
+        return prices.current();
+    }
+
+    public DispenserEngine getEngine() {
+        return engine;
+    }
+
+    public ReceiptSink getReceiptSink() {
+        return receipts;
+    }
+
+    public DedupCache getDedupCache() {
+        return dedup;
+    }
+
+    // closes the receipt sink first, so queued receipts are written, then hands unused receipt numbers back and
+    // closes the price source
+    @Override
+    public void close() {
+        try {
+            receipts.close();
+        } finally {
+            try {
+                engine.getReceiptSequence().close();
+            } finally {
+                prices.close();
+            }
+        }
+    }
+}
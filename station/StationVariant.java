@@ -0,0 +1,84 @@
+package station;
+
+import engine.DispenserEngine;
+import engine.ReceiptSequence;
+import pricing.FuelPriceProvider;
+import receipt.ReceiptJournal;
+import receipt.ReceiptNumberLease;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+// the three station front ends as settings over one StationCore. they used to disagree on the minimum level
+// (20 litres in PetrolStation, 0.1 in the other two) and on receipt files; the differences left are these
+public enum StationVariant {
+    // refuses sales below 20 litres, receipts batched into the journal
+    STATION(20.0, null),
+    // the console stations keep selling down to 0.1 litres and write one text file per receipt
+    WITH_API(0.1, "receiptwithapi_"),
+    WITHOUT_API(0.1, "receiptwithoutapi_");
+
+    public static final double TANK_LITRES = 100.0;
+    // below this the console stations offer to fill the dispenser up before a sale
+    public static final double REFILL_PROMPT_LITRES = 20.0;
+    // receipt numbers a text-file station leases from the folder's counter at a time (-Dreceipt.block)
+    public static final int RECEIPT_BLOCK = Integer.getInteger("receipt.block", 100);
+
+    private final double minLevelLitres;
+    private final String receiptFilePrefix;
+
+    StationVariant(double minLevelLitres, String receiptFilePrefix) {
+        this.minLevelLitres = minLevelLitres;
+        this.receiptFilePrefix = receiptFilePrefix;
+    }
+
+    public double getMinLevelLitres() {
+        return minLevelLitres;
+    }
+
+    // null for STATION, which journals its receipts
+    public String getReceiptFilePrefix() {
+        return receiptFilePrefix;
+    }
+
+    public DispenserEngine newEngine(int numDispensers, long firstReceiptNumber) {
+        return newEngine(numDispensers, ReceiptSequence.inMemory(firstReceiptNumber));
+    }
+
+    public DispenserEngine newEngine(int numDispensers, ReceiptSequence receiptNumbers) {
+        return new DispenserEngine(numDispensers, TANK_LITRES, minLevelLitres, receiptNumbers);
+    }
+
+    // messages is where TextReceiptSink reports each file; the journal reports nothing per receipt
+    public ReceiptSink receiptSink(Path directory, Consumer<String> messages) {
+        if (receiptFilePrefix != null) {
+            return new TextReceiptSink(directory, receiptFilePrefix, messages);
+        }
+        try {
+            return new JournalReceiptSink(new ReceiptJournal(directory.resolve("journal")));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error opening receipt journal", e);
+        }
+    }
+
+    // a station of this kind. STATION numbers its receipts from 1; the text-file stations lease numbers from the
+    // folder's receipt.seq (from 1 in a new folder, or after the highest receipt file already there), so any number
+    // of them, at once or one after another, can share the folder without overwriting each other's receipts
+    public StationCore create(String[] dispenserNames, FuelPriceProvider prices, Path receiptDirectory,
+                              Consumer<String> messages) {
+        ReceiptSink sink = receiptSink(receiptDirectory, messages);
+        if (!(sink instanceof TextReceiptSink)) {
+            return new StationCore(dispenserNames, newEngine(dispenserNames.length, 1L), prices, sink);
+        }
+        ReceiptNumberLease numbers;
+        try {
+            numbers = new ReceiptNumberLease(receiptDirectory.resolve(ReceiptNumberLease.FILE_NAME), RECEIPT_BLOCK,
+                    ((TextReceiptSink) sink).highestNumber() + 1L);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading receipt folder " + receiptDirectory, e);
+        }
+        return new StationCore(dispenserNames, newEngine(dispenserNames.length, numbers), prices, sink);
+    }
+}
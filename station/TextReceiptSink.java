@@ -0,0 +1,66 @@
+package station;
+
+import receipt.Receipt;
+import receipt.ReceiptExporter;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+// one <prefix><number>.txt per receipt, written before the sale returns, as the console stations always did.
+// messages gets "Receipt saved to ..." or the error. an existing file is never overwritten
+public final class TextReceiptSink implements ReceiptSink {
+    private final Path directory;
+    private final String filePrefix;
+    private final Consumer<String> messages;
+    private long errors;
+
+    public TextReceiptSink(Path directory, String filePrefix, Consumer<String> messages) {
+        this.directory = directory;
+        this.filePrefix = filePrefix;
+        this.messages = messages;
+    }
+
+    @Override
+    public synchronized void accept(Receipt receipt) {
+        try {
+            Path file = ReceiptExporter.writeReceiptFile(receipt, directory, filePrefix, false);
+            messages.accept("Receipt saved to " + file);
+        } catch (FileAlreadyExistsException e) {
+            errors++;
+            messages.accept("Error saving receipt: " + e.getFile() + " already exists");
+        } catch (IOException e) {
+            errors++;
+            messages.accept("Error saving receipt: " + e.getMessage());
+        }
+    }
+
+    public Path file(long receiptNumber) {
+        return directory.resolve(filePrefix + receiptNumber + ".txt");
+    }
+
+    // the highest <prefix><number>.txt already in the folder, 0 if none; receipts from before numbers were leased
+    public long highestNumber() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return 0L;
+        }
+        long highest = 0L;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, filePrefix + "*.txt")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String digits = name.substring(filePrefix.length(), name.length() - ".txt".length());
+                if (!digits.isEmpty() && digits.length() < 19 && digits.chars().allMatch(Character::isDigit)) {
+                    highest = Math.max(highest, Long.parseLong(digits));
+                }
+            }
+        }
+        return highest;
+    }
+
+    public synchronized long getErrors() {
+        return errors;
+    }
+}
@@ -1,111 +1,68 @@
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.PrintWriter;
+import engine.FuelGrade;
+import engine.PurchaseResult;
+import money.Money;
+import pricing.StaticPriceSource;
+import station.StationCore;
+import station.StationVariant;
+
+import java.nio.file.Paths;
 import java.util.Scanner;
 
 public class PetrolStationWithoutApi {
-    private double[][] fuelAndPetrol; // 2D array to store both fuel prices and petrol levels
-    private double[] fuelPrices; // 1D array to store fuel prices
-    private final double MIN_PETROL_LEVEL = 0.1;
-    private int receiptNumber = 1;
+    // tanks, fixed prices and receipt files all live in the shared station core
+    private final StationCore core;
 
     public PetrolStationWithoutApi(int numDispensers) {
-        fuelAndPetrol = new double[numDispensers][2];
-        fuelPrices = new double[numDispensers]; // Initialize the 1D array for fuel prices
-
-        // Initialize fuel prices manually for the version without API
-        fuelPrices[0] = 2.05; // RON95
-        fuelPrices[1] = 3.47; // RON97
-        fuelPrices[2] = 2.15; // Diesel
-
+        String[] names = new String[numDispensers];
         for (int i = 0; i < numDispensers; i++) {
-            fuelAndPetrol[i][1] = 100.0; // Initialize petrol levels
+            names[i] = String.valueOf(i);
         }
+        // Initialize fuel prices manually for the version without API
+        core = StationVariant.WITHOUT_API.create(names, new StaticPriceSource(2.05, 3.47, 2.15),
+                Paths.get("azmi,haikal,ubaid-receipt"), System.out::println);
     }
 
     public void purchaseFuel(int dispenser, double amount, String fuelType) {
-        if (dispenser < 0 || dispenser >= fuelAndPetrol.length) {
-            System.out.println("Invalid dispenser. Please try again.");
-            return;
+        FuelGrade fuelGrade = FuelGrade.parse(fuelType);
+        if (fuelGrade == null) {
+            throw new IllegalArgumentException("Invalid fuel type: " + fuelType);
         }
-
-        if (fuelAndPetrol[dispenser][1] < MIN_PETROL_LEVEL) {
-            System.out.println("Warning: Low petrol level at dispenser " + dispenser + ". Please top up more fuel.");
-        } else {
-            double fuelPrice = getFuelPrice(fuelType);
-
-            if (fuelPrice > 0) {
-                double litres = amount / fuelPrice;
-                if (litres > fuelAndPetrol[dispenser][1]) {
-                    System.out.println("Error: Not enough petrol in dispenser " + dispenser + ". Please top up more fuel.");
-                    return;
-                }
-                fuelAndPetrol[dispenser][1] -= litres;
-                double totalPrice = litres * fuelPrice;
-
-                printReceipt(receiptNumber++, dispenser, litres, fuelType, totalPrice);
-
-                System.out.printf("Filling up %.2f litres of %s at dispenser %d. Total price: RM%.2f\n", litres, fuelType, dispenser, totalPrice);
-            } else {
+        PurchaseResult result = core.sell(dispenser, amount, fuelGrade);
+        switch (result.getStatus()) {
+            case OK:
+                System.out.printf("Filling up %.2f litres of %s at dispenser %d. Total price: RM%s\n",
+                        result.getLitres(), fuelGrade.key(), dispenser, Money.formatSen(result.getTotalSen()));
+                break;
+            case INVALID_DISPENSER:
+                System.out.println("Invalid dispenser. Please try again.");
+                break;
+            case LOW_LEVEL:
+                System.out.println("Warning: Low petrol level at dispenser " + dispenser + ". Please top up more fuel.");
+                break;
+            case NOT_ENOUGH_PETROL:
+                System.out.println("Error: Not enough petrol in dispenser " + dispenser + ". Please top up more fuel.");
+                break;
+            case INVALID_AMOUNT:
+                System.out.println("Error: Invalid amount, too small to buy any fuel. Please try again.");
+                break;
+            default:
                 System.out.println("Error: Invalid fuel price. Please try again.");
-            }
         }
     }
 
     public void fillUpDispenser(int dispenser) {
-        if (dispenser < 0 || dispenser >= fuelAndPetrol.length) {
+        long fillMl = core.fillUpMl(dispenser);
+        if (fillMl < 0) {
             System.out.println("Invalid dispenser. Please try again.");
             return;
         }
 
-        double fillAmount = 100.0 - fuelAndPetrol[dispenser][1];
-        fuelAndPetrol[dispenser][1] = 100.0;
-
-        System.out.printf("Dispenser %d filled up with %.2f litres.\n", dispenser, fillAmount);
-    }
-
-    private double getFuelPrice(String fuelType) {
-        switch (fuelType.toLowerCase()) {
-            case "ron95":
-                return fuelPrices[0];
-            case "ron97":
-                return fuelPrices[1];
-            case "diesel":
-                return fuelPrices[2];
-            default:
-                throw new IllegalArgumentException("Invalid fuel type: " + fuelType);
-        }
-    }
-
-    private void printReceipt(int currentReceiptNumber, int dispenser, double litres, String fuelType, double totalPrice) {
-        try {
-
-            String folderName = "azmi,haikal,ubaid-receipt";
-            File folder = new File(folderName);
-            if (!folder.exists()) {
-                folder.mkdir();
-            }
-
-            String fileName = folderName + "/receiptwithoutapi_" + currentReceiptNumber + ".txt";
-
-            try (PrintWriter writer = new PrintWriter(new FileWriter(fileName))) {
-                writer.println("Receipt Number: " + currentReceiptNumber);
-                writer.println("Dispenser: " + dispenser);
-                writer.println("Fuel Type: " + fuelType);
-                writer.println("Litres: " + String.format("%.2f", litres));
-                writer.println("Total Price: RM" + String.format("%.2f", totalPrice));
-            }
-
-            System.out.println("Receipt saved to " + fileName);
-        } catch (IOException e) {
-            System.out.println("Error saving receipt: " + e.getMessage());
-        }
+        System.out.printf("Dispenser %d filled up with %.2f litres.\n", dispenser, Money.litres(fillMl));
     }
 
     public void displayPetrolLevels() {
-        for (int i = 0; i < fuelAndPetrol.length; i++) {
-            System.out.printf("Petrol level at dispenser %d: %.2f litres\n", i, fuelAndPetrol[i][1]);
+        for (int i = 0; i < core.size(); i++) {
+            System.out.printf("Petrol level at dispenser %d: %.2f litres\n", i, core.level(i));
         }
     }
 
@@ -121,42 +78,31 @@ public class PetrolStationWithoutApi {
             if (dispenser == -1) {
                 exit = true;
                 break;
-            } else if (dispenser < 0 || dispenser >= station.fuelAndPetrol.length) {
+            } else if (!station.core.isValidDispenser(dispenser)) {
                 System.out.println("Invalid dispenser. Please try again.");
                 continue;
             }
 
-            if (station.fuelAndPetrol[dispenser][1] < 20.0) {
+            if (station.core.level(dispenser) < StationVariant.REFILL_PROMPT_LITRES) {
                 System.out.println("Dispenser " + dispenser + " needs to be filled up. Do you want to fill it up? (yes/no):");
                 String fillUpChoice = scanner.next().toLowerCase();
                 if (fillUpChoice.equals("yes")) {
                     station.fillUpDispenser(dispenser);
                     continue;
-                } else {
-                    System.out.println("Choose a fuel type (ron95, ron97, diesel):");
-                    String fuelType = scanner.next().toLowerCase();
-                    if (!fuelType.equals("ron95") && !fuelType.equals("ron97") && !fuelType.equals("diesel")) {
-                        System.out.println("Invalid fuel type. Please try again.");
-                        continue;
-                    }
-                    System.out.println("Enter the amount of money to purchase fuel (in RM):");
-                    double amount = scanner.nextDouble();
-                    station.purchaseFuel(dispenser, amount, fuelType);
-                    station.displayPetrolLevels();
                 }
-            } else {
-                System.out.println("Choose a fuel type (ron95, ron97, diesel):");
-                String fuelType = scanner.next().toLowerCase();
-                if (!fuelType.equals("ron95") && !fuelType.equals("ron97") && !fuelType.equals("diesel")) {
-                    System.out.println("Invalid fuel type. Please try again.");
-                    continue;
-                }
-                System.out.println("Enter the amount of money to purchase fuel (in RM):");
-                double amount = scanner.nextDouble();
-                station.purchaseFuel(dispenser, amount, fuelType);
-                station.displayPetrolLevels();
             }
+            System.out.println("Choose a fuel type (ron95, ron97, diesel):");
+            String fuelType = scanner.next().toLowerCase();
+            if (FuelGrade.parse(fuelType) == null) {
+                System.out.println("Invalid fuel type. Please try again.");
+                continue;
+            }
+            System.out.println("Enter the amount of money to purchase fuel (in RM):");
+            double amount = scanner.nextDouble();
+            station.purchaseFuel(dispenser, amount, fuelType);
+            station.displayPetrolLevels();
         }
         scanner.close();
+        station.core.close();
     }
 }